@@ -1,5 +1,6 @@
 package org.jvnet.hudson.l10n;
 
+import org.apache.commons.io.FileUtils;
 import org.kohsuke.args4j.Argument;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
@@ -7,6 +8,7 @@ import org.kohsuke.args4j.CmdLineParser;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -22,7 +24,7 @@ public class Main {
     public File sourceRoot;
 
     /**
-     * JSON translation files to apply as patches
+     * JSON translation files or submission log segments to apply as patches, or directories that contain them
      */
     @Argument(index=1)
     public List<File> jsonFiles = new ArrayList<File>();
@@ -34,12 +36,16 @@ public class Main {
 
         System.err.println("Listing up source roots");
         Patcher patcher = Patcher.forHudsonSourceTree(m.sourceRoot);
+
+        List<File> jsons = new ArrayList<File>();
         for (File j : m.jsonFiles) {
-            try {
-                patcher.patch(j);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            if (j.isDirectory()) {
+                List<File> files = new ArrayList<File>(FileUtils.listFiles(j,new String[]{"json","log"},false));
+                Collections.sort(files);    // log segments are named in the order they were written
+                jsons.addAll(files);
+            } else
+                jsons.add(j);
         }
+        patcher.patch(jsons);
     }
 }
@@ -17,11 +17,16 @@ import java.io.PrintWriter;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -42,91 +47,252 @@ public class Patcher
      */
     private Map<String,File> baseNameCache = new HashMap<String, File>();
 
+    /**
+     * Jelly scripts in {@link #sourceRoots} by their paths within the root without the extension,
+     * like "foo/bar/zot". Built on the first lookup.
+     */
+    private Map<String,File> jellyIndex;
+
     public Patcher(Collection<File> sourceRoots) {
         this.sourceRoots = sourceRoots;
     }
 
     public void patch(File json) throws IOException {
-        System.out.println("Patching from "+json);
-        JSONObject o = JSONObject.fromObject(FileUtils.readFileToString(json, "UTF-8"));
-
-        String locale = o.getString("locale");
-
-        for (JSONObject e : (List<JSONObject>)(List)o.getJSONArray("entry")) {
-            String baseName = e.getString("baseName");
-            File match = findMatch(baseName);
-            if (match==null)
-                throw new IOException("Failed to find the matching Jelly script for "+baseName);
-
-            String key = e.getString("key");
-            String text = e.getString("text");
-            // the server fixed the encoding problem, so there's no need for this
-            /*
-            if (text.contains("?")) {
-                System.out.println("  Can't apply because of the encoding problem: "+text);
-                continue;
+        patch(Collections.singleton(json));
+    }
+
+    /**
+     * Applies many submissions at once.
+     *
+     * <p>
+     * Entries of all the submissions are first merged in memory, by the property file they go to.
+     * Submissions are applied in the order they were made, so when several of them translate
+     * the same key, the latest one wins. Then each property file is rewritten just once.
+     * A submission that can't be read is reported and skipped.
+     *
+     * @param files
+     *      JSON files of individual submissions, and/or segments of the submission log
+     *      (see {@link SegmentReader}). Submissions made at the same time are applied in this order.
+     */
+    public void patch(Collection<File> files) throws IOException {
+        List<Submission> submissions = new ArrayList<Submission>();
+        for (File f : files) {
+            try {
+                if (f.getName().endsWith(SegmentReader.EXTENSION)) {
+                    SegmentReader r = new SegmentReader(f);
+                    try {
+                        for (int i=0; r.hasNext(); i++)
+                            submissions.add(new Submission(f+"#"+i,JSONObject.fromObject(new String(r.next(),"UTF-8"))));
+                    } finally {
+                        r.close();
+                    }
+                } else {
+                    submissions.add(new Submission(f));
+                }
+            } catch (IOException e) {
+                System.out.println("Failed to read "+f);
+                e.printStackTrace();
+            } catch (RuntimeException e) {
+                // JSONException
+                System.out.println("Failed to read "+f);
+                e.printStackTrace();
+            }
+        }
+        Collections.sort(submissions);
+
+        // new texts by the keys, by the property files
+        SortedMap<File,SortedMap<String,String>> patches = new TreeMap<File,SortedMap<String,String>>();
+        for (Submission sub : submissions) {
+            System.out.println("Patching from "+sub.source);
+            String locale = sub.o.getString("locale");
+
+            for (JSONObject e : (List<JSONObject>)(List)sub.o.getJSONArray("entry")) {
+                String baseName = e.getString("baseName");
+                File match = findMatch(baseName);
+                if (match==null) {
+                    System.out.println("  Failed to find the matching Jelly script for "+baseName);
+                    continue;
+                }
+
+                String key = e.getString("key");
+                String text = e.getString("text");
+
+                File l10n = new File(FilenameUtils.removeExtension(match.getPath())+"_"+locale+".properties");
+                SortedMap<String,String> texts = patches.get(l10n);
+                if (texts==null)
+                    patches.put(l10n,texts=new TreeMap<String,String>());
+                texts.put(key,text);
             }
-            */
+        }
 
-            File l10n = new File(FilenameUtils.removeExtension(match.getPath())+"_"+locale+".properties");
+        for (Map.Entry<File,SortedMap<String,String>> e : patches.entrySet()) {
+            File l10n = e.getKey();
             if (l10n.exists()) {
-                insert(key, text, l10n);
+                insert(e.getValue(), l10n);
             } else {
                 // create a brand new file
                 FileOutputStream s = new FileOutputStream(l10n);
                 PrintWriter w = new PrintWriter(new OutputStreamWriter(s,"iso-8859-1"));
                 IOUtils.copy(getClass().getResourceAsStream("header.txt"),s);
                 w.println();
-                writeEntry(key, text, w);
+                for (Map.Entry<String,String> t : e.getValue().entrySet())
+                    writeEntry(t.getKey(), t.getValue(), w);
                 w.close();
             }
-            System.out.println("  "+l10n);
+            System.out.println("  "+l10n+" ("+e.getValue().size()+")");
+        }
+    }
+
+    /**
+     * A submission from the translation assistance plugin.
+     */
+    private static final class Submission implements Comparable<Submission> {
+        /**
+         * Where this submission came from, for messages.
+         */
+        final String source;
+        final JSONObject o;
+        /**
+         * When the server received this submission.
+         */
+        final long timestamp;
+
+        Submission(File json) throws IOException {
+            this.source = json.getPath();
+            this.o = JSONObject.fromObject(FileUtils.readFileToString(json, "UTF-8"));
+
+            // the server records the time of the submission next to it
+            long t = json.lastModified();
+            File meta = new File(FilenameUtils.removeExtension(json.getPath())+".properties");
+            if (meta.exists()) {
+                Properties props = new Properties();
+                FileInputStream in = new FileInputStream(meta);
+                try {
+                    props.load(in);
+                } finally {
+                    in.close();
+                }
+                try {
+                    t = Long.parseLong(props.getProperty("timestamp"));
+                } catch (NumberFormatException e) {
+                    // keep the file timestamp
+                }
+            }
+            this.timestamp = t;
+        }
+
+        /**
+         * A record of the submission log, which carries the submission along with what the server recorded about it.
+         */
+        Submission(String source, JSONObject record) {
+            this.source = source;
+            this.o = record.getJSONObject("submission");
+            this.timestamp = record.getLong("timestamp");
+        }
+
+        public int compareTo(Submission that) {
+            if (this.timestamp!=that.timestamp)
+                return this.timestamp<that.timestamp ? -1 : 1;
+            return 0;   // the sort is stable, so ties stay in the order they were given
         }
     }
 
     /**
-     * We try to stitch the text into the existing text.
+     * We try to stitch the texts into the existing text.
      * If there's no existing text, we insert it to the nearest match.
      */
-    private void insert(String key, String text, File l10n) throws IOException {
+    private void insert(SortedMap<String,String> texts, File l10n) throws IOException {
         File tmp = new File(l10n.getPath()+".tmp");
 
-        // figure out where we insert the new text
+        // figure out where we insert the new texts
         Properties props = new Properties();
-        props.load(new FileInputStream(l10n));
+        FileInputStream pin = new FileInputStream(l10n);
+        try {
+            props.load(pin);
+        } finally {
+            pin.close();
+        }
         TreeSet<String> existingKeys = new TreeSet<String>((Set)props.keySet());
-        String insertionPosition = existingKeys.ceiling(key);
+
+        // new texts by the escaped key of the entry they go in front of, and the ones that go at the end
+        Map<String,SortedMap<String,String>> insertions = new HashMap<String,SortedMap<String,String>>();
+        SortedMap<String,String> tail = new TreeMap<String,String>();
+        Set<String> replaced = new HashSet<String>();
+        for (Map.Entry<String,String> t : texts.entrySet()) {
+            String insertionPosition = existingKeys.ceiling(t.getKey());
+            SortedMap<String,String> m = tail;
+            if (insertionPosition!=null) {
+                m = insertions.get(escapeKey(insertionPosition));
+                if (m==null)
+                    insertions.put(escapeKey(insertionPosition),m=new TreeMap<String,String>());
+            }
+            m.put(t.getKey(),t.getValue());
+            replaced.add(escapeKey(t.getKey()));
+        }
 
         // property files are ISO-8859-1
         BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(l10n),"iso-8859-1"));
         PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(tmp),"iso-8859-1"));
         String line;
         while ((line=in.readLine())!=null) {
-            // look for the insertion key and insert it there
+            // look for the insertion keys and insert there
             int eq = line.indexOf('=');
             if (eq>0) {
                 String k = line.substring(0, eq).trim();
-                if (k.equals(escapeKey(insertionPosition)))
-                    writeEntry(key, text, out);
+                SortedMap<String,String> m = insertions.remove(k);
+                if (m!=null)
+                    writeEntries(m, out);
 
-                if (k.equals(escapeKey(key))) {
+                if (replaced.contains(k)) {
                     // remove existing value
-                    while (line.endsWith("\\")) {
+                    while (line!=null && isContinued(line)) {
                         line = in.readLine();
                     }
                     continue;
                 }
             }
             out.println(line);
+            // copy the rest of a multi-line value as is, as its lines aren't keys even if they contain '='
+            if (!isComment(line)) {
+                while (isContinued(line) && (line=in.readLine())!=null)
+                    out.println(line);
+            }
         }
 
-        if (insertionPosition==null) // insert it at the end
-            writeEntry(key, text, out);
+        // insert the rest at the end, including those whose insertion key didn't appear as is
+        for (SortedMap<String,String> m : insertions.values())
+            tail.putAll(m);
+        writeEntries(tail, out);
 
         // override the properties file.
         in.close();
         out.close();
-        tmp.renameTo(l10n);
+        if (!tmp.renameTo(l10n)) {
+            l10n.delete();
+            if (!tmp.renameTo(l10n))
+                throw new IOException("Failed to rename "+tmp+" to "+l10n);
+        }
+    }
+
+    private static boolean isComment(String line) {
+        String s = line.trim();
+        return s.startsWith("#") || s.startsWith("!");
+    }
+
+    /**
+     * Does this line of a property entry continue to the next line?
+     */
+    private static boolean isContinued(String line) {
+        // an even number of backslashes are escaped backslashes
+        int n=0;
+        for (int i=line.length()-1; i>=0 && line.charAt(i)=='\\'; i--)
+            n++;
+        return n%2==1;
+    }
+
+    private void writeEntries(Map<String,String> texts, PrintWriter out) {
+        for (Map.Entry<String,String> t : texts.entrySet())
+            writeEntry(t.getKey(), t.getValue(), out);
     }
 
     /**
@@ -229,12 +395,27 @@ public class Patcher
     private File locateInSourceTree(String path) {
         if (path.startsWith("/"))   path=path.substring(1);
 
+        if (jellyIndex==null)
+            jellyIndex = buildJellyIndex();
+        return jellyIndex.get(path);
+    }
+
+    /**
+     * Lists up all the Jelly scripts in the source roots.
+     * If the same path is found in several roots, the first root wins.
+     */
+    private Map<String,File> buildJellyIndex() {
+        Map<String,File> index = new HashMap<String,File>();
         for (File sourceRoot : sourceRoots) {
-            File f = new File(sourceRoot,path+".jelly");
-            if (f.exists())
-                return f;
+            String prefix = sourceRoot.getPath()+File.separator;
+            for (Iterator itr = FileUtils.iterateFiles(sourceRoot,new String[]{"jelly"},true); itr.hasNext();) {
+                File f = (File)itr.next();
+                String path = FilenameUtils.removeExtension(f.getPath().substring(prefix.length())).replace(File.separatorChar,'/');
+                if (!index.containsKey(path))
+                    index.put(path,f);
+            }
         }
-        return null;
+        return index;
     }
 
     /**
@@ -0,0 +1,163 @@
+package org.jvnet.hudson.l10n;
+
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * Applies submissions to a source tree in a temporary directory.
+ */
+public class PatcherTest extends TestCase {
+    private File dir;
+    private File layout, builds;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("l10n","");
+        dir.delete();
+        dir.mkdirs();
+
+        File resources = new File(dir,"core/src/main/resources");
+        layout = new File(resources,"lib/layout/layout.jelly");
+        builds = new File(resources,"hudson/model/View/builds.jelly");
+        FileUtils.writeStringToFile(layout,"<j:jelly/>","UTF-8");
+        FileUtils.writeStringToFile(builds,"<j:jelly/>","UTF-8");
+        // not a resource root
+        FileUtils.writeStringToFile(new File(dir,"core/target/classes/lib/layout/layout.jelly"),"<j:jelly/>","UTF-8");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    public void testOverlappingSubmissions() throws Exception {
+        File l10n = new File(layout.getParentFile(),"layout_de.properties");
+        write(l10n,
+            "# header",
+            "Apple=Apfel",
+            "Cherry=Kirsche",
+            "Long\\ text=Eine lange \\",
+            "    Zeile",
+            "Orange=Eine Orange \\",
+            "    Zeile=zwei",
+            "Zebra : Zebra");
+
+        // given first, but made later
+        File later = submission("later",2000,
+            entry(LAYOUT,"Banana","Banane"),
+            entry(LAYOUT,"Boysenberry","Boysenbeere"),
+            entry(LAYOUT,"Zeile","Zeile"),
+            entry(BUILDS,"Builds","Builds"));
+        File earlier = submission("earlier",1000,
+            entry(LAYOUT,"Banana","Alte Banane"),
+            entry(LAYOUT,"Blueberry","Blaubeere"),
+            entry(LAYOUT,"Long text","Ein langer Text"),
+            entry(LAYOUT,"Pumpkin","K\u00FCrbis"),
+            entry(LAYOUT,"Yak","Jak"),
+            entry(BUILDS,"Builds","Alte Builds"),
+            entry("jar:file:/hudson-core.jar!/no/such/script","Nothing","Nichts"));
+
+        Patcher.forHudsonSourceTree(dir).patch(Arrays.asList(later,earlier));
+
+        assertEquals(Arrays.asList(
+            "# header",
+            "Apple=Apfel",
+            // several new keys in front of the same existing key, in the sorted order
+            "Banana=Banane",
+            "Blueberry=Blaubeere",
+            "Boysenberry=Boysenbeere",
+            "Cherry=Kirsche",
+            // a multi-line value is replaced as a whole
+            "Long\\ text=Ein langer Text",
+            // and the lines of another one are kept as they are
+            "Orange=Eine Orange \\",
+            "    Zeile=zwei",
+            // Yak goes in front of Zebra, which isn't written as "key=", so it goes at the end
+            "Zebra : Zebra",
+            "Pumpkin=K\\u00FCrbis",
+            "Yak=Jak",
+            "Zeile=Zeile"),
+            FileUtils.readLines(l10n,"ISO-8859-1"));
+
+        Properties props = load(l10n);
+        assertEquals("Eine Orange Zeile=zwei",props.getProperty("Orange"));
+        assertEquals("K\u00FCrbis",props.getProperty("Pumpkin"));
+        assertEquals(11,props.size());
+
+        // a new file starts with the license header
+        File created = new File(builds.getParentFile(),"builds_de.properties");
+        String text = FileUtils.readFileToString(created,"ISO-8859-1");
+        assertTrue(text.startsWith("# The MIT License"));
+        props = load(created);
+        assertEquals("Builds",props.getProperty("Builds"));
+        assertEquals(1,props.size());
+    }
+
+    public void testTiesKeepTheGivenOrder() throws Exception {
+        File l10n = new File(layout.getParentFile(),"layout_de.properties");
+        write(l10n,"Apple=Apfel");
+        File first = submission("first",1000,entry(LAYOUT,"Apple","Erster Apfel"));
+        File second = submission("second",1000,entry(LAYOUT,"Apple","Zweiter Apfel"));
+
+        Patcher.forHudsonSourceTree(dir).patch(Arrays.asList(first,second));
+        assertEquals(Arrays.asList("Apple=Zweiter Apfel"),FileUtils.readLines(l10n,"ISO-8859-1"));
+
+        Patcher.forHudsonSourceTree(dir).patch(Arrays.asList(second,first));
+        assertEquals(Arrays.asList("Apple=Erster Apfel"),FileUtils.readLines(l10n,"ISO-8859-1"));
+    }
+
+    public void testUnreadableSubmissionIsSkipped() throws Exception {
+        File l10n = new File(layout.getParentFile(),"layout_de.properties");
+        write(l10n,"Apple=Apfel");
+        File broken = new File(dir,"broken.json");
+        FileUtils.writeStringToFile(broken,"{","UTF-8");
+        File good = submission("good",1000,entry(LAYOUT,"Cherry","Kirsche"));
+
+        Patcher.forHudsonSourceTree(dir).patch(Arrays.asList(broken,good));
+        assertEquals(Arrays.asList("Apple=Apfel","Cherry=Kirsche"),FileUtils.readLines(l10n,"ISO-8859-1"));
+    }
+
+    /**
+     * Writes a submission as the server records it, with its timestamp next to it.
+     */
+    private File submission(String name, long timestamp, String... entries) throws IOException {
+        StringBuilder buf = new StringBuilder("{\"locale\":\"de\",\"entry\":[");
+        for (int i=0; i<entries.length; i++) {
+            if (i>0)    buf.append(',');
+            buf.append(entries[i]);
+        }
+        buf.append("]}");
+        File json = new File(dir,name+".json");
+        FileUtils.writeStringToFile(json,buf.toString(),"UTF-8");
+        FileUtils.writeStringToFile(new File(dir,name+".properties"),"timestamp="+timestamp,"ISO-8859-1");
+        return json;
+    }
+
+    private static String entry(String baseName, String key, String text) {
+        return "{\"baseName\":\""+baseName+"\",\"key\":\""+key+"\",\"text\":\""+text+"\"}";
+    }
+
+    private static void write(File f, String... lines) throws IOException {
+        FileUtils.writeLines(f,"ISO-8859-1",Arrays.asList(lines));
+    }
+
+    private static Properties load(File f) throws IOException {
+        Properties props = new Properties();
+        FileInputStream in = new FileInputStream(f);
+        try {
+            props.load(in);
+        } finally {
+            in.close();
+        }
+        return props;
+    }
+
+    private static final String LAYOUT = "jar:file:/hudson/WEB-INF/lib/hudson-core.jar!/lib/layout/layout";
+    private static final String BUILDS = "file:/hudson/WEB-INF/classes/hudson/model/View/builds";
+}
@@ -3,30 +3,46 @@ package org.jvnet.hudson.l10n;
 import com.sun.mail.util.BASE64DecoderStream;
 import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 
 import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.Properties;
 import java.util.UUID;
+import java.util.regex.Pattern;
 import java.util.zip.GZIPInputStream;
 
 /**
+ * Accepts submissions and records them in the {@link SubmissionLog}.
+ *
  * @author Kohsuke Kawaguchi
  */
 public class App {
+    private final SubmissionLog log;
+
+    public App() {
+        String dir = System.getenv("DATADIR");
+        if(dir==null)   dir=".";
+        log = new SubmissionLog(new File(dir));
+    }
+
+    /**
+     * Writes out the pending submissions.
+     */
+    public void shutdown() throws InterruptedException {
+        log.close();
+    }
+
     public static final class SubmissionEntry {
         public final String text, baseName, key, original;
 
@@ -56,7 +72,11 @@ public class App {
 
         String queryString = req.getQueryString();
 
-        handleSubmission(req, c, queryString);
+        if (!log.offer(new Submission(req, c, queryString))) {
+            System.err.println("Dropping a submission as the log can't keep up");
+            rsp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
 
         // send back the response
         rsp.setStatus(200);
@@ -67,50 +87,55 @@ public class App {
     }
 
     /**
-     * Processes submission.
-     *
-     * @param req
-     *      Can be null.
-     * @param c
-     *      Can be null.
+     * Submission waiting in the log queue. Whatever needs the request is captured right away,
+     * and the decoding is left to the log writer.
      */
-    private void handleSubmission(StaplerRequest req, Cookie c, String queryString) throws IOException {
-        String id = UUID.randomUUID().toString();
-
-        String dir = System.getenv("DATADIR");
-        if(dir==null)   dir=".";
-        File f = new File(dir);
-
-        String js = IOUtils.toString(new GZIPInputStream(new BASE64DecoderStream(new ByteArrayInputStream(queryString.getBytes()))),"UTF-8");
-        JSONObject json = JSONObject.fromObject(js);
-
-        filter(json);
+    private final class Submission extends SubmissionLog.Entry {
+        private final JSONObject record = new JSONObject();
+        private final String queryString;
+        private JSONObject json;
+
+        /**
+         * @param req
+         *      Can be null.
+         * @param c
+         *      Can be null.
+         */
+        Submission(StaplerRequest req, Cookie c, String queryString) {
+            this.queryString = queryString;
+            if (req!=null) {
+                record.put("remoteHost",req.getRemoteHost());
+                if (req.getReferer()!=null)
+                    record.put("referer",req.getReferer());
+            }
+            if (c!=null) {
+                record.put("cookie",c.getValue());
+            }
+            record.put("timestamp",System.currentTimeMillis());
+            record.put("date",new Date().toString());
+        }
 
-        // place the data in a locale specific directory
-        f = new File(f,json.getString("locale"));
-        f.mkdirs();
+        protected String getLocale() throws IOException {
+            String js = IOUtils.toString(new GZIPInputStream(new BASE64DecoderStream(new ByteArrayInputStream(queryString.getBytes()))),"UTF-8");
+            json = JSONObject.fromObject(js);
 
-        FileUtils.writeStringToFile(new File(f,id+".json"),json.toString(2),"UTF-8");
+            filter(json);
 
-        Properties props = new Properties();
-        if (req!=null) {
-            props.setProperty("remoteHost",req.getRemoteHost());
-            props.setProperty("referer",req.getReferer());
-        }
-        if (c!=null) {
-            props.setProperty("cookie",c.getValue());
+            // the locale becomes a directory name
+            String locale = json.getString("locale");
+            if (!LOCALE.matcher(locale).matches()) {
+                System.err.println("Rejecting a submission for locale "+locale);
+                return null;
+            }
+            return locale;
         }
-        props.setProperty("timestamp",String.valueOf(System.currentTimeMillis()));
-        props.setProperty("date",new Date().toString());
-        props.setProperty("submitter",json.getString("submitter"));
-        props.setProperty("id",json.getString("id"));
-        props.setProperty("version",json.getString("version"));
-
-        FileOutputStream os = new FileOutputStream(new File(f,id+".properties"));
-        try {
-            props.store(os,null);
-        } finally {
-            os.close();
+
+        protected byte[] getData() throws IOException {
+            record.put("submitter",json.getString("submitter"));
+            record.put("id",json.getString("id"));
+            record.put("version",json.getString("version"));
+            record.put("submission",json);
+            return record.toString().getBytes("UTF-8");
         }
     }
 
@@ -161,11 +186,10 @@ public class App {
             String[] tokens = submission.split(" ");
 
             String query = tokens[1].substring(tokens[1].indexOf('?')+1);
-            try {
-                app.handleSubmission(null,null,query);
-            } catch (IOException e) {
-                System.err.println("Failed to handle submission: "+line);
-            }
+            app.log.put(app.new Submission(null,null,query));
         }
+        app.shutdown();
     }
+
+    private static final Pattern LOCALE = Pattern.compile("[A-Za-z0-9_\\-]+");
 }
@@ -0,0 +1,131 @@
+package org.jvnet.hudson.l10n;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+/**
+ * Reads the records of a segment file written by {@link SubmissionLog}, from the beginning to the end.
+ *
+ * <p>
+ * A segment is named after its sequence number, like <tt>00000042.log</tt>, so segments sort in the order
+ * they were written. Each record is a 4-byte length, the 4-byte CRC-32 of the data, and the data itself,
+ * which is a UTF-8 JSON object. A record that's cut short or doesn't match its checksum marks the end
+ * of the segment, as that's what a crash in the middle of a write leaves behind.
+ *
+ * <p>
+ * {@link #hasNext()} and {@link #next()} report I/O errors as {@link IllegalStateException}s.
+ */
+public final class SegmentReader implements Iterator<byte[]> {
+    private final File segment;
+    private DataInputStream in;
+    private byte[] next;
+
+    public SegmentReader(File segment) throws IOException {
+        this.segment = segment;
+        this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment),64*1024));
+    }
+
+    public boolean hasNext() {
+        if (next==null && in!=null) {
+            try {
+                next = read();
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to read "+segment,e);
+            }
+        }
+        return next!=null;
+    }
+
+    public byte[] next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        byte[] r = next;
+        next = null;
+        return r;
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private byte[] read() throws IOException {
+        int b = in.read();
+        if (b<0) {
+            close();
+            return null;
+        }
+
+        try {
+            int len = (b<<24)|(in.readUnsignedByte()<<16)|in.readUnsignedShort();
+            int checksum = in.readInt();
+            if (len<0 || len>MAX_RECORD_SIZE)
+                return truncated();
+            byte[] data = new byte[len];
+            in.readFully(data);
+
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            if ((int)crc.getValue()!=checksum)
+                return truncated();
+            return data;
+        } catch (EOFException e) {
+            return truncated();
+        }
+    }
+
+    private byte[] truncated() throws IOException {
+        System.err.println("Ignoring the incomplete record at the end of "+segment);
+        close();
+        return null;
+    }
+
+    public void close() throws IOException {
+        if (in!=null) {
+            in.close();
+            in = null;
+        }
+    }
+
+    /**
+     * Lists up the segments in the directory of a locale, in the order they were written.
+     */
+    public static File[] list(File dir) {
+        File[] files = dir.listFiles(new FileFilter() {
+            public boolean accept(File f) {
+                return f.isFile() && f.getName().endsWith(EXTENSION);
+            }
+        });
+        if (files==null)    return new File[0];
+        Arrays.sort(files);
+        return files;
+    }
+
+    static long getSequence(File segment) {
+        String n = segment.getName();
+        try {
+            return Long.parseLong(n.substring(0,n.length()-EXTENSION.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static String getName(long sequence) {
+        return String.format("%08d",sequence)+EXTENSION;
+    }
+
+    public static final String EXTENSION = ".log";
+
+    /**
+     * Submissions are far smaller than this, so a larger length is a corrupted one.
+     */
+    private static final int MAX_RECORD_SIZE = 16*1024*1024;
+}
@@ -0,0 +1,263 @@
+package org.jvnet.hudson.l10n;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of submissions, kept as a series of segment files in a directory per locale.
+ *
+ * <p>
+ * Submissions are handed over through a bounded queue and written by a single thread, so the request
+ * threads never wait for the disk. The writer appends all the submissions it finds in the queue,
+ * then syncs each segment it has touched once for the whole batch. A segment is closed once it
+ * grows beyond the size limit, and a new one is started on every restart, so only the last segment
+ * of a locale can end with a partially written record. See {@link SegmentReader} for the format.
+ */
+public class SubmissionLog {
+    private final File dir;
+    private final long segmentSize;
+    private final BlockingQueue<Entry> queue;
+    private final Thread writer;
+    /**
+     * Checking {@link #closed} and queueing a submission is done under the read lock, and closing
+     * under the write lock, so that no submission can be queued after {@link #CLOSE}.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    /**
+     * Segments being written, by their locales. Only accessed by the writer thread.
+     */
+    private final Map<String,Segment> segments = new HashMap<String,Segment>();
+
+    public SubmissionLog(File dir) {
+        this(dir,DEFAULT_QUEUE_SIZE,DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param queueSize
+     *      Number of submissions that can be waiting to be written.
+     * @param segmentSize
+     *      Segments are rotated once they grow beyond this many bytes.
+     */
+    public SubmissionLog(File dir, int queueSize, long segmentSize) {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.queue = new ArrayBlockingQueue<Entry>(queueSize);
+        this.writer = new Thread("Submission log writer for "+dir) {
+            @Override
+            public void run() {
+                write();
+            }
+        };
+        writer.start();
+    }
+
+    /**
+     * A submission waiting to be written.
+     */
+    public static abstract class Entry {
+        /**
+         * Decodes the submission and determines the locale it belongs to.
+         * Called from the writer thread, so that the request thread doesn't have to do this.
+         *
+         * @return
+         *      null to discard the submission.
+         */
+        protected abstract String getLocale() throws IOException;
+
+        /**
+         * The record to be written. Called after {@link #getLocale()}.
+         */
+        protected abstract byte[] getData() throws IOException;
+    }
+
+    /**
+     * Queues a submission without waiting.
+     *
+     * @return
+     *      false if the queue is full or the log is closed, in which case the submission is dropped.
+     */
+    public boolean offer(Entry e) {
+        lock.readLock().lock();
+        try {
+            return !closed && queue.offer(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Queues a submission, waiting for the space to become available if necessary.
+     */
+    public void put(Entry e) throws InterruptedException {
+        lock.readLock().lockInterruptibly();
+        try {
+            if (closed)
+                throw new IllegalStateException("Submission log is already closed");
+            queue.put(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes out all the queued submissions and closes the segments.
+     */
+    public void close() throws InterruptedException {
+        // waits for the threads blocked in put(), which the writer keeps making room for
+        lock.writeLock().lockInterruptibly();
+        try {
+            if (!closed) {
+                closed = true;
+                queue.put(CLOSE);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        writer.join();
+    }
+
+    private void write() {
+        List<Entry> batch = new ArrayList<Entry>();
+        boolean done = false;
+        while (!done) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;   // only close() stops us
+            }
+            queue.drainTo(batch,MAX_BATCH-1);
+            // nothing gets queued after CLOSE
+            done = batch.contains(CLOSE);
+
+            Set<Segment> dirty = new LinkedHashSet<Segment>();
+            for (Entry e : batch) {
+                if (e==CLOSE)   continue;
+                try {
+                    String locale = e.getLocale();
+                    if (locale==null)   continue;
+                    byte[] data = e.getData();
+                    Segment s = getSegment(locale);
+                    try {
+                        s.append(data);
+                    } catch (IOException x) {
+                        // readers stop at a partial record, so continue in a new segment
+                        segments.remove(locale);
+                        s.channel.close();
+                        throw x;
+                    }
+                    dirty.add(s);
+                } catch (IOException x) {
+                    System.err.println("Failed to write a submission");
+                    x.printStackTrace();
+                } catch (RuntimeException x) {
+                    // a malformed submission mustn't kill the writer
+                    System.err.println("Failed to write a submission");
+                    x.printStackTrace();
+                }
+            }
+            batch.clear();
+
+            for (Segment s : dirty) {
+                try {
+                    s.channel.force(false);
+                    if (s.size>=segmentSize) {
+                        segments.remove(s.locale);
+                        s.channel.close();
+                    }
+                } catch (IOException x) {
+                    System.err.println("Failed to sync "+s.file);
+                    x.printStackTrace();
+                }
+            }
+        }
+
+        for (Segment s : segments.values()) {
+            try {
+                s.channel.close();
+            } catch (IOException x) {
+                System.err.println("Failed to close "+s.file);
+                x.printStackTrace();
+            }
+        }
+        segments.clear();
+    }
+
+    private Segment getSegment(String locale) throws IOException {
+        Segment s = segments.get(locale);
+        if (s==null) {
+            File d = new File(dir,locale);
+            d.mkdirs();
+            long seq = 0;
+            for (File f : SegmentReader.list(d))
+                seq = Math.max(seq,SegmentReader.getSequence(f));
+            segments.put(locale,s=new Segment(locale,new File(d,SegmentReader.getName(seq+1))));
+        }
+        return s;
+    }
+
+    /**
+     * Segment file being written.
+     */
+    private static final class Segment {
+        final String locale;
+        final File file;
+        final FileChannel channel;
+        long size;
+
+        Segment(String locale, File file) throws IOException {
+            this.locale = locale;
+            this.file = file;
+            this.channel = new FileOutputStream(file,true).getChannel();
+            this.size = channel.size();
+        }
+
+        void append(byte[] data) throws IOException {
+            CRC32 crc = new CRC32();
+            crc.update(data);
+
+            ByteBuffer buf = ByteBuffer.allocate(8+data.length);
+            buf.putInt(data.length).putInt((int)crc.getValue()).put(data).flip();
+            while (buf.hasRemaining())
+                channel.write(buf);
+            size += 8+data.length;
+        }
+    }
+
+    /**
+     * Marks the end of the queue.
+     */
+    private static final Entry CLOSE = new Entry() {
+        protected String getLocale() {
+            return null;
+        }
+
+        protected byte[] getData() {
+            return null;
+        }
+    };
+
+    /**
+     * Maximum number of submissions written between two syncs.
+     */
+    private static final int MAX_BATCH = 256;
+
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+
+    public static final long DEFAULT_SEGMENT_SIZE = 16*1024*1024;
+}
@@ -12,5 +12,11 @@ public class WebAppMain implements ServletContextListener {
     }
 
     public void contextDestroyed(ServletContextEvent sce) {
+        App app = (App)sce.getServletContext().getAttribute("app");
+        try {
+            app.shutdown();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 }
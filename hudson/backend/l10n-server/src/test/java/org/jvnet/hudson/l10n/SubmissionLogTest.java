@@ -0,0 +1,271 @@
+package org.jvnet.hudson.l10n;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes submissions to the log and reads them back with {@link SegmentReader}.
+ */
+public class SubmissionLogTest extends TestCase {
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("log","");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delete(dir);
+    }
+
+    public void testWriteAndRead() throws Exception {
+        SubmissionLog log = new SubmissionLog(dir);
+        log.put(entry("de","eins"));
+        log.put(entry("ja","ichi"));
+        log.put(entry("de","zwei"));
+        assertTrue(log.offer(entry("de","drei")));
+        log.close();
+
+        assertEquals(Arrays.asList("eins","zwei","drei"),read("de"));
+        assertEquals(Arrays.asList("ichi"),read("ja"));
+        assertEquals(1,SegmentReader.list(new File(dir,"de")).length);
+    }
+
+    public void testTruncatedRecordEndsTheSegment() throws Exception {
+        write("de","eins","zwei","drei");
+        File segment = SegmentReader.list(new File(dir,"de"))[0];
+        long length = segment.length();
+        assertEquals(3*8+4+4+4,length);
+
+        // crashed in the middle of the data, of the checksum, of the length, and right before the record
+        for (long cut : new long[]{length-1, length-4-3, length-4-6, length-4-8}) {
+            truncate(segment,cut);
+            assertEquals(Arrays.asList("eins","zwei"),read("de"));
+        }
+        truncate(segment,length-4-8-4-8);
+        assertEquals(Arrays.asList("eins"),read("de"));
+        truncate(segment,0);
+        assertEquals(Collections.<String>emptyList(),read("de"));
+    }
+
+    public void testCorruptedRecordEndsTheSegment() throws Exception {
+        write("de","eins","zwei","drei");
+        File segment = SegmentReader.list(new File(dir,"de"))[0];
+
+        RandomAccessFile f = new RandomAccessFile(segment,"rw");
+        try {
+            // a byte of "zwei" that wasn't written out
+            f.seek(8+4+8+1);
+            f.write(0);
+        } finally {
+            f.close();
+        }
+        assertEquals(Arrays.asList("eins"),read("de"));
+
+        // a length that can't be right
+        f = new RandomAccessFile(segment,"rw");
+        try {
+            f.seek(0);
+            f.writeInt(-1);
+        } finally {
+            f.close();
+        }
+        assertEquals(Collections.<String>emptyList(),read("de"));
+    }
+
+    public void testRestartAfterCrash() throws Exception {
+        write("de","eins","zwei","drei");
+        File first = SegmentReader.list(new File(dir,"de"))[0];
+        truncate(first,first.length()-2);
+
+        // a new segment is started rather than appending after the partial record
+        write("de","vier");
+        File[] segments = SegmentReader.list(new File(dir,"de"));
+        assertEquals(2,segments.length);
+        assertEquals(1,SegmentReader.getSequence(segments[0]));
+        assertEquals(2,SegmentReader.getSequence(segments[1]));
+        assertEquals(Arrays.asList("eins","zwei","vier"),read("de"));
+    }
+
+    public void testRotation() throws Exception {
+        // records are 16 bytes long, so each segment gets two
+        SubmissionLog log = new SubmissionLog(dir,16,20);
+        List<String> expected = new ArrayList<String>();
+        for (int i=0; i<10; i++) {
+            // segments are rotated after a batch, so wait for each submission to be taken
+            final CountDownLatch taken = new CountDownLatch(1);
+            final String data = "Nummer "+i;
+            log.put(new SubmissionLog.Entry() {
+                protected String getLocale() {
+                    taken.countDown();
+                    return "de";
+                }
+
+                protected byte[] getData() throws IOException {
+                    return data.getBytes("UTF-8");
+                }
+            });
+            taken.await();
+            expected.add(data);
+        }
+        log.close();
+
+        assertEquals(5,SegmentReader.list(new File(dir,"de")).length);
+        assertEquals(expected,read("de"));
+    }
+
+    public void testBadSubmissionsAreSkipped() throws Exception {
+        SubmissionLog log = new SubmissionLog(dir);
+        log.put(entry("de","eins"));
+        log.put(entry(null,"discarded"));
+        log.put(new SubmissionLog.Entry() {
+            protected String getLocale() {
+                throw new IllegalArgumentException("malformed");
+            }
+
+            protected byte[] getData() {
+                throw new AssertionError();
+            }
+        });
+        log.put(new SubmissionLog.Entry() {
+            protected String getLocale() {
+                return "de";
+            }
+
+            protected byte[] getData() throws IOException {
+                throw new IOException("failed");
+            }
+        });
+        log.put(entry("de","zwei"));
+        log.close();
+
+        assertEquals(Arrays.asList("eins","zwei"),read("de"));
+    }
+
+    public void testClosed() throws Exception {
+        SubmissionLog log = new SubmissionLog(dir);
+        log.close();
+        assertFalse(log.offer(entry("de","eins")));
+        try {
+            log.put(entry("de","eins"));
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        log.close();
+        assertFalse(new File(dir,"de").exists());
+    }
+
+    /**
+     * Every submission that the log accepted while it was being closed is written.
+     */
+    public void testNothingIsLostOnClose() throws Exception {
+        for (int round=0; round<20; round++) {
+            final File d = new File(dir,"round"+round);
+            final SubmissionLog log = new SubmissionLog(d,4,SubmissionLog.DEFAULT_SEGMENT_SIZE);
+            final AtomicInteger accepted = new AtomicInteger();
+            List<Thread> threads = new ArrayList<Thread>();
+            for (int i=0; i<4; i++) {
+                final boolean blocking = i%2==0;
+                Thread t = new Thread() {
+                    public void run() {
+                        try {
+                            while (true) {
+                                if (blocking)
+                                    log.put(entry("de","x"));
+                                else if (!log.offer(entry("de","x"))) {
+                                    if (isInterrupted())    return;
+                                    continue;
+                                }
+                                accepted.incrementAndGet();
+                            }
+                        } catch (IllegalStateException e) {
+                            // closed
+                        } catch (InterruptedException e) {
+                            // stopped after the close
+                        }
+                    }
+                };
+                t.start();
+                threads.add(t);
+            }
+            Thread.sleep(10);
+            log.close();
+            for (Thread t : threads) {
+                // the threads offering without blocking only stop when interrupted
+                t.interrupt();
+                t.join();
+            }
+
+            int n=0;
+            for (File segment : SegmentReader.list(new File(d,"de"))) {
+                SegmentReader r = new SegmentReader(segment);
+                for (; r.hasNext(); r.next())
+                    n++;
+            }
+            assertEquals(accepted.get(),n);
+        }
+    }
+
+    private void write(String locale, String... data) throws InterruptedException {
+        SubmissionLog log = new SubmissionLog(dir);
+        for (String s : data)
+            log.put(entry(locale,s));
+        log.close();
+    }
+
+    private List<String> read(String locale) throws IOException {
+        List<String> r = new ArrayList<String>();
+        for (File segment : SegmentReader.list(new File(dir,locale))) {
+            SegmentReader reader = new SegmentReader(segment);
+            try {
+                while (reader.hasNext())
+                    r.add(new String(reader.next(),"UTF-8"));
+            } finally {
+                reader.close();
+            }
+        }
+        return r;
+    }
+
+    private static void truncate(File f, long length) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(f,"rw");
+        try {
+            raf.setLength(length);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static SubmissionLog.Entry entry(final String locale, final String data) {
+        return new SubmissionLog.Entry() {
+            protected String getLocale() {
+                return locale;
+            }
+
+            protected byte[] getData() throws IOException {
+                return data.getBytes("UTF-8");
+            }
+        };
+    }
+
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (children!=null)
+            for (File c : children)
+                delete(c);
+        f.delete();
+    }
+}
@@ -1,48 +1,239 @@
 package org.jvnet.hudson.update_center;
 
+import net.sf.json.JSONObject;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
 import java.io.FileOutputStream;
-import java.util.Properties;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.Manifest;
 
 /**
  * Cache of the download plugin files.
- * 
+ *
+ * <p>
+ * Downloaded files are stored under their SHA-1 checksums, and the index in <tt>index.json</tt>
+ * records, for each plugin, the version last processed along with the checksum and the manifest
+ * of its file, and the Wiki page URL found in its POM. So a plugin that hasn't been released since
+ * the last run is neither downloaded nor opened again, and its POM isn't read again either.
+ *
+ * <p>
+ * This class is thread-safe.
+ *
  * @author Kohsuke Kawaguchi
  */
 public class Cache {
-    private final Properties metadata = new Properties();
     private final File dir;
+    private final RateLimiter limiter;
+    /**
+     * Index entries by the plugin artifact IDs.
+     */
+    private final Map<String,Entry> entries = new HashMap<String,Entry>();
 
     public Cache(File dir) throws IOException {
+        this(dir,RateLimiter.UNLIMITED);
+    }
+
+    /**
+     * @param limiter
+     *      Downloads are subject to this rate limit.
+     */
+    public Cache(File dir, RateLimiter limiter) throws IOException {
         this.dir = dir;
+        this.limiter = limiter;
         dir.mkdirs();
 
-        File cacheMetadata = getMetadataFile();
-        if(cacheMetadata.exists())
-            metadata.load(new FileInputStream(cacheMetadata));
+        File index = getIndexFile();
+        if(index.exists()) {
+            JSONObject o = JSONObject.fromObject(FileUtils.readFileToString(index,"UTF-8"));
+            if(o.optInt("version")==VERSION) {
+                JSONObject plugins = o.getJSONObject("plugins");
+                for (Object name : plugins.keySet())
+                    entries.put((String)name,new Entry(plugins.getJSONObject((String)name)));
+            }
+        }
+    }
+
+    private File getIndexFile() {
+        return new File(dir,"index.json");
     }
 
-    private File getMetadataFile() {
-        return new File(dir,"metadata.properties");
+    /**
+     * Obtains the .hpi file of the given version of a plugin.
+     */
+    public HpiFile obtain(String artifactId, VersionedFile file) throws IOException {
+        Entry e;
+        synchronized (this) {
+            e = entries.get(artifactId);
+        }
+        if(e!=null && e.matches(file))
+            return e.toHpiFile();   // cache hit
+
+        e = download(file);
+        synchronized (this) {
+            entries.put(artifactId,e);
+        }
+        return e.toHpiFile();
     }
 
-    public File obtain(Plugin p) throws IOException {
-        File f = new File(dir, p.artifactId);
+    private Entry download(VersionedFile file) throws IOException {
+        limiter.acquire();
+        System.out.println("Downloading "+file.url);
+
+        File tmp = File.createTempFile("download",".tmp",dir);
+        try {
+            MessageDigest sha1;
+            try {
+                sha1 = MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e) {
+                throw new AssertionError(e);
+            }
+            InputStream in = new DigestInputStream(file.url.openStream(),sha1);
+            OutputStream out = new FileOutputStream(tmp);
+            try {
+                IOUtils.copyLarge(in, out);
+            } finally {
+                IOUtils.closeQuietly(in);
+                IOUtils.closeQuietly(out);
+            }
 
-        if(p.file.version.toString().equals(metadata.get(p.artifactId))) {
-            if(f.exists())
-                return f;   // cache hit
+            String checksum = toHexString(sha1.digest());
+            File f = getFile(checksum);
+            if(!f.exists() && !tmp.renameTo(f))
+                throw new IOException("Failed to rename "+tmp+" to "+f);
+
+            return new Entry(file,checksum,new HpiFile(f).manifest);
+        } finally {
+            tmp.delete();
         }
+    }
 
-        System.out.println("Downloading "+p.file.url);
-        p.file.downloadTo(f);
-        metadata.put(p.artifactId,p.file.version.toString());
-        return f;
+    /**
+     * Gets the Wiki page URL recorded for the given version of a plugin.
+     *
+     * @return
+     *      null if it's not known yet, or "" if the POM of the plugin doesn't have one.
+     */
+    public synchronized String getWikiUrl(String artifactId, VersionedFile file) {
+        Entry e = entries.get(artifactId);
+        return e!=null && e.matches(file) ? e.wikiUrl : null;
     }
 
-    public void save() throws IOException {
-        metadata.store(new FileOutputStream(getMetadataFile()),null);
+    /**
+     * Records the Wiki page URL found in the POM of the given version of a plugin.
+     * Forgotten once a new version of the plugin is obtained.
+     */
+    public synchronized void setWikiUrl(String artifactId, VersionedFile file, String url) {
+        Entry e = entries.get(artifactId);
+        if(e!=null && e.matches(file))
+            e.wikiUrl = url;
     }
+
+    private File getFile(String checksum) {
+        return new File(dir,checksum+".hpi");
+    }
+
+    public synchronized void save() throws IOException {
+        JSONObject plugins = new JSONObject();
+        for (Map.Entry<String,Entry> e : entries.entrySet())
+            plugins.put(e.getKey(),e.getValue().toJSON());
+
+        JSONObject o = new JSONObject();
+        o.put("version",VERSION);
+        o.put("plugins",plugins);
+
+        // write to a temporary file first so that an interrupted run doesn't lose the index
+        File index = getIndexFile();
+        File tmp = new File(dir,"index.json.tmp");
+        FileUtils.writeStringToFile(tmp,o.toString(),"UTF-8");
+        index.delete();
+        if(!tmp.renameTo(index))
+            throw new IOException("Failed to rename "+tmp+" to "+index);
+    }
+
+    /**
+     * What's recorded about a processed plugin file.
+     */
+    private final class Entry {
+        final String version;
+        final String url;
+        final long timestamp;
+        final String checksum;
+        final Map<String,String> manifest = new HashMap<String,String>();
+        /**
+         * Wiki page URL from the POM, "" if the POM doesn't have one, or null if it's not read yet.
+         * Guarded by the cache.
+         */
+        String wikiUrl;
+
+        Entry(VersionedFile file, String checksum, Manifest manifest) {
+            this.version = file.version.toString();
+            this.url = file.url.toExternalForm();
+            this.timestamp = file.lastModified.getTime();
+            this.checksum = checksum;
+            for (Map.Entry<Object,Object> e : manifest.getMainAttributes().entrySet())
+                this.manifest.put(e.getKey().toString(),(String)e.getValue());
+        }
+
+        Entry(JSONObject o) {
+            version = o.getString("version");
+            url = o.getString("url");
+            timestamp = o.getLong("timestamp");
+            checksum = o.getString("sha1");
+            JSONObject m = o.getJSONObject("manifest");
+            for (Object key : m.keySet())
+                manifest.put((String)key,m.getString((String)key));
+            if(o.has("wiki"))
+                wikiUrl = o.getString("wiki");
+        }
+
+        /**
+         * Is this entry about the given file?
+         */
+        boolean matches(VersionedFile file) {
+            return version.equals(file.version.toString()) && url.equals(file.url.toExternalForm())
+                && timestamp==file.lastModified.getTime();
+        }
+
+        HpiFile toHpiFile() {
+            Manifest m = new Manifest();
+            for (Map.Entry<String,String> e : manifest.entrySet())
+                m.getMainAttributes().putValue(e.getKey(),e.getValue());
+            return new HpiFile(getFile(checksum),m);
+        }
+
+        JSONObject toJSON() {
+            JSONObject o = new JSONObject();
+            o.put("version",version);
+            o.put("url",url);
+            o.put("timestamp",timestamp);
+            o.put("sha1",checksum);
+            JSONObject m = new JSONObject();
+            m.putAll(manifest);
+            o.put("manifest",m);
+            if(wikiUrl!=null)
+                o.put("wiki",wikiUrl);
+            return o;
+        }
+    }
+
+    private static String toHexString(byte[] bytes) {
+        StringBuilder buf = new StringBuilder();
+        for (byte b : bytes)
+            buf.append(Character.forDigit((b>>4)&0xF,16)).append(Character.forDigit(b&0xF,16));
+        return buf.toString();
+    }
+
+    /**
+     * Version of the index format. An index in another format is discarded.
+     */
+    private static final int VERSION = 1;
 }
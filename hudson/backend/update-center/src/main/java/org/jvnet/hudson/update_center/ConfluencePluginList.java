@@ -19,6 +19,9 @@ import java.util.Map;
  * See http://confluence.atlassian.com/display/DOC/Remote+API+Specification
  * for the confluence API.
  *
+ * <p>
+ * Calls are serialized, so that plugins processed in parallel can share the SOAP stub.
+ *
  * @author Kohsuke Kawaguchi
  */
 public class ConfluencePluginList {
@@ -47,7 +50,7 @@ public class ConfluencePluginList {
     /**
      * Finds the closest match, if any. Otherwise null.
      */
-    public RemotePage findNearest(String pluginArtifactId) throws RemoteException {
+    public synchronized RemotePage findNearest(String pluginArtifactId) throws RemoteException {
         // comparison is case insensitive
         pluginArtifactId = pluginArtifactId.toLowerCase();
 
@@ -58,7 +61,7 @@ public class ConfluencePluginList {
             return null;    // too far
     }
 
-    public RemotePage getPage(String url) throws RemoteException {
+    public synchronized RemotePage getPage(String url) throws RemoteException {
         for( String p : HUDSON_WIKI_PREFIX ) {
             if(!url.startsWith(p))
                 continue;
@@ -3,8 +3,10 @@ package org.jvnet.hudson.update_center;
 import net.sf.json.JSONObject;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.jar.JarFile;
+import java.util.jar.JarInputStream;
 import java.util.jar.Manifest;
 import java.util.jar.Attributes;
 import java.util.Collections;
@@ -23,12 +25,37 @@ public final class HpiFile {
     public final Attributes attributes;
 
     public HpiFile(File file) throws IOException {
+        this(file,readManifest(file));
+    }
+
+    /**
+     * Wraps the manifest of an .hpi file that was read earlier.
+     */
+    public HpiFile(File file, Manifest manifest) {
         this.file = file;
+        this.manifest = manifest;
+        attributes = manifest.getMainAttributes();
+    }
+
+    private static Manifest readManifest(File file) throws IOException {
+        // the manifest normally comes first, so this doesn't need to read the whole file
+        JarInputStream in = new JarInputStream(new FileInputStream(file));
+        try {
+            Manifest m = in.getManifest();
+            if(m!=null)     return m;
+        } finally {
+            in.close();
+        }
 
         JarFile j = new JarFile(file);
-        manifest = j.getManifest();
-        j.close();
-        attributes = manifest.getMainAttributes();
+        try {
+            Manifest m = j.getManifest();
+            if(m==null)
+                throw new IOException("No manifest in "+file);
+            return m;
+        } finally {
+            j.close();
+        }
     }
 
     public String getRequiredHudsonVersion() {
@@ -0,0 +1,65 @@
+package org.jvnet.hudson.update_center;
+
+import org.kohsuke.jnt.JNFile;
+import org.kohsuke.jnt.JNFileFolder;
+import org.kohsuke.jnt.JNProject;
+import org.kohsuke.jnt.ProcessingException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link PluginRepository} in the download section of the java.net project.
+ */
+public class JavaNetPluginRepository implements PluginRepository {
+    private final JNProject project;
+    private final RateLimiter limiter;
+
+    public JavaNetPluginRepository(JNProject project, RateLimiter limiter) {
+        this.project = project;
+        this.limiter = limiter;
+    }
+
+    public Collection<String> listPlugins() throws IOException {
+        limiter.acquire();
+        try {
+            return new ArrayList<String>(project.getFolder("/plugins").getSubFolders().keySet());
+        } catch (ProcessingException e) {
+            throw wrap(e);
+        }
+    }
+
+    public List<VersionedFile> listVersions(String plugin) throws IOException {
+        return list("/plugins/"+plugin);
+    }
+
+    public List<VersionedFile> listCoreReleases() throws IOException {
+        return list("/releases");
+    }
+
+    private List<VersionedFile> list(String path) throws IOException {
+        limiter.acquire();
+        try {
+            JNFileFolder dir = project.getFolder(path);
+            List<VersionedFile> r = new ArrayList<VersionedFile>();
+            for( JNFile file : dir.getFiles().values() ) {
+                try {
+                    r.add(new JavaNetVersionedFile(file));
+                } catch (IllegalArgumentException e) {
+                    System.out.println("   Ignoring "+file.getName());
+                }
+            }
+            Collections.sort(r);
+            return r;
+        } catch (ProcessingException e) {
+            throw wrap(e);
+        }
+    }
+
+    private static IOException wrap(ProcessingException e) {
+        return (IOException)new IOException(e.getMessage()).initCause(e);
+    }
+}
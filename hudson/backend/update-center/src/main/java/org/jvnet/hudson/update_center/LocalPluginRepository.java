@@ -0,0 +1,69 @@
+package org.jvnet.hudson.update_center;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * {@link PluginRepository} in a local directory, laid out like the download section on java.net:
+ * <tt>plugins/<i>NAME</i>/<i>VERSION</i>.hpi</tt> and <tt>releases/<i>VERSION</i>.war</tt>.
+ *
+ * <p>
+ * Useful for trying out the generator without hitting java.net.
+ * The file system doesn't record who uploaded a file, so files are attributed to the user running the generator.
+ */
+public class LocalPluginRepository implements PluginRepository {
+    private final File dir;
+
+    public LocalPluginRepository(File dir) {
+        this.dir = dir;
+    }
+
+    public Collection<String> listPlugins() throws IOException {
+        List<String> r = new ArrayList<String>();
+        for (File f : list(new File(dir,"plugins")))
+            if(f.isDirectory())
+                r.add(f.getName());
+        Collections.sort(r);
+        return r;
+    }
+
+    public List<VersionedFile> listVersions(String plugin) throws IOException {
+        return listVersionedFiles(new File(new File(dir,"plugins"),plugin));
+    }
+
+    public List<VersionedFile> listCoreReleases() throws IOException {
+        return listVersionedFiles(new File(dir,"releases"));
+    }
+
+    private List<VersionedFile> listVersionedFiles(File folder) throws IOException {
+        List<VersionedFile> r = new ArrayList<VersionedFile>();
+        for (File f : list(folder)) {
+            if(!f.isFile()) continue;
+            String n = f.getName();
+            int idx = n.lastIndexOf('.');
+            if(idx>0)   n = n.substring(0,idx);  // strip off the extension
+            if(n.contains(" "))  n = n.substring(n.lastIndexOf(' ')+1);
+            try {
+                r.add(new VersionedFile(f.toURI().toURL(),new VersionNumber(n),new Date(f.lastModified()),
+                        System.getProperty("user.name")));
+            } catch (IllegalArgumentException e) {
+                System.out.println("   Ignoring "+f.getName());
+            }
+        }
+        Collections.sort(r);
+        return r;
+    }
+
+    private static File[] list(File folder) throws IOException {
+        File[] files = folder.listFiles();
+        if(files==null)
+            throw new FileNotFoundException(folder+" is not a directory");
+        return files;
+    }
+}
@@ -3,8 +3,6 @@ package org.jvnet.hudson.update_center;
 import net.sf.json.JSONObject;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
-import org.kohsuke.jnt.JNFileFolder;
-import org.kohsuke.jnt.JNProject;
 import org.kohsuke.jnt.JavaNet;
 import org.kohsuke.jnt.ProcessingException;
 
@@ -13,7 +11,14 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * @author Kohsuke Kawaguchi
@@ -28,6 +33,18 @@ public class Main {
     @Option(name="-h",usage="htaccess file")
     public File htaccess = new File(".htaccess.plugins");
 
+    @Option(name="-r",metaVar="DIR",usage="Read plugins and releases from this local directory instead of java.net")
+    public File repository;
+
+    @Option(name="-threads",usage="Number of plugins to process in parallel")
+    public int threads = 4;
+
+    @Option(name="-rate",usage="Maximum number of requests per second to java.net and the Wiki, or 0 for no limit")
+    public double rate = 1;
+
+    @Option(name="-nowiki",usage="Don't look up the Wiki pages of plugins")
+    public boolean noWiki;
+
     public static void main(String[] args) throws Exception {
         Main main = new Main();
         CmdLineParser p = new CmdLineParser(main);
@@ -37,94 +54,116 @@ public class Main {
     }
 
     public void run() throws Exception {
+        RateLimiter limiter = new RateLimiter(rate);
+        PluginRepository repo = createRepository(limiter);
+
+        UpdateCenterWriter w = new UpdateCenterWriter(output);
+        try {
+            buildPlugins(repo,limiter,w);
+            w.setCore(buildCore(repo));
+            w.commit();
+        } finally {
+            w.close();
+        }
+    }
+
+    protected PluginRepository createRepository(RateLimiter limiter) throws ProcessingException {
+        if(repository!=null)
+            return new LocalPluginRepository(repository);
         JavaNet jn = JavaNet.connect();
-        JNProject p = jn.getProject("hudson");
-	
-        JSONObject root = new JSONObject();
-        root.put("updateCenterVersion","1");    // we'll bump the version when we make incompatible changes
-        root.put("plugins", buildPlugins(p));
-        root.put("core", buildCore(p));
-
-        PrintWriter pw = new PrintWriter(new FileWriter(output));
-        pw.println("updateCenter.post(");
-        pw.println(root.toString(2));
-        pw.println(");");
-        pw.close();
+        return new JavaNetPluginRepository(jn.getProject("hudson"),limiter);
     }
 
     /**
      * Build JSON for the plugin list.
+     *
+     * <p>
+     * Plugins are processed in parallel, and the ones that haven't changed since the last run
+     * are picked up from the {@link Cache}.
      */
-    protected JSONObject buildPlugins(JNProject p) throws ProcessingException, IOException, ServiceException, InterruptedException {
-        JNFileFolder pluginsFolder = p.getFolder("/plugins");
-        ConfluencePluginList cpl = new ConfluencePluginList();
-
-        Cache cache = new Cache(cacheDir);
-
-        PrintWriter redirect = new PrintWriter(new FileWriter(htaccess),true);
-
-        JSONObject plugins = new JSONObject();
-        for( JNFileFolder dir : pluginsFolder.getSubFolders().values() ) {
-            System.out.println(dir.getName());
-            if(dir.getName().equals("google-desktop-gadget"))
-                continue;       // this is not really a Hudson plugin. So excluding for now
-            if(dir.getName().equals("ivy2"))
-                continue;       // subsumed into the ivy plugin. Hiding from the update center
-
-            // pausing, to give java.net a bit of breath time
-            Thread.sleep(5000);
-
-            VersionedFile latest = findLatestPlugin(dir);
-            VersionedFile secondLatest = findSecondLatestPlugin(dir);
-
-            if(latest==null)
-                continue;       // couldn't find it
-
-            if (secondLatest != null) {
-                latest.setPrevModified(secondLatest.getLastModified());
-            } else {
-                // If there's no previous version of the plugin, set the previous date to epoch.
-                latest.setPrevModified(new Date(0));
+    protected void buildPlugins(final PluginRepository repo, final RateLimiter limiter, UpdateCenterWriter w) throws IOException, ServiceException, InterruptedException {
+        final ConfluencePluginList cpl = noWiki ? null : new ConfluencePluginList();
+
+        final Cache cache = new Cache(cacheDir,limiter);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Plugin>> plugins = new ArrayList<Future<Plugin>>();
+            for( final String name : repo.listPlugins() ) {
+                if(name.equals("google-desktop-gadget"))
+                    continue;       // this is not really a Hudson plugin. So excluding for now
+                if(name.equals("ivy2"))
+                    continue;       // subsumed into the ivy plugin. Hiding from the update center
+
+                plugins.add(pool.submit(new Callable<Plugin>() {
+                    public Plugin call() throws Exception {
+                        return buildPlugin(repo,name,cpl,cache,limiter);
+                    }
+                }));
             }
 
-            Plugin plugin = new Plugin(dir.getName(),latest,cpl,cache);
-
-            if(plugin.page!=null)
-                System.out.println("=> "+plugin.page.getTitle());
-            System.out.println("=> "+plugin.toJSON());
-
-            plugins.put(plugin.artifactId,plugin.toJSON());
-            redirect.printf("Redirect 302 /latest/%s.hpi %s\n", plugin.artifactId, latest.url);
+            // report in the listing order, no matter in which order they complete
+            PrintWriter redirect = new PrintWriter(new FileWriter(htaccess),true);
+            try {
+                for (Future<Plugin> f : plugins) {
+                    Plugin plugin;
+                    try {
+                        plugin = f.get();
+                    } catch (ExecutionException e) {
+                        throw (IOException)new IOException("Failed to process a plugin").initCause(e.getCause());
+                    }
+                    if(plugin==null)
+                        continue;       // couldn't find it
+
+                    System.out.println(plugin.artifactId);
+                    if(plugin.page!=null)
+                        System.out.println("=> "+plugin.page.getTitle());
+                    JSONObject json = plugin.toJSON();
+                    System.out.println("=> "+json);
+
+                    w.addPlugin(plugin.artifactId,json);
+                    redirect.printf("Redirect 302 /latest/%s.hpi %s\n", plugin.artifactId, plugin.file.url);
+                }
+            } finally {
+                redirect.close();
+            }
+        } finally {
+            pool.shutdownNow();
+            cache.save();
         }
-
-        redirect.close();
-        cache.save();
-
-        return plugins;
     }
 
+    /**
+     * Processes the latest version of a plugin.
+     *
+     * @return
+     *      null if the plugin has no release.
+     */
+    protected Plugin buildPlugin(PluginRepository repo, String name, ConfluencePluginList cpl, Cache cache, RateLimiter limiter) throws IOException {
+        List<VersionedFile> versions = repo.listVersions(name);
+        if(versions.isEmpty())
+            return null;
+
+        VersionedFile latest = versions.get(versions.size()-1);
+        if (versions.size()>1) {
+            latest.setPrevModified(versions.get(versions.size()-2).getLastModified());
+        } else {
+            // If there's no previous version of the plugin, set the previous date to epoch.
+            latest.setPrevModified(new Date(0));
+        }
 
-    
-    protected VersionedFile findLatestPlugin(JNFileFolder dir) throws ProcessingException {
-        return JavaNetVersionedFile.findLatestFrom(dir);
-    }
-
-    protected VersionedFile findSecondLatestPlugin(JNFileFolder dir) throws ProcessingException {
-        return JavaNetVersionedFile.findSecondLatestFrom(dir);
+        return new Plugin(name,latest,cpl,cache,limiter);
     }
 
     /**
      * Build JSON for the core Hudson.
      */
-    protected JSONObject buildCore(JNProject p) throws ProcessingException {
-        VersionedFile latest = findLatestCore(p);
-        JSONObject core = latest.toJSON("core");
+    protected JSONObject buildCore(PluginRepository repo) throws IOException {
+        List<VersionedFile> releases = repo.listCoreReleases();
+        if(releases.isEmpty())
+            throw new IOException("No core release found");
+        JSONObject core = releases.get(releases.size()-1).toJSON("core");
         System.out.println("core\n=> "+ core);
         return core;
     }
-
-    protected VersionedFile findLatestCore(JNProject p) throws ProcessingException {
-        JNFileFolder release = p.getFolder("/releases");
-        return JavaNetVersionedFile.findLatestFrom(release);
-    }
 }
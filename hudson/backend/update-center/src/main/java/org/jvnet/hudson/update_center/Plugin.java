@@ -44,50 +44,60 @@ public class Plugin {
 
     public final Cache cache;
 
-    public Plugin(String artifactId, VersionedFile file, ConfluencePluginList cpl, Cache cache) {
+    private final RateLimiter limiter;
+
+    private final HpiFile hpi;
+
+    public Plugin(String artifactId, VersionedFile file, ConfluencePluginList cpl, Cache cache) throws IOException {
+        this(artifactId,file,cpl,cache,RateLimiter.UNLIMITED);
+    }
+
+    /**
+     * @param cpl
+     *      Null to skip looking for the Wiki page.
+     * @param limiter
+     *      Requests to the Wiki are subject to this rate limit.
+     */
+    public Plugin(String artifactId, VersionedFile file, ConfluencePluginList cpl, Cache cache, RateLimiter limiter) throws IOException {
         this.artifactId = artifactId;
         this.file = file;
-        this.page = findPage(cpl);
         this.cache = cache;
+        this.limiter = limiter;
+        this.hpi = cache.obtain(artifactId,file);
+        this.page = cpl!=null ? findPage(cpl) : null;
     }
 
     /**
      * Locates the page for this plugin on Wiki.
      *
      * <p>
-     * First we'll try to parse POM and obtain the URL.
+     * First we'll try the URL in the POM, which is read once per version and kept in the cache.
      * If that fails, find the nearest name from the children list.
      */
-    private RemotePage findPage(ConfluencePluginList cpl) {
-        try {
-
-            DocumentFactory factory = new DocumentFactory();
-            factory.setXPathNamespaceURIs(Collections.singletonMap("m","http://maven.apache.org/POM/4.0.0"));
+    private RemotePage findPage(ConfluencePluginList cpl) throws IOException {
+        String wikiPage = cache.getWikiUrl(artifactId,file);
+        if(wikiPage==null) {
+            wikiPage = readWikiUrl();
+            if(wikiPage!=null)
+                cache.setWikiUrl(artifactId,file,wikiPage);
+        }
 
-            URL pom = new URL(
-                MessageFormat.format("http://maven.dyndns.org/2/org/jvnet/hudson/plugins/{0}/{1}/{0}-{1}.pom",artifactId,file.version));
-            Document dom = new SAXReader(factory).read(pom);
-            Node url = dom.selectSingleNode("/project/url");
-            if(url==null)
-                url = dom.selectSingleNode("/m:project/m:url");
-            if(url!=null) {
-                String wikiPage = ((Element)url).getTextTrim();
+        try {
+            if(wikiPage!=null && wikiPage.length()>0) {
+                limiter.acquire();
                 return cpl.getPage(wikiPage); // found the confluence page successfully
             }
-        } catch (MalformedURLException e) {
-            throw new AssertionError(e);
-        } catch (DocumentException e) {
-            System.err.println("Can't parse POM for "+artifactId);
-            e.printStackTrace();
         } catch (RemoteException e) {
             System.err.println("POM points to a non-confluence page for "+artifactId);
             e.printStackTrace();
-	}
+        }
 
         try {
             String p = OVERRIDES.getProperty(artifactId);
-            if(p!=null)
+            if(p!=null) {
+                limiter.acquire();
                 return cpl.getPage(p);
+            }
         } catch (RemoteException e) {
             System.err.println("Override failed for "+artifactId);
             e.printStackTrace();
@@ -95,6 +105,7 @@ public class Plugin {
 
         // try to guess the Wiki page
         try {
+            limiter.acquire();
             return cpl.findNearest(artifactId);
         } catch (RemoteException e) {
             System.err.println("Failed to locate nearest");
@@ -104,6 +115,35 @@ public class Plugin {
         return null;
     }
 
+    /**
+     * Parses the POM of this plugin to obtain the URL of its Wiki page.
+     *
+     * @return
+     *      "" if the POM doesn't have the URL, or null if the POM couldn't be read,
+     *      in which case it's tried again in the next run.
+     */
+    private String readWikiUrl() throws IOException {
+        try {
+            DocumentFactory factory = new DocumentFactory();
+            factory.setXPathNamespaceURIs(Collections.singletonMap("m","http://maven.apache.org/POM/4.0.0"));
+
+            URL pom = new URL(
+                MessageFormat.format("http://maven.dyndns.org/2/org/jvnet/hudson/plugins/{0}/{1}/{0}-{1}.pom",artifactId,file.version));
+            limiter.acquire();
+            Document dom = new SAXReader(factory).read(pom);
+            Node url = dom.selectSingleNode("/project/url");
+            if(url==null)
+                url = dom.selectSingleNode("/m:project/m:url");
+            return url!=null ? ((Element)url).getTextTrim() : "";
+        } catch (MalformedURLException e) {
+            throw new AssertionError(e);
+        } catch (DocumentException e) {
+            System.err.println("Can't parse POM for "+artifactId);
+            e.printStackTrace();
+            return null;
+        }
+    }
+
     /**
      * Obtains the excerpt of this wiki page in HTML. Otherwise null.
      */
@@ -134,7 +174,6 @@ public class Plugin {
                 json.put("excerpt",excerpt);
         }
 
-        HpiFile hpi = new HpiFile(cache.obtain(this));
         json.put("requiredCore",hpi.getRequiredHudsonVersion());
         
         if (hpi.getCompatibleSinceVersion() != null) {
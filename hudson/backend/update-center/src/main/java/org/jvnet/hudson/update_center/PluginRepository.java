@@ -0,0 +1,28 @@
+package org.jvnet.hudson.update_center;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Where the released plugins and the core are downloaded from.
+ *
+ * @see JavaNetPluginRepository
+ * @see LocalPluginRepository
+ */
+public interface PluginRepository {
+    /**
+     * Lists the short names of the plugins.
+     */
+    Collection<String> listPlugins() throws IOException;
+
+    /**
+     * Lists the released versions of a plugin, from the oldest to the newest.
+     */
+    List<VersionedFile> listVersions(String plugin) throws IOException;
+
+    /**
+     * Lists the released versions of the core, from the oldest to the newest.
+     */
+    List<VersionedFile> listCoreReleases() throws IOException;
+}
@@ -0,0 +1,48 @@
+package org.jvnet.hudson.update_center;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Spaces out the requests to the remote sites, no matter how many threads are making them,
+ * to give java.net and the Wiki a bit of breath time.
+ */
+public final class RateLimiter {
+    /**
+     * Milliseconds between two requests.
+     */
+    private final long interval;
+    /**
+     * When the next request can be made.
+     */
+    private long next;
+
+    /**
+     * @param requestsPerSecond
+     *      Maximum number of requests per second, or 0 for no limit.
+     */
+    public RateLimiter(double requestsPerSecond) {
+        this.interval = requestsPerSecond>0 ? (long)(1000/requestsPerSecond) : 0;
+    }
+
+    /**
+     * Blocks until the next request can be made.
+     */
+    public void acquire() throws InterruptedIOException {
+        long wait;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            if(next<now)    next = now;
+            wait = next-now;
+            next += interval;
+        }
+        if(wait>0) {
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                throw (InterruptedIOException)new InterruptedIOException().initCause(e);
+            }
+        }
+    }
+
+    public static final RateLimiter UNLIMITED = new RateLimiter(0);
+}
@@ -0,0 +1,248 @@
+package org.jvnet.hudson.update_center;
+
+import net.sf.json.JSONObject;
+import net.sf.json.util.JSONBuilder;
+import org.apache.commons.io.FileUtils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the update center JSON as the plugins are processed, instead of building it in memory first.
+ *
+ * <p>
+ * Along with <tt>update-center.json</tt>, this writes <tt>update-center.json.gz</tt> for the web server to
+ * send to the clients that accept gzip, and a delta from the previous generation, so that those who poll
+ * often only download what has changed. Each generation gets an increasing ID, which is written as "id"
+ * at the end of the document. The delta is named <tt>update-center.json.delta-<i>PREVIOUS-ID</i></tt>:
+ *
+ * <pre>
+ * {
+ *   "plugins": { ... plugins added or changed since the previous generation ... },
+ *   "removed": [ ... names of the plugins that are gone ... ],
+ *   "core": { ... only if it has changed ... },
+ *   "previous": "PREVIOUS-ID",
+ *   "id": "ID"
+ * }
+ * </pre>
+ *
+ * Deltas of earlier generations are left in place, so a client that's several generations behind
+ * can apply them one after another.
+ *
+ * <p>
+ * What's needed to compute the next delta, which is the ID and the checksums of the plugins, is kept in
+ * <tt>update-center.json.generation</tt>. Files are written under temporary names, and only replace the
+ * previous ones on {@link #commit()}.
+ */
+public class UpdateCenterWriter {
+    private final File output;
+
+    private final String id;
+    /**
+     * The previous generation, or null if this is the first one.
+     */
+    private final JSONObject previous;
+    /**
+     * Checksums of this generation.
+     */
+    private final JSONObject checksums = new JSONObject();
+    private final JSONObject pluginChecksums = new JSONObject();
+
+    private final Writer out;
+    private final JSONBuilder json;
+    private final Writer deltaOut;
+    private final JSONBuilder delta;
+
+    /**
+     * Files being written, in the order they are put in place. The generation comes last.
+     */
+    private final Set<File> tmpFiles = new LinkedHashSet<File>();
+    private boolean committed;
+
+    public UpdateCenterWriter(File output) throws IOException {
+        this.output = output;
+
+        File state = getStateFile();
+        previous = state.exists() ? JSONObject.fromObject(FileUtils.readFileToString(state,"UTF-8")) : null;
+        long id = System.currentTimeMillis();
+        if(previous!=null)
+            id = Math.max(id,Long.parseLong(previous.getString("id"))+1);
+        this.id = String.valueOf(id);
+
+        boolean success = false;
+        try {
+            out = new BufferedWriter(new OutputStreamWriter(new TeeOutputStream(
+                    new FileOutputStream(tmp(output)),
+                    new GZIPOutputStream(new FileOutputStream(tmp(getGzipFile())))),"UTF-8"));
+            out.write("updateCenter.post(\n");
+            json = new JSONBuilder(out);
+            json.object()
+                .key("updateCenterVersion").value("1")    // we'll bump the version when we make incompatible changes
+                .key("plugins").object();
+
+            if(previous!=null) {
+                deltaOut = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp(getDeltaFile(previous.getString("id")))),"UTF-8"));
+                delta = new JSONBuilder(deltaOut);
+                delta.object().key("plugins").object();
+            } else {
+                deltaOut = null;
+                delta = null;
+            }
+            success = true;
+        } finally {
+            if(!success)
+                close();
+        }
+    }
+
+    private File getStateFile() {
+        return sibling(".generation");
+    }
+
+    private File getGzipFile() {
+        return sibling(".gz");
+    }
+
+    private File getDeltaFile(String previousId) {
+        return sibling(".delta-"+previousId);
+    }
+
+    private File sibling(String suffix) {
+        return new File(output.getPath()+suffix);
+    }
+
+    private File tmp(File f) {
+        File t = new File(f.getPath()+".tmp");
+        tmpFiles.add(t);
+        return t;
+    }
+
+    /**
+     * Writes a plugin. Plugins must be written before the core.
+     */
+    public void addPlugin(String name, JSONObject plugin) throws IOException {
+        String checksum = checksum(plugin);
+        pluginChecksums.put(name,checksum);
+
+        json.key(name).value(plugin);
+        if(delta!=null && !checksum.equals(previous.getJSONObject("plugins").opt(name)))
+            delta.key(name).value(plugin);
+    }
+
+    public void setCore(JSONObject core) throws IOException {
+        String checksum = checksum(core);
+        checksums.put("core",checksum);
+
+        json.endObject().key("core").value(core);
+        if(delta!=null) {
+            delta.endObject().key("removed").array();
+            for (Object name : previous.getJSONObject("plugins").keySet())
+                if(!pluginChecksums.containsKey(name))
+                    delta.value(name);
+            delta.endArray();
+            if(!checksum.equals(previous.opt("core")))
+                delta.key("core").value(core);
+        }
+    }
+
+    /**
+     * Completes the files and puts them in place.
+     */
+    public void commit() throws IOException {
+        json.key("id").value(id).endObject();
+        out.write("\n);\n");
+        out.close();
+        if(delta!=null) {
+            delta.key("previous").value(previous.getString("id")).key("id").value(id).endObject();
+            deltaOut.close();
+        }
+
+        checksums.put("id",id);
+        checksums.put("plugins",pluginChecksums);
+        FileUtils.writeStringToFile(tmp(getStateFile()),checksums.toString(),"UTF-8");
+
+        for (File t : tmpFiles) {
+            File f = new File(t.getPath().substring(0,t.getPath().length()-4));
+            f.delete();
+            if(!t.renameTo(f))
+                throw new IOException("Failed to rename "+t+" to "+f);
+        }
+        committed = true;
+    }
+
+    /**
+     * Discards the files unless they've been committed.
+     */
+    public void close() throws IOException {
+        if(committed)   return;
+        if(out!=null)       out.close();
+        if(deltaOut!=null)  deltaOut.close();
+        for (File t : tmpFiles)
+            t.delete();
+    }
+
+    private static String checksum(JSONObject o) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            StringBuilder buf = new StringBuilder();
+            for (byte b : sha1.digest(o.toString().getBytes("UTF-8")))
+                buf.append(Character.forDigit((b>>4)&0xF,16)).append(Character.forDigit(b&0xF,16));
+            return buf.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Writes the same bytes to two streams.
+     */
+    private static final class TeeOutputStream extends FilterOutputStream {
+        private final OutputStream second;
+
+        TeeOutputStream(OutputStream first, OutputStream second) {
+            super(first);
+            this.second = second;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            second.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b,off,len);
+            second.write(b,off,len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+            second.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                out.close();
+            } finally {
+                second.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.jvnet.hudson.update_center.Cache;
+import org.jvnet.hudson.update_center.VersionNumber;
+import org.jvnet.hudson.update_center.VersionedFile;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Checks what the cache remembers about a plugin between runs.
+ */
+public class CacheTest extends TestCase {
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("cache","");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    public void testWikiUrlIsKeptUntilNewVersion() throws Exception {
+        File cacheDir = new File(dir,"cache");
+        VersionedFile foo10 = createHpi("foo","1.0");
+        VersionedFile bar10 = createHpi("bar","1.0");
+
+        Cache cache = new Cache(cacheDir);
+        cache.obtain("foo",foo10);
+        cache.obtain("bar",bar10);
+        assertNull(cache.getWikiUrl("foo",foo10));
+        cache.setWikiUrl("foo",foo10,WIKI);
+        cache.setWikiUrl("bar",bar10,"");   // the POM has no URL
+        cache.setWikiUrl("zot",bar10,WIKI); // not obtained, so not recorded
+        assertEquals(WIKI,cache.getWikiUrl("foo",foo10));
+        cache.save();
+
+        cache = new Cache(cacheDir);
+        assertEquals(WIKI,cache.getWikiUrl("foo",foo10));
+        assertEquals("",cache.getWikiUrl("bar",bar10));
+        assertNull(cache.getWikiUrl("zot",bar10));
+        assertNull(cache.getWikiUrl("foo",bar10));
+
+        // the POM of a new version is read again
+        VersionedFile foo11 = createHpi("foo","1.1");
+        assertNull(cache.getWikiUrl("foo",foo11));
+        cache.obtain("foo",foo11);
+        assertNull(cache.getWikiUrl("foo",foo11));
+        assertNull(cache.getWikiUrl("foo",foo10));
+        cache.setWikiUrl("foo",foo10,WIKI);
+        assertNull(cache.getWikiUrl("foo",foo11));
+    }
+
+    private VersionedFile createHpi(String name, String version) throws IOException {
+        File f = new File(dir,"repo/"+name+"/"+version+".hpi");
+        f.getParentFile().mkdirs();
+        Manifest m = new Manifest();
+        Attributes a = m.getMainAttributes();
+        a.put(Attributes.Name.MANIFEST_VERSION,"1.0");
+        a.putValue("Hudson-Version","1.300");
+        new JarOutputStream(new FileOutputStream(f),m).close();
+        return new VersionedFile(f.toURI().toURL(),new VersionNumber(version),new Date(f.lastModified()),"kohsuke");
+    }
+
+    private static final String WIKI = "http://wiki.hudson-ci.org/display/HUDSON/Foo+Plugin";
+}
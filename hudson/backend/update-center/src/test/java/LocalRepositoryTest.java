@@ -0,0 +1,124 @@
+import junit.framework.TestCase;
+import net.sf.json.JSONObject;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.jvnet.hudson.update_center.Main;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Generates the update center from a local directory, to check that plugins are only processed when they change.
+ */
+public class LocalRepositoryTest extends TestCase {
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("update-center","");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    public void testIncremental() throws Exception {
+        File repo = new File(dir,"repo");
+        createHpi(new File(repo,"plugins/foo/1.0.hpi"),"1.299",null);
+        File foo = createHpi(new File(repo,"plugins/foo/1.1.hpi"),"1.300","bar:1.0");
+        createHpi(new File(repo,"plugins/bar/1.0.hpi"),"1.290",null);
+        FileUtils.writeStringToFile(new File(repo,"releases/1.300.war"),"war");
+
+        JSONObject plugins = generate(repo).getJSONObject("plugins");
+        JSONObject json = plugins.getJSONObject("foo");
+        assertEquals("1.1",json.getString("version"));
+        assertEquals("1.300",json.getString("requiredCore"));
+        assertEquals("bar",json.getJSONArray("dependencies").getJSONObject(0).getString("name"));
+        assertEquals("1.290",plugins.getJSONObject("bar").getString("requiredCore"));
+
+        // an unchanged file isn't read again
+        long timestamp = foo.lastModified();
+        FileUtils.writeStringToFile(foo,"broken");
+        foo.setLastModified(timestamp);
+        assertEquals("1.300",generate(repo).getJSONObject("plugins").getJSONObject("foo").getString("requiredCore"));
+
+        // but a new one is
+        createHpi(foo,"1.301",null);
+        foo.setLastModified(timestamp+10000);
+        json = generate(repo).getJSONObject("plugins").getJSONObject("foo");
+        assertEquals("1.301",json.getString("requiredCore"));
+        assertTrue(json.getJSONArray("dependencies").isEmpty());
+    }
+
+    public void testDelta() throws Exception {
+        File repo = new File(dir,"repo");
+        createHpi(new File(repo,"plugins/foo/1.0.hpi"),"1.300",null);
+        createHpi(new File(repo,"plugins/bar/1.0.hpi"),"1.300",null);
+        FileUtils.writeStringToFile(new File(repo,"releases/1.300.war"),"war");
+        String id = generate(repo).getString("id");
+        File output = new File(dir,"output.json");
+        assertEquals(FileUtils.readFileToString(output),readGzip(new File(dir,"output.json.gz")));
+
+        createHpi(new File(repo,"plugins/foo/1.1.hpi"),"1.300",null);
+        assertTrue(new File(repo,"plugins/bar/1.0.hpi").delete());
+        assertTrue(new File(repo,"plugins/bar").delete());
+        createHpi(new File(repo,"plugins/zot/1.0.hpi"),"1.300",null);
+        String next = generate(repo).getString("id");
+        assertEquals(FileUtils.readFileToString(output),readGzip(new File(dir,"output.json.gz")));
+
+        JSONObject delta = JSONObject.fromObject(FileUtils.readFileToString(new File(dir,"output.json.delta-"+id)));
+        assertEquals(id,delta.getString("previous"));
+        assertEquals(next,delta.getString("id"));
+        assertEquals("1.1",delta.getJSONObject("plugins").getJSONObject("foo").getString("version"));
+        assertTrue(delta.getJSONObject("plugins").has("zot"));
+        assertEquals(2,delta.getJSONObject("plugins").size());
+        assertEquals("bar",delta.getJSONArray("removed").getString(0));
+        assertFalse(delta.has("core"));
+    }
+
+    private String readGzip(File f) throws IOException {
+        InputStream in = new GZIPInputStream(new FileInputStream(f));
+        try {
+            return IOUtils.toString(in,"UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    private JSONObject generate(File repo) throws Exception {
+        Main main = new Main();
+        main.repository = repo;
+        main.cacheDir = new File(dir,"cache");
+        main.output = new File(dir,"output.json");
+        main.htaccess = new File(dir,".htaccess");
+        main.noWiki = true;
+        main.rate = 0;
+        main.run();
+
+        String s = FileUtils.readFileToString(main.output).trim();
+        assertTrue(s.startsWith("updateCenter.post(") && s.endsWith(");"));
+        return JSONObject.fromObject(s.substring(18,s.length()-2));
+    }
+
+    private File createHpi(File f, String hudsonVersion, String dependencies) throws IOException {
+        f.getParentFile().mkdirs();
+        Manifest m = new Manifest();
+        Attributes a = m.getMainAttributes();
+        a.put(Attributes.Name.MANIFEST_VERSION,"1.0");
+        a.putValue("Hudson-Version",hudsonVersion);
+        if(dependencies!=null)
+            a.putValue("Plugin-Dependencies",dependencies);
+        new JarOutputStream(new FileOutputStream(f),m).close();
+        return f;
+    }
+}
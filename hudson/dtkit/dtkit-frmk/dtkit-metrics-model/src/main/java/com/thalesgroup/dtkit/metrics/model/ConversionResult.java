@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ * Author : Gregory Boissinot, Guillaume Tanier                                 *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.dtkit.metrics.model;
+
+import com.thalesgroup.dtkit.util.converter.ConversionException;
+
+import java.io.File;
+import java.io.Serializable;
+
+/**
+ * The result of the conversion of one file of a bulk conversion
+ */
+@SuppressWarnings("unused")
+public class ConversionResult implements Serializable {
+
+    private final File inputFile;
+
+    private final File outFile;
+
+    private final ConversionException error;
+
+    private final long time;
+
+    public ConversionResult(File inputFile, File outFile, ConversionException error, long time) {
+        this.inputFile = inputFile;
+        this.outFile = outFile;
+        this.error = error;
+        this.time = time;
+    }
+
+    public File getInputFile() {
+        return inputFile;
+    }
+
+    public File getOutFile() {
+        return outFile;
+    }
+
+    /**
+     * Gets the error of the conversion
+     *
+     * @return the conversion error, null if the conversion succeeded
+     */
+    public ConversionException getError() {
+        return error;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * Gets the time of the conversion
+     *
+     * @return the conversion time in milliseconds
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public String toString() {
+        StringBuffer sb = new StringBuffer();
+        sb.append(inputFile).append(" -> ").append(outFile).append(" in ").append(time).append(" ms");
+        if (error != null) {
+            sb.append(" failed: ").append(error.getMessage());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ * Author : Gregory Boissinot, Guillaume Tanier                                 *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.dtkit.metrics.model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Selects the files of a directory with Ant-style patterns, such as "**&#47;TEST-*.xml".
+ * Several patterns can be given separated with commas, "**" matches any number of directories,
+ * "*" any characters of a name and "?" one character of a name.
+ */
+public class InputFileSet {
+
+    private final File baseDir;
+
+    private final List<Pattern> patterns = new ArrayList<Pattern>();
+
+    public InputFileSet(File baseDir, String includes) {
+        this.baseDir = baseDir;
+        for (String include : includes.split(",")) {
+            include = include.trim().replace('\\', '/');
+            if (include.length() != 0) {
+                patterns.add(toPattern(include));
+            }
+        }
+    }
+
+    static Pattern toPattern(String include) {
+        if (include.endsWith("/")) {
+            include = include + "**";
+        }
+        StringBuffer regex = new StringBuffer();
+        int i = 0;
+        while (i < include.length()) {
+            char c = include.charAt(i);
+            if (include.startsWith("**/", i)) {
+                regex.append("(?:.*/)?");
+                i += 3;
+            } else if (include.startsWith("**", i)) {
+                regex.append(".*");
+                i += 2;
+            } else if (c == '*') {
+                regex.append("[^/]*");
+                i++;
+            } else if (c == '?') {
+                regex.append("[^/]");
+                i++;
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+                i++;
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * Gets the base directory of the file set
+     *
+     * @return the base directory
+     */
+    public File getBaseDir() {
+        return baseDir;
+    }
+
+    /**
+     * Gets the paths of the matching files, relative to the base directory and separated with '/'
+     *
+     * @return the relative paths of the files, sorted by directory
+     */
+    public List<String> getIncludedFiles() {
+        List<String> includedFiles = new ArrayList<String>();
+        scan(baseDir, "", includedFiles);
+        return includedFiles;
+    }
+
+    private void scan(File dir, String relativeDir, List<String> includedFiles) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            String relativePath = relativeDir + file.getName();
+            if (file.isDirectory()) {
+                scan(file, relativePath + "/", includedFiles);
+            } else if (isIncluded(relativePath)) {
+                includedFiles.add(relativePath);
+            }
+        }
+    }
+
+    private boolean isIncluded(String relativePath) {
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(relativePath).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -36,8 +36,10 @@ import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 import java.io.File;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.*;
 
 
 @SuppressWarnings("unused")
@@ -170,6 +172,79 @@ public abstract class InputMetric implements Serializable {
      */
     public abstract void convert(File inputFile, File outFile, Map<String, Object> params) throws ConversionException;
 
+    /**
+     * Convert a set of input files to output files on a bounded pool of threads
+     * An error on a file doesn't stop the conversion of the other files, it is reported in the result of the file
+     * The implementation of the single file conversion must be thread safe if more than one thread is given
+     *
+     * @param files   the input files to convert mapped to their output files
+     * @param params  the conversion parameters
+     * @param threads the number of files to convert at the same time
+     * @return the result and the time of the conversion of each file, in the order of the map
+     * @throws com.thalesgroup.dtkit.util.converter.ConversionException
+     *          when the conversion is interrupted
+     */
+    public List<ConversionResult> convert(Map<File, File> files, final Map<String, Object> params, int threads) throws ConversionException {
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, files.size())));
+        try {
+            List<Future<ConversionResult>> futures = new ArrayList<Future<ConversionResult>>(files.size());
+            for (final Map.Entry<File, File> entry : files.entrySet()) {
+                futures.add(executorService.submit(new Callable<ConversionResult>() {
+                    public ConversionResult call() {
+                        long start = System.currentTimeMillis();
+                        ConversionException error = null;
+                        try {
+                            convert(entry.getKey(), entry.getValue(), params);
+                        } catch (ConversionException ce) {
+                            error = ce;
+                        } catch (RuntimeException re) {
+                            error = new ConversionException("Conversion error for " + entry.getKey(), re);
+                        }
+                        return new ConversionResult(entry.getKey(), entry.getValue(), error, System.currentTimeMillis() - start);
+                    }
+                }));
+            }
+            List<ConversionResult> results = new ArrayList<ConversionResult>(files.size());
+            for (Future<ConversionResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new ConversionException("Conversion interrupted", ie);
+        } catch (ExecutionException ee) {
+            throw new ConversionException("Conversion error", ee.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Convert the files of a directory matching an Ant-style pattern on a bounded pool of threads
+     * The output files keep the relative paths and the names of the input files in the output directory
+     *
+     * @param baseDir  the directory of the input files
+     * @param includes the Ant-style patterns of the input files, separated with commas
+     * @param outDir   the directory of the output files
+     * @param params   the conversion parameters
+     * @param threads  the number of files to convert at the same time
+     * @return the result and the time of the conversion of each file
+     * @throws com.thalesgroup.dtkit.util.converter.ConversionException
+     *          when the conversion is interrupted
+     */
+    public List<ConversionResult> convert(File baseDir, String includes, File outDir, Map<String, Object> params, int threads) throws ConversionException {
+        Map<File, File> files = new LinkedHashMap<File, File>();
+        for (String includedFile : new InputFileSet(baseDir, includes).getIncludedFiles()) {
+            File outFile = new File(outDir, includedFile);
+            File parentDir = outFile.getParentFile();
+            if (!parentDir.exists() && !parentDir.mkdirs()) {
+                throw new ConversionException("Can't create the output directory " + parentDir);
+            }
+            files.put(new File(baseDir, includedFile), outFile);
+        }
+        return convert(files, params, threads);
+    }
+
     /*
     *  Gives the validation process for the input file
     *
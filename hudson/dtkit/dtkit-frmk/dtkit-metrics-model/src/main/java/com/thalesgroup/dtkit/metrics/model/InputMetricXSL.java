@@ -25,15 +25,16 @@ package com.thalesgroup.dtkit.metrics.model;
 
 import com.thalesgroup.dtkit.util.converter.ConversionException;
 import com.thalesgroup.dtkit.util.converter.ConversionService;
+import com.thalesgroup.dtkit.util.converter.ConversionServiceFactory;
+import com.thalesgroup.dtkit.util.validator.ValidationError;
 import com.thalesgroup.dtkit.util.validator.ValidationException;
 import com.thalesgroup.dtkit.util.validator.ValidationService;
+import com.thalesgroup.dtkit.util.validator.ValidationServiceFactory;
 import org.codehaus.jackson.annotate.JsonIgnore;
 
-import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamSource;
 import java.io.*;
-import java.util.Arrays;
-import java.util.Map;
+import java.util.*;
 
 @SuppressWarnings("unused")
 public abstract class InputMetricXSL extends InputMetric {
@@ -176,9 +177,9 @@ public abstract class InputMetricXSL extends InputMetric {
      */
     @Override
     public void convert(File inputFile, File outFile, Map<String, Object> params) throws ConversionException {
-        ConversionService conversionService = new ConversionService();
+        ConversionService conversionService = ConversionServiceFactory.getInstance();
         if (getXslFile() == null) {
-            conversionService.convert(new StreamSource(this.getXslResourceClass().getResourceAsStream(this.getXslName())), inputFile, outFile, params);
+            conversionService.convert(this.getXslResourceClass(), this.getXslName(), inputFile, outFile, params);
         } else {
             conversionService.convert(getXslFile(), inputFile, outFile, params);
         }
@@ -203,7 +204,7 @@ public abstract class InputMetricXSL extends InputMetric {
      *          The exception is catched by the API client (as Hudson plugin)
      */
     public void convert(File inputFile, File outFile, File externalXsl, Map<String, Object> params) throws ConversionException {
-        ConversionService conversionService = new ConversionService();
+        ConversionService conversionService = ConversionServiceFactory.getInstance();
         conversionService.convert(externalXsl, inputFile, outFile, params);
     }
 
@@ -221,7 +222,7 @@ public abstract class InputMetricXSL extends InputMetric {
      *          The exception is catched by the API client (as Hudson plugin)
      */
     public void convert(File inputFile, File outFile, String externalXslContent, Map<String, Object> params) throws ConversionException {
-        ConversionService conversionService = new ConversionService();
+        ConversionService conversionService = ConversionServiceFactory.getInstance();
         conversionService.convert(new StreamSource(new StringReader(externalXslContent)), inputFile, outFile, params);
     }
 
@@ -231,7 +232,7 @@ public abstract class InputMetricXSL extends InputMetric {
     @Override
     public boolean validateInputFile(File inputXMLFile) throws ValidationException {
 
-        ValidationService validationService = new ValidationService();
+        ValidationService validationService = ValidationServiceFactory.getInstance();
 
         if ((this.getInputXsdNameList() == null) && (this.getInputXsdFileList() == null)) {
             return true;
@@ -242,18 +243,41 @@ public abstract class InputMetricXSL extends InputMetric {
         }
 
         if (getInputXsdNameList() != null) {
-            StreamSource[] streamSources = new StreamSource[getInputXsdNameList().length];
-            for (int i = 0; i < streamSources.length; i++) {
-                streamSources[i] = new StreamSource(this.getInputXsdClass().getResourceAsStream(getInputXsdNameList()[i]));
-            }
-
-            setInputValidationErrors(validationService.processValidation(streamSources, inputXMLFile));
+            setInputValidationErrors(validationService.processValidation(this.getInputXsdClass(), getInputXsdNameList(), inputXMLFile));
         }
 
 
         return getInputValidationErrors().size() == 0;
     }
 
+    /**
+     * Validates a set of input files against the current grammar of the tool on a bounded pool of threads.
+     * The grammar is compiled once for all the files.
+     *
+     * @param inputXMLFiles the input files
+     * @param threads       the number of threads to validate with
+     * @return the validation errors of each file, empty lists for the valid files
+     * @throws ValidationException when there is a validation error
+     */
+    public Map<File, List<ValidationError>> validateInputFiles(File[] inputXMLFiles, int threads) throws ValidationException {
+
+        ValidationService validationService = ValidationServiceFactory.getInstance();
+
+        if (this.getInputXsdFileList() != null) {
+            return validationService.processValidation(getInputXsdFileList(), inputXMLFiles, threads);
+        }
+
+        if (getInputXsdNameList() != null) {
+            return validationService.processValidation(this.getInputXsdClass(), getInputXsdNameList(), inputXMLFiles, threads);
+        }
+
+        Map<File, List<ValidationError>> errors = new LinkedHashMap<File, List<ValidationError>>();
+        for (File inputXMLFile : inputXMLFiles) {
+            errors.put(inputXMLFile, new ArrayList<ValidationError>());
+        }
+        return errors;
+    }
+
     /*
      *  Validates the output file against the current grammar of the format
      */
@@ -272,13 +296,8 @@ public abstract class InputMetricXSL extends InputMetric {
         }
 
         //Validate given XSD
-        Source[] sources = new Source[getOutputXsdNameList().length];
-        for (int i = 0; i < sources.length; i++) {
-            sources[i] = new StreamSource(this.getOutputFormatType().getClass().getResourceAsStream(getOutputXsdNameList()[i]));
-        }
-
-        ValidationService validationService = new ValidationService();
-        setOutputValidationErrors(validationService.processValidation(sources, inputXMLFile));
+        ValidationService validationService = ValidationServiceFactory.getInstance();
+        setOutputValidationErrors(validationService.processValidation(this.getOutputFormatType().getClass(), getOutputXsdNameList(), inputXMLFile));
         return getOutputValidationErrors().size() == 0;
     }
 
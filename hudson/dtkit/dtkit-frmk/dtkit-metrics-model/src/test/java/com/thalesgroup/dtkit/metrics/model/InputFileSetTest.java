@@ -0,0 +1,129 @@
+package com.thalesgroup.dtkit.metrics.model;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+
+public class InputFileSetTest {
+
+    private File baseDir;
+
+    @Before
+    public void createBaseDir() throws IOException {
+        baseDir = File.createTempFile("inputFileSet", "");
+        baseDir.delete();
+        baseDir.mkdirs();
+    }
+
+    @After
+    public void deleteBaseDir() {
+        delete(baseDir);
+    }
+
+    private void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private void touch(String relativePath) throws IOException {
+        File file = new File(baseDir, relativePath);
+        file.getParentFile().mkdirs();
+        assertTrue(file.createNewFile());
+    }
+
+    private boolean matches(String include, String relativePath) {
+        return InputFileSet.toPattern(include).matcher(relativePath).matches();
+    }
+
+    @Test
+    public void doubleStarMatchesAnyDirectories() {
+        assertTrue(matches("**/TEST-*.xml", "TEST-a.xml"));
+        assertTrue(matches("**/TEST-*.xml", "a/TEST-a.xml"));
+        assertTrue(matches("**/TEST-*.xml", "a/b/c/TEST-a.xml"));
+        assertFalse(matches("**/TEST-*.xml", "a/TEST-a.txt"));
+        assertFalse(matches("**/TEST-*.xml", "a/xTEST-a.xml"));
+
+        assertTrue(matches("reports/**/*.xml", "reports/a.xml"));
+        assertTrue(matches("reports/**/*.xml", "reports/a/b/a.xml"));
+        assertFalse(matches("reports/**/*.xml", "other/reports/a.xml"));
+
+        assertTrue(matches("**", "a/b/c.xml"));
+        assertTrue(matches("reports/**", "reports/a/b.xml"));
+    }
+
+    @Test
+    public void trailingSlashMatchesTheWholeDirectory() {
+        assertTrue(matches("reports/", "reports/a.xml"));
+        assertTrue(matches("reports/", "reports/a/b.xml"));
+        assertFalse(matches("reports/", "a.xml"));
+    }
+
+    @Test
+    public void starStaysInOneDirectory() {
+        assertTrue(matches("*.xml", "a.xml"));
+        assertTrue(matches("*.xml", ".xml"));
+        assertFalse(matches("*.xml", "a/b.xml"));
+        assertTrue(matches("a/*/c.xml", "a/b/c.xml"));
+        assertFalse(matches("a/*/c.xml", "a/b/b/c.xml"));
+    }
+
+    @Test
+    public void questionMarkMatchesOneCharacter() {
+        assertTrue(matches("TEST-?.xml", "TEST-a.xml"));
+        assertFalse(matches("TEST-?.xml", "TEST-.xml"));
+        assertFalse(matches("TEST-?.xml", "TEST-ab.xml"));
+        assertFalse(matches("a?b.xml", "a/b.xml"));
+    }
+
+    @Test
+    public void regexCharactersAreLiteral() {
+        assertTrue(matches("a.b", "a.b"));
+        assertFalse(matches("a.b", "axb"));
+        assertTrue(matches("report(1)+[x]{2}$^|\\E.xml", "report(1)+[x]{2}$^|\\E.xml"));
+        assertFalse(matches("report(1).xml", "report1.xml"));
+        assertFalse(matches("[ab].xml", "a.xml"));
+        assertTrue(matches("\\Q*", "\\Qanything"));
+    }
+
+    @Test
+    public void includedFilesAreRelativeAndSorted() throws IOException {
+        touch("TEST-b.xml");
+        touch("TEST-a.xml");
+        touch("sub/TEST-c.xml");
+        touch("sub/deeper/TEST-d.xml");
+        touch("sub/deeper/other.xml");
+        touch("sub/TEST-e.txt");
+
+        InputFileSet fileSet = new InputFileSet(baseDir, "**/TEST-*.xml");
+        assertSame(baseDir, fileSet.getBaseDir());
+        assertEquals(Arrays.asList("TEST-a.xml", "TEST-b.xml", "sub/TEST-c.xml", "sub/deeper/TEST-d.xml"),
+                fileSet.getIncludedFiles());
+    }
+
+    @Test
+    public void severalPatternsAndBackslashes() throws IOException {
+        touch("a/one.xml");
+        touch("b/two.txt");
+        touch("c/three.xml");
+
+        InputFileSet fileSet = new InputFileSet(baseDir, " a\\*.xml , ,b/*.txt");
+        assertEquals(Arrays.asList("a/one.xml", "b/two.txt"), fileSet.getIncludedFiles());
+    }
+
+    @Test
+    public void missingBaseDir() {
+        assertTrue(new InputFileSet(new File(baseDir, "missing"), "**").getIncludedFiles().isEmpty());
+    }
+}
@@ -0,0 +1,205 @@
+package com.thalesgroup.dtkit.metrics.model;
+
+import com.thalesgroup.dtkit.util.converter.ConversionException;
+import com.thalesgroup.dtkit.util.validator.ValidationException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+
+public class InputMetricTest {
+
+    private File baseDir;
+
+    private File outDir;
+
+    /**
+     * Copies the input file, fails on the files named "bad*" and "broken*", and records the number of conversions running at the same time
+     */
+    private static class CopyInputMetric extends InputMetric {
+
+        private final AtomicInteger running = new AtomicInteger();
+
+        private final AtomicInteger maxRunning = new AtomicInteger();
+
+        @Override
+        public void convert(File inputFile, File outFile, Map<String, Object> params) throws ConversionException {
+            int current = running.incrementAndGet();
+            try {
+                synchronized (maxRunning) {
+                    maxRunning.set(Math.max(maxRunning.get(), current));
+                }
+                Thread.sleep(20);
+                if (inputFile.getName().startsWith("bad")) {
+                    throw new ConversionException("Bad file " + inputFile);
+                }
+                if (inputFile.getName().startsWith("broken")) {
+                    throw new IllegalStateException("Broken file " + inputFile);
+                }
+                write(outFile, read(inputFile) + params.get("suffix"));
+            } catch (InterruptedException ie) {
+                throw new ConversionException(ie);
+            } catch (IOException ioe) {
+                throw new ConversionException(ioe);
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+
+        @Override
+        public boolean validateInputFile(File inputXMLFile) throws ValidationException {
+            return true;
+        }
+
+        @Override
+        public boolean validateOutputFile(File inputXMLFile) throws ValidationException {
+            return true;
+        }
+    }
+
+    @Before
+    public void createDirs() throws IOException {
+        baseDir = File.createTempFile("inputMetric", "");
+        baseDir.delete();
+        baseDir.mkdirs();
+        outDir = new File(baseDir, "out");
+    }
+
+    @After
+    public void deleteDirs() {
+        delete(baseDir);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static String read(File file) throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            return reader.readLine();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static Map<String, Object> params() {
+        Map<String, Object> params = new LinkedHashMap<String, Object>();
+        params.put("suffix", "-converted");
+        return params;
+    }
+
+    @Test
+    public void resultsAreInTheOrderOfTheFiles() throws Exception {
+        Map<File, File> files = new LinkedHashMap<File, File>();
+        for (int i = 0; i < 20; i++) {
+            File inputFile = new File(baseDir, "input" + i + ".xml");
+            write(inputFile, "content" + i);
+            files.put(inputFile, new File(outDir, "output" + i + ".xml"));
+        }
+
+        CopyInputMetric inputMetric = new CopyInputMetric();
+        List<ConversionResult> results = inputMetric.convert(files, params(), 4);
+
+        assertEquals(files.size(), results.size());
+        int i = 0;
+        for (Map.Entry<File, File> entry : files.entrySet()) {
+            ConversionResult result = results.get(i);
+            assertEquals(entry.getKey(), result.getInputFile());
+            assertEquals(entry.getValue(), result.getOutFile());
+            assertTrue(result.isSuccess());
+            assertNull(result.getError());
+            assertTrue(result.getTime() >= 0);
+            assertEquals("content" + i + "-converted", read(result.getOutFile()));
+            i++;
+        }
+        assertTrue(inputMetric.maxRunning.get() > 1);
+        assertTrue(inputMetric.maxRunning.get() <= 4);
+    }
+
+    @Test
+    public void failuresDoNotStopTheOtherFiles() throws Exception {
+        Map<File, File> files = new LinkedHashMap<File, File>();
+        for (String name : new String[]{"good1.xml", "bad.xml", "broken.xml", "good2.xml"}) {
+            File inputFile = new File(baseDir, name);
+            write(inputFile, name);
+            files.put(inputFile, new File(outDir, name));
+        }
+
+        List<ConversionResult> results = new CopyInputMetric().convert(files, params(), 2);
+
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertEquals("Bad file " + new File(baseDir, "bad.xml"), results.get(1).getError().getMessage());
+        assertFalse(results.get(2).isSuccess());
+        assertTrue(results.get(2).getError().getCause() instanceof IllegalStateException);
+        assertTrue(results.get(3).isSuccess());
+        assertEquals("good2.xml-converted", read(new File(outDir, "good2.xml")));
+        assertFalse(new File(outDir, "bad.xml").exists());
+    }
+
+    @Test
+    public void oneThread() throws Exception {
+        Map<File, File> files = new LinkedHashMap<File, File>();
+        for (int i = 0; i < 3; i++) {
+            File inputFile = new File(baseDir, "input" + i + ".xml");
+            write(inputFile, "content" + i);
+            files.put(inputFile, new File(outDir, "output" + i + ".xml"));
+        }
+
+        CopyInputMetric inputMetric = new CopyInputMetric();
+        List<ConversionResult> results = inputMetric.convert(files, params(), 0);
+
+        assertEquals(3, results.size());
+        assertEquals(1, inputMetric.maxRunning.get());
+    }
+
+    @Test
+    public void noFiles() throws Exception {
+        assertTrue(new CopyInputMetric().convert(new LinkedHashMap<File, File>(), params(), 4).isEmpty());
+    }
+
+    @Test
+    public void filesOfADirectoryKeepTheirRelativePaths() throws Exception {
+        File inputDir = new File(baseDir, "in");
+        write(new File(inputDir, "TEST-a.xml"), "a");
+        write(new File(inputDir, "sub/TEST-b.xml"), "b");
+        write(new File(inputDir, "sub/other.xml"), "other");
+
+        List<ConversionResult> results = new CopyInputMetric().convert(inputDir, "**/TEST-*.xml", outDir, params(), 2);
+
+        assertEquals(2, results.size());
+        assertEquals(new File(inputDir, "TEST-a.xml"), results.get(0).getInputFile());
+        assertEquals(new File(outDir, "TEST-a.xml"), results.get(0).getOutFile());
+        assertEquals(new File(inputDir, "sub/TEST-b.xml"), results.get(1).getInputFile());
+        assertEquals(new File(outDir, "sub/TEST-b.xml"), results.get(1).getOutFile());
+        assertEquals("a-converted", read(new File(outDir, "TEST-a.xml")));
+        assertEquals("b-converted", read(new File(outDir, "sub/TEST-b.xml")));
+        assertFalse(new File(outDir, "sub/other.xml").exists());
+    }
+}
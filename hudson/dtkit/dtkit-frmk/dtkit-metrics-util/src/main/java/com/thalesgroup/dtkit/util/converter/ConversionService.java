@@ -25,17 +25,21 @@ package com.thalesgroup.dtkit.util.converter;
 
 
 import net.sf.saxon.s9api.*;
-import org.w3c.dom.Document;
 import org.xml.sax.EntityResolver;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.Source;
-import javax.xml.transform.dom.DOMSource;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.Result;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 import java.io.*;
-import java.nio.CharBuffer;
+import java.net.URI;
 import java.util.Map;
 
 public class ConversionService implements Serializable {
@@ -52,14 +56,7 @@ public class ConversionService implements Serializable {
      * @throws ConversionException the convert exception
      */
     public String convertAndReturn(File xslFile, InputSource inputFile, Map<String, Object> params) throws ConversionException {
-        try {
-            Reader reader = new FileReader(xslFile);
-            String result = convertAndReturn(new StreamSource(reader), inputFile, params);
-            reader.close();
-            return result;
-        } catch (IOException ioe) {
-            throw new ConversionException("Conversion Error", ioe);
-        }
+        return convertAndReturn(getCache().get(xslFile), inputFile, params);
     }
 
     /**
@@ -75,16 +72,10 @@ public class ConversionService implements Serializable {
     public String convertAndReturn(File xslFile, File inputFile, Map<String, Object> params) throws ConversionException {
         FileInputStream fis = null;
         try {
-            Reader reader = new FileReader(xslFile);
             fis = new FileInputStream(inputFile);
-            String result = convertAndReturn(new StreamSource(reader), new InputSource(fis), params);
-            reader.close();
-            return result;
+            return convertAndReturn(getCache().get(xslFile), new InputSource(fis), params);
         } catch (FileNotFoundException fne) {
             throw new ConversionException(fne);
-
-        } catch (IOException ioe) {
-            throw new ConversionException("Conversion Error", ioe);
         } finally {
             if (fis != null) {
                 try {
@@ -106,13 +97,7 @@ public class ConversionService implements Serializable {
      * @throws ConversionException the convert exception
      */
     public void convert(File xslFile, File inputFile, File outFile, Map<String, Object> params) throws ConversionException {
-        try {
-            Reader reader = new FileReader(xslFile);
-            convert(new StreamSource(reader), inputFile, outFile, params);
-            reader.close();
-        } catch (IOException ioe) {
-            throw new ConversionException("Conversion Error", ioe);
-        }
+        convert(getCache().get(xslFile), inputFile, outFile, params);
     }
 
     /**
@@ -141,7 +126,7 @@ public class ConversionService implements Serializable {
         FileInputStream fis = null;
         try {
             fis = new FileInputStream(inputFile);
-            return convertAndReturn(xslSource, new InputSource(fis), params);
+            return convertAndReturn(getCache().get(xslSource), new InputSource(fis), params);
         } catch (FileNotFoundException fne) {
             throw new ConversionException(fne);
         } finally {
@@ -166,10 +151,14 @@ public class ConversionService implements Serializable {
      * @throws ConversionException the convert exception
      */
     public void convert(StreamSource xslSource, File inputFile, File outFile, Map<String, Object> params) throws ConversionException {
+        convert(getCache().get(xslSource), inputFile, outFile, params);
+    }
+
+    private void convert(XsltExecutable xsltExecutable, File inputFile, File outFile, Map<String, Object> params) throws ConversionException {
         FileInputStream fis = null;
         try {
             fis = new FileInputStream(inputFile);
-            convert(xslSource, new InputSource(fis), outFile, params);
+            convert(xsltExecutable, new InputSource(fis), outFile, params);
         } catch (FileNotFoundException fne) {
             throw new ConversionException(fne);
         } finally {
@@ -193,13 +182,7 @@ public class ConversionService implements Serializable {
      * @throws ConversionException the convert exception
      */
     public void convert(File xslFile, InputSource inputFile, File outFile, Map<String, Object> params) throws ConversionException {
-        try {
-            Reader reader = new FileReader(xslFile);
-            convert(new StreamSource(reader), inputFile, outFile, params);
-            reader.close();
-        } catch (IOException ioe) {
-            throw new ConversionException("Conversion Error", ioe);
-        }
+        convert(getCache().get(xslFile), inputFile, outFile, params);
     }
 
     /**
@@ -213,131 +196,159 @@ public class ConversionService implements Serializable {
      * @throws ConversionException the convert exception
      */
     public String convertAndReturn(StreamSource xslSource, InputSource inputFile, Map<String, Object> params) throws ConversionException {
+        return convertAndReturn(getCache().get(xslSource), inputFile, params);
+    }
 
-        try {
-
-            javax.xml.parsers.DocumentBuilderFactory factory = javax.xml.parsers.DocumentBuilderFactory.newInstance();
-            javax.xml.parsers.DocumentBuilder builder = factory.newDocumentBuilder();
-            builder.setEntityResolver(new EntityResolver() {
-                public InputSource resolveEntity(String publicId, String systemId)
-                        throws SAXException, IOException {
-                    return new InputSource(new StringReader(""));
-                }
-            });
-
-            Document document = builder.parse(inputFile);
-            Source source = new DOMSource(document.getDocumentElement());
-
-            // create the conversion processor with a Xslt compiler
-            Processor processor = new Processor(false);
-            XsltCompiler compiler = processor.newXsltCompiler();
-
-            // compile and load the XSL file
-            XsltExecutable xsltExecutable = compiler.compile(xslSource);
-            XsltTransformer xsltTransformer = xsltExecutable.load();
 
-            // create the input
-            DocumentBuilder documentBuilder = processor.newDocumentBuilder();
-            documentBuilder.setDTDValidation(false);
+    /**
+     * Launches an XSLT conversion from a source to an OutputStream.
+     * This methods uses the net.sf.saxon packages.
+     *
+     * @param xslSource the source of the xsl
+     * @param inputFile the input file
+     * @param outFile   the output file
+     * @param params    the parameter map
+     * @throws ConversionException the convert exception
+     */
+    public void convert(StreamSource xslSource, InputSource inputFile, File outFile, Map<String, Object> params) throws ConversionException {
+        convert(getCache().get(xslSource), inputFile, outFile, params);
+    }
 
-            XdmNode xdmNode = documentBuilder.build(source);
+    /**
+     * Launches an XSLT conversion with a class path resource xsl.
+     * The compiled xsl is cached with the class and the resource name.
+     *
+     * @param xslResourceClass the class to load the xsl with
+     * @param xslName          the resource name of the xsl
+     * @param inputFile        the input file
+     * @param outFile          the output file
+     * @param params           the parameter map
+     * @throws ConversionException the convert exception
+     */
+    public void convert(Class xslResourceClass, String xslName, File inputFile, File outFile, Map<String, Object> params) throws ConversionException {
+        convert(getCache().get(xslResourceClass, xslName), inputFile, outFile, params);
+    }
 
-            // create the output with its options
-            Serializer out = new Serializer();
-            out.setOutputProperty(Serializer.Property.INDENT, "yes");
+    /**
+     * Launches a streaming XSLT conversion to an OutputStream.
+     * The input is parsed straight into the transformer, there is no DOM and no temporary file.
+     * The stream is not closed.
+     *
+     * @param xslSource the source of the xsl
+     * @param inputFile the input file
+     * @param out       the output stream
+     * @param params    the parameter map
+     * @throws ConversionException the convert exception
+     */
+    public void convert(StreamSource xslSource, InputSource inputFile, OutputStream out, Map<String, Object> params) throws ConversionException {
+        transform(getCache().get(xslSource), inputFile, newSerializer(out), params);
+    }
 
-            File fileOut = File.createTempFile("serializer", "convert");
-            FileOutputStream fos = new FileOutputStream(fileOut);
-            out.setOutputStream(fos);
+    /**
+     * Launches a streaming XSLT conversion to a Result.
+     * Stream, SAX and DOM results are supported.
+     *
+     * @param xslSource the source of the xsl
+     * @param inputFile the input file
+     * @param result    the result of the conversion
+     * @param params    the parameter map
+     * @throws ConversionException the convert exception
+     */
+    public void convert(StreamSource xslSource, InputSource inputFile, Result result, Map<String, Object> params) throws ConversionException {
+        transform(getCache().get(xslSource), inputFile, getDestination(result), params);
+    }
 
-            // run the conversion
-            xsltTransformer.setInitialContextNode(xdmNode);
-            if (params != null) {
-                for (Map.Entry<String, Object> entry : params.entrySet()) {
-                    QName paramName = new QName(entry.getKey());
-                    XdmAtomicValue paramValue = new XdmAtomicValue(String.valueOf(entry.getValue()));
-                    xsltTransformer.setParameter(paramName, paramValue);
-                }
-            }
+    /**
+     * Launches a streaming XSLT conversion with a class path resource xsl to an OutputStream.
+     * The stream is not closed.
+     *
+     * @param xslResourceClass the class to load the xsl with
+     * @param xslName          the resource name of the xsl
+     * @param inputFile        the input file
+     * @param out              the output stream
+     * @param params           the parameter map
+     * @throws ConversionException the convert exception
+     */
+    public void convert(Class xslResourceClass, String xslName, InputSource inputFile, OutputStream out, Map<String, Object> params) throws ConversionException {
+        transform(getCache().get(xslResourceClass, xslName), inputFile, newSerializer(out), params);
+    }
 
-            xsltTransformer.setDestination(out);
-            xsltTransformer.transform();
+    private String convertAndReturn(XsltExecutable xsltExecutable, InputSource inputFile, Map<String, Object> params) throws ConversionException {
+        StringWriter writer = new StringWriter();
+        Serializer out = new Serializer();
+        out.setOutputProperty(Serializer.Property.INDENT, "yes");
+        out.setOutputWriter(writer);
+        transform(xsltExecutable, inputFile, out, params);
+        return writer.toString();
+    }
 
-            StringBuffer sb = new StringBuffer();
-            CharBuffer buffer = CharBuffer.allocate(4096);
-            int bufferLength = 0;
-            Reader reader = new FileReader(fileOut);
-            while (bufferLength != -1) {
-                bufferLength = reader.read(buffer);
-                if (bufferLength > 0) {
-                    sb.append(buffer.flip());
-                }
+    private void convert(XsltExecutable xsltExecutable, InputSource inputFile, File outFile, Map<String, Object> params) throws ConversionException {
+        try {
+            OutputStream fos = new BufferedOutputStream(new FileOutputStream(outFile));
+            try {
+                transform(xsltExecutable, inputFile, newSerializer(fos), params);
+            } finally {
+                fos.close();
             }
-
-            reader.close();
-            fos.close();
-
-            return sb.toString();
         } catch (IOException ioe) {
             throw new ConversionException("Error to convert - A file not found", ioe);
-        } catch (SaxonApiException sae) {
-            throw new ConversionException("Error to convert the input XML document", sae);
-        } catch (SAXException sae) {
-            throw new ConversionException("Error to convert - A file not found", sae);
-        } catch (ParserConfigurationException pe) {
-            throw new ConversionException("Error to convert - A file not found", pe);
         }
     }
 
+    private Serializer newSerializer(OutputStream os) {
+        Serializer out = new Serializer();
+        out.setOutputProperty(Serializer.Property.INDENT, "yes");
+        out.setOutputStream(os);
+        return out;
+    }
 
-    /**
-     * Launches an XSLT conversion from a source to an OutputStream.
-     * This methods uses the net.sf.saxon packages.
-     *
-     * @param xslSource the source of the xsl
-     * @param inputFile the input file
-     * @param outFile   the output file
-     * @param params    the parameter map
-     * @throws ConversionException the convert exception
-     */
-    public void convert(StreamSource xslSource, InputSource inputFile, File outFile, Map<String, Object> params) throws ConversionException {
+    private Destination getDestination(Result result) throws ConversionException {
+        if (result instanceof StreamResult) {
+            StreamResult streamResult = (StreamResult) result;
+            Serializer out = new Serializer();
+            out.setOutputProperty(Serializer.Property.INDENT, "yes");
+            if (streamResult.getOutputStream() != null) {
+                out.setOutputStream(streamResult.getOutputStream());
+            } else if (streamResult.getWriter() != null) {
+                out.setOutputWriter(streamResult.getWriter());
+            } else if (streamResult.getSystemId() != null) {
+                String systemId = streamResult.getSystemId();
+                out.setOutputFile(systemId.startsWith("file:") ? new File(URI.create(systemId)) : new File(systemId));
+            } else {
+                throw new ConversionException("The stream result has no output");
+            }
+            return out;
+        }
+        if (result instanceof SAXResult) {
+            return new SAXDestination(((SAXResult) result).getHandler());
+        }
+        if (result instanceof DOMResult) {
+            return new DOMDestination(((DOMResult) result).getNode());
+        }
+        throw new ConversionException("Unsupported result type " + result.getClass().getName());
+    }
+
+    private void transform(XsltExecutable xsltExecutable, InputSource inputFile, Destination destination, Map<String, Object> params) throws ConversionException {
 
         try {
 
-            javax.xml.parsers.DocumentBuilderFactory factory = javax.xml.parsers.DocumentBuilderFactory.newInstance();
-            javax.xml.parsers.DocumentBuilder builder = factory.newDocumentBuilder();
-            builder.setEntityResolver(new EntityResolver() {
+            // the input is parsed by the transformer itself, the DTDs are ignored
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.setValidating(false);
+            XMLReader xmlReader = factory.newSAXParser().getXMLReader();
+            xmlReader.setEntityResolver(new EntityResolver() {
                 public InputSource resolveEntity(String publicId, String systemId)
                         throws SAXException, IOException {
                     return new InputSource(new StringReader(""));
                 }
             });
 
-            Document document = builder.parse(inputFile);
-            Source source = new DOMSource(document.getDocumentElement());
-
-            // create the conversion processor with a Xslt compiler
-            Processor processor = new Processor(false);
-            XsltCompiler compiler = processor.newXsltCompiler();
-
-            // compile and load the XSL file
-            XsltExecutable xsltExecutable = compiler.compile(xslSource);
+            // the cached xsl is compiled once, each conversion loads its own transformer
             XsltTransformer xsltTransformer = xsltExecutable.load();
-
-            // create the input
-            DocumentBuilder documentBuilder = processor.newDocumentBuilder();
-            documentBuilder.setDTDValidation(false);
-
-            XdmNode xdmNode = documentBuilder.build(source);
-
-            // create the output with its options
-            Serializer out = new Serializer();
-            out.setOutputProperty(Serializer.Property.INDENT, "yes");
-            FileOutputStream fos = new FileOutputStream(outFile);
-            out.setOutputStream(fos);
+            xsltTransformer.setSource(new SAXSource(xmlReader, inputFile));
 
             // run the conversion
-            xsltTransformer.setInitialContextNode(xdmNode);
             if (params != null) {
                 for (Map.Entry<String, Object> entry : params.entrySet()) {
                     QName paramName = new QName(entry.getKey());
@@ -346,12 +357,8 @@ public class ConversionService implements Serializable {
                 }
             }
 
-            xsltTransformer.setDestination(out);
+            xsltTransformer.setDestination(destination);
             xsltTransformer.transform();
-
-            fos.close();
-        } catch (IOException ioe) {
-            throw new ConversionException("Error to convert - A file not found", ioe);
         } catch (SaxonApiException sae) {
             throw new ConversionException("Error to convert the input XML document", sae);
         } catch (SAXException sae) {
@@ -361,6 +368,14 @@ public class ConversionService implements Serializable {
         }
     }
 
+    /**
+     * Gets the cache of the compiled xsl, shared by all the conversion services
+     *
+     * @return the xsl cache
+     */
+    public XsltExecutableCache getCache() {
+        return XsltExecutableCache.getInstance();
+    }
 
     /**
      * Launches an XSLT conversion from a source to an OutputStream.
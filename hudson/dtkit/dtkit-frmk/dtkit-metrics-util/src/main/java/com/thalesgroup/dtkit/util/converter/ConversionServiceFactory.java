@@ -26,7 +26,14 @@ package com.thalesgroup.dtkit.util.converter;
 
 public class ConversionServiceFactory {
 
+    private static final ConversionService INSTANCE = new ConversionService();
+
+    /**
+     * Gets the conversion service, the service is stateless and all the conversions share its cache of compiled xsl
+     *
+     * @return the shared conversion service
+     */
     public static ConversionService getInstance() {
-        return new ConversionService();
+        return INSTANCE;
     }
 }
@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ * Author : Gregory Boissinot, Guillaume Tanier                                 *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.dtkit.util.converter;
+
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XsltExecutable;
+
+import javax.xml.transform.stream.StreamSource;
+import java.io.*;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of compiled stylesheets.
+ * A compiled XsltExecutable is immutable and can be loaded by several threads at once, so the same stylesheet
+ * is only compiled once for all the conversions, and the least recently used stylesheet is evicted when the cache is full.
+ * All the stylesheets are compiled with the same Saxon Processor, which must also build the input documents.
+ */
+public class XsltExecutableCache {
+
+    public static final String CACHE_SIZE_PROPERTY = "dtkit.xsl.cache.size";
+
+    public static final int DEFAULT_CACHE_SIZE = 64;
+
+    private static final XsltExecutableCache INSTANCE = new XsltExecutableCache(Integer.getInteger(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE));
+
+    private final Processor processor = new Processor(false);
+
+    private final int maxSize;
+
+    private final Map<String, XsltExecutable> executables;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    public XsltExecutableCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The cache size must be at least one");
+        }
+        this.maxSize = maxSize;
+        this.executables = new LinkedHashMap<String, XsltExecutable>(16, 0.75f, true);
+    }
+
+    /**
+     * Gets the cache shared by all the conversion services
+     *
+     * @return the shared cache
+     */
+    public static XsltExecutableCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the processor the stylesheets are compiled with.
+     * The documents given to the transformers of the cached executables must be built with this processor.
+     *
+     * @return the processor
+     */
+    public Processor getProcessor() {
+        return processor;
+    }
+
+    /**
+     * Gets the compiled stylesheet of a class path resource, the stylesheet is identified by the class and the resource name
+     *
+     * @param resourceClass the class to load the resource with
+     * @param xslName       the name of the resource
+     * @return the compiled stylesheet
+     * @throws ConversionException the convert exception
+     */
+    public XsltExecutable get(Class resourceClass, String xslName) throws ConversionException {
+        String key = "resource:" + resourceClass.getName() + ":" + xslName;
+        XsltExecutable xsltExecutable = lookup(key);
+        if (xsltExecutable != null) {
+            return xsltExecutable;
+        }
+        URL url = resourceClass.getResource(xslName);
+        if (url == null) {
+            throw new ConversionException("The XSL resource " + xslName + " is not found");
+        }
+        return compile(key, new StreamSource(url.toExternalForm()));
+    }
+
+    /**
+     * Gets the compiled stylesheet of a source, the stylesheet is identified by a digest of its content.
+     * The source is consumed.
+     *
+     * @param xslSource the source of the xsl
+     * @return the compiled stylesheet
+     * @throws ConversionException the convert exception
+     */
+    public XsltExecutable get(StreamSource xslSource) throws ConversionException {
+        try {
+            StreamSource bufferedSource;
+            byte[] content;
+            if (xslSource.getReader() != null) {
+                String xsl = readAll(xslSource.getReader());
+                content = xsl.getBytes("UTF-8");
+                bufferedSource = new StreamSource(new StringReader(xsl), xslSource.getSystemId());
+            } else {
+                InputStream is = xslSource.getInputStream();
+                if (is == null) {
+                    if (xslSource.getSystemId() == null) {
+                        throw new ConversionException("The XSL source is empty");
+                    }
+                    is = new URL(xslSource.getSystemId()).openStream();
+                }
+                try {
+                    content = readAll(is);
+                } finally {
+                    is.close();
+                }
+                bufferedSource = new StreamSource(new ByteArrayInputStream(content), xslSource.getSystemId());
+            }
+            String key = "digest:" + digest(content);
+            XsltExecutable xsltExecutable = lookup(key);
+            if (xsltExecutable != null) {
+                return xsltExecutable;
+            }
+            return compile(key, bufferedSource);
+        } catch (IOException ioe) {
+            throw new ConversionException("Error to read the XSL", ioe);
+        }
+    }
+
+    /**
+     * Gets the compiled stylesheet of a file, the stylesheet is identified by a digest of its content
+     *
+     * @param xslFile the xsl file
+     * @return the compiled stylesheet
+     * @throws ConversionException the convert exception
+     */
+    public XsltExecutable get(File xslFile) throws ConversionException {
+        try {
+            return get(new StreamSource(new FileInputStream(xslFile), xslFile.toURI().toString()));
+        } catch (FileNotFoundException fne) {
+            throw new ConversionException(fne);
+        }
+    }
+
+    private synchronized XsltExecutable lookup(String key) {
+        XsltExecutable xsltExecutable = executables.get(key);
+        if (xsltExecutable != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return xsltExecutable;
+    }
+
+    private XsltExecutable compile(String key, StreamSource xslSource) throws ConversionException {
+        // The compilation is done out of the lock, two threads can compile the same stylesheet once but never block each other
+        XsltExecutable xsltExecutable;
+        try {
+            xsltExecutable = processor.newXsltCompiler().compile(xslSource);
+        } catch (SaxonApiException sae) {
+            throw new ConversionException("Error to compile the XSL", sae);
+        }
+        synchronized (this) {
+            XsltExecutable existing = executables.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            executables.put(key, xsltExecutable);
+            Iterator<XsltExecutable> iterator = executables.values().iterator();
+            while (executables.size() > maxSize) {
+                iterator.next();
+                iterator.remove();
+                evictions++;
+            }
+        }
+        return xsltExecutable;
+    }
+
+    private static String digest(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(content);
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new ConversionException(nsae);
+        }
+    }
+
+    private static byte[] readAll(InputStream is) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int length;
+        while ((length = is.read(buffer)) != -1) {
+            baos.write(buffer, 0, length);
+        }
+        return baos.toByteArray();
+    }
+
+    private static String readAll(Reader reader) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[4096];
+        int length;
+        while ((length = reader.read(buffer)) != -1) {
+            sb.append(buffer, 0, length);
+        }
+        return sb.toString();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return executables.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Removes all the compiled stylesheets, the metrics are kept
+     */
+    public synchronized void clear() {
+        executables.clear();
+    }
+
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ * Author : Gregory Boissinot, Guillaume Tanier                                 *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.dtkit.util.validator;
+
+import javax.xml.validation.Schema;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of compiled schemas.
+ * A compiled Schema is immutable and thread safe, only the Validators created from it are not, so the same
+ * XSD list is only compiled once for all the validations, and the least recently used schema is evicted when the cache is full.
+ */
+public class SchemaCache {
+
+    public static final String CACHE_SIZE_PROPERTY = "dtkit.xsd.cache.size";
+
+    public static final int DEFAULT_CACHE_SIZE = 64;
+
+    private static final SchemaCache INSTANCE = new SchemaCache(Integer.getInteger(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE));
+
+    private final int maxSize;
+
+    private final Map<String, Schema> schemas;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    public SchemaCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The cache size must be at least one");
+        }
+        this.maxSize = maxSize;
+        this.schemas = new LinkedHashMap<String, Schema>(16, 0.75f, true);
+    }
+
+    /**
+     * Gets the cache shared by all the validation services
+     *
+     * @return the shared cache
+     */
+    public static SchemaCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets a compiled schema
+     *
+     * @param key the identity of the XSD list
+     * @return the schema or null if it is not in the cache
+     */
+    public synchronized Schema get(String key) {
+        Schema schema = schemas.get(key);
+        if (schema != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return schema;
+    }
+
+    /**
+     * Puts a compiled schema in the cache, evicting the least recently used schemas if the cache is full
+     *
+     * @param key    the identity of the XSD list
+     * @param schema the compiled schema
+     * @return the schema in the cache, the one already there if another thread compiled the same XSD list first
+     */
+    public synchronized Schema put(String key, Schema schema) {
+        Schema existing = schemas.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        schemas.put(key, schema);
+        Iterator<Schema> iterator = schemas.values().iterator();
+        while (schemas.size() > maxSize) {
+            iterator.next();
+            iterator.remove();
+            evictions++;
+        }
+        return schema;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return schemas.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Removes all the compiled schemas, the metrics are kept
+     */
+    public synchronized void clear() {
+        schemas.clear();
+    }
+
+}
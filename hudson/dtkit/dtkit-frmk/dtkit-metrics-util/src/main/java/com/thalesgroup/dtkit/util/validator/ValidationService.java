@@ -33,7 +33,12 @@ import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
 import java.io.*;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
 
 
 public class ValidationService implements Serializable {
@@ -79,54 +84,195 @@ public class ValidationService implements Serializable {
         return processValidation(new Source[]{xsdSource}, inputXML);
     }
 
+    /**
+     * Validate an input file against a list of XSD files.
+     * The compiled schema is cached with the paths and the modification times of the xsd files.
+     *
+     * @param xsdFiles the xsd files
+     * @param inputXML the input XML file
+     * @return the validation errors, empty if the validation succeeded
+     * @throws ValidationException when there is a validation error
+     */
     public List<ValidationError> processValidation(File[] xsdFiles, File inputXML) throws ValidationException {
-        Source[] xsdSources = new Source[xsdFiles.length];
-        Reader[] readers = new Reader[xsdFiles.length];
-
-        for (int i = 0; i < xsdFiles.length; i++) {
-            try {
-                readers[i] = new FileReader(xsdFiles[i]);
-            } catch (FileNotFoundException fne) {
-                throw new ValidationException("Validation error", fne);
+        for (File xsdFile : xsdFiles) {
+            if (!xsdFile.exists()) {
+                throw new ValidationException("Validation error", new FileNotFoundException(xsdFile.getPath()));
             }
         }
-
-        for (int i = 0; i < readers.length; i++) {
-            xsdSources[i] = new StreamSource(readers[i]);
+        ValidationHandler handler = new ValidationHandler();
+        try {
+            return validate(getSchema(xsdFiles, handler), inputXML, handler);
+        } catch (SAXException sae) {
+            List<ValidationError> errors = handler.getErrors();
+            errors.add(new ValidationError(ErrorType.ERROR, -1, "-1", sae.getMessage()));
+            return errors;
         }
+    }
 
-        List<ValidationError> listErrors = processValidation(xsdSources, inputXML);
 
-        for (int i = 0; i < readers.length; i++) {
-            try {
-                readers[i].close();
-            } catch (IOException ioe) {
-                throw new ValidationException("Validation error", ioe);
+    public List<ValidationError> processValidation(Source[] xsdSources, File inputXML) throws ValidationException {
+
+        ValidationHandler handler = new ValidationHandler();
+        try {
+            Schema schemaGrammar = newSchema(xsdSources, handler);
+
+            for (int i = 0; i < xsdSources.length; i++) {
+                xsdSources[i] = null;
             }
+
+            return validate(schemaGrammar, inputXML, handler);
+        } catch (SAXException sae) {
+            List<ValidationError> errors = handler.getErrors();
+            errors.add(new ValidationError(ErrorType.ERROR, -1, "-1", sae.getMessage()));
+            return errors;
         }
+    }
 
-        return listErrors;
+    /**
+     * Validate an input file against a list of XSD resources.
+     * The compiled schema is cached with the class and the resource names.
+     *
+     * @param xsdResourceClass the class to load the xsd resources with
+     * @param xsdNameList      the resource names of the xsd
+     * @param inputXML         the input XML file
+     * @return the validation errors, empty if the validation succeeded
+     * @throws ValidationException when there is a validation error
+     */
+    public List<ValidationError> processValidation(Class xsdResourceClass, String[] xsdNameList, File inputXML) throws ValidationException {
+        ValidationHandler handler = new ValidationHandler();
+        try {
+            return validate(getSchema(xsdResourceClass, xsdNameList, handler), inputXML, handler);
+        } catch (SAXException sae) {
+            List<ValidationError> errors = handler.getErrors();
+            errors.add(new ValidationError(ErrorType.ERROR, -1, "-1", sae.getMessage()));
+            return errors;
+        }
     }
 
+    /**
+     * Validate a set of input files against a list of XSD resources on a bounded pool of threads.
+     * The schema is compiled once for all the files.
+     *
+     * @param xsdResourceClass the class to load the xsd resources with
+     * @param xsdNameList      the resource names of the xsd
+     * @param inputXMLs        the input XML files
+     * @param threads          the number of threads to validate with
+     * @return the validation errors of each file, in the order of the input files
+     * @throws ValidationException when there is a validation error
+     */
+    public Map<File, List<ValidationError>> processValidation(Class xsdResourceClass, String[] xsdNameList, File[] inputXMLs, int threads) throws ValidationException {
+        ValidationHandler handler = new ValidationHandler();
+        try {
+            return validate(getSchema(xsdResourceClass, xsdNameList, handler), inputXMLs, threads);
+        } catch (SAXException sae) {
+            return schemaErrors(inputXMLs, handler, sae);
+        }
+    }
 
-    public List<ValidationError> processValidation(Source[] xsdSources, File inputXML) throws ValidationException {
+    /**
+     * Validate all the XML files of a directory against a list of XSD resources on a bounded pool of threads.
+     *
+     * @param xsdResourceClass the class to load the xsd resources with
+     * @param xsdNameList      the resource names of the xsd
+     * @param inputDir         the directory of the input XML files
+     * @param threads          the number of threads to validate with
+     * @return the validation errors of each file
+     * @throws ValidationException when there is a validation error
+     */
+    public Map<File, List<ValidationError>> processValidation(Class xsdResourceClass, String[] xsdNameList, File inputDir, int threads) throws ValidationException {
+        return processValidation(xsdResourceClass, xsdNameList, listXMLFiles(inputDir), threads);
+    }
 
+    /**
+     * Validate a set of input files against a list of XSD files on a bounded pool of threads.
+     * The compiled schema is cached with the paths and the modification times of the xsd files.
+     *
+     * @param xsdFiles  the xsd files
+     * @param inputXMLs the input XML files
+     * @param threads   the number of threads to validate with
+     * @return the validation errors of each file, in the order of the input files
+     * @throws ValidationException when there is a validation error
+     */
+    public Map<File, List<ValidationError>> processValidation(File[] xsdFiles, File[] inputXMLs, int threads) throws ValidationException {
         ValidationHandler handler = new ValidationHandler();
         try {
+            return validate(getSchema(xsdFiles, handler), inputXMLs, threads);
+        } catch (SAXException sae) {
+            return schemaErrors(inputXMLs, handler, sae);
+        }
+    }
+
+    /**
+     * Validate all the XML files of a directory against a list of XSD files on a bounded pool of threads.
+     *
+     * @param xsdFiles the xsd files
+     * @param inputDir the directory of the input XML files
+     * @param threads  the number of threads to validate with
+     * @return the validation errors of each file
+     * @throws ValidationException when there is a validation error
+     */
+    public Map<File, List<ValidationError>> processValidation(File[] xsdFiles, File inputDir, int threads) throws ValidationException {
+        return processValidation(xsdFiles, listXMLFiles(inputDir), threads);
+    }
+
+    /**
+     * Gets the cache of the compiled schemas, shared by all the validation services
+     *
+     * @return the schema cache
+     */
+    public SchemaCache getCache() {
+        return SchemaCache.getInstance();
+    }
+
+    private Schema getSchema(Class xsdResourceClass, String[] xsdNameList, ValidationHandler handler) throws SAXException, ValidationException {
+        StringBuffer key = new StringBuffer("resource:").append(xsdResourceClass.getName());
+        for (String xsdName : xsdNameList) {
+            key.append(':').append(xsdName);
+        }
+        Schema schema = getCache().get(key.toString());
+        if (schema != null) {
+            return schema;
+        }
+        Source[] xsdSources = new Source[xsdNameList.length];
+        for (int i = 0; i < xsdNameList.length; i++) {
+            URL url = xsdResourceClass.getResource(xsdNameList[i]);
+            if (url == null) {
+                throw new ValidationException("The XSD resource " + xsdNameList[i] + " is not found");
+            }
+            xsdSources[i] = new StreamSource(url.toExternalForm());
+        }
+        return getCache().put(key.toString(), newSchema(xsdSources, handler));
+    }
+
+    private Schema getSchema(File[] xsdFiles, ValidationHandler handler) throws SAXException {
+        StringBuffer key = new StringBuffer("file");
+        for (File xsdFile : xsdFiles) {
+            key.append(':').append(xsdFile.getAbsolutePath()).append('@').append(xsdFile.lastModified());
+        }
+        Schema schema = getCache().get(key.toString());
+        if (schema != null) {
+            return schema;
+        }
+        Source[] xsdSources = new Source[xsdFiles.length];
+        for (int i = 0; i < xsdFiles.length; i++) {
+            xsdSources[i] = new StreamSource(xsdFiles[i]);
+        }
+        return getCache().put(key.toString(), newSchema(xsdSources, handler));
+    }
 
-            SchemaFactory schemaFactory = SchemaFactory.newInstance("http://www.w3.org/2001/XMLSchema");
-            schemaFactory.setErrorHandler(handler);
-            Schema schemaGrammar = schemaFactory.newSchema(xsdSources);
+    private Schema newSchema(Source[] xsdSources, ValidationHandler handler) throws SAXException {
+        SchemaFactory schemaFactory = SchemaFactory.newInstance("http://www.w3.org/2001/XMLSchema");
+        schemaFactory.setErrorHandler(handler);
+        return schemaFactory.newSchema(xsdSources);
+    }
+
+    private List<ValidationError> validate(Schema schemaGrammar, File inputXML, ValidationHandler handler) throws ValidationException {
+        try {
             Resolver resolver = new Resolver();
             Validator schemaValidator = schemaGrammar.newValidator();
             schemaValidator.setErrorHandler(handler);
             schemaValidator.setResourceResolver(resolver);
             schemaValidator.validate(new StreamSource(inputXML));
-
-            for (int i = 0; i < xsdSources.length; i++) {
-                xsdSources[i] = null;
-            }
-
             return handler.getErrors();
         } catch (SAXException sae) {
             List<ValidationError> errors = handler.getErrors();
@@ -137,6 +283,57 @@ public class ValidationService implements Serializable {
         }
     }
 
+    private Map<File, List<ValidationError>> validate(final Schema schemaGrammar, File[] inputXMLs, int threads) throws ValidationException {
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, inputXMLs.length)));
+        try {
+            List<Future<List<ValidationError>>> futures = new ArrayList<Future<List<ValidationError>>>(inputXMLs.length);
+            for (final File inputXML : inputXMLs) {
+                futures.add(executorService.submit(new Callable<List<ValidationError>>() {
+                    public List<ValidationError> call() throws ValidationException {
+                        return validate(schemaGrammar, inputXML, new ValidationHandler());
+                    }
+                }));
+            }
+            Map<File, List<ValidationError>> errors = new LinkedHashMap<File, List<ValidationError>>();
+            for (int i = 0; i < inputXMLs.length; i++) {
+                errors.put(inputXMLs[i], futures.get(i).get());
+            }
+            return errors;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new ValidationException("Validation interrupted", ie);
+        } catch (ExecutionException ee) {
+            if (ee.getCause() instanceof ValidationException) {
+                throw (ValidationException) ee.getCause();
+            }
+            throw new ValidationException("Validation error", ee.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private Map<File, List<ValidationError>> schemaErrors(File[] inputXMLs, ValidationHandler handler, SAXException sae) {
+        Map<File, List<ValidationError>> errors = new LinkedHashMap<File, List<ValidationError>>();
+        for (File inputXML : inputXMLs) {
+            List<ValidationError> fileErrors = new ArrayList<ValidationError>(handler.getErrors());
+            fileErrors.add(new ValidationError(ErrorType.ERROR, -1, "-1", sae.getMessage()));
+            errors.put(inputXML, fileErrors);
+        }
+        return errors;
+    }
+
+    private File[] listXMLFiles(File inputDir) throws ValidationException {
+        File[] inputXMLs = inputDir.listFiles(new FileFilter() {
+            public boolean accept(File file) {
+                return file.isFile() && file.getName().toLowerCase().endsWith(".xml");
+            }
+        });
+        if (inputXMLs == null) {
+            throw new ValidationException("The directory " + inputDir + " can't be read");
+        }
+        return inputXMLs;
+    }
+
 
     /**
      * Validate an input file against a XSD
@@ -26,7 +26,14 @@ package com.thalesgroup.dtkit.util.validator;
 
 public class ValidationServiceFactory {
 
+    private static final ValidationService INSTANCE = new ValidationService();
+
+    /**
+     * Gets the validation service, the service is stateless and all the validations share its cache of compiled schemas
+     *
+     * @return the shared validation service
+     */
     public static ValidationService getInstance() {
-        return new ValidationService();
+        return INSTANCE;
     }
 }
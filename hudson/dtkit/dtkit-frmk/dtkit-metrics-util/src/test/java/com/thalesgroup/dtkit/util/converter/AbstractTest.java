@@ -79,4 +79,23 @@ public class AbstractTest {
         outputXMLFile.deleteOnExit();
     }
 
+    public void streamAndValidate(String inputXSLPath, String inputXMLPath, String expectedResultPath) throws Exception {
+
+        ConversionService conversionService = new ConversionService();
+
+        File outputXMLFile = File.createTempFile("result", "xml");
+
+        OutputStream outputStream = new FileOutputStream(outputXMLFile);
+        conversionService.convert(
+                new StreamSource(this.getClass().getResourceAsStream(inputXSLPath)),
+                new InputSource(this.getClass().getResourceAsStream(inputXMLPath)), outputStream, null);
+        outputStream.close();
+
+        assertThat("XSL streaming transformation did not work",
+                readStringAsString(outputXMLFile),
+                is(readStringAsString(new File(this.getClass().getResource(expectedResultPath).toURI()))));
+
+        outputXMLFile.deleteOnExit();
+    }
+
 }
@@ -0,0 +1,83 @@
+package com.thalesgroup.dtkit.util.converter;
+
+import net.sf.saxon.s9api.DocumentBuilder;
+import net.sf.saxon.s9api.Serializer;
+import net.sf.saxon.s9api.XdmNode;
+import net.sf.saxon.s9api.XsltTransformer;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+
+public class ConversionServiceTest extends AbstractTest {
+
+    @Test
+    public void convertXmlStreaming() throws Exception {
+        streamAndValidate("myex-xml.xsl", "myex.xml", "myex-outxml.xml");
+    }
+
+    @Test
+    public void namespacedInputIsConvertedAsWithTheDom() throws Exception {
+        ConversionService conversionService = new ConversionService();
+
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        conversionService.convert(
+                new StreamSource(this.getClass().getResourceAsStream("myex-ns.xsl")),
+                new InputSource(this.getClass().getResourceAsStream("myex-ns.xml")), streamed, null);
+        String result = streamed.toString("UTF-8");
+
+        assertThat("The streaming conversion does not match the DOM conversion",
+                result, is(convertWithDom(conversionService, "myex-ns.xsl", "myex-ns.xml")));
+
+        // the prefixed, the default and the redeclared namespaces are all resolved
+        assertTrue(result, result.contains("name=\"first\" status=\"success\" namespace=\"urn:dtkit:report\""));
+        assertTrue(result, result.contains("name=\"second\" status=\"failure\" namespace=\"urn:dtkit:default\""));
+        assertTrue(result, result.contains("no error"));
+        assertTrue(result, result.contains("an error"));
+        assertTrue(result, result.contains("urn:dtkit:message"));
+    }
+
+    /**
+     * Converts the way the conversions were run before they were streamed: the input is loaded in a DOM
+     * that is not namespace aware and copied into a Saxon tree.
+     */
+    private String convertWithDom(ConversionService conversionService, String inputXSLPath, String inputXMLPath) throws Exception {
+        javax.xml.parsers.DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        builder.setEntityResolver(new EntityResolver() {
+            public InputSource resolveEntity(String publicId, String systemId)
+                    throws SAXException, IOException {
+                return new InputSource(new StringReader(""));
+            }
+        });
+        Document document = builder.parse(new InputSource(this.getClass().getResourceAsStream(inputXMLPath)));
+
+        DocumentBuilder documentBuilder = conversionService.getCache().getProcessor().newDocumentBuilder();
+        documentBuilder.setDTDValidation(false);
+        XdmNode xdmNode = documentBuilder.build(new DOMSource(document.getDocumentElement()));
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        Serializer out = new Serializer();
+        out.setOutputProperty(Serializer.Property.INDENT, "yes");
+        out.setOutputStream(os);
+
+        XsltTransformer xsltTransformer = conversionService.getCache().get(
+                new StreamSource(this.getClass().getResourceAsStream(inputXSLPath))).load();
+        xsltTransformer.setInitialContextNode(xdmNode);
+        xsltTransformer.setDestination(out);
+        xsltTransformer.transform();
+        return os.toString("UTF-8");
+    }
+}
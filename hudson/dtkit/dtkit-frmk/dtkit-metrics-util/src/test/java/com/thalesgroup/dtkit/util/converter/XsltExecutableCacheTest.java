@@ -0,0 +1,48 @@
+package com.thalesgroup.dtkit.util.converter;
+
+import net.sf.saxon.s9api.XsltExecutable;
+import org.junit.Test;
+
+import javax.xml.transform.stream.StreamSource;
+
+import static org.junit.Assert.*;
+
+
+public class XsltExecutableCacheTest {
+
+    @Test
+    public void sameContentIsCompiledOnce() throws Exception {
+        XsltExecutableCache cache = new XsltExecutableCache(4);
+        XsltExecutable first = cache.get(new StreamSource(this.getClass().getResourceAsStream("myex-xml.xsl")));
+        XsltExecutable second = cache.get(new StreamSource(this.getClass().getResourceAsStream("myex-xml.xsl")));
+        assertSame(first, second);
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void resourceIsCompiledOnce() throws Exception {
+        XsltExecutableCache cache = new XsltExecutableCache(4);
+        XsltExecutable first = cache.get(this.getClass(), "myex-txt.xsl");
+        XsltExecutable second = cache.get(this.getClass(), "myex-txt.xsl");
+        assertSame(first, second);
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvicted() throws Exception {
+        XsltExecutableCache cache = new XsltExecutableCache(1);
+        XsltExecutable xml = cache.get(this.getClass(), "myex-xml.xsl");
+        cache.get(this.getClass(), "myex-txt.xsl");
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNotSame(xml, cache.get(this.getClass(), "myex-xml.xsl"));
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test(expected = ConversionException.class)
+    public void missingResource() throws Exception {
+        new XsltExecutableCache(1).get(this.getClass(), "missing.xsl");
+    }
+}
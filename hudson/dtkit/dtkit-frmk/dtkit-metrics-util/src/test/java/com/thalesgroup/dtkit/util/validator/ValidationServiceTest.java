@@ -0,0 +1,44 @@
+package com.thalesgroup.dtkit.util.validator;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class ValidationServiceTest {
+
+    private File getResource(String name) throws Exception {
+        return new File(this.getClass().getResource(name).toURI());
+    }
+
+    @Test
+    public void schemaIsCompiledOnce() throws Exception {
+        ValidationService validationService = new ValidationService();
+        SchemaCache cache = validationService.getCache();
+        cache.clear();
+        long misses = cache.getMisses();
+        long hits = cache.getHits();
+
+        String[] xsdNameList = new String[]{"myex.xsd"};
+        assertTrue(validationService.processValidation(this.getClass(), xsdNameList, getResource("myex-valid.xml")).isEmpty());
+        assertTrue(!validationService.processValidation(this.getClass(), xsdNameList, getResource("myex-invalid.xml")).isEmpty());
+
+        assertEquals(misses + 1, cache.getMisses());
+        assertEquals(hits + 1, cache.getHits());
+    }
+
+    @Test
+    public void validateDirectory() throws Exception {
+        File directory = getResource("myex-valid.xml").getParentFile();
+        Map<File, List<ValidationError>> errors = new ValidationService().processValidation(this.getClass(), new String[]{"myex.xsd"}, directory, 2);
+
+        assertEquals(2, errors.size());
+        assertTrue(errors.get(getResource("myex-valid.xml")).isEmpty());
+        assertTrue(!errors.get(getResource("myex-invalid.xml")).isEmpty());
+    }
+}
@@ -0,0 +1,21 @@
+<?xml version="1.0" encoding="UTF-8"?>
+<xsl:stylesheet version="2.0" xmlns:xsl="http://www.w3.org/1999/XSL/Transform"
+                xmlns:r="urn:dtkit:report" xmlns:d="urn:dtkit:default" xmlns:m="urn:dtkit:message"
+                exclude-result-prefixes="r d m">
+
+    <xsl:output method="xml" version="1.0" encoding="UTF-8" indent="yes"/>
+
+    <xsl:template match="r:report">
+        <tests>
+            <xsl:apply-templates select="r:test | d:test"/>
+        </tests>
+    </xsl:template>
+
+    <xsl:template match="r:test | d:test">
+        <test name="{@name}" status="{@r:status}" namespace="{namespace-uri()}">
+            <xsl:value-of select="d:message | m:message"/>
+            <xsl:copy-of select="*"/>
+        </test>
+    </xsl:template>
+
+</xsl:stylesheet>
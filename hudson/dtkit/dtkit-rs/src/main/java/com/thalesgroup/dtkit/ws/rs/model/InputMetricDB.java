@@ -29,7 +29,7 @@ import com.thalesgroup.dtkit.metrics.model.AbstractOutputMetric;
 import com.thalesgroup.dtkit.metrics.model.InputMetricXSL;
 import com.thalesgroup.dtkit.metrics.model.OutputMetric;
 import com.thalesgroup.dtkit.util.converter.ConversionException;
-import com.thalesgroup.dtkit.util.converter.ConversionService;
+import com.thalesgroup.dtkit.util.converter.ConversionServiceFactory;
 import com.thalesgroup.dtkit.util.validator.ValidationException;
 import com.thalesgroup.dtkit.util.validator.ValidationService;
 import org.bson.types.ObjectId;
@@ -118,7 +118,7 @@ public class InputMetricDB extends InputMetricXSL {
 
     @Override
     public void convert(File inputFile, File outFile) throws ConversionException {
-        new ConversionService().convert(new StreamSource(new StringReader(String.valueOf(getXslContent()))), inputFile, outFile);
+        ConversionServiceFactory.getInstance().convert(new StreamSource(new StringReader(String.valueOf(getXslContent()))), inputFile, outFile);
     }
 
     @Override
@@ -33,6 +33,8 @@ import com.mongodb.MongoException;
 import com.sun.jersey.api.core.PackagesResourceConfig;
 import com.sun.jersey.guice.spi.container.servlet.GuiceContainer;
 import com.thalesgroup.dtkit.metrics.model.InputMetricException;
+import com.thalesgroup.dtkit.util.converter.ConversionService;
+import com.thalesgroup.dtkit.util.converter.ConversionServiceFactory;
 import com.thalesgroup.dtkit.ws.rs.dao.InputMetricDAO;
 import com.thalesgroup.dtkit.ws.rs.dao.InputMetricEmbeddedDAO;
 import com.thalesgroup.dtkit.ws.rs.dao.InputMetricMongoDAO;
@@ -63,6 +65,7 @@ public class GuiceModule extends ServletModule {
         final Map<String, String> params = new HashMap<String, String>();
         params.put(PackagesResourceConfig.PROPERTY_PACKAGES, "com.thalesgroup.dtkit.ws.rs;org.codehaus.jackson.jaxrs");
         bindDAO();
+        bind(ConversionService.class).toInstance(ConversionServiceFactory.getInstance());
         serve("/*").with(GuiceContainer.class, params);
     }
 
@@ -2,18 +2,22 @@ package hudson.plugins.coverage.impl;
 
 import hudson.plugins.coverage.model.Instance;
 import hudson.plugins.coverage.model.JavaModel;
+import hudson.plugins.coverage.model.LineDetails;
+import hudson.plugins.coverage.model.LineDetailsFile;
 import hudson.plugins.coverage.model.Recorder;
+import hudson.plugins.coverage.model.measurements.BranchCoverage;
+import hudson.plugins.coverage.model.measurements.LineCoverage;
 import org.codehaus.stax2.XMLInputFactory2;
 import org.codehaus.stax2.XMLOutputFactory2;
+import org.codehaus.stax2.XMLStreamReader2;
+import org.codehaus.stax2.XMLStreamWriter2;
 
-import javax.xml.namespace.QName;
 import javax.xml.stream.*;
-import javax.xml.stream.events.Attribute;
-import javax.xml.stream.events.EndElement;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
 import java.io.*;
+import java.nio.charset.Charset;
 import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Created by IntelliJ IDEA.
@@ -37,12 +41,18 @@ public class CoberturaRecorder implements Recorder {
      */
     private final transient File sourceCodeRoot;
 
+    /**
+     * This field is populated when the recorder is being constructed for a newly built project, for old builds this
+     * will be null. The line details are written to this directory.
+     */
+    private final transient File buildDir;
+
 // -------------------------- STATIC METHODS --------------------------
 
-    private static void safelyClose(XMLEventReader xmlEventReader) {
-        if (xmlEventReader != null) {
+    private static void safelyClose(XMLStreamReader xmlStreamReader) {
+        if (xmlStreamReader != null) {
             try {
-                xmlEventReader.close();
+                xmlStreamReader.close();
             } catch (XMLStreamException e) {
                 // ignore
             }
@@ -65,8 +75,7 @@ public class CoberturaRecorder implements Recorder {
      * Default constructor, will be used to reconstruct results for old builds.
      */
     public CoberturaRecorder() {
-        this.coberturaXmlResults = null;
-        this.sourceCodeRoot = null;
+        this(null, null, null);
     }
 
     /**
@@ -76,8 +85,20 @@ public class CoberturaRecorder implements Recorder {
      * @param sourceCodeRoot      The root directory within which the source files should be hiding.
      */
     public CoberturaRecorder(Set<File> coberturaXmlResults, File sourceCodeRoot) {
+        this(coberturaXmlResults, sourceCodeRoot, null);
+    }
+
+    /**
+     * Creates a new CoberturaRecorder for parsing a new build, writing the line details to the build directory.
+     *
+     * @param coberturaXmlResults The cobertura XML result files.
+     * @param sourceCodeRoot      The root directory within which the source files should be hiding.
+     * @param buildDir            The build directory, or {@code null} to keep the line details in memory only.
+     */
+    public CoberturaRecorder(Set<File> coberturaXmlResults, File sourceCodeRoot, File buildDir) {
         this.coberturaXmlResults = coberturaXmlResults;
         this.sourceCodeRoot = sourceCodeRoot;
+        this.buildDir = buildDir;
     }
 
 // ------------------------ INTERFACE METHODS ------------------------
@@ -101,11 +122,17 @@ public class CoberturaRecorder implements Recorder {
             if (measurementFile.isFile()) {
                 FileInputStream fis = null;
                 BufferedInputStream bis = null;
-                XMLEventReader r = null;
+                ByteCountingReader counter = null;
+                XMLStreamReader2 r = null;
                 try {
                     fis = new FileInputStream(measurementFile);
                     bis = new BufferedInputStream(fis);
-                    r = inputFactory.createXMLEventReader(bis);
+                    counter = ByteCountingReader.newInstance(bis);
+                    if (counter != null) {
+                        r = (XMLStreamReader2) inputFactory.createXMLStreamReader(counter);
+                    } else {
+                        r = (XMLStreamReader2) inputFactory.createXMLStreamReader(bis);
+                    }
 
                     boolean inSources = false;
                     boolean inPackages = false;
@@ -117,10 +144,9 @@ public class CoberturaRecorder implements Recorder {
                         sourceRoots.add(sourceCodeDirectory);
                     }
                     while (r.hasNext()) {
-                        final XMLEvent event = r.nextEvent();
-                        if (event.isStartElement()) {
-                            StartElement start = event.asStartElement();
-                            final String localPart = start.getName().getLocalPart();
+                        final int event = r.next();
+                        if (event == XMLStreamConstants.START_ELEMENT) {
+                            final String localPart = r.getLocalName();
                             if (inCoverage) {
                                 if (inSources) {
                                     if ("source".equals(localPart)) {
@@ -140,7 +166,7 @@ public class CoberturaRecorder implements Recorder {
                                     }
                                 } else if (inPackages) {
                                     if ("package".equals(localPart)) {
-                                        String packageName = getAttributeValue(start, "name");
+                                        String packageName = r.getAttributeValue(null, "name");
                                         if (packageName != null) {
                                             packageInstance =
                                                     javaInstance.findOrCreateChild(JavaModel.PACKAGE, packageName);
@@ -149,28 +175,25 @@ public class CoberturaRecorder implements Recorder {
                                         }
                                         System.out.println("package " + packageName);
                                     } else if (packageInstance != null && "class".equals(localPart)) {
-                                        String className = getAttributeValue(start, "name");
-                                        String fileName = getAttributeValue(start, "filename");
+                                        String className = r.getAttributeValue(null, "name");
+                                        String fileName = r.getAttributeValue(null, "filename");
                                         if (fileName != null && className != null) {
-                                            StringWriter sw = new StringWriter();
-                                            XMLOutputFactory2 of = (XMLOutputFactory2) XMLOutputFactory2.newInstance();
-                                            of.configureForSpeed();
-                                            XMLEventWriter writer = of.createXMLEventWriter(sw);
-                                            writer.add(start);
-                                            int depth = 1;
-                                            while (depth >= 1 && r.hasNext()) {
-                                                final XMLEvent event1 = r.nextEvent();
-                                                if (event1.isStartElement()) {
-                                                    depth++;
-                                                } else if (event1.isEndElement()) {
-                                                    depth--;
-                                                }
-                                                writer.add(event1);
+                                            // only the position of the class is kept, the second pass re-reads it
+                                            Object memo;
+                                            if (counter != null) {
+                                                long start = counter.getByteOffset(
+                                                        r.getLocationInfo().getStartingCharOffset());
+                                                r.skipElement();
+                                                long end = counter.getByteOffset(
+                                                        r.getLocationInfo().getEndingCharOffset());
+                                                memo = new ClassRange(start, (int) (end - start),
+                                                        counter.getEncoding());
+                                            } else {
+                                                memo = copyElement(r);
                                             }
-                                            writer.close();
                                             packageInstance.findOrCreateChild(JavaModel.FILE, fileName,
                                                     findFileFromParents(sourceRoots, fileName))
-                                                    .addRecorder(this, measurementFile, sw.toString());
+                                                    .addRecorder(this, measurementFile, memo);
                                         }
                                         System.out.println("class " + className + " (" + fileName + ")");
                                     }
@@ -187,9 +210,8 @@ public class CoberturaRecorder implements Recorder {
                                     javaInstance = root.findOrCreateChild(JavaModel.LANGUAGE, "");
                                 }
                             }
-                        } else if (event.isEndElement()) {
-                            EndElement end = event.asEndElement();
-                            final String localPart = end.getName().getLocalPart();
+                        } else if (event == XMLStreamConstants.END_ELEMENT) {
+                            final String localPart = r.getLocalName();
                             if (inCoverage) {
                                 if (inSources) {
                                     if ("sources".equals(localPart)) {
@@ -215,6 +237,7 @@ public class CoberturaRecorder implements Recorder {
                     e.printStackTrace();
                 } finally {
                     safelyClose(r);
+                    safelyClose(counter);
                     safelyClose(bis);
                     safelyClose(fis);
                 }
@@ -222,6 +245,33 @@ public class CoberturaRecorder implements Recorder {
         }
     }
 
+    /**
+     * Copies the current element into a string, only used when the byte offsets of the file can't be counted.
+     *
+     * @param r The reader positioned on the start of the element.
+     *
+     * @return The element.
+     */
+    private String copyElement(XMLStreamReader2 r) throws XMLStreamException {
+        StringWriter sw = new StringWriter();
+        XMLOutputFactory2 of = (XMLOutputFactory2) XMLOutputFactory2.newInstance();
+        of.configureForSpeed();
+        XMLStreamWriter2 writer = (XMLStreamWriter2) of.createXMLStreamWriter(sw);
+        writer.copyEventFromReader(r, false);
+        int depth = 1;
+        while (depth >= 1 && r.hasNext()) {
+            final int event = r.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+            writer.copyEventFromReader(r, false);
+        }
+        writer.close();
+        return sw.toString();
+    }
+
     private XMLInputFactory newXMLInputFactory() {
         XMLInputFactory inputFactory = XMLInputFactory2.newInstance();
         inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
@@ -239,21 +289,23 @@ public class CoberturaRecorder implements Recorder {
      */
     public void parseSourceResults(Instance sourceFile, File measurementFile, Collection<Object> memos) {
         if (sourceFile.getElement().isFileLevel() && measurementFile.isFile() && memos != null && !memos.isEmpty()) {
-            Collection<String> results = Collection.class.cast(memos);
-
-            // arse arse arse... how to efficiently re-read this file
-
-            XMLEventReader r = null;
+            RandomAccessFile raf = null;
             try {
-                r = newXMLInputFactory().createXMLEventReader(new StringReader(result));
-
-                while (r.hasNext()) {
-                    final XMLEvent event = r.nextEvent();
-                    if (event.isStartElement()) {
-                        StartElement start = event.asStartElement();
-                        System.out.println(start.getName());
-                        return;
-                    } else if (event.isEndElement()) {
+                for (Object memo : memos) {
+                    if (memo instanceof String) {
+                        parseClass(sourceFile, newXMLInputFactory().createXMLStreamReader(new StringReader((String) memo)));
+                    }
+                }
+                SortedSet<ClassRange> ranges = convertMemosToSortedRanges(memos);
+                if (!ranges.isEmpty()) {
+                    // seek to each class in file order rather than re-reading the whole report
+                    raf = new RandomAccessFile(measurementFile, "r");
+                    for (ClassRange range : ranges) {
+                        byte[] bytes = new byte[range.getLength()];
+                        raf.seek(range.getOffset());
+                        raf.readFully(bytes);
+                        parseClass(sourceFile, newXMLInputFactory()
+                                .createXMLStreamReader(new ByteArrayInputStream(bytes), range.getEncoding()));
                     }
                 }
             } catch (XMLStreamException e) {
@@ -261,25 +313,161 @@ public class CoberturaRecorder implements Recorder {
             } catch (IOException e) {
                 e.printStackTrace();
             } finally {
-                safelyClose(r);
+                safelyClose(raf);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void persistResults(Instance root) {
+        if (buildDir != null) {
+            try {
+                LineDetailsFile.write(LineDetailsFile.getFile(buildDir), root);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Parses one {@code <class>} element into the class and method instances of the source file.
+     *
+     * @param sourceFile The source file instance.
+     * @param r          The reader of the class element.
+     */
+    private void parseClass(Instance sourceFile, XMLStreamReader r) throws XMLStreamException {
+        try {
+            Instance classInstance = null;
+            Instance methodInstance = null;
+            LineDetails lineDetails = getLineDetails(sourceFile);
+            int lineCount = 0;
+            int lineCover = 0;
+            int branchCount = 0;
+            int branchCover = 0;
+            while (r.hasNext()) {
+                final int event = r.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    final String localPart = r.getLocalName();
+                    if (classInstance == null) {
+                        if ("class".equals(localPart)) {
+                            classInstance = sourceFile.findOrCreateChild(JavaModel.CLASS, r.getAttributeValue(null, "name"));
+                        }
+                    } else if ("method".equals(localPart)) {
+                        String signature = r.getAttributeValue(null, "signature");
+                        methodInstance = classInstance.findOrCreateChild(JavaModel.METHOD,
+                                r.getAttributeValue(null, "name") + (signature == null ? "" : signature));
+                        lineCount = 0;
+                        lineCover = 0;
+                        branchCount = 0;
+                        branchCover = 0;
+                    } else if (methodInstance != null && "line".equals(localPart)) {
+                        lineCount++;
+                        String hits = r.getAttributeValue(null, "hits");
+                        if (hits != null && !"0".equals(hits)) {
+                            lineCover++;
+                        }
+                        int number = parseInt(r.getAttributeValue(null, "number"), -1);
+                        if (number >= 0) {
+                            lineDetails.touch(number, parseInt(hits, 0));
+                        }
+                        if ("true".equals(r.getAttributeValue(null, "branch"))) {
+                            int[] conditions = parseConditionCoverage(r.getAttributeValue(null, "condition-coverage"));
+                            branchCover += conditions[0];
+                            branchCount += conditions[1];
+                            if (number >= 0 && conditions[0] <= conditions[1]) {
+                                lineDetails.setBranches(number, conditions[0], conditions[1]);
+                            }
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (methodInstance != null && "method".equals(r.getLocalName())) {
+                        methodInstance.setMeasurement(JavaModel.LINE_COVERAGE, new LineCoverage(lineCount, lineCover));
+                        methodInstance.setMeasurement(JavaModel.BRANCH_COVERAGE, new BranchCoverage(branchCount, branchCover));
+                        methodInstance = null;
+                    }
+                }
+            }
+        } finally {
+            r.close();
+        }
+    }
+
+    /**
+     * Returns the line details of a source file, creating them on the first class of the file.
+     *
+     * @param sourceFile The source file instance.
+     *
+     * @return The line details.
+     */
+    private static LineDetails getLineDetails(Instance sourceFile) {
+        LineDetails result = (LineDetails) sourceFile.getMeasurement(JavaModel.LINE_DETAILS);
+        if (result == null) {
+            result = new LineDetails();
+            sourceFile.setMeasurement(JavaModel.LINE_DETAILS, result);
+        }
+        return result;
+    }
+
+    /**
+     * Parses a non-negative integer attribute, hit counts larger than an int are capped.
+     *
+     * @param value        The attribute value.
+     * @param defaultValue The value to return if the attribute is missing or malformed.
+     *
+     * @return The value.
+     */
+    private static int parseInt(String value, int defaultValue) {
+        if (value != null) {
+            try {
+                long result = Long.parseLong(value.trim());
+                return result < 0 ? defaultValue : (int) Math.min(result, Integer.MAX_VALUE);
+            } catch (NumberFormatException e) {
+                // ignore
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Parses the cobertura condition coverage, e.g. {@code "50% (1/2)"}.
+     *
+     * @param conditionCoverage The condition coverage attribute.
+     *
+     * @return The covered and the total number of branches.
+     */
+    private static int[] parseConditionCoverage(String conditionCoverage) {
+        if (conditionCoverage != null) {
+            int open = conditionCoverage.indexOf('(');
+            int slash = conditionCoverage.indexOf('/', open);
+            int close = conditionCoverage.indexOf(')', slash);
+            if (open >= 0 && slash > open && close > slash) {
+                try {
+                    return new int[]{Integer.parseInt(conditionCoverage.substring(open + 1, slash).trim()),
+                            Integer.parseInt(conditionCoverage.substring(slash + 1, close).trim())};
+                } catch (NumberFormatException e) {
+                    // ignore
+                }
             }
         }
+        return new int[]{0, 0};
     }
 
-    private SortedSet<Location> convertMemosToSortedLocations(Collection<Object> memos) {
-        SortedSet<Location> locations = new TreeSet<Location>(new Comparator<Location>() {
-            public int compare(Location o1, Location o2) {
-                int p1 = o1.getCharacterOffset();
-                int p2 = o2.getCharacterOffset();
+    private SortedSet<ClassRange> convertMemosToSortedRanges(Collection<Object> memos) {
+        SortedSet<ClassRange> ranges = new TreeSet<ClassRange>(new Comparator<ClassRange>() {
+            public int compare(ClassRange o1, ClassRange o2) {
+                long p1 = o1.getOffset();
+                long p2 = o2.getOffset();
                 return p1 > p2 ? 1 : p1 == p2 ? 0 : -1;
             }
         });
         for (Object memo : memos) {
-            if (memo instanceof Location) {
-                locations.add((Location) memo);
+            if (memo instanceof ClassRange) {
+                ranges.add((ClassRange) memo);
             }
         }
-        return locations;
+        return ranges;
     }
 
 // -------------------------- OTHER METHODS --------------------------
@@ -295,10 +483,173 @@ public class CoberturaRecorder implements Recorder {
         return file;
     }
 
-    private String getAttributeValue(StartElement start, String localPart) {
-        final QName qName = new QName(start.getName().getNamespaceURI(), localPart);
-        final Attribute attribute = start.getAttributeByName(qName);
-        return attribute == null ? null : attribute.getValue();
+    /**
+     * The position of a {@code <class>} element in the measurement file, the memo of the first pass.
+     */
+    static final class ClassRange {
+        private final long offset;
+        private final int length;
+        private final String encoding;
+
+        public ClassRange(long offset, int length, String encoding) {
+            this.offset = offset;
+            this.length = length;
+            this.encoding = encoding;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        public String getEncoding() {
+            return encoding;
+        }
+    }
+
+    /**
+     * Counts the bytes of the characters that the parser reads, so that the character offsets it reports can be turned
+     * into byte offsets of the measurement file. The parser reads ahead, so the positions of the multi-byte characters
+     * are remembered until an offset past them has been asked for. A cobertura report is usually plain ASCII, in
+     * which case nothing is remembered.
+     */
+    static final class ByteCountingReader extends FilterReader {
+        private static final Pattern ENCODING =
+                Pattern.compile("^<\\?xml[^>]*\\sencoding\\s*=\\s*[\"']([A-Za-z0-9._:-]+)[\"']");
+
+        private final String encoding;
+        private final boolean utf8;
+        private final int byteOrderMark;
+        private long chars;
+        private long extraBytes;
+        private final LinkedList<long[]> multiByteChars = new LinkedList<long[]>();
+        private long passedExtraBytes;
+
+        private ByteCountingReader(Reader in, String encoding, boolean utf8, int byteOrderMark) {
+            super(in);
+            this.encoding = encoding;
+            this.utf8 = utf8;
+            this.byteOrderMark = byteOrderMark;
+        }
+
+        /**
+         * Creates a reader for the measurement file if its encoding has characters of a known width, i.e. UTF-8 or a
+         * single byte encoding.
+         *
+         * @param in The measurement file, positioned at the start.
+         *
+         * @return The reader, or {@code null} if the byte offsets can't be counted, in which case the stream is still
+         *         positioned at the start.
+         */
+        static ByteCountingReader newInstance(BufferedInputStream in) throws IOException {
+            byte[] prolog = new byte[1024];
+            in.mark(prolog.length);
+            int length = 0;
+            int count;
+            while (length < prolog.length && (count = in.read(prolog, length, prolog.length - length)) > 0) {
+                length += count;
+            }
+            in.reset();
+            int byteOrderMark = 0;
+            if (length >= 3 && (prolog[0] & 0xff) == 0xef && (prolog[1] & 0xff) == 0xbb
+                    && (prolog[2] & 0xff) == 0xbf) {
+                byteOrderMark = 3;
+            } else if (length >= 2 && (prolog[0] == 0 || prolog[1] == 0 || (prolog[0] & 0xff) >= 0xfe)) {
+                // UTF-16 or UTF-32
+                return null;
+            }
+            String encoding = "UTF-8";
+            Matcher matcher = ENCODING.matcher(new String(prolog, byteOrderMark, length - byteOrderMark, "ISO-8859-1"));
+            if (matcher.find()) {
+                encoding = matcher.group(1);
+            }
+            Charset charset;
+            try {
+                charset = Charset.forName(encoding);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            boolean utf8 = "UTF-8".equals(charset.name());
+            if (!utf8 && (!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1.0f)) {
+                return null;
+            }
+            if (byteOrderMark > 0 && (!utf8 || in.skip(byteOrderMark) != byteOrderMark)) {
+                return null;
+            }
+            return new ByteCountingReader(new InputStreamReader(in, charset), charset.name(), utf8, byteOrderMark);
+        }
+
+        public String getEncoding() {
+            return encoding;
+        }
+
+        /**
+         * Returns the byte offset of a character offset, the offsets must be asked for in increasing order.
+         *
+         * @param charOffset The character offset reported by the parser.
+         *
+         * @return The byte offset in the measurement file.
+         */
+        public long getByteOffset(long charOffset) {
+            while (!multiByteChars.isEmpty() && multiByteChars.getFirst()[0] < charOffset) {
+                passedExtraBytes = multiByteChars.removeFirst()[1];
+            }
+            return byteOrderMark + charOffset + passedExtraBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            char[] c = new char[1];
+            return read(c, 0, 1) == 1 ? c[0] : -1;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            int count = super.read(cbuf, off, len);
+            if (utf8) {
+                for (int i = 0; i < count; i++) {
+                    char c = cbuf[off + i];
+                    if (c >= 0x80) {
+                        // a surrogate is half of a 4 byte character
+                        extraBytes += c < 0x800 || (c >= '\uD800' && c <= '\uDFFF') ? 1 : 2;
+                        multiByteChars.add(new long[]{chars + i, extraBytes});
+                    }
+                }
+            }
+            if (count > 0) {
+                chars += count;
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            char[] buffer = new char[(int) Math.min(n, 8192)];
+            long skipped = 0;
+            int count;
+            while (skipped < n && (count = read(buffer, 0, (int) Math.min(n - skipped, buffer.length))) > 0) {
+                skipped += count;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void mark(int readAheadLimit) throws IOException {
+            throw new IOException("mark() not supported");
+        }
+
+        @Override
+        public void reset() throws IOException {
+            throw new IOException("reset() not supported");
+        }
     }
 
     static final class FileResult {
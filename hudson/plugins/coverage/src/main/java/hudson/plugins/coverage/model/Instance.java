@@ -6,9 +6,14 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * An instance of an {@linkplain Element}.
@@ -62,8 +67,20 @@ public class Instance {
      */
     private final transient Map<Recorder, Map<File, Collection<Object>>> measurementFiles;
 
+    /**
+     * Set once the model has been applied to this instance, the parallel second-pass applies the models of the file
+     * level sub-trees before the rest of the tree.
+     */
+    private transient boolean modelsApplied;
+
 // -------------------------- STATIC METHODS --------------------------
 
+    /**
+     * The number of threads of the second-pass parsing, from the system property
+     * {@code hudson.plugins.coverage.model.Instance.threads}.
+     */
+    private static final int THREADS = Integer.getInteger(Instance.class.getName() + ".threads", 1);
+
     /**
      * Creates a new Instance instance using the provided recorders.
      *
@@ -72,6 +89,19 @@ public class Instance {
      * @return The new Instance instance.
      */
     public static Instance newInstance(Set<? extends Recorder> recorders) {
+        return newInstance(recorders, THREADS);
+    }
+
+    /**
+     * Creates a new Instance instance using the provided recorders, parsing the source files on a pool of threads.
+     *
+     * @param recorders The recorders.
+     * @param threads   The number of source files to parse at the same time, {@code 1} parses them on the calling
+     *                  thread.
+     *
+     * @return The new Instance instance.
+     */
+    public static Instance newInstance(Set<? extends Recorder> recorders, int threads) {
         Instance result = new Instance();
 
         // first-pass: identify the source files
@@ -79,12 +109,22 @@ public class Instance {
             recorder.identifySourceFiles(result);
         }
 
-        // second-pass: parse the coverage results
-        result.parseSourceResults();
+        if (threads > 1) {
+            // second-pass and the file level part of the third-pass, one source file per task
+            result.parseSourceResults(threads);
+        } else {
+            // second-pass: parse the coverage results
+            result.parseSourceResults();
+        }
 
         // third-pass: consolidate the results
         result.applyModels();
 
+        // persist the results that are not kept with the build
+        for (Recorder recorder : recorders) {
+            recorder.persistResults(result);
+        }
+
         // done
         return result;
     }
@@ -93,12 +133,68 @@ public class Instance {
      * Apply the model to the results
      */
     private void applyModels() {
+        if (modelsApplied) {
+            return;
+        }
         for (Element child : element.getChildren()) {
             for (Instance childInstance : getChildren(child).values()) {
                 childInstance.applyModels();
             }
         }
         element.getModel().apply(this);
+        modelsApplied = true;
+    }
+
+    /**
+     * Parallel second-pass parsing. The file level instances are parsed and their models applied on a pool of
+     * threads, each task only touches the sub-tree of its own file. The levels above the files are then rolled up by
+     * {@link #applyModels()} on the calling thread, in the sorted order of the children, so the result does not
+     * depend on the order the files finish in.
+     *
+     * @param threads The number of threads.
+     */
+    private void parseSourceResults(int threads) {
+        List<Instance> files = new ArrayList<Instance>();
+        collectFileInstances(files);
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, files.size())));
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>(files.size());
+            for (final Instance file : files) {
+                futures.add(executorService.submit(new Runnable() {
+                    public void run() {
+                        file.parseSourceResults();
+                        file.applyModels();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while parsing the source results", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not parse the source results", e.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Collects the file level instances of the tree in their sorted order.
+     *
+     * @param files The list to add the file level instances to.
+     */
+    private void collectFileInstances(List<Instance> files) {
+        if (element.isFileLevel()) {
+            files.add(this);
+        } else if (!element.isSubfileLevel()) {
+            for (Element child : element.getChildren()) {
+                for (Instance childInstance : getChildren(child).values()) {
+                    childInstance.collectFileInstances(files);
+                }
+            }
+        }
     }
 
     /**
@@ -23,6 +23,7 @@ public class JavaModel implements Model {
     public static final Metric METHOD_COVERAGE = Metric.newMetric("method", BasicCoverage.class);
     public static final Metric LINE_COVERAGE = Metric.LINE_COVERAGE;
     public static final Metric BRANCH_COVERAGE = Metric.BRANCH_COVERAGE;
+    public static final Metric LINE_DETAILS = Metric.LINE_DETAILS;
 
     public void apply(Instance instance) {
         StandardModel.getInstance().apply(instance);
@@ -0,0 +1,286 @@
+package hudson.plugins.coverage.model;
+
+import hudson.plugins.coverage.model.measurements.BranchCoverage;
+import hudson.plugins.coverage.model.measurements.LineCoverage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.BitSet;
+
+/**
+ * The line by line coverage of a source file, held in primitive arrays indexed by the line number rather than in one
+ * object per line. A bit set records the lines that are instrumented, an int array the hit count of each line and a
+ * second int array the branches of each line, packed as the total number of branches in the high half and the number
+ * of covered branches in the low half.
+ * <p/>
+ * Instances are filled by the recorder parsing the source file and are not thread safe.
+ */
+public class LineDetails implements Measurement {
+
+    /**
+     * The largest number of branches, or covered branches, of a single line.
+     */
+    public static final int MAX_BRANCHES = 0xFFFF;
+
+    /**
+     * The instrumented lines.
+     */
+    private final BitSet lines = new BitSet();
+
+    /**
+     * The hit count of each line.
+     */
+    private int[] hits;
+
+    /**
+     * The packed branch counters of each line, {@code 0} for a line without branches.
+     */
+    private int[] branches;
+
+    public LineDetails() {
+        this(64);
+    }
+
+    public LineDetails(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity cannot be negative");
+        }
+        this.hits = new int[capacity];
+        this.branches = new int[capacity];
+    }
+
+    /**
+     * Records hits of a line.
+     *
+     * @param line The line number.
+     * @param hits The number of hits to add to the line.
+     */
+    public void touch(int line, int hits) {
+        ensureCapacity(line);
+        lines.set(line);
+        this.hits[line] = saturatedAdd(this.hits[line], hits);
+    }
+
+    /**
+     * Records the branches of a line. A line may be reported more than once, e.g. by the class and by the method, so
+     * the counters replace rather than add to any previous counters, keeping the one with the most branches.
+     *
+     * @param line    The line number.
+     * @param covered The number of covered branches.
+     * @param total   The total number of branches.
+     */
+    public void setBranches(int line, int covered, int total) {
+        if (covered < 0 || total < 0 || covered > total) {
+            throw new IllegalArgumentException("Invalid branch counters " + covered + "/" + total);
+        }
+        ensureCapacity(line);
+        lines.set(line);
+        int packed = (Math.min(total, MAX_BRANCHES) << 16) | Math.min(covered, MAX_BRANCHES);
+        if (total > getBranches(line) || (total == getBranches(line) && covered > getCoveredBranches(line))) {
+            branches[line] = packed;
+        }
+    }
+
+    public boolean isInstrumented(int line) {
+        return lines.get(line);
+    }
+
+    public boolean isTouched(int line) {
+        return getLineCount(line) > 0;
+    }
+
+    public boolean isCovered(int line) {
+        return isTouched(line) && getBranchCoverage(line) > 0.9998f;
+    }
+
+    public int getLineCount(int line) {
+        return line >= 0 && line < hits.length ? hits[line] : 0;
+    }
+
+    public int getBranches(int line) {
+        return line >= 0 && line < branches.length ? branches[line] >>> 16 : 0;
+    }
+
+    public int getCoveredBranches(int line) {
+        return line >= 0 && line < branches.length ? branches[line] & MAX_BRANCHES : 0;
+    }
+
+    public float getBranchCoverage(int line) {
+        int total = getBranches(line);
+        if (total == 0) {
+            return 1.0f;
+        }
+        return (1.0f * getCoveredBranches(line)) / total;
+    }
+
+    /**
+     * Getter for property 'lastLine'.
+     *
+     * @return The highest instrumented line number, or {@code -1} if there are no lines.
+     */
+    public int getLastLine() {
+        return lines.length() - 1;
+    }
+
+    /**
+     * Returns the number of instrumented lines.
+     *
+     * @return The number of instrumented lines.
+     */
+    public int size() {
+        return lines.cardinality();
+    }
+
+    /**
+     * Returns the line coverage of all the lines.
+     *
+     * @return The line coverage.
+     */
+    public LineCoverage getLineCoverage() {
+        return getLineCoverage(0, hits.length);
+    }
+
+    /**
+     * Returns the line coverage of a range of lines.
+     *
+     * @param from The first line number, inclusive.
+     * @param to   The last line number, exclusive.
+     *
+     * @return The line coverage.
+     */
+    public LineCoverage getLineCoverage(int from, int to) {
+        int count = 0;
+        int cover = 0;
+        for (int line = lines.nextSetBit(Math.max(0, from)); line >= 0 && line < to; line = lines.nextSetBit(line + 1)) {
+            count++;
+            if (hits[line] > 0) {
+                cover++;
+            }
+        }
+        return new LineCoverage(count, cover);
+    }
+
+    /**
+     * Returns the branch coverage of all the lines.
+     *
+     * @return The branch coverage.
+     */
+    public BranchCoverage getBranchCoverage() {
+        return getBranchCoverage(0, branches.length);
+    }
+
+    /**
+     * Returns the branch coverage of a range of lines.
+     *
+     * @param from The first line number, inclusive.
+     * @param to   The last line number, exclusive.
+     *
+     * @return The branch coverage.
+     */
+    public BranchCoverage getBranchCoverage(int from, int to) {
+        int count = 0;
+        int cover = 0;
+        for (int line = Math.max(0, from), end = Math.min(to, branches.length); line < end; line++) {
+            int packed = branches[line];
+            count += packed >>> 16;
+            cover += packed & MAX_BRANCHES;
+        }
+        return new BranchCoverage(count, cover);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public float getPercentValue() {
+        return getLineCoverage().getPercentValue();
+    }
+
+    /**
+     * Writes the instrumented lines, as the gap from the previous line, their hit counts and their branch counters.
+     *
+     * @param out The output.
+     *
+     * @throws IOException if the output could not be written.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        writeVarInt(out, size());
+        int previous = -1;
+        for (int line = lines.nextSetBit(0); line >= 0; line = lines.nextSetBit(line + 1)) {
+            writeVarInt(out, line - previous);
+            writeVarInt(out, hits[line]);
+            writeVarInt(out, branches[line]);
+            previous = line;
+        }
+    }
+
+    /**
+     * Reads line details written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in The input.
+     *
+     * @return The line details.
+     *
+     * @throws IOException if the input could not be read.
+     */
+    public static LineDetails readFrom(DataInput in) throws IOException {
+        int size = readVarInt(in);
+        int[] lineNumbers = new int[size];
+        int[] lineHits = new int[size];
+        int[] lineBranches = new int[size];
+        int line = -1;
+        for (int i = 0; i < size; i++) {
+            line += readVarInt(in);
+            lineNumbers[i] = line;
+            lineHits[i] = readVarInt(in);
+            lineBranches[i] = readVarInt(in);
+        }
+        LineDetails result = new LineDetails(line + 1);
+        for (int i = 0; i < size; i++) {
+            result.lines.set(lineNumbers[i]);
+            result.hits[lineNumbers[i]] = lineHits[i];
+            result.branches[lineNumbers[i]] = lineBranches[i];
+        }
+        return result;
+    }
+
+    private void ensureCapacity(int line) {
+        if (line < 0) {
+            throw new IndexOutOfBoundsException("Line number cannot be negative: " + line);
+        }
+        if (line >= hits.length) {
+            int capacity = Math.max(line + 1, hits.length * 2);
+            int[] newHits = new int[capacity];
+            System.arraycopy(hits, 0, newHits, 0, hits.length);
+            hits = newHits;
+            int[] newBranches = new int[capacity];
+            System.arraycopy(branches, 0, newBranches, 0, branches.length);
+            branches = newBranches;
+        }
+    }
+
+    private static int saturatedAdd(int a, int b) {
+        long sum = (long) a + b;
+        return sum > Integer.MAX_VALUE ? Integer.MAX_VALUE : sum < 0 ? 0 : (int) sum;
+    }
+
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+}
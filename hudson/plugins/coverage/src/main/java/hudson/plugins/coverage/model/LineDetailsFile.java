@@ -0,0 +1,158 @@
+package hudson.plugins.coverage.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reads and writes the {@link LineDetails} of all the source files of a coverage result as a binary sidecar file in
+ * the build directory, so the line by line coverage does not need to be kept in memory with the build.
+ * <p/>
+ * The file holds a magic number, a version and the number of source files, followed by the key of each source file
+ * and its line details. The key is the full name of the file level element and the name of the instance, e.g.
+ * {@code /java/package/file:search/BinarySearch.java}.
+ */
+public final class LineDetailsFile {
+
+    /**
+     * The name of the sidecar file in the build directory.
+     */
+    public static final String FILE_NAME = "coverage-lines.bin";
+
+    private static final int MAGIC = 0x434f564c;
+
+    private static final int VERSION = 1;
+
+    private LineDetailsFile() {
+    }
+
+    /**
+     * Returns the sidecar file of a build.
+     *
+     * @param buildDir The build directory.
+     *
+     * @return The sidecar file.
+     */
+    public static File getFile(File buildDir) {
+        return new File(buildDir, FILE_NAME);
+    }
+
+    /**
+     * Returns the key of a file level instance.
+     *
+     * @param instance The file level instance.
+     *
+     * @return The key of the instance in the sidecar file.
+     */
+    public static String getKey(Instance instance) {
+        return instance.getElement().getFullName() + ":" + instance.getName();
+    }
+
+    /**
+     * Collects the line details of the file level instances of a coverage result.
+     *
+     * @param root The root instance.
+     *
+     * @return The line details keyed by {@link #getKey(Instance)}.
+     */
+    public static Map<String, LineDetails> collect(Instance root) {
+        Map<String, LineDetails> result = new TreeMap<String, LineDetails>();
+        collect(root, result);
+        return result;
+    }
+
+    private static void collect(Instance instance, Map<String, LineDetails> result) {
+        if (instance.getElement().isFileLevel()) {
+            LineDetails details = (LineDetails) instance.getMeasurement(Metric.LINE_DETAILS);
+            if (details != null) {
+                result.put(getKey(instance), details);
+            }
+            return;
+        }
+        for (Element element : instance.getChildElements()) {
+            for (Instance child : instance.getChildren(element).values()) {
+                collect(child, result);
+            }
+        }
+    }
+
+    /**
+     * Writes the line details of a coverage result, replacing the file if it exists.
+     *
+     * @param file The sidecar file.
+     * @param root The root instance.
+     *
+     * @throws IOException if the file could not be written.
+     */
+    public static void write(File file, Instance root) throws IOException {
+        write(file, collect(root));
+    }
+
+    /**
+     * Writes line details, replacing the file if it exists.
+     *
+     * @param file    The sidecar file.
+     * @param details The line details keyed by {@link #getKey(Instance)}.
+     *
+     * @throws IOException if the file could not be written.
+     */
+    public static void write(File file, Map<String, LineDetails> details) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(details.size());
+            for (Map.Entry<String, LineDetails> entry : details.entrySet()) {
+                out.writeUTF(entry.getKey());
+                entry.getValue().writeTo(out);
+            }
+        } finally {
+            out.close();
+        }
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Could not replace " + file);
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Could not rename " + tmp + " to " + file);
+        }
+    }
+
+    /**
+     * Reads the line details of a coverage result.
+     *
+     * @param file The sidecar file.
+     *
+     * @return The line details keyed by {@link #getKey(Instance)}.
+     *
+     * @throws IOException if the file could not be read.
+     */
+    public static Map<String, LineDetails> read(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a line details file");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported line details file version " + version + ": " + file);
+            }
+            int size = in.readInt();
+            Map<String, LineDetails> result = new TreeMap<String, LineDetails>();
+            for (int i = 0; i < size; i++) {
+                String key = in.readUTF();
+                result.put(key, LineDetails.readFrom(in));
+            }
+            return result;
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -28,6 +28,11 @@ public final class Metric implements Comparable<Metric> {
      */
     public static final Metric BRANCH_COVERAGE = Metric.newMetric("branch", BranchCoverage.class);
 
+    /**
+     * Standard metric for the line by line coverage of a source file.
+     */
+    public static final Metric LINE_DETAILS = Metric.newMetric("lines", LineDetails.class);
+
     /**
      * The name of this metric.
      */
@@ -38,4 +38,11 @@ public interface Recorder extends Serializable {
      */
     void parseSourceResults(Instance sourceFile, File measurementFile, Collection<Object> memos);
 
+    /**
+     * Persist any results that are not kept with the build, called once the results have been parsed and rolled up.
+     *
+     * @param root The instance that the results were recorded against.
+     */
+    void persistResults(Instance root);
+
 }
@@ -19,6 +19,10 @@ public final class StandardModel implements Model {
     }
 
     public void apply(Instance instance) {
+        if (instance.getChildElements().isEmpty()) {
+            // the leaf measurements are set by the recorders
+            return;
+        }
         int lineCount = 0;
         int lineCover = 0;
         int branchCount = 0;
@@ -9,7 +9,7 @@ package hudson.plugins.coverage.model.measurements;
 public class BranchCoverage extends BasicCoverage {
 
     public BranchCoverage(int count, int cover) {
-        super(count, cover);
+        super(cover, count);
     }
 
 }
\ No newline at end of file
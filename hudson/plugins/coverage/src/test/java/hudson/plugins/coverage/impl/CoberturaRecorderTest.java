@@ -1,9 +1,15 @@
 package hudson.plugins.coverage.impl;
 
 import hudson.plugins.coverage.model.Instance;
+import hudson.plugins.coverage.model.JavaModel;
+import hudson.plugins.coverage.model.LineDetails;
+import hudson.plugins.coverage.model.LineDetailsFile;
 import hudson.plugins.coverage.model.Metric;
+import hudson.plugins.coverage.model.measurements.BasicCoverage;
+import hudson.plugins.coverage.model.measurements.BranchCoverage;
 import hudson.plugins.coverage.model.measurements.LineCoverage;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.junit.Assert.assertThat;
 import org.junit.Test;
 import org.codehaus.stax2.XMLInputFactory2;
@@ -13,9 +19,20 @@ import org.codehaus.stax2.XMLStreamReader2;
 
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.events.XMLEvent;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Created by IntelliJ IDEA.
@@ -40,4 +57,187 @@ public class CoberturaRecorderTest {
                 LineCoverage.class.cast(results.getMeasurement(Metric.LINE_COVERAGE)).getCover(),
                 is(0));
     }
+
+    @Test
+    public void classesAreParsedFromTheirRanges() throws URISyntaxException {
+        File resultsFile = new File(getClass().getResource("cobertura-coverage-with-data.xml").toURI());
+        CoberturaRecorder instance =
+                new CoberturaRecorder(Collections.singleton(resultsFile), resultsFile.getParentFile());
+        Instance results = Instance.newInstance(Collections.singleton(instance));
+        Instance search = results.getChildren(JavaModel.LANGUAGE).get("").getChildren(JavaModel.PACKAGE).get("search");
+        Instance binarySearch = search.getChildren(JavaModel.FILE).get("search/BinarySearch.java")
+                .getChildren(JavaModel.CLASS).get("search.BinarySearch");
+        assertThat("Methods of the class", binarySearch.getChildren(JavaModel.METHOD).size(), is(2));
+        assertThat("Covered count of lines",
+                LineCoverage.class.cast(results.getMeasurement(Metric.LINE_COVERAGE)).getCover(),
+                is(27));
+        assertThat("Total count of branches",
+                BranchCoverage.class.cast(results.getMeasurement(Metric.BRANCH_COVERAGE)).getCount(),
+                is(12));
+        assertThat("Covered count of branches",
+                BranchCoverage.class.cast(results.getMeasurement(Metric.BRANCH_COVERAGE)).getCover(),
+                is(9));
+    }
+
+    @Test
+    public void parallelParsingRollsUpTheSameResults() throws URISyntaxException {
+        File resultsFile = new File(getClass().getResource("cobertura-coverage-with-data.xml").toURI());
+        Instance sequential = Instance.newInstance(Collections.singleton(
+                new CoberturaRecorder(Collections.singleton(resultsFile), resultsFile.getParentFile())), 1);
+        Instance parallel = Instance.newInstance(Collections.singleton(
+                new CoberturaRecorder(Collections.singleton(resultsFile), resultsFile.getParentFile())), 4);
+        for (Metric metric : new Metric[]{Metric.LINE_COVERAGE, Metric.BRANCH_COVERAGE}) {
+            BasicCoverage expected = BasicCoverage.class.cast(sequential.getMeasurement(metric));
+            BasicCoverage actual = BasicCoverage.class.cast(parallel.getMeasurement(metric));
+            assertThat("Covered count of " + metric.getName(), actual.getCover(), is(expected.getCover()));
+            assertThat("Total count of " + metric.getName(), actual.getCount(), is(expected.getCount()));
+        }
+    }
+
+    @Test
+    public void classesAreIndexedByByteRange() throws Exception {
+        File resultsFile = new File(getClass().getResource("cobertura-coverage-with-data.xml").toURI());
+        assertClassesAreParsedFromRanges(resultsFile, "UTF-8");
+    }
+
+    @Test
+    public void byteRangesSkipMultiByteCharacters() throws Exception {
+        // a byte order mark, and 2, 3 and 4 byte characters before and inside the classes
+        File resultsFile = copyWithComments(new byte[]{(byte) 0xef, (byte) 0xbb, (byte) 0xbf},
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>", "\u00e9\u20ac\ud834\udd1e", "UTF-8");
+        try {
+            assertClassesAreParsedFromRanges(resultsFile, "UTF-8");
+        } finally {
+            resultsFile.delete();
+        }
+    }
+
+    @Test
+    public void byteRangesOfASingleByteEncoding() throws Exception {
+        File resultsFile = copyWithComments(new byte[0],
+                "<?xml version='1.0' encoding='ISO-8859-1'?>", "\u00e9\u00e8\u00ea", "ISO-8859-1");
+        try {
+            assertClassesAreParsedFromRanges(resultsFile, "ISO-8859-1");
+        } finally {
+            resultsFile.delete();
+        }
+    }
+
+    @Test
+    public void lineDetailsAreWrittenToTheBuildDirectory() throws Exception {
+        File resultsFile = new File(getClass().getResource("cobertura-coverage-with-data.xml").toURI());
+        File buildDir = File.createTempFile("build", "");
+        assertThat(buildDir.delete() && buildDir.mkdir(), is(true));
+        File linesFile = LineDetailsFile.getFile(buildDir);
+        try {
+            Instance results = Instance.newInstance(Collections.singleton(
+                    new CoberturaRecorder(Collections.singleton(resultsFile), resultsFile.getParentFile(), buildDir)));
+            Map<String, LineDetails> expected = LineDetailsFile.collect(results);
+            assertThat("Source files", expected.size(), is(4));
+
+            Map<String, LineDetails> actual = LineDetailsFile.read(linesFile);
+            assertThat(actual.keySet(), is(expected.keySet()));
+            for (Map.Entry<String, LineDetails> entry : expected.entrySet()) {
+                LineDetails expectedDetails = entry.getValue();
+                LineDetails actualDetails = actual.get(entry.getKey());
+                assertThat(entry.getKey(), actualDetails.size(), is(expectedDetails.size()));
+                assertThat(entry.getKey(), actualDetails.getLastLine(), is(expectedDetails.getLastLine()));
+                for (int line = 0; line <= expectedDetails.getLastLine(); line++) {
+                    assertThat(actualDetails.isInstrumented(line), is(expectedDetails.isInstrumented(line)));
+                    assertThat(actualDetails.getLineCount(line), is(expectedDetails.getLineCount(line)));
+                    assertThat(actualDetails.getBranches(line), is(expectedDetails.getBranches(line)));
+                    assertThat(actualDetails.getCoveredBranches(line), is(expectedDetails.getCoveredBranches(line)));
+                }
+            }
+            LineDetails binarySearch = actual.get("/java/package/file:search/BinarySearch.java");
+            assertThat(binarySearch.getLineCoverage().getCount(), is(12));
+            assertThat(binarySearch.getLineCoverage().getCover(), is(11));
+        } finally {
+            linesFile.delete();
+            buildDir.delete();
+        }
+    }
+
+    @Test
+    public void lineDetailsAreNotWrittenWithoutABuildDirectory() throws Exception {
+        File resultsFile = new File(getClass().getResource("cobertura-coverage-with-data.xml").toURI());
+        Instance.newInstance(Collections.singleton(
+                new CoberturaRecorder(Collections.singleton(resultsFile), resultsFile.getParentFile())));
+        assertThat(LineDetailsFile.getFile(resultsFile.getParentFile()).exists(), is(false));
+    }
+
+    /**
+     * Parses the results, checks that every class was indexed by its byte range rather than copied, and that the
+     * results are the same as those of the test report.
+     */
+    private void assertClassesAreParsedFromRanges(File resultsFile, String encoding) throws Exception {
+        final List<Object> memos = Collections.synchronizedList(new ArrayList<Object>());
+        CoberturaRecorder instance =
+                new CoberturaRecorder(Collections.singleton(resultsFile), resultsFile.getParentFile()) {
+                    @Override
+                    public void parseSourceResults(Instance sourceFile, File measurementFile,
+                                                   Collection<Object> fileMemos) {
+                        memos.addAll(fileMemos);
+                        super.parseSourceResults(sourceFile, measurementFile, fileMemos);
+                    }
+                };
+        Instance results = Instance.newInstance(Collections.singleton(instance));
+        assertThat("Classes", memos.size(), is(4));
+        RandomAccessFile raf = new RandomAccessFile(resultsFile, "r");
+        try {
+            for (Object memo : memos) {
+                assertThat(memo, instanceOf(CoberturaRecorder.ClassRange.class));
+                CoberturaRecorder.ClassRange range = (CoberturaRecorder.ClassRange) memo;
+                assertThat(range.getEncoding(), is(encoding));
+                byte[] bytes = new byte[range.getLength()];
+                raf.seek(range.getOffset());
+                raf.readFully(bytes);
+                String element = new String(bytes, encoding);
+                assertThat(element, element.startsWith("<class ") && element.endsWith("</class>"), is(true));
+            }
+        } finally {
+            raf.close();
+        }
+        assertThat("Covered count of lines",
+                LineCoverage.class.cast(results.getMeasurement(Metric.LINE_COVERAGE)).getCover(),
+                is(27));
+        assertThat("Total count of branches",
+                BranchCoverage.class.cast(results.getMeasurement(Metric.BRANCH_COVERAGE)).getCount(),
+                is(12));
+        assertThat("Covered count of branches",
+                BranchCoverage.class.cast(results.getMeasurement(Metric.BRANCH_COVERAGE)).getCover(),
+                is(9));
+    }
+
+    /**
+     * Copies the test report with another XML declaration, adding a comment before the packages and in every class.
+     */
+    private File copyWithComments(byte[] byteOrderMark, String declaration, String text, String encoding)
+            throws URISyntaxException, IOException {
+        File source = new File(getClass().getResource("cobertura-coverage-with-data.xml").toURI());
+        InputStream in = new FileInputStream(source);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, count);
+            }
+        } finally {
+            in.close();
+        }
+        String report = new String(bytes.toByteArray(), "UTF-8")
+                .replace("<?xml version=\"1.0\"?>", declaration)
+                .replace("<packages>", "<!-- " + text + " --><packages>")
+                .replace("<methods>", "<methods><!-- " + text + " -->");
+        File result = File.createTempFile("cobertura-coverage", ".xml", source.getParentFile());
+        OutputStream out = new FileOutputStream(result);
+        try {
+            out.write(byteOrderMark);
+            out.write(report.getBytes(encoding));
+        } finally {
+            out.close();
+        }
+        return result;
+    }
 }
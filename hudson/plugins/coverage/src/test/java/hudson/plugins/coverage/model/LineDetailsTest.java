@@ -0,0 +1,77 @@
+package hudson.plugins.coverage.model;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+/**
+ * Tests the columnar line coverage store.
+ */
+public class LineDetailsTest extends TestCase {
+
+    public void testTouch() throws Exception {
+        LineDetails details = new LineDetails(4);
+        assertFalse(details.isInstrumented(10));
+        details.touch(10, 0);
+        assertTrue(details.isInstrumented(10));
+        assertFalse(details.isTouched(10));
+        details.touch(10, 3);
+        details.touch(10, 2);
+        assertEquals(5, details.getLineCount(10));
+        assertTrue(details.isCovered(10));
+        assertEquals(10, details.getLastLine());
+        assertEquals(1, details.size());
+    }
+
+    public void testBranches() throws Exception {
+        LineDetails details = new LineDetails();
+        details.touch(3, 1);
+        details.setBranches(3, 1, 2);
+        assertEquals(0.5f, details.getBranchCoverage(3), 0.0001f);
+        assertFalse(details.isCovered(3));
+        details.setBranches(3, 0, 1);
+        assertEquals(2, details.getBranches(3));
+        assertEquals(1, details.getCoveredBranches(3));
+        assertEquals(1.0f, details.getBranchCoverage(4), 0.0001f);
+    }
+
+    public void testAggregation() throws Exception {
+        LineDetails details = new LineDetails();
+        details.touch(1, 1);
+        details.touch(2, 0);
+        details.touch(5, 7);
+        details.setBranches(5, 3, 4);
+        details.touch(9, 0);
+        details.setBranches(9, 0, 2);
+        assertEquals(4, details.getLineCoverage().getCount());
+        assertEquals(2, details.getLineCoverage().getCover());
+        assertEquals(6, details.getBranchCoverage().getCount());
+        assertEquals(3, details.getBranchCoverage().getCover());
+        assertEquals(2, details.getLineCoverage(2, 9).getCount());
+        assertEquals(4, details.getBranchCoverage(2, 9).getCount());
+    }
+
+    public void testWriteAndRead() throws Exception {
+        LineDetails details = new LineDetails();
+        for (int line = 1; line < 1000; line += 3) {
+            details.touch(line, line % 5);
+            if (line % 7 == 0) {
+                details.setBranches(line, line % 3, 2);
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        details.writeTo(new DataOutputStream(bytes));
+        LineDetails read = LineDetails.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(details.size(), read.size());
+        assertEquals(details.getLastLine(), read.getLastLine());
+        for (int line = 0; line <= details.getLastLine(); line++) {
+            assertEquals(details.isInstrumented(line), read.isInstrumented(line));
+            assertEquals(details.getLineCount(line), read.getLineCount(line));
+            assertEquals(details.getBranches(line), read.getBranches(line));
+            assertEquals(details.getCoveredBranches(line), read.getCoveredBranches(line));
+        }
+    }
+}
@@ -25,6 +25,7 @@ public abstract class AbstractBuildReport<T extends AbstractBuild<?, ?>> extends
     private final StatisticsTotalResult totals;
 	private final Integer functionCcnViolationThreshold;
 	private final Integer functionNcssViolationThreshold;
+    private BuildSummary summary;
 
     /**
      * Constructs a new AbstractBuildReport.
@@ -52,6 +53,34 @@ public abstract class AbstractBuildReport<T extends AbstractBuild<?, ?>> extends
     	return functionNcssViolationThreshold;
     }
 
+    /**
+     * Returns the summary of this build for the trend graphs. The summary is computed once, when the build is
+     * published, and kept with the report.
+     *
+     * @return The summary of this build.
+     */
+    public synchronized BuildSummary getBuildSummary() {
+        if (summary == null) {
+            summary = BuildSummary.create(results, functionCcnViolationThreshold, functionNcssViolationThreshold);
+        }
+        return summary;
+    }
+
+    /**
+     * Returns the summary of this build with the violations counted for the given thresholds.
+     *
+     * @param functionCcnViolationThreshold  The function CCN violation threshold.
+     * @param functionNcssViolationThreshold The function NCSS violation threshold.
+     * @return The summary of this build.
+     */
+    public BuildSummary getBuildSummary(Integer functionCcnViolationThreshold, Integer functionNcssViolationThreshold) {
+        BuildSummary buildSummary = getBuildSummary();
+        if (buildSummary.hasThresholds(functionCcnViolationThreshold, functionNcssViolationThreshold)) {
+            return buildSummary;
+        }
+        return BuildSummary.create(results, functionCcnViolationThreshold, functionNcssViolationThreshold);
+    }
+
 	/**
      * The summary of this build report for display on the build index page.
      *
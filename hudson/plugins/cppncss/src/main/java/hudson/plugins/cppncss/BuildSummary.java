@@ -0,0 +1,165 @@
+package hudson.plugins.cppncss;
+
+import hudson.plugins.cppncss.parser.Statistic;
+import hudson.plugins.cppncss.parser.StatisticsResult;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * The totals of one build and its function violation counts for the thresholds that were configured when the build
+ * was published. This is all the trend graphs need, so they do not have to load the statistics of every function of
+ * every build.
+ */
+public final class BuildSummary implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The threshold of a violation count that was not configured.
+     */
+    public static final int NO_THRESHOLD = -1;
+
+    private final long files;
+    private final long functions;
+    private final long ncss;
+    private final long ccn;
+    private final int ccnThreshold;
+    private final int ncssThreshold;
+    private final long ccnViolations;
+    private final long ncssViolations;
+
+    public BuildSummary(long files, long functions, long ncss, long ccn, int ccnThreshold, int ncssThreshold,
+                        long ccnViolations, long ncssViolations) {
+        this.files = files;
+        this.functions = functions;
+        this.ncss = ncss;
+        this.ccn = ccn;
+        this.ccnThreshold = ccnThreshold;
+        this.ncssThreshold = ncssThreshold;
+        this.ccnViolations = ccnViolations;
+        this.ncssViolations = ncssViolations;
+    }
+
+    /**
+     * Summarises the results of a build, counting the violations of both thresholds in one pass over the functions.
+     *
+     * @param results        The results of the build.
+     * @param ccnThreshold   The function CCN violation threshold, may be <code>null</code>.
+     * @param ncssThreshold  The function NCSS violation threshold, may be <code>null</code>.
+     * @return The summary.
+     */
+    public static BuildSummary create(StatisticsResult results, Integer ccnThreshold, Integer ncssThreshold) {
+        Statistic fileTotal = StatisticsResult.total(results).getFileTotal();
+        int ccnLimit = toThreshold(ccnThreshold);
+        int ncssLimit = toThreshold(ncssThreshold);
+        long ccnViolations = 0;
+        long ncssViolations = 0;
+        for (Statistic statistic : results.getFunctionResults()) {
+            if (ccnLimit != NO_THRESHOLD && statistic.getCcn() > ccnLimit) {
+                ccnViolations++;
+            }
+            if (ncssLimit != NO_THRESHOLD && statistic.getNcss() > ncssLimit) {
+                ncssViolations++;
+            }
+        }
+        return new BuildSummary(results.getFileResults().size(), fileTotal.getFunctions(), fileTotal.getNcss(),
+                fileTotal.getCcn(), ccnLimit, ncssLimit, ccnViolations, ncssViolations);
+    }
+
+    private static int toThreshold(Integer threshold) {
+        return threshold == null || threshold.intValue() < 0 ? NO_THRESHOLD : threshold.intValue();
+    }
+
+    /**
+     * Returns <code>true</code> if the violations were counted for these thresholds.
+     *
+     * @param ccnThreshold  The function CCN violation threshold, may be <code>null</code>.
+     * @param ncssThreshold The function NCSS violation threshold, may be <code>null</code>.
+     * @return <code>true</code> if the violations were counted for these thresholds.
+     */
+    public boolean hasThresholds(Integer ccnThreshold, Integer ncssThreshold) {
+        return this.ccnThreshold == toThreshold(ccnThreshold) && this.ncssThreshold == toThreshold(ncssThreshold);
+    }
+
+    public long getFiles() {
+        return files;
+    }
+
+    public long getFunctions() {
+        return functions;
+    }
+
+    public long getNcss() {
+        return ncss;
+    }
+
+    public long getCcn() {
+        return ccn;
+    }
+
+    public int getCcnThreshold() {
+        return ccnThreshold;
+    }
+
+    public int getNcssThreshold() {
+        return ncssThreshold;
+    }
+
+    public long getCcnViolations() {
+        return ccnViolations;
+    }
+
+    public long getNcssViolations() {
+        return ncssViolations;
+    }
+
+    /**
+     * Writes the summary as a fixed size record of {@link TrendIndex#RECORD_SIZE} bytes, less the build number.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeLong(files);
+        out.writeLong(functions);
+        out.writeLong(ncss);
+        out.writeLong(ccn);
+        out.writeInt(ccnThreshold);
+        out.writeInt(ncssThreshold);
+        out.writeLong(ccnViolations);
+        out.writeLong(ncssViolations);
+    }
+
+    static BuildSummary readFrom(DataInput in) throws IOException {
+        return new BuildSummary(in.readLong(), in.readLong(), in.readLong(), in.readLong(), in.readInt(),
+                in.readInt(), in.readLong(), in.readLong());
+    }
+
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        BuildSummary that = (BuildSummary) o;
+
+        return files == that.files
+                && functions == that.functions
+                && ncss == that.ncss
+                && ccn == that.ccn
+                && ccnThreshold == that.ccnThreshold
+                && ncssThreshold == that.ncssThreshold
+                && ccnViolations == that.ccnViolations
+                && ncssViolations == that.ncssViolations;
+    }
+
+    public int hashCode() {
+        int result = (int) (files ^ (files >>> 32));
+        result = 31 * result + (int) (functions ^ (functions >>> 32));
+        result = 31 * result + (int) (ncss ^ (ncss >>> 32));
+        result = 31 * result + (int) (ccn ^ (ccn >>> 32));
+        result = 31 * result + ccnThreshold;
+        result = 31 * result + ncssThreshold;
+        result = 31 * result + (int) (ccnViolations ^ (ccnViolations >>> 32));
+        result = 31 * result + (int) (ncssViolations ^ (ncssViolations >>> 32));
+        return result;
+    }
+}
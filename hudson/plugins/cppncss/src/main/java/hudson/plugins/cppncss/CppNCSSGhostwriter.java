@@ -10,6 +10,7 @@ import hudson.plugins.cppncss.parser.Statistic;
 import hudson.plugins.cppncss.parser.StatisticsResult;
 import hudson.plugins.helpers.BuildProxy;
 import hudson.plugins.helpers.Ghostwriter;
+import hudson.plugins.helpers.GraphHelper;
 
 import java.io.File;
 import java.io.IOException;
@@ -64,6 +65,18 @@ public class CppNCSSGhostwriter
 			}
 	    	build.setResult(buildResult);
     	}
+        CppNCSSBuildIndividualReport report = build.getAction(CppNCSSBuildIndividualReport.class);
+        if (report != null) {
+            // creates the index from the earlier builds the first time, then appends this build
+            GraphHelper.getTrend(build.getProject());
+            try {
+                TrendIndex.append(TrendIndex.getFile(build.getProject().getRootDir()), build.getNumber(),
+                        report.getBuildSummary());
+            } catch (IOException e) {
+                listener.getLogger().println("Could not update the " + PluginImpl.DISPLAY_NAME + " trend index");
+                e.printStackTrace(listener.getLogger());
+            }
+        }
         return true;
     }
 
@@ -89,6 +102,8 @@ public class CppNCSSGhostwriter
         }
         if (results != null) {
             CppNCSSBuildIndividualReport action = new CppNCSSBuildIndividualReport(results, functionCcnViolationThreshold, functionNcssViolationThreshold);
+            // computed here so the summary is saved with the build
+            action.getBuildSummary();
             
             if (targets != null && targets.length > 0) {
                 HealthReport r = null;
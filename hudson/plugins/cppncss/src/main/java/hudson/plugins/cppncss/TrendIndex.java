@@ -0,0 +1,164 @@
+package hudson.plugins.cppncss;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The project level, append-only index of the {@link BuildSummary} of each build, so the trend graphs read one file
+ * instead of loading every build report.
+ * <p/>
+ * The file is a magic number and a version followed by fixed size records of the build number and the summary. A
+ * build that is published again appends a new record, the last record of a build number wins. A record that was
+ * only partly written, e.g. when the master died during the append, is ignored.
+ */
+public final class TrendIndex {
+
+    /**
+     * The name of the index file in the project directory.
+     */
+    public static final String FILE_NAME = "cppncss-trend.bin";
+
+    /**
+     * The size of one record, the build number and the summary.
+     */
+    public static final int RECORD_SIZE = 4 + 6 * 8 + 2 * 4;
+
+    private static final int MAGIC = 0x43505054;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * Do not instantiate TrendIndex.
+     */
+    private TrendIndex() {
+    }
+
+    /**
+     * Returns the index file of a project.
+     *
+     * @param projectRootDir The project directory.
+     * @return The index file.
+     */
+    public static File getFile(File projectRootDir) {
+        return new File(projectRootDir, FILE_NAME);
+    }
+
+    /**
+     * Appends the summary of a build to the index, creating the index if it does not exist.
+     *
+     * @param file        The index file.
+     * @param buildNumber The build number.
+     * @param summary     The summary of the build.
+     * @throws IOException if the index could not be written.
+     */
+    public static synchronized void append(File file, int buildNumber, BuildSummary summary) throws IOException {
+        // build the whole record first so that it is appended with a single write
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE + RECORD_SIZE);
+        DataOutputStream record = new DataOutputStream(bytes);
+        boolean create = !file.exists() || file.length() < HEADER_SIZE;
+        if (create) {
+            record.writeInt(MAGIC);
+            record.writeInt(VERSION);
+        } else {
+            long partial = (file.length() - HEADER_SIZE) % RECORD_SIZE;
+            if (partial != 0) {
+                // drop the partly written record rather than shifting every record after it
+                truncate(file, file.length() - partial);
+            }
+        }
+        record.writeInt(buildNumber);
+        summary.writeTo(record);
+        record.flush();
+        FileOutputStream out = new FileOutputStream(file, !create);
+        try {
+            bytes.writeTo(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Replaces the index with the summaries of the builds, used to create the index from the build reports of a
+     * project that was published before the index existed.
+     *
+     * @param file      The index file.
+     * @param summaries The summaries keyed by build number.
+     * @throws IOException if the index could not be written.
+     */
+    public static synchronized void write(File file, SortedMap<Integer, BuildSummary> summaries) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (Map.Entry<Integer, BuildSummary> entry : summaries.entrySet()) {
+                out.writeInt(entry.getKey().intValue());
+                entry.getValue().writeTo(out);
+            }
+        } finally {
+            out.close();
+        }
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Could not replace " + file);
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Could not rename " + tmp + " to " + file);
+        }
+    }
+
+    /**
+     * Reads the index.
+     *
+     * @param file The index file.
+     * @return The summaries keyed by build number, empty if the index does not exist.
+     * @throws IOException if the index could not be read.
+     */
+    public static synchronized SortedMap<Integer, BuildSummary> read(File file) throws IOException {
+        SortedMap<Integer, BuildSummary> result = new TreeMap<Integer, BuildSummary>();
+        if (!file.exists()) {
+            return result;
+        }
+        long records = (file.length() - HEADER_SIZE) / RECORD_SIZE;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a trend index");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported trend index version " + version + ": " + file);
+            }
+            for (long i = 0; i < records; i++) {
+                int buildNumber = in.readInt();
+                result.put(Integer.valueOf(buildNumber), BuildSummary.readFrom(in));
+            }
+        } catch (EOFException e) {
+            throw new IOException(file + " is truncated");
+        } finally {
+            in.close();
+        }
+        return result;
+    }
+
+    private static void truncate(File file, long length) throws IOException {
+        FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            out.getChannel().truncate(length);
+        } finally {
+            out.close();
+        }
+    }
+}
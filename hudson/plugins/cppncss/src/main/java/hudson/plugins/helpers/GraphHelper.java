@@ -1,16 +1,24 @@
 package hudson.plugins.helpers;
 
 import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
 import hudson.plugins.cppncss.AbstractBuildReport;
-import hudson.plugins.cppncss.parser.Statistic;
+import hudson.plugins.cppncss.BuildSummary;
+import hudson.plugins.cppncss.TrendIndex;
 import hudson.util.ChartUtil;
 import hudson.util.DataSetBuilder;
 import hudson.util.ShiftedCategoryAxis;
 import hudson.util.ChartUtil.NumberOnlyBuildLabel;
 
 import java.awt.Color;
+import java.io.File;
 import java.io.IOException;
-import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.JFreeChart;
@@ -40,10 +48,12 @@ public class GraphHelper {
 	
 	public interface DataCollector {
 		
-		long getCollectedNumber(AbstractBuildReport<?> action);
+		long getCollectedNumber(BuildSummary summary);
 		String getTitle();
 	}
 	
+    private static final Logger LOGGER = Logger.getLogger(GraphHelper.class.getName());
+
     /**
      * Do not instantiate GraphHelper.
      */
@@ -66,18 +76,21 @@ public class GraphHelper {
 
     public static JFreeChart buildChart(final AbstractBuild<?, ?> build, final Integer functionCcnViolationThreshold, final Integer functionNcssViolationThreshold) {
     	
+        // one read of the trend index for all the data sets
+        final Map<AbstractBuild<?, ?>, BuildSummary> summaries = collectSummaries(build, functionCcnViolationThreshold, functionNcssViolationThreshold);
+
         final JFreeChart chart = ChartFactory.createStackedAreaChart(
                 null,                     // chart title
                 null,                     // unused
                 "Total Files",            // range axis label
-                buildDataset(build , new DataCollector() {
+                buildDataset(summaries, new DataCollector() {
 					
 					public String getTitle() {
 						return "Files";
 					}
 					
-					public long getCollectedNumber(AbstractBuildReport action) {
-						return action.getResults().getFileResults().size();
+					public long getCollectedNumber(BuildSummary summary) {
+						return summary.getFiles();
 					}
 				}),      // data
                 PlotOrientation.VERTICAL, // orientation
@@ -114,14 +127,14 @@ public class GraphHelper {
 		//Second
         build_category(build, chart, index, Color.BLUE, "Non Commenting Source Statements", new CategoryDatasetBuilder() {
 			public CategoryDataset buildData() {
-				return buildDataset(build, new DataCollector() {
+				return buildDataset(summaries, new DataCollector() {
 					
 					public String getTitle() {
 						return "NCSS";
 					}
 					
-					public long getCollectedNumber(AbstractBuildReport action) {
-						return action.getTotals().getFileTotal().getNcss();
+					public long getCollectedNumber(BuildSummary summary) {
+						return summary.getNcss();
 					}
 				});
 			}
@@ -131,14 +144,14 @@ public class GraphHelper {
       //Third
         build_category(build, chart, index, Color.GREEN, "McCabe's Cyclomatic Number", new CategoryDatasetBuilder() {
 			public CategoryDataset buildData() {
-				return buildDataset(build, new DataCollector() {
+				return buildDataset(summaries, new DataCollector() {
 					
 					public String getTitle() {
 						return "CCN";
 					}
 					
-					public long getCollectedNumber(AbstractBuildReport action) {
-						return action.getTotals().getFileTotal().getCcn();
+					public long getCollectedNumber(BuildSummary summary) {
+						return summary.getCcn();
 					}
 				});
 			}
@@ -148,14 +161,14 @@ public class GraphHelper {
       //Fouth
         build_category(build, chart, index, Color.ORANGE, "Total Functions", new CategoryDatasetBuilder() {
 			public CategoryDataset buildData() {
-				return buildDataset(build, new DataCollector() {
+				return buildDataset(summaries, new DataCollector() {
 					
 					public String getTitle() {
 						return "Functions";
 					}
 					
-					public long getCollectedNumber(AbstractBuildReport action) {
-						return action.getTotals().getFileTotal().getFunctions();
+					public long getCollectedNumber(BuildSummary summary) {
+						return summary.getFunctions();
 					}
 				});
 			}
@@ -166,21 +179,14 @@ public class GraphHelper {
       //Fifth
         build_category(build, chart, index, Color.CYAN, "CCN Violated Functions", new CategoryDatasetBuilder() {
 			public CategoryDataset buildData() {
-				return buildDataset(build, new DataCollector() {
+				return buildDataset(summaries, new DataCollector() {
 					
 					public String getTitle() {
 						return "CCNVF";
 					}
 					
-					public long getCollectedNumber(AbstractBuildReport action) {
-						Collection<Statistic> functionResults = action.getResults().getFunctionResults();
-						int ccnViolatedFunctions = 0;
-		            	
-		            	for (Statistic statistic : functionResults) {
-							if(statistic.getCcn() > functionCcnViolationThreshold.intValue())
-								ccnViolatedFunctions ++;
-						}
-						return ccnViolatedFunctions;
+					public long getCollectedNumber(BuildSummary summary) {
+						return summary.getCcnViolations();
 					}
 				});
 			}
@@ -190,21 +196,14 @@ public class GraphHelper {
       //Sixth
         build_category(build, chart, index, Color.MAGENTA, "NCSS Violated Functions", new CategoryDatasetBuilder() {
 			public CategoryDataset buildData() {
-				return buildDataset(build, new DataCollector() {
+				return buildDataset(summaries, new DataCollector() {
 					
 					public String getTitle() {
 						return "NCSSVF";
 					}
 					
-					public long getCollectedNumber(AbstractBuildReport action) {
-						Collection<Statistic> functionResults = action.getResults().getFunctionResults();
-		            	int ncssViolatedFunctions = 0;
-		            	
-		            	for (Statistic statistic : functionResults) {
-							if(statistic.getNcss() > functionNcssViolationThreshold.intValue())
-								ncssViolatedFunctions ++;
-						}
-						return ncssViolatedFunctions;
+					public long getCollectedNumber(BuildSummary summary) {
+						return summary.getNcssViolations();
 					}
 				});
 			}
@@ -229,16 +228,77 @@ public class GraphHelper {
 		    categoryPlot.setRenderer(index,rendu);
 	}
     
-	private static CategoryDataset buildDataset(AbstractBuild<?, ?> build, DataCollector collector) {
+	private static CategoryDataset buildDataset(Map<AbstractBuild<?, ?>, BuildSummary> summaries, DataCollector collector) {
     	DataSetBuilder<String, NumberOnlyBuildLabel> builder = new DataSetBuilder<String, NumberOnlyBuildLabel>();
     	
-    	for (AbstractBuild<?, ?> lastBuild = build; lastBuild != null; lastBuild = lastBuild.getPreviousBuild()) { 
-        	ChartUtil.NumberOnlyBuildLabel label = new ChartUtil.NumberOnlyBuildLabel(lastBuild);
-            AbstractBuildReport action = lastBuild.getAction(AbstractBuildReport.class);
-            if (action != null) {
-            	builder.add(collector.getCollectedNumber(action), collector.getTitle(), label);
-            }
+    	for (Map.Entry<AbstractBuild<?, ?>, BuildSummary> entry : summaries.entrySet()) { 
+        	ChartUtil.NumberOnlyBuildLabel label = new ChartUtil.NumberOnlyBuildLabel(entry.getKey());
+            builder.add(collector.getCollectedNumber(entry.getValue()), collector.getTitle(), label);
         }
         return builder.build();
 	}
+
+    /**
+     * Returns the summaries of the build and the builds before it, newest first. The summaries come from the trend
+     * index, only the builds whose summary was counted for other violation thresholds load their report.
+     *
+     * @param build                          The last build of the graph.
+     * @param functionCcnViolationThreshold  The function CCN violation threshold.
+     * @param functionNcssViolationThreshold The function NCSS violation threshold.
+     * @return The summaries keyed by build.
+     */
+    private static Map<AbstractBuild<?, ?>, BuildSummary> collectSummaries(AbstractBuild<?, ?> build, Integer functionCcnViolationThreshold, Integer functionNcssViolationThreshold) {
+        AbstractProject<?, ?> project = build.getProject();
+        SortedMap<Integer, BuildSummary> trend = getTrend(project).headMap(Integer.valueOf(build.getNumber() + 1));
+        Map<AbstractBuild<?, ?>, BuildSummary> result = new LinkedHashMap<AbstractBuild<?, ?>, BuildSummary>();
+        Integer[] numbers = trend.keySet().toArray(new Integer[trend.size()]);
+        for (int i = numbers.length - 1; i >= 0; i--) {
+            AbstractBuild<?, ?> summaryBuild = project.getBuildByNumber(numbers[i].intValue());
+            if (summaryBuild == null) {
+                // deleted since it was published
+                continue;
+            }
+            BuildSummary summary = trend.get(numbers[i]);
+            if (!summary.hasThresholds(functionCcnViolationThreshold, functionNcssViolationThreshold)) {
+                AbstractBuildReport action = summaryBuild.getAction(AbstractBuildReport.class);
+                if (action == null) {
+                    continue;
+                }
+                summary = action.getBuildSummary(functionCcnViolationThreshold, functionNcssViolationThreshold);
+            }
+            result.put(summaryBuild, summary);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the trend index of a project. The first time the index is needed for a project that was published
+     * before the index existed it is created from the build reports.
+     *
+     * @param project The project.
+     * @return The summaries keyed by build number.
+     */
+    public static SortedMap<Integer, BuildSummary> getTrend(AbstractProject<?, ?> project) {
+        File file = TrendIndex.getFile(project.getRootDir());
+        if (file.exists()) {
+            try {
+                return TrendIndex.read(file);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not read the trend index " + file + ", rebuilding it", e);
+            }
+        }
+        SortedMap<Integer, BuildSummary> summaries = new TreeMap<Integer, BuildSummary>();
+        for (AbstractBuild<?, ?> build = project.getLastBuild(); build != null; build = build.getPreviousBuild()) {
+            AbstractBuildReport action = build.getAction(AbstractBuildReport.class);
+            if (action != null) {
+                summaries.put(Integer.valueOf(build.getNumber()), action.getBuildSummary());
+            }
+        }
+        try {
+            TrendIndex.write(file, summaries);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not write the trend index " + file, e);
+        }
+        return summaries;
+    }
 }
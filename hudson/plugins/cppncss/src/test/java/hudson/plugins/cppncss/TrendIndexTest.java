@@ -0,0 +1,90 @@
+package hudson.plugins.cppncss;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Tests the project level trend index.
+ */
+public class TrendIndexTest extends TestCase {
+
+    private File file;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = File.createTempFile("cppncss-trend", ".bin");
+        file.delete();
+    }
+
+    protected void tearDown() throws Exception {
+        file.delete();
+        super.tearDown();
+    }
+
+    private static BuildSummary summary(int seed) {
+        return new BuildSummary(seed, seed * 2, seed * 100, seed * 10, 10, 100, seed % 7, seed % 3);
+    }
+
+    public void testMissingIndexIsEmpty() throws Exception {
+        assertTrue(TrendIndex.read(file).isEmpty());
+    }
+
+    public void testAppendAndRead() throws Exception {
+        for (int i = 1; i <= 50; i++) {
+            TrendIndex.append(file, i, summary(i));
+        }
+        assertEquals(8 + 50 * TrendIndex.RECORD_SIZE, file.length());
+        SortedMap<Integer, BuildSummary> trend = TrendIndex.read(file);
+        assertEquals(50, trend.size());
+        for (int i = 1; i <= 50; i++) {
+            assertEquals(summary(i), trend.get(Integer.valueOf(i)));
+        }
+    }
+
+    public void testLastRecordOfABuildWins() throws Exception {
+        TrendIndex.append(file, 1, summary(1));
+        TrendIndex.append(file, 2, summary(2));
+        TrendIndex.append(file, 1, summary(3));
+        SortedMap<Integer, BuildSummary> trend = TrendIndex.read(file);
+        assertEquals(2, trend.size());
+        assertEquals(summary(3), trend.get(Integer.valueOf(1)));
+    }
+
+    public void testPartialRecordIsIgnored() throws Exception {
+        TrendIndex.append(file, 1, summary(1));
+        TrendIndex.append(file, 2, summary(2));
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(raf.length() - 5);
+        } finally {
+            raf.close();
+        }
+        assertEquals(1, TrendIndex.read(file).size());
+        TrendIndex.append(file, 3, summary(3));
+        SortedMap<Integer, BuildSummary> trend = TrendIndex.read(file);
+        assertEquals(2, trend.size());
+        assertEquals(summary(3), trend.get(Integer.valueOf(3)));
+    }
+
+    public void testWriteReplacesTheIndex() throws Exception {
+        TrendIndex.append(file, 1, summary(1));
+        SortedMap<Integer, BuildSummary> summaries = new TreeMap<Integer, BuildSummary>();
+        summaries.put(Integer.valueOf(5), summary(5));
+        summaries.put(Integer.valueOf(7), summary(7));
+        TrendIndex.write(file, summaries);
+        assertEquals(summaries, TrendIndex.read(file));
+        TrendIndex.append(file, 8, summary(8));
+        assertEquals(3, TrendIndex.read(file).size());
+    }
+
+    public void testThresholds() throws Exception {
+        BuildSummary summary = summary(1);
+        assertTrue(summary.hasThresholds(Integer.valueOf(10), Integer.valueOf(100)));
+        assertFalse(summary.hasThresholds(Integer.valueOf(15), Integer.valueOf(100)));
+        assertFalse(summary.hasThresholds(null, Integer.valueOf(100)));
+    }
+}
@@ -130,33 +130,30 @@ public abstract class Graph extends hudson.util.Graph {
 
 class GraphLabel implements Comparable<GraphLabel> {
 
-    private Measurement measurement;
-    String url;
+    private final MeasurementSeries.Point point;
+    private final String url;
 
-    public GraphLabel(Measurement measurement) {
-        this.measurement = measurement;
-        this.url = null;
+    public GraphLabel(MeasurementSeries.Point point, String url) {
+        this.point = point;
+        this.url = url;
     }
 
-    private Measurement getMeasurement() {
-        return measurement;
+    private MeasurementSeries.Point getPoint() {
+        return point;
     }
 
     public String getUrl() {
-        if (this.url == null) {
-            this.url = getMeasurement().getTestAction().getAbsoluteTestObjectUrl().toString();
-        }
         return url;
     }
 
     public String getToolTip() {
-        return  getMeasurement().getBuildName() + " : " +
-                getMeasurement().getValue();
+        return  getPoint().getBuildName() + " : " +
+                getPoint().getValue();
     }
 
     public int compareTo(GraphLabel that) {
-        return  this.getMeasurement().getBuildNumber() -
-                that.getMeasurement().getBuildNumber();
+        return  this.getPoint().getBuildNumber() -
+                that.getPoint().getBuildNumber();
     }
 
     @Override
@@ -165,7 +162,7 @@ class GraphLabel implements Comparable<GraphLabel> {
             return false;
         }
         GraphLabel that = (GraphLabel) object;
-        return this.getMeasurement() == that.getMeasurement();
+        return this.getPoint() == that.getPoint();
     }
 
     public java.awt.Color getColor() {
@@ -174,13 +171,13 @@ class GraphLabel implements Comparable<GraphLabel> {
 
     @Override
     public int hashCode() {
-        return getMeasurement().hashCode();
+        return getPoint().getBuildNumber();
     }
 
     @Override
     public String toString() {
-        String buildName = getMeasurement().getBuildName();
-        String nodeName = getMeasurement().getNodeName();
+        String buildName = getPoint().getBuildName();
+        String nodeName = getPoint().getNodeName();
         if (nodeName != null) {
             buildName += ' ' + nodeName;
         }
@@ -25,17 +25,25 @@
 package hudson.plugins.measurement_plots;
 
 /**
- * The history of a measurement.
+ * The history of a measurement, read from the HistoryStore of the project.
+ * The builds shown may be limited with the "from" and "to" build number
+ * request parameters.
  * @author krwalker
  */
 public class History {
 
+    private static final java.util.logging.Logger LOGGER =
+            java.util.logging.Logger.getLogger(History.class.getName());
+
+    /** The maximum number of builds drawn in a graph. */
+    private static final int MAX_GRAPH_POINTS = 300;
+
     transient private Measurement measurement;
-    transient private java.util.List<Measurement> measurements;
+    transient private java.util.List<MeasurementSeries.Point> points;
 
     public History(Measurement measurement) {
         this.measurement = measurement;
-        this.measurements = null;
+        this.points = null;
     }
     
     public String getUrlName() {
@@ -50,27 +58,111 @@ public class History {
         return measurement;
     }
 
-    private void collectMeasurements() {
-		measurements = new java.util.ArrayList<Measurement>();
-		for (hudson.model.AbstractBuild<?,?> build: getMeasurement().getBuild().getParent().getBuilds()) {
-			if (build.isBuilding()) continue;
-			Measurement candidate = getMeasurement().getMeasurementInBuild(build);
-			if (candidate != null) {
-				measurements.add(candidate);
-			}
-		}
+    private hudson.model.AbstractProject<?, ?> getProject() {
+        return getMeasurement().getBuild().getParent();
+    }
+
+    private MeasurementSeries readSeries() {
+        String testObjectId = getMeasurement().getTestObject().getId();
+        String name = getMeasurement().getName();
+        MeasurementSeries series;
+        try {
+            series = HistoryStore.read(getProject(), testObjectId, name);
+        } catch (java.io.IOException exception) {
+            LOGGER.log(java.util.logging.Level.WARNING, "Failed to read the history of " + name, exception);
+            series = new MeasurementSeries(testObjectId, name,
+                    new java.util.ArrayList<MeasurementSeries.Point>(), false);
+        }
+        if (!series.isComplete()) {
+            series = completeSeries(series);
+        }
+        return series;
+    }
+
+    /**
+     * Adds the builds recorded before the HistoryStore existed to a series,
+     * from the test results of every build. This is only done once per
+     * series.
+     */
+    private MeasurementSeries completeSeries(MeasurementSeries series) {
+        // Loading the builds takes a while, so this is done without holding
+        // the store, which merges the points appended in the meantime.
+        java.util.List<MeasurementSeries.Point> backfill = new java.util.ArrayList<MeasurementSeries.Point>();
+        for (hudson.model.AbstractBuild<?,?> build: getProject().getBuilds()) {
+            if (build.isBuilding()) continue;
+            Measurement candidate = getMeasurement().getMeasurementInBuild(build);
+            if (candidate != null) {
+                backfill.add(new MeasurementSeries.Point(build.number,
+                        build.getTimestamp().getTimeInMillis(), candidate.getValue(), build.getBuiltOnStr()));
+            }
+        }
+        try {
+            return HistoryStore.complete(getProject(), series.getTestObjectId(), series.getName(), backfill);
+        } catch (java.io.IOException exception) {
+            LOGGER.log(java.util.logging.Level.WARNING, "Failed to write the history of " + series.getName(), exception);
+            return new MeasurementSeries(series.getTestObjectId(), series.getName(),
+                    HistoryStore.merge(backfill, series.getPoints()), true);
+        }
+    }
+
+    private void collectPoints() {
+        int from = getBuildNumberParameter("from", 0);
+        int to = getBuildNumberParameter("to", Integer.MAX_VALUE);
+        points = new java.util.ArrayList<MeasurementSeries.Point>();
+        hudson.model.AbstractProject<?, ?> project = getProject();
+        for (MeasurementSeries.Point point : readSeries().getPoints(from, to)) {
+            // Skip the builds that were deleted or are still running.
+            hudson.model.AbstractBuild<?, ?> build = project.getBuildByNumber(point.getBuildNumber());
+            if (build != null && !build.isBuilding()) {
+                points.add(point);
+            }
+        }
+    }
+
+    private static int getBuildNumberParameter(String name, int defaultValue) {
+        org.kohsuke.stapler.StaplerRequest request = org.kohsuke.stapler.Stapler.getCurrentRequest();
+        String value = request == null ? null : request.getParameter(name);
+        if (value == null || value.length() == 0) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException exception) {
+            return defaultValue;
+        }
     }
 
     /**
-     * @return The list of measurements in this measurement's history.
-     * The returned list may be empty.
+     * @return The values of this measurement in the builds of the project,
+     * ordered by build number. The returned list may be empty.
      */
-	public java.util.List<Measurement> getMeasurements() {
-		if (measurements == null) {
-            collectMeasurements();
+    public java.util.List<MeasurementSeries.Point> getPoints() {
+        if (points == null) {
+            collectPoints();
         }
-        return measurements;
-	}
+        return points;
+    }
+
+    /**
+     * @return The full display name of the build of a point.
+     */
+    public String getBuildName(MeasurementSeries.Point point) {
+        return getProject().getFullDisplayName() + " " + point.getBuildName();
+    }
+
+    /**
+     * @return The full URL to the test object in the build of a point.
+     */
+    public String getUrl(MeasurementSeries.Point point) {
+        hudson.tasks.test.TestObject testObject = getMeasurement().getTestObject();
+        StringBuffer buffer = new StringBuffer();
+        buffer.append(hudson.model.Hudson.getInstance().getRootUrl());
+        buffer.append(getProject().getUrl());
+        buffer.append(point.getBuildNumber()).append('/');
+        buffer.append(testObject.getTestResultAction().getUrlName());
+        buffer.append(testObject.getUrl());
+        return buffer.toString();
+    }
 
     /**
      * @return The graph for this measurement or null if there is no graph.
@@ -81,15 +173,10 @@ public class History {
             protected hudson.util.DataSetBuilder<String, GraphLabel> getDataSetBuilder() {
                 hudson.util.DataSetBuilder<String, GraphLabel> data =
                         new hudson.util.DataSetBuilder<String, GraphLabel>();
-                for (final Measurement measurement : getMeasurements()) {
+                for (MeasurementSeries.Point point : MeasurementSeries.downsample(getPoints(), MAX_GRAPH_POINTS)) {
                     //data.add(value, rowKey, columnKey);
-                    Double value = null;
-                    try {
-                        value = Double.valueOf(measurement.getValue());
-                    } catch (NumberFormatException exception) {
-                        value = null;
-                    }
-                    data.add(value, "", new GraphLabel(measurement));
+                    Double value = point.isNumber() ? Double.valueOf(point.getNumber()) : null;
+                    data.add(value, "", new GraphLabel(point, getUrl(point)));
                 }
                 return data;
             }
@@ -0,0 +1,322 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010, Stellar Science Ltd Co, K. R. Walker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package hudson.plugins.measurement_plots;
+
+/**
+ * The project level store of the measurement histories, so a history does not
+ * need to load the test results of every build.
+ *
+ * Each series, the values of one measurement of one test object, is kept in
+ * its own append-only file in the measurement-plots directory of the project,
+ * named after a hash of the test object id and the measurement name. The file
+ * holds a header with the test object id and the measurement name followed by
+ * one length prefixed record per build. A record that was only partly written
+ * is ignored and overwritten by the next append. A build that is recorded
+ * again appends a new record, the last record of a build wins.
+ *
+ * The header also records whether the series is complete, i.e. whether it
+ * holds the builds recorded before the store existed. Series written by
+ * {@link #append} alone are not, and are completed once by the History from
+ * the test results of the builds, see {@link #complete}.
+ */
+final class HistoryStore {
+
+    static final String DIRECTORY = "measurement-plots";
+    private static final String SUFFIX = ".series";
+    private static final int MAGIC = 0x4d505348;
+    private static final int VERSION = 1;
+
+    private HistoryStore() {
+    }
+
+    /**
+     * Appends the measurements of a build to the histories of its project.
+     */
+    static synchronized void append(hudson.model.AbstractBuild<?, ?> build, BuildMeasurements buildMeasurements)
+            throws java.io.IOException {
+        java.io.File directory = getDirectory(build.getParent());
+        for (java.util.Map.Entry<TestObjectId, TestObjectMeasurements> entry : buildMeasurements.entrySet()) {
+            String testObjectId = entry.getKey().toString();
+            for (Measurement measurement : entry.getValue()) {
+                append(directory, testObjectId, measurement.getName(), new MeasurementSeries.Point(build.number,
+                        build.getTimestamp().getTimeInMillis(), measurement.getValue(), build.getBuiltOnStr()));
+            }
+        }
+    }
+
+    /**
+     * Appends a point to a series in the given directory.
+     */
+    static synchronized void append(java.io.File directory, String testObjectId, String name,
+            MeasurementSeries.Point point) throws java.io.IOException {
+        createDirectory(directory);
+        java.io.File file = getFile(directory, testObjectId, name);
+        java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+        java.io.DataOutputStream out = new java.io.DataOutputStream(bytes);
+        boolean create = !file.exists();
+        if (create) {
+            writeHeader(out, testObjectId, name, false);
+        }
+        writeRecord(out, point);
+        out.flush();
+
+        java.io.RandomAccessFile raf = new java.io.RandomAccessFile(file, "rw");
+        try {
+            if (!create) {
+                // Drop a partly written record rather than appending after it.
+                long length = validLength(raf);
+                if (length < raf.length()) {
+                    raf.setLength(length);
+                }
+            }
+            raf.seek(raf.length());
+            raf.write(bytes.toByteArray());
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Completes a series with the builds recorded before the store existed.
+     * The series is read again, so that the points appended while the
+     * backfill was collected from the test results are kept. They win over
+     * the backfilled points of the same builds.
+     * @param backfill The points found in the test results of the builds.
+     * @return The complete series.
+     */
+    static synchronized MeasurementSeries complete(hudson.model.AbstractProject<?, ?> project,
+            String testObjectId, String name, java.util.Collection<MeasurementSeries.Point> backfill)
+            throws java.io.IOException {
+        return complete(getDirectory(project), testObjectId, name, backfill);
+    }
+
+    /**
+     * Completes a series in the given directory.
+     * @see #complete(hudson.model.AbstractProject, String, String, java.util.Collection)
+     */
+    static synchronized MeasurementSeries complete(java.io.File directory, String testObjectId, String name,
+            java.util.Collection<MeasurementSeries.Point> backfill) throws java.io.IOException {
+        MeasurementSeries series = read(directory, testObjectId, name);
+        if (series.isComplete()) {
+            // Completed by another request in the meantime.
+            return series;
+        }
+        MeasurementSeries complete = new MeasurementSeries(testObjectId, name, merge(backfill, series.getPoints()), true);
+        write(directory, complete);
+        return complete;
+    }
+
+    /**
+     * @return The points ordered by build number, the recorded point of a
+     * build wins over the backfilled one.
+     */
+    static java.util.List<MeasurementSeries.Point> merge(java.util.Collection<MeasurementSeries.Point> backfill,
+            java.util.Collection<MeasurementSeries.Point> recorded) {
+        java.util.SortedMap<Integer, MeasurementSeries.Point> points =
+                new java.util.TreeMap<Integer, MeasurementSeries.Point>();
+        for (MeasurementSeries.Point point : backfill) {
+            points.put(Integer.valueOf(point.getBuildNumber()), point);
+        }
+        for (MeasurementSeries.Point point : recorded) {
+            points.put(Integer.valueOf(point.getBuildNumber()), point);
+        }
+        return new java.util.ArrayList<MeasurementSeries.Point>(points.values());
+    }
+
+    /**
+     * Replaces a series in the given directory.
+     */
+    private static void write(java.io.File directory, MeasurementSeries series) throws java.io.IOException {
+        createDirectory(directory);
+        java.io.File file = getFile(directory, series.getTestObjectId(), series.getName());
+        java.io.File tmp = new java.io.File(file.getPath() + ".tmp");
+        java.io.DataOutputStream out = new java.io.DataOutputStream(
+                new java.io.BufferedOutputStream(new java.io.FileOutputStream(tmp)));
+        try {
+            writeHeader(out, series.getTestObjectId(), series.getName(), series.isComplete());
+            for (MeasurementSeries.Point point : series.getPoints()) {
+                writeRecord(out, point);
+            }
+        } finally {
+            out.close();
+        }
+        if (file.exists() && !file.delete()) {
+            throw new java.io.IOException("Could not replace " + file);
+        }
+        if (!tmp.renameTo(file)) {
+            throw new java.io.IOException("Could not rename " + tmp + " to " + file);
+        }
+    }
+
+    /**
+     * Reads a series.
+     * @return The series, an empty series that is not complete if there is
+     * no such series.
+     */
+    static synchronized MeasurementSeries read(hudson.model.AbstractProject<?, ?> project,
+            String testObjectId, String name) throws java.io.IOException {
+        return read(getDirectory(project), testObjectId, name);
+    }
+
+    /**
+     * Reads a series from the given directory.
+     * @see #read(hudson.model.AbstractProject, String, String)
+     */
+    static synchronized MeasurementSeries read(java.io.File directory, String testObjectId, String name)
+            throws java.io.IOException {
+        java.io.File file = getFile(directory, testObjectId, name);
+        if (!file.exists()) {
+            return new MeasurementSeries(testObjectId, name, new java.util.ArrayList<MeasurementSeries.Point>(), false);
+        }
+        java.io.DataInputStream in = new java.io.DataInputStream(
+                new java.io.BufferedInputStream(new java.io.FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new java.io.IOException(file + " is not a measurement series");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new java.io.IOException("Unsupported measurement series version " + version + ": " + file);
+            }
+            boolean complete = in.readBoolean();
+            if (!testObjectId.equals(in.readUTF()) || !name.equals(in.readUTF())) {
+                throw new java.io.IOException(file + " is not the series of " + name + " in " + testObjectId);
+            }
+            // The last record of a build wins.
+            java.util.SortedMap<Integer, MeasurementSeries.Point> points =
+                    new java.util.TreeMap<Integer, MeasurementSeries.Point>();
+            long remaining = file.length() - headerLength(testObjectId, name);
+            while (remaining >= 4) {
+                int length = in.readInt();
+                if (length > remaining - 4) {
+                    break;
+                }
+                MeasurementSeries.Point point = readRecord(in);
+                points.put(Integer.valueOf(point.getBuildNumber()), point);
+                remaining -= 4 + length;
+            }
+            return new MeasurementSeries(testObjectId, name,
+                    new java.util.ArrayList<MeasurementSeries.Point>(points.values()), complete);
+        } finally {
+            in.close();
+        }
+    }
+
+    static java.io.File getDirectory(hudson.model.AbstractProject<?, ?> project) {
+        return new java.io.File(project.getRootDir(), DIRECTORY);
+    }
+
+    private static void createDirectory(java.io.File directory) throws java.io.IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new java.io.IOException("Could not create " + directory);
+        }
+    }
+
+    static java.io.File getFile(java.io.File directory, String testObjectId, String name) {
+        try {
+            java.security.MessageDigest digest = java.security.MessageDigest.getInstance("SHA-1");
+            digest.update(testObjectId.getBytes("UTF-8"));
+            digest.update((byte)0);
+            digest.update(name.getBytes("UTF-8"));
+            StringBuilder fileName = new StringBuilder();
+            for (byte b : digest.digest()) {
+                fileName.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return new java.io.File(directory, fileName.append(SUFFIX).toString());
+        } catch (java.security.NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        } catch (java.io.UnsupportedEncodingException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private static void writeHeader(java.io.DataOutputStream out, String testObjectId, String name, boolean complete)
+            throws java.io.IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeBoolean(complete);
+        out.writeUTF(testObjectId);
+        out.writeUTF(name);
+    }
+
+    private static long headerLength(String testObjectId, String name) throws java.io.IOException {
+        java.io.DataOutputStream out = new java.io.DataOutputStream(new java.io.ByteArrayOutputStream());
+        writeHeader(out, testObjectId, name, false);
+        return out.size();
+    }
+
+    private static void writeRecord(java.io.DataOutputStream out, MeasurementSeries.Point point)
+            throws java.io.IOException {
+        java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+        java.io.DataOutputStream record = new java.io.DataOutputStream(bytes);
+        record.writeInt(point.getBuildNumber());
+        record.writeLong(point.getTimestamp());
+        writeNullableUTF(record, point.getValue());
+        writeNullableUTF(record, point.getNodeName());
+        record.flush();
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+    }
+
+    private static MeasurementSeries.Point readRecord(java.io.DataInputStream in) throws java.io.IOException {
+        int buildNumber = in.readInt();
+        long timestamp = in.readLong();
+        String value = readNullableUTF(in);
+        String nodeName = readNullableUTF(in);
+        return new MeasurementSeries.Point(buildNumber, timestamp, value, nodeName);
+    }
+
+    private static void writeNullableUTF(java.io.DataOutputStream out, String value) throws java.io.IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableUTF(java.io.DataInputStream in) throws java.io.IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * @return The length of the header and of the records that were
+     * completely written.
+     */
+    private static long validLength(java.io.RandomAccessFile raf) throws java.io.IOException {
+        raf.seek(9);
+        long position = 9 + 2 + raf.readUnsignedShort();
+        raf.seek(position);
+        position += 2 + raf.readUnsignedShort();
+        long length = raf.length();
+        while (position + 4 <= length) {
+            raf.seek(position);
+            long next = position + 4 + raf.readInt();
+            if (next > length) {
+                break;
+            }
+            position = next;
+        }
+        return position;
+    }
+}
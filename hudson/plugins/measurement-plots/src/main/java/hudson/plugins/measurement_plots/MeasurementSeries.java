@@ -0,0 +1,225 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010, Stellar Science Ltd Co, K. R. Walker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package hudson.plugins.measurement_plots;
+
+/**
+ * The values of one measurement of one test object across the builds of a
+ * project, ordered by build number, as read from the HistoryStore.
+ */
+public class MeasurementSeries {
+
+    /**
+     * The value of the measurement in one build.
+     */
+    public static class Point {
+        private final int buildNumber;
+        private final long timestamp;
+        private final String value;
+        private final String nodeName;
+        private final double number;
+
+        Point(int buildNumber, long timestamp, String value, String nodeName) {
+            this.buildNumber = buildNumber;
+            this.timestamp = timestamp;
+            this.value = value;
+            this.nodeName = nodeName;
+            this.number = toNumber(value);
+        }
+
+        private static double toNumber(String value) {
+            if (value == null) {
+                return Double.NaN;
+            }
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException exception) {
+                return Double.NaN;
+            }
+        }
+
+        public int getBuildNumber() {
+            return buildNumber;
+        }
+
+        public String getBuildName() {
+            return "#" + buildNumber;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        /**
+         * @return The node name on which the measurement was taken or null.
+         */
+        public String getNodeName() {
+            return nodeName;
+        }
+
+        /**
+         * @return The value as a number or NaN if the value is not a number.
+         */
+        public double getNumber() {
+            return number;
+        }
+
+        public boolean isNumber() {
+            return !Double.isNaN(number);
+        }
+    }
+
+    private final String testObjectId;
+    private final String name;
+    private final boolean complete;
+    private final java.util.List<Point> points;
+
+    /**
+     * @param points The points, ordered by build number with at most one
+     * point per build.
+     * @param complete true if the series holds the builds recorded before the
+     * HistoryStore existed.
+     */
+    MeasurementSeries(String testObjectId, String name, java.util.List<Point> points, boolean complete) {
+        this.testObjectId = testObjectId;
+        this.name = name;
+        this.points = java.util.Collections.unmodifiableList(points);
+        this.complete = complete;
+    }
+
+    public String getTestObjectId() {
+        return testObjectId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    boolean isComplete() {
+        return complete;
+    }
+
+    public java.util.List<Point> getPoints() {
+        return points;
+    }
+
+    public boolean isEmpty() {
+        return points.isEmpty();
+    }
+
+    /**
+     * @param from The first build number, inclusive.
+     * @param to The last build number, inclusive.
+     * @return The points of the builds in the range.
+     */
+    public java.util.List<Point> getPoints(int from, int to) {
+        int start = indexOf(from);
+        int end = indexOf(to == Integer.MAX_VALUE ? to : to + 1);
+        return points.subList(start, Math.max(start, end));
+    }
+
+    /**
+     * @return The index of the first point with a build number greater than
+     * or equal to the given build number.
+     */
+    private int indexOf(int buildNumber) {
+        int low = 0;
+        int high = points.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (points.get(middle).getBuildNumber() < buildNumber) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Reduces points to at most the given number of points for a graph, with
+     * the largest triangle three buckets algorithm, which keeps the points that
+     * shape the plot, e.g. spikes, rather than averaging them away. Points
+     * that are not numbers are dropped when the points are reduced.
+     * @param points The points, ordered by build number.
+     * @param threshold The maximum number of points, at least 3.
+     * @return The points, or a subset of them in the same order.
+     */
+    public static java.util.List<Point> downsample(java.util.List<Point> points, int threshold) {
+        if (points.size() <= threshold) {
+            return points;
+        }
+        java.util.List<Point> numbers = new java.util.ArrayList<Point>(points.size());
+        for (Point point : points) {
+            if (point.isNumber()) {
+                numbers.add(point);
+            }
+        }
+        int size = numbers.size();
+        if (size <= threshold) {
+            return numbers;
+        }
+        java.util.List<Point> sampled = new java.util.ArrayList<Point>(threshold);
+        sampled.add(numbers.get(0));
+        // The first and the last point are always kept, the others are split
+        // into threshold - 2 buckets of which one point each is kept.
+        double bucketSize = (double)(size - 2) / (threshold - 2);
+        int selected = 0;
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            int start = (int)(bucket * bucketSize) + 1;
+            int end = Math.min((int)((bucket + 1) * bucketSize) + 1, size - 1);
+            // The average of the next bucket, or the last point.
+            int nextEnd = Math.min((int)((bucket + 2) * bucketSize) + 1, size);
+            double averageX = 0;
+            double averageY = 0;
+            for (int i = end; i < nextEnd; i++) {
+                averageX += i;
+                averageY += numbers.get(i).getNumber();
+            }
+            averageX /= nextEnd - end;
+            averageY /= nextEnd - end;
+
+            double selectedX = selected;
+            double selectedY = numbers.get(selected).getNumber();
+            double largestArea = -1;
+            int next = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((selectedX - averageX) * (numbers.get(i).getNumber() - selectedY)
+                        - (selectedX - i) * (averageY - selectedY));
+                if (area > largestArea) {
+                    largestArea = area;
+                    next = i;
+                }
+            }
+            sampled.add(numbers.get(next));
+            selected = next;
+        }
+        sampled.add(numbers.get(size - 1));
+        return sampled;
+    }
+}
@@ -26,39 +26,383 @@ package hudson.plugins.measurement_plots;
 
 /**
  * Parses text-based output for measurements.
+ *
+ * The output is scanned once, character by character, for measurements of
+ * the form
+ * <pre>&lt;measurement&gt;&lt;name&gt;name with spaces&lt;/name&gt;&lt;value&gt;some value&lt;/value&gt;&lt;/measurement&gt;</pre>
+ * A measurement must be on a single line. Its body is read like the
+ * regular expression and XStream parser this one replaced read it: the
+ * name and value may be in either order, and may use character references
+ * and CDATA sections. A measurement that is not well-formed, or that
+ * contains elements other than a name and a value, is ignored.
  * @author krwalker
  */
 class OutputParser {
-    private static final String REGEX =
-            "(<measurement>.+?</measurement>)";
-    private static final java.util.logging.Logger LOGGER =
-            java.util.logging.Logger.getLogger(OutputParser.class.getName());
-    private static final java.util.regex.Pattern PATTERN = 
-            java.util.regex.Pattern.compile(REGEX);
-    private static final com.thoughtworks.xstream.XStream XSTREAM = new hudson.util.XStream2();
-    static {
-        XSTREAM.alias("measurement", Measurement.class);
-    }
+    private static final String OPEN = "<measurement>";
+    private static final String CLOSE = "</measurement>";
+    private static final int BUFFER_SIZE = 8192;
 
     OutputParser() {
     }
 
     TestObjectMeasurements parse(String text) {
-        // Search for measurements.
-        // <measurement><name>name with spaces</name><value>some value</value></measurement>
-        // Add each name/value to the map
+        try {
+            return parse(new java.io.StringReader(text));
+        } catch (java.io.IOException exception) {
+            // A StringReader does not throw.
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    TestObjectMeasurements parse(java.io.Reader reader) throws java.io.IOException {
         TestObjectMeasurements measurements = new TestObjectMeasurements();
-        java.util.regex.Matcher matcher = PATTERN.matcher(text);
-        while (matcher.find()) {
-            try {
-                Measurement measurement = (Measurement)XSTREAM.fromXML(matcher.group(1));
-                if (measurement != null) {
-                    measurements.add(measurement);
+        char[] buffer = new char[BUFFER_SIZE];
+        StringBuilder body = new StringBuilder();
+        boolean inside = false;
+        // The number of characters of OPEN, or of CLOSE when inside a
+        // measurement, that precede the current character.
+        int matched = 0;
+        int count;
+        while ((count = reader.read(buffer)) != -1) {
+            for (int i = 0; i < count; i++) {
+                char c = buffer[i];
+                if (!inside) {
+                    matched = advance(OPEN, matched, c);
+                    if (matched == OPEN.length()) {
+                        inside = true;
+                        matched = 0;
+                        body.setLength(0);
+                    }
+                } else if (isLineTerminator(c)) {
+                    // Measurements do not span lines.
+                    inside = false;
+                    matched = 0;
+                } else {
+                    body.append(c);
+                    matched = advance(CLOSE, matched, c);
+                    if (matched == CLOSE.length()) {
+                        body.setLength(body.length() - CLOSE.length());
+                        Measurement measurement = toMeasurement(body.toString());
+                        if (measurement != null) {
+                            measurements.add(measurement);
+                        }
+                        inside = false;
+                        matched = 0;
+                    }
                 }
-            } catch (com.thoughtworks.xstream.XStreamException exception) {
-                // Do nothing. The parse failed.
             }
         }
         return measurements;
     }
+
+    /**
+     * Matches one more character of a tag. A mismatch only needs to check
+     * for the start of a new tag since the opening bracket only occurs at
+     * the start of OPEN and CLOSE.
+     */
+    private static int advance(String tag, int matched, char c) {
+        if (tag.charAt(matched) == c) {
+            return matched + 1;
+        }
+        return c == tag.charAt(0) ? 1 : 0;
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * @param body The text between OPEN and CLOSE.
+     * @return The measurement or null if the body is not a valid measurement.
+     */
+    private static Measurement toMeasurement(String body) {
+        return new BodyParser(body).parse();
+    }
+
+    /**
+     * Reads the body of a measurement the way XStream read it for the
+     * parser this one replaced. Text, comments and processing instructions
+     * between the name and the value are ignored. The text of the name and
+     * the value ends at their first child element, which is skipped. Other
+     * elements and anything that is not well-formed make the measurement
+     * invalid.
+     */
+    private static final class BodyParser {
+        private final String text;
+        private int position;
+
+        BodyParser(String text) {
+            this.text = text;
+        }
+
+        Measurement parse() {
+            String name = null;
+            String value = null;
+            StringBuilder content = new StringBuilder();
+            while (true) {
+                if (!readContent(null)) {
+                    return null;
+                }
+                if (position == text.length()) {
+                    break;
+                }
+                if (text.startsWith("</", position)) {
+                    return null;
+                }
+                content.setLength(0);
+                String tag = readElement(content);
+                if (tag == null) {
+                    return null;
+                }
+                if (tag.equals("name") && name == null) {
+                    name = content.toString();
+                } else if (tag.equals("value") && value == null) {
+                    value = content.toString();
+                } else {
+                    return null;
+                }
+            }
+            return name == null ? null : new Measurement(name, value);
+        }
+
+        /**
+         * Reads an element, starting at its opening bracket.
+         * @param content Receives the text of the element up to its first
+         * child element, or null if the element is only skipped.
+         * @return The name of the element or null if it is not well-formed.
+         */
+        private String readElement(StringBuilder content) {
+            position++;
+            String tag = readName();
+            if (tag == null) {
+                return null;
+            }
+            while (true) {
+                boolean separated = skipWhitespace();
+                if (text.startsWith("/>", position)) {
+                    position += 2;
+                    return tag;
+                }
+                if (text.startsWith(">", position)) {
+                    position++;
+                    break;
+                }
+                if (!separated || !readAttribute(content != null)) {
+                    return null;
+                }
+            }
+            if (!readContent(content)) {
+                return null;
+            }
+            while (position < text.length() && !text.startsWith("</", position)) {
+                // XStream only reads the text before the first child.
+                if (readElement(null) == null || !readContent(null)) {
+                    return null;
+                }
+            }
+            if (!text.startsWith("</", position)) {
+                return null;
+            }
+            position += 2;
+            if (!tag.equals(readName())) {
+                return null;
+            }
+            skipWhitespace();
+            if (!text.startsWith(">", position)) {
+                return null;
+            }
+            position++;
+            return tag;
+        }
+
+        /**
+         * Reads an attribute. XStream ignores attributes other than the ones
+         * that change the type of the value or refer to another value.
+         * @param check Whether the attribute has to be one XStream ignores.
+         * @return Whether the attribute is valid.
+         */
+        private boolean readAttribute(boolean check) {
+            String attribute = readName();
+            if (attribute == null) {
+                return false;
+            }
+            skipWhitespace();
+            if (!text.startsWith("=", position)) {
+                return false;
+            }
+            position++;
+            skipWhitespace();
+            if (position == text.length()) {
+                return false;
+            }
+            char quote = text.charAt(position);
+            int end = text.indexOf(quote, position + 1);
+            if ((quote != '"' && quote != '\'') || end < 0) {
+                return false;
+            }
+            StringBuilder value = new StringBuilder();
+            position++;
+            while (position < end) {
+                char c = text.charAt(position);
+                if (c == '<') {
+                    return false;
+                } else if (c == '&') {
+                    if (!readReference(value) || position > end) {
+                        return false;
+                    }
+                } else {
+                    value.append(c);
+                    position++;
+                }
+            }
+            position++;
+            if (!check) {
+                return true;
+            }
+            if (attribute.equals("class")) {
+                return value.toString().equals("string") || value.toString().equals("java.lang.String");
+            }
+            return !attribute.equals("reference");
+        }
+
+        /**
+         * Reads character data, CDATA sections, comments and processing
+         * instructions up to the next tag or the end of the text.
+         * @param content Receives the text, or null if it is only skipped.
+         * @return Whether the text is valid.
+         */
+        private boolean readContent(StringBuilder content) {
+            while (position < text.length()) {
+                char c = text.charAt(position);
+                if (c == '<') {
+                    if (text.startsWith("<!--", position)) {
+                        int end = text.indexOf("-->", position + 4);
+                        if (end < 0 || text.substring(position + 4, end).contains("--")) {
+                            return false;
+                        }
+                        position = end + 3;
+                    } else if (text.startsWith("<![CDATA[", position)) {
+                        int end = text.indexOf("]]>", position + 9);
+                        if (end < 0) {
+                            return false;
+                        }
+                        if (content != null) {
+                            content.append(text, position + 9, end);
+                        }
+                        position = end + 3;
+                    } else if (text.startsWith("<?", position)) {
+                        int end = text.indexOf("?>", position + 2);
+                        if (end < 0) {
+                            return false;
+                        }
+                        position = end + 2;
+                    } else {
+                        return true;
+                    }
+                } else if (c == '&') {
+                    if (!readReference(content)) {
+                        return false;
+                    }
+                } else if (text.startsWith("]]>", position)) {
+                    return false;
+                } else {
+                    if (content != null) {
+                        content.append(c);
+                    }
+                    position++;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Reads a predefined or numeric character reference, starting at its
+         * ampersand.
+         * @param content Receives the character, or null if it is only skipped.
+         * @return Whether the reference is valid.
+         */
+        private boolean readReference(StringBuilder content) {
+            int semicolon = text.indexOf(';', position);
+            if (semicolon < 0) {
+                return false;
+            }
+            String reference = text.substring(position + 1, semicolon);
+            int codePoint;
+            if (reference.equals("lt")) {
+                codePoint = '<';
+            } else if (reference.equals("gt")) {
+                codePoint = '>';
+            } else if (reference.equals("amp")) {
+                codePoint = '&';
+            } else if (reference.equals("quot")) {
+                codePoint = '"';
+            } else if (reference.equals("apos")) {
+                codePoint = '\'';
+            } else if (reference.startsWith("#x")) {
+                codePoint = parseCodePoint(reference.substring(2), 16);
+            } else if (reference.startsWith("#")) {
+                codePoint = parseCodePoint(reference.substring(1), 10);
+            } else {
+                return false;
+            }
+            if (codePoint < 0) {
+                return false;
+            }
+            if (content != null) {
+                content.appendCodePoint(codePoint);
+            }
+            position = semicolon + 1;
+            return true;
+        }
+
+        /**
+         * @return The code point or -1 if the digits are not a valid one.
+         */
+        private static int parseCodePoint(String digits, int radix) {
+            if (digits.length() == 0 || digits.length() > 8) {
+                return -1;
+            }
+            int codePoint = 0;
+            for (int i = 0; i < digits.length(); i++) {
+                int digit = Character.digit(digits.charAt(i), radix);
+                if (digit < 0) {
+                    return -1;
+                }
+                codePoint = codePoint * radix + digit;
+            }
+            return codePoint > Character.MAX_CODE_POINT ? -1 : codePoint;
+        }
+
+        /**
+         * @return The name at the current position or null if there is none.
+         */
+        private String readName() {
+            int start = position;
+            while (position < text.length()) {
+                char c = text.charAt(position);
+                if (Character.isLetter(c) || c == '_' || c == ':'
+                        || (position > start && (Character.isDigit(c) || c == '-' || c == '.'))) {
+                    position++;
+                } else {
+                    break;
+                }
+            }
+            return position == start ? null : text.substring(start, position);
+        }
+
+        /**
+         * @return Whether there was any whitespace.
+         */
+        private boolean skipWhitespace() {
+            int start = position;
+            while (position < text.length() && isWhitespace(text.charAt(position))) {
+                position++;
+            }
+            return position > start;
+        }
+
+        private static boolean isWhitespace(char c) {
+            return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+        }
+    }
 }
@@ -61,6 +61,11 @@ public class TestDataPublisher extends hudson.tasks.junit.TestDataPublisher {
         TestActionResolver resolver = null;
         if (!buildMeasurements.isEmpty()) {
             resolver = new TestActionResolver(buildMeasurements, build, listener);
+            try {
+                HistoryStore.append(build, buildMeasurements);
+            } catch (java.io.IOException exception) {
+                exception.printStackTrace(listener.error("Failed to record the measurement history"));
+            }
         }
         return resolver;
     }
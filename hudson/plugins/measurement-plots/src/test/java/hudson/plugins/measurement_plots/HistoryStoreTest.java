@@ -0,0 +1,248 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010, Stellar Science Ltd Co, K. R. Walker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package hudson.plugins.measurement_plots;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the file format of the HistoryStore and how it recovers from partly
+ * written records.
+ */
+public class HistoryStoreTest extends TestCase {
+
+    private static final String TEST = "junit/com.example/FooTest/testBar";
+    private static final String NAME = "elapsed time";
+    /** The length of a record of {@link #point} with a single digit build number and value. */
+    private static final long RECORD_LENGTH = 4 + 4 + 8 + 1 + 2 + 1 + 1 + 2 + 5;
+
+    private java.io.File directory;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        directory = java.io.File.createTempFile("measurement-plots", "");
+        directory.delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        java.io.File[] files = directory.listFiles();
+        if (files != null) {
+            for (java.io.File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+        super.tearDown();
+    }
+
+    private static MeasurementSeries.Point point(int buildNumber, String value) {
+        return new MeasurementSeries.Point(buildNumber, 1000L * buildNumber, value, "node" + buildNumber);
+    }
+
+    private void append(int buildNumber, String value) throws java.io.IOException {
+        HistoryStore.append(directory, TEST, NAME, point(buildNumber, value));
+    }
+
+    private MeasurementSeries read() throws java.io.IOException {
+        return HistoryStore.read(directory, TEST, NAME);
+    }
+
+    private java.io.File file() {
+        return HistoryStore.getFile(directory, TEST, NAME);
+    }
+
+    private static String toString(MeasurementSeries series) {
+        StringBuilder builder = new StringBuilder();
+        for (MeasurementSeries.Point point : series.getPoints()) {
+            builder.append(point.getBuildNumber()).append('=').append(point.getValue()).append(' ');
+        }
+        return builder.toString().trim();
+    }
+
+    public void testMissingSeries() throws Exception {
+        MeasurementSeries series = read();
+        assertTrue(series.isEmpty());
+        assertFalse(series.isComplete());
+        assertFalse(file().exists());
+    }
+
+    public void testAppendAndRead() throws Exception {
+        append(2, "2.5");
+        append(1, null);
+        append(3, "not a number");
+        MeasurementSeries series = read();
+        assertEquals(TEST, series.getTestObjectId());
+        assertEquals(NAME, series.getName());
+        assertFalse(series.isComplete());
+        assertEquals("1=null 2=2.5 3=not a number", toString(series));
+        MeasurementSeries.Point point = series.getPoints().get(1);
+        assertEquals(2000L, point.getTimestamp());
+        assertEquals("node2", point.getNodeName());
+        assertEquals(2.5, point.getNumber(), 0);
+        assertFalse(series.getPoints().get(2).isNumber());
+    }
+
+    public void testLastRecordOfABuildWins() throws Exception {
+        append(1, "1");
+        append(2, "2");
+        append(1, "3");
+        assertEquals("1=3 2=2", toString(read()));
+    }
+
+    public void testSeriesAreKeptApart() throws Exception {
+        append(1, "1");
+        HistoryStore.append(directory, TEST, "other", point(1, "2"));
+        HistoryStore.append(directory, TEST + "2", NAME, point(1, "3"));
+        assertEquals("1=1", toString(read()));
+        assertEquals("1=2", toString(HistoryStore.read(directory, TEST, "other")));
+        assertEquals("1=3", toString(HistoryStore.read(directory, TEST + "2", NAME)));
+        assertEquals(3, directory.listFiles().length);
+    }
+
+    public void testFileFormat() throws Exception {
+        append(7, "1.5");
+        append(8, null);
+        java.io.DataInputStream in = new java.io.DataInputStream(new java.io.FileInputStream(file()));
+        try {
+            assertEquals(0x4d505348, in.readInt());
+            assertEquals(1, in.readInt());
+            assertFalse(in.readBoolean());
+            assertEquals(TEST, in.readUTF());
+            assertEquals(NAME, in.readUTF());
+
+            assertEquals(4 + 8 + 1 + 2 + 3 + 1 + 2 + 5, in.readInt());
+            assertEquals(7, in.readInt());
+            assertEquals(7000L, in.readLong());
+            assertTrue(in.readBoolean());
+            assertEquals("1.5", in.readUTF());
+            assertTrue(in.readBoolean());
+            assertEquals("node7", in.readUTF());
+
+            assertEquals(4 + 8 + 1 + 1 + 2 + 5, in.readInt());
+            assertEquals(8, in.readInt());
+            assertEquals(8000L, in.readLong());
+            assertFalse(in.readBoolean());
+            assertTrue(in.readBoolean());
+            assertEquals("node8", in.readUTF());
+
+            assertEquals(-1, in.read());
+        } finally {
+            in.close();
+        }
+    }
+
+    public void testNotASeries() throws Exception {
+        append(1, "1");
+        java.io.RandomAccessFile raf = new java.io.RandomAccessFile(file(), "rw");
+        raf.writeInt(0);
+        raf.close();
+        try {
+            read();
+            fail();
+        } catch (java.io.IOException expected) {
+        }
+    }
+
+    public void testTruncatedRecord() throws Exception {
+        append(1, "1");
+        append(2, "2");
+        long length = file().length();
+        append(3, "3");
+        // A crash while the last record was written.
+        truncate(file().length() - 3);
+        assertEquals("1=1 2=2", toString(read()));
+
+        append(4, "4");
+        assertEquals("1=1 2=2 4=4", toString(read()));
+        assertEquals(length + RECORD_LENGTH, file().length());
+    }
+
+    public void testTruncatedLength() throws Exception {
+        append(1, "1");
+        long length = file().length();
+        append(2, "2");
+        // Only half of the length of the last record was written.
+        truncate(length + 2);
+        assertEquals("1=1", toString(read()));
+
+        append(3, "3");
+        assertEquals("1=1 3=3", toString(read()));
+        assertEquals(length + RECORD_LENGTH, file().length());
+    }
+
+    public void testCompleteAddsTheBackfill() throws Exception {
+        append(3, "3");
+        MeasurementSeries series = HistoryStore.complete(directory, TEST, NAME,
+                java.util.Arrays.asList(point(1, "1"), point(2, "2"), point(3, "old")));
+        assertTrue(series.isComplete());
+        assertEquals("1=1 2=2 3=3", toString(series));
+
+        MeasurementSeries stored = read();
+        assertTrue(stored.isComplete());
+        assertEquals("1=1 2=2 3=3", toString(stored));
+
+        // Appending keeps the series complete.
+        append(4, "4");
+        stored = read();
+        assertTrue(stored.isComplete());
+        assertEquals("1=1 2=2 3=3 4=4", toString(stored));
+    }
+
+    public void testCompleteKeepsThePointsAppendedMeanwhile() throws Exception {
+        append(1, "1");
+        // The History reads the incomplete series and collects the backfill
+        // from the builds while another build records its measurement.
+        MeasurementSeries series = read();
+        java.util.List<MeasurementSeries.Point> backfill = new java.util.ArrayList<MeasurementSeries.Point>();
+        backfill.add(point(0, "0"));
+        backfill.add(point(1, "old"));
+        append(2, "2");
+        append(1, "new");
+
+        assertEquals("0=0 1=new 2=2", toString(HistoryStore.complete(directory, TEST, NAME, backfill)));
+        assertEquals("0=0 1=new 2=2", toString(read()));
+        assertFalse(series.isComplete());
+    }
+
+    public void testCompleteOnlyOnce() throws Exception {
+        HistoryStore.complete(directory, TEST, NAME, java.util.Collections.singletonList(point(1, "1")));
+        MeasurementSeries series = HistoryStore.complete(directory, TEST, NAME,
+                java.util.Collections.singletonList(point(1, "other")));
+        assertTrue(series.isComplete());
+        assertEquals("1=1", toString(series));
+        assertEquals("1=1", toString(read()));
+    }
+
+    private void truncate(long length) throws java.io.IOException {
+        java.io.RandomAccessFile raf = new java.io.RandomAccessFile(file(), "rw");
+        try {
+            raf.setLength(length);
+        } finally {
+            raf.close();
+        }
+    }
+}
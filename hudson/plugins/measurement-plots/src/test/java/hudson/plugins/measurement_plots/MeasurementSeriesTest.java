@@ -0,0 +1,102 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010, Stellar Science Ltd Co, K. R. Walker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package hudson.plugins.measurement_plots;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the ranges and the downsampling of a MeasurementSeries.
+ */
+public class MeasurementSeriesTest extends TestCase {
+
+    private static java.util.List<MeasurementSeries.Point> points(double... values) {
+        java.util.List<MeasurementSeries.Point> points = new java.util.ArrayList<MeasurementSeries.Point>();
+        for (int i = 0; i < values.length; i++) {
+            String value = Double.isNaN(values[i]) ? "n/a" : String.valueOf(values[i]);
+            points.add(new MeasurementSeries.Point(i + 1, i, value, null));
+        }
+        return points;
+    }
+
+    private static int[] buildNumbers(java.util.List<MeasurementSeries.Point> points) {
+        int[] buildNumbers = new int[points.size()];
+        for (int i = 0; i < buildNumbers.length; i++) {
+            buildNumbers[i] = points.get(i).getBuildNumber();
+        }
+        return buildNumbers;
+    }
+
+    public void testRange() {
+        MeasurementSeries series = new MeasurementSeries("test", "name", points(1, 2, 3, 4, 5), true);
+        assertEquals("[1, 2, 3, 4, 5]", java.util.Arrays.toString(buildNumbers(series.getPoints(0, Integer.MAX_VALUE))));
+        assertEquals("[2, 3, 4]", java.util.Arrays.toString(buildNumbers(series.getPoints(2, 4))));
+        assertEquals("[5]", java.util.Arrays.toString(buildNumbers(series.getPoints(5, 10))));
+        assertEquals("[]", java.util.Arrays.toString(buildNumbers(series.getPoints(6, 10))));
+        assertEquals("[]", java.util.Arrays.toString(buildNumbers(series.getPoints(4, 2))));
+    }
+
+    public void testDownsampleFewPoints() {
+        java.util.List<MeasurementSeries.Point> points = points(1, Double.NaN, 3);
+        assertSame(points, MeasurementSeries.downsample(points, 3));
+    }
+
+    public void testDownsampleDropsPointsThatAreNotNumbers() {
+        java.util.List<MeasurementSeries.Point> sampled =
+                MeasurementSeries.downsample(points(1, Double.NaN, 3, 4, Double.NaN), 3);
+        assertEquals("[1, 3, 4]", java.util.Arrays.toString(buildNumbers(sampled)));
+    }
+
+    public void testDownsample() {
+        double[] values = new double[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.sin(i / 50.0);
+        }
+        java.util.List<MeasurementSeries.Point> sampled = MeasurementSeries.downsample(points(values), 100);
+        assertEquals(100, sampled.size());
+        assertEquals(1, sampled.get(0).getBuildNumber());
+        assertEquals(1000, sampled.get(sampled.size() - 1).getBuildNumber());
+        for (int i = 1; i < sampled.size(); i++) {
+            assertTrue(sampled.get(i - 1).getBuildNumber() < sampled.get(i).getBuildNumber());
+        }
+    }
+
+    public void testDownsampleKeepsSpikes() {
+        double[] values = new double[1000];
+        java.util.Arrays.fill(values, 10);
+        values[123] = 1000;
+        values[456] = -1000;
+        values[789] = 500;
+        java.util.List<MeasurementSeries.Point> sampled = MeasurementSeries.downsample(points(values), 10);
+        assertEquals(10, sampled.size());
+        java.util.List<Integer> buildNumbers = new java.util.ArrayList<Integer>();
+        for (MeasurementSeries.Point point : sampled) {
+            buildNumbers.add(Integer.valueOf(point.getBuildNumber()));
+        }
+        assertTrue(buildNumbers.toString(), buildNumbers.contains(Integer.valueOf(124)));
+        assertTrue(buildNumbers.toString(), buildNumbers.contains(Integer.valueOf(457)));
+        assertTrue(buildNumbers.toString(), buildNumbers.contains(Integer.valueOf(790)));
+    }
+}
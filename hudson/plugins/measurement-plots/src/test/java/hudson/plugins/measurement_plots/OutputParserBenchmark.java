@@ -0,0 +1,98 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010, Stellar Science Ltd Co, K. R. Walker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package hudson.plugins.measurement_plots;
+
+/**
+ * Compares the streaming OutputParser with the regular expression and
+ * XStream parser it replaced, on synthetic test outputs of mostly log lines
+ * with a measurement every so often. Run it with the test classpath, e.g.
+ * <code>java hudson.plugins.measurement_plots.OutputParserBenchmark [megabytes] [runs]</code>.
+ */
+public final class OutputParserBenchmark {
+
+    private OutputParserBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        String output = createOutput(megabytes * 1024 * 1024, new java.util.Random(42));
+
+        TestObjectMeasurements expected = RegexOutputParser.parse(output);
+        TestObjectMeasurements actual = new OutputParser().parse(output);
+        if (!RegexOutputParser.toMap(expected).equals(RegexOutputParser.toMap(actual))) {
+            throw new IllegalStateException("The parsers do not find the same measurements");
+        }
+        System.out.println(output.length() / 1024 + " kB of output, " + actual.size() + " measurements");
+
+        for (int run = 0; run < runs; run++) {
+            long memory = allocated();
+            long start = System.nanoTime();
+            RegexOutputParser.parse(output);
+            long regexTime = System.nanoTime() - start;
+            long regexMemory = allocated() - memory;
+
+            memory = allocated();
+            start = System.nanoTime();
+            new OutputParser().parse(output);
+            long streamingTime = System.nanoTime() - start;
+            long streamingMemory = allocated() - memory;
+
+            System.out.println("regex and XStream: " + regexTime / 1000000 + " ms, " + regexMemory / 1024 + " kB allocated"
+                    + " | streaming: " + streamingTime / 1000000 + " ms, " + streamingMemory / 1024 + " kB allocated");
+        }
+    }
+
+    private static String createOutput(int size, java.util.Random random) {
+        StringBuilder output = new StringBuilder(size + 200);
+        int measurement = 0;
+        while (output.length() < size) {
+            if (random.nextInt(100) == 0) {
+                output.append("<measurement><name>measurement ").append(measurement++)
+                        .append("</name><value>").append(random.nextDouble() * 1000)
+                        .append("</value></measurement>\n");
+            } else {
+                output.append("[INFO] ").append(System.nanoTime())
+                        .append(" step ").append(random.nextInt(100000))
+                        .append(" completed <ok> in ").append(random.nextInt(1000)).append(" ms\n");
+            }
+        }
+        return output.toString();
+    }
+
+    /**
+     * @return The bytes allocated by this thread, on JVMs that count them, otherwise 0.
+     */
+    private static long allocated() {
+        try {
+            Object threads = java.lang.management.ManagementFactory.getThreadMXBean();
+            java.lang.reflect.Method method = Class.forName("com.sun.management.ThreadMXBean")
+                    .getMethod("getThreadAllocatedBytes", long.class);
+            return ((Long)method.invoke(threads, Long.valueOf(Thread.currentThread().getId()))).longValue();
+        } catch (Exception exception) {
+            return 0;
+        }
+    }
+}
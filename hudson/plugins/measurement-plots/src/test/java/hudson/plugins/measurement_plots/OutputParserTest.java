@@ -0,0 +1,230 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010, Stellar Science Ltd Co, K. R. Walker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package hudson.plugins.measurement_plots;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that OutputParser finds the same measurements as the regular
+ * expression and XStream parser it replaced.
+ */
+public class OutputParserTest extends TestCase {
+
+    public void testMeasurement() {
+        assertParsedLikeBefore("<measurement><name>a</name><value>1</value></measurement>", "a", "1");
+        assertParsedLikeBefore("<measurement><value>1</value><name>a</name></measurement>", "a", "1");
+        assertParsedLikeBefore("<measurement> <name>a</name>\t<value>1</value> </measurement>", "a", "1");
+        assertParsedLikeBefore("<measurement><name>name with spaces</name><value>  1  </value></measurement>",
+                "name with spaces", "  1  ");
+    }
+
+    public void testMissingOrEmptyValue() {
+        assertParsedLikeBefore("<measurement><name>a</name></measurement>", "a", null);
+        assertParsedLikeBefore("<measurement><name>a</name><value/></measurement>", "a", "");
+        assertParsedLikeBefore("<measurement><name>a</name><value></value></measurement>", "a", "");
+        assertParsedLikeBefore("<measurement><name /><value>1</value></measurement>", "", "1");
+    }
+
+    public void testMissingName() {
+        String output = "<measurement><value>1</value></measurement>";
+        // The old parser failed with a NullPointerException.
+        assertEquals(0, new OutputParser().parse(output).size());
+    }
+
+    public void testSeveralMeasurements() {
+        assertParsedLikeBefore("<measurement><name>a</name><value>1</value></measurement>"
+                + "<measurement><name>b</name><value>2</value></measurement>\n"
+                + "[INFO] <measurement><name>c</name><value>3</value></measurement> done\r\n",
+                "a", "1", "b", "2", "c", "3");
+        // The first measurement of a name wins.
+        assertParsedLikeBefore("<measurement><name>a</name><value>1</value></measurement>"
+                + "<measurement><name>a</name><value>2</value></measurement>", "a", "1");
+    }
+
+    public void testEscapedValues() {
+        assertParsedLikeBefore("<measurement><name>a &lt;b&gt; &amp; &quot;c&quot; &apos;d&apos;</name>"
+                + "<value>&#65;&#x42;&#x0043;</value></measurement>", "a <b> & \"c\" 'd'", "ABC");
+        assertParsedLikeBefore("<measurement><name>a</name><value>&amp;lt;</value></measurement>", "a", "&lt;");
+        assertParsedLikeBefore("<measurement><name>a</name><value>&lt;measurement&gt;</value></measurement>",
+                "a", "<measurement>");
+        assertParsedLikeBefore("<measurement><name>a&#10;b</name><value>x&#9;y</value></measurement>",
+                "a\nb", "x\ty");
+        assertParsedLikeBefore("<measurement><name>a</name><value>1 > 0 \"'</value></measurement>", "a", "1 > 0 \"'");
+        assertParsedLikeBefore("<measurement><name>a</name><value>\u00e9\u20ac</value></measurement>",
+                "a", "\u00e9\u20ac");
+        assertParsedLikeBefore("<measurement><name>a</name><value>x<![CDATA[<y> & z]]>!</value></measurement>",
+                "a", "x<y> & z!");
+        assertParsedLikeBefore("<measurement><name>a</name><value>x<!-- c -->y<?pi?>z</value></measurement>",
+                "a", "xyz");
+    }
+
+    public void testInvalidReferences() {
+        assertParsedLikeBefore("<measurement><name>a</name><value>1 & 2</value></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value>&nbsp;</value></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value>&AMP;</value></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value>1&lt</value></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value>&#xZZ;</value></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value>&#X41;</value></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value>&#-1;</value></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value>&#+65;</value></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value>1</value>&bad;</measurement>");
+    }
+
+    public void testReferencesOutsideTheBasicPlane() {
+        String output = "<measurement><name>a</name><value>&#x1D11E;</value></measurement>";
+        // The old parser's XML reader cut the code point to 16 bits.
+        assertEquals("\ud834\udd1e", single(new OutputParser().parse(output)).getValue());
+        assertParsedLikeBefore("<measurement><name>a</name><value>&#55348;&#56606;</value></measurement>",
+                "a", "\ud834\udd1e");
+        // And turned references without a code point into a null character.
+        assertEquals(0, new OutputParser().parse(
+                "<measurement><name>a</name><value>&#x110000;</value></measurement>").size());
+        assertEquals(0, new OutputParser().parse(
+                "<measurement><name>a</name><value>&#;</value></measurement>").size());
+    }
+
+    public void testNestedValues() {
+        // XStream reads the text up to the first child element.
+        assertParsedLikeBefore("<measurement><name>a</name><value>x<b>y</b>z</value></measurement>", "a", "x");
+        assertParsedLikeBefore("<measurement><name>a</name><value><b>x</b></value></measurement>", "a", "");
+        assertParsedLikeBefore("<measurement><name>a</name><value>x<b/>y</value></measurement>", "a", "x");
+        assertParsedLikeBefore("<measurement><name>a</name><value>x<b><c>y</c></b>z</value></measurement>",
+                "a", "x");
+        assertParsedLikeBefore("<measurement><name>a</name><value>x<b class=\"int\">y</b>z</value></measurement>",
+                "a", "x");
+        assertParsedLikeBefore("<measurement><name>a</name><value><value>1</value></value></measurement>", "a", "");
+        assertParsedLikeBefore("<measurement><measurement><name>a</name><value>1</value></measurement>"
+                + "</measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value>x<b>y</c></value></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value>x<b>y</value></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value></b></value></measurement>");
+    }
+
+    public void testIgnoredMarkup() {
+        assertParsedLikeBefore("<measurement>text<name>a</name>text<value>1</value>text</measurement>", "a", "1");
+        assertParsedLikeBefore("<measurement><!-- c --><name>a</name><?pi?><value>1</value></measurement>",
+                "a", "1");
+        assertParsedLikeBefore("<measurement><name>x<!-- c -->y</name><value>1</value></measurement>", "xy", "1");
+        assertParsedLikeBefore("<measurement><name><![CDATA[a<b]]></name><value>1</value></measurement>",
+                "a<b", "1");
+        assertParsedLikeBefore("<measurement><name >a</name ><value\t>1</value\t></measurement>", "a", "1");
+        assertParsedLikeBefore("<measurement><name foo=\"x\" bar='&lt;&#65;'>a</name><value>1</value></measurement>",
+                "a", "1");
+        assertParsedLikeBefore("<measurement><name>a</name><value class=\"string\">1</value></measurement>",
+                "a", "1");
+    }
+
+    public void testMalformedTags() {
+        assertParsedLikeBefore("<measurement><name>a</name><value>1</measurement>");
+        assertParsedLikeBefore("<measurement><name>a</value><value>1</name></measurement>");
+        assertParsedLikeBefore("<measurement><name>a<value>1</value></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value>1 < 2</value></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value>1<2></value></measurement>");
+        assertParsedLikeBefore("<measurement><name/ ><value>1</value></measurement>");
+        assertParsedLikeBefore("<measurement><name a=x>a</name><value>1</value></measurement>");
+        assertParsedLikeBefore("<measurement><name a=\"<\">a</name><value>1</value></measurement>");
+        assertParsedLikeBefore("<measurement><name a=\"&bad;\">a</name><value>1</value></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value>1</value x></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value>1</value></></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value>1</value><1/></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value>1</value><!-- -- --></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value>1</value><!-- x -></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value><![CDATA[x]]</value></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value>1</value><?pi</measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name>]]><value>1</value></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value>1 ]]> 2</value></measurement>");
+        assertParsedLikeBefore("<measurement ><name>a</name><value>1</value></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value>1</value></measurement >");
+    }
+
+    public void testUnexpectedElements() {
+        assertParsedLikeBefore("<measurement><name>a</name><value>1</value><extra>2</extra></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value>1</value><Name>b</Name></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><name>b</name><value>1</value></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value>1</value><value>2</value></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><testAction/><value>1</value></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value class=\"int\">1</value></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value reference=\"../../name\"/></measurement>");
+    }
+
+    public void testMeasurementsDoNotSpanLines() {
+        assertParsedLikeBefore("<measurement><name>a</name>\n<value>1</value></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value>1\r2</value></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value>1\u20282</value></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name>\n"
+                + "<measurement><name>b</name><value>2</value></measurement>", "b", "2");
+    }
+
+    public void testNonMeasurementOutput() {
+        assertParsedLikeBefore("");
+        assertParsedLikeBefore("[INFO] step 42 completed <ok> in 12 ms\n[INFO] <measurement> begins here\n");
+        assertParsedLikeBefore("<measurement></measurement>");
+        assertParsedLikeBefore("</measurement><measurement>");
+        assertParsedLikeBefore("<measuremen><name>a</name><value>1</value></measurement>");
+        assertParsedLikeBefore("<measurement><name>a</name><value>1</value></measuremen>");
+        assertParsedLikeBefore("<<measurement><name>a</name><value>1</value></measurement>>", "a", "1");
+        assertParsedLikeBefore("<measurement><measurement><name>a</name><value>1</value></measurement>");
+        assertParsedLikeBefore("</measurement><measurement><name>a</name><value>1</value></measurement>"
+                + "</measurement> and <measurement><name>b</name>", "a", "1");
+    }
+
+    public void testTagsAcrossReads() throws java.io.IOException {
+        StringBuilder output = new StringBuilder();
+        for (int i = 0; output.length() < 3 * 8192; i++) {
+            output.append("[INFO] line ").append(i).append(" <measurement><name>m").append(i)
+                    .append("</name><value>").append(i).append("</value></measurement>\n");
+        }
+        // A reader that returns one character at a time splits every tag.
+        java.io.Reader reader = new java.io.StringReader(output.toString()) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws java.io.IOException {
+                return super.read(buffer, offset, Math.min(length, 1));
+            }
+        };
+        TestObjectMeasurements expected = RegexOutputParser.parse(output.toString());
+        assertEquals(RegexOutputParser.toMap(expected), RegexOutputParser.toMap(new OutputParser().parse(reader)));
+        assertEquals(RegexOutputParser.toMap(expected),
+                RegexOutputParser.toMap(new OutputParser().parse(output.toString())));
+    }
+
+    /**
+     * Checks that both parsers find the expected measurements.
+     * @param expected The names and values of the measurements.
+     */
+    private static void assertParsedLikeBefore(String output, String... expected) {
+        java.util.Map<String, String> measurements = new java.util.HashMap<String, String>();
+        for (int i = 0; i < expected.length; i += 2) {
+            measurements.put(expected[i], expected[i + 1]);
+        }
+        assertEquals("old parser: " + output, measurements, RegexOutputParser.toMap(RegexOutputParser.parse(output)));
+        assertEquals("new parser: " + output, measurements, RegexOutputParser.toMap(new OutputParser().parse(output)));
+    }
+
+    private static Measurement single(TestObjectMeasurements measurements) {
+        assertEquals(1, measurements.size());
+        return measurements.iterator().next();
+    }
+}
@@ -0,0 +1,304 @@
+package hudson.plugins.pxe;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * {@link ImageIndex} of an ISO9660 CD/DVD image.
+ *
+ * <p>
+ * The directory records are read to find where in the image each file is stored, so that
+ * file contents are copied from the image through a single channel with positional reads,
+ * which the concurrent requests can share without seeking.
+ * File names are taken from the Rock Ridge extension if the image has it, then from the Joliet
+ * extension, and otherwise from the plain ISO9660 names without the version suffix.
+ */
+final class ISO9660Index extends ImageIndex {
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+
+    private int blockSize = SECTOR_SIZE;
+    private boolean rockRidge;
+    private boolean joliet;
+    /**
+     * Number of bytes to skip at the beginning of the system use area, as specified by the Rock Ridge "SP" entry.
+     */
+    private int suspSkip;
+    /**
+     * Directories already read, to guard against loops in a broken image.
+     */
+    private final Set<Long> visited = new HashSet<Long>();
+
+    ISO9660Index(File iso) throws IOException {
+        super(iso);
+        file = new RandomAccessFile(iso,"r");
+        channel = file.getChannel();
+        boolean success = false;
+        try {
+            build();
+            success = true;
+        } finally {
+            if(!success)
+                file.close();
+        }
+    }
+
+    private void build() throws IOException {
+        byte[] primary=null, supplementary=null;
+        for (long sector=16; ; sector++) {
+            byte[] d = read(sector*SECTOR_SIZE,SECTOR_SIZE);
+            if(d[1]!='C' || d[2]!='D' || d[3]!='0' || d[4]!='0' || d[5]!='1')
+                throw new IOException(image+" is not an ISO9660 image");
+            int type = d[0]&0xFF;
+            if(type==255)   break;  // volume descriptor set terminator
+            if(type==1 && primary==null)
+                primary = d;
+            if(type==2 && d[88]=='%' && d[89]=='/' && (d[90]=='@' || d[90]=='C' || d[90]=='E'))
+                supplementary = d;  // Joliet
+        }
+        if(primary==null)
+            throw new IOException(image+" has no primary volume descriptor");
+        blockSize = u16(primary,128);
+
+        long extent = u32(primary,156+2);
+        byte[] dot = read(extent*blockSize,blockSize);
+        int su = 33+1;      // the system use area of the "." entry, which has a one byte name and no padding
+        if(dot[0]>=su+7 && dot[su]=='S' && dot[su+1]=='P' && (dot[su+4]&0xFF)==0xBE && (dot[su+5]&0xFF)==0xEF) {
+            rockRidge = true;
+            suspSkip = dot[su+6]&0xFF;
+        } else
+        if(supplementary!=null) {
+            joliet = true;
+            extent = u32(supplementary,156+2);
+            blockSize = u16(supplementary,128);
+        }
+        readDirectory(root,extent,-1);
+    }
+
+    /**
+     * Reads the records of a directory into the given entry.
+     *
+     * @param length
+     *      Size of the directory, or -1 to read it from the "." record.
+     */
+    private void readDirectory(Entry dir, long extent, long length) throws IOException {
+        if(!visited.add(extent))
+            return;
+        if(length<0)
+            length = u32(read(extent*blockSize,34),10);
+        byte[] d = read(extent*blockSize,(int)length);
+
+        List<Long> extents = new ArrayList<Long>();    // extents of a file recorded in several sections
+        int pos=0;
+        while(pos+34<=d.length) {
+            int len = d[pos]&0xFF;
+            if(len==0) {
+                // records don't cross sector boundaries, and the rest of the sector is padded with 0
+                pos = (pos/SECTOR_SIZE+1)*SECTOR_SIZE;
+                continue;
+            }
+            if(len<34 || pos+len>d.length)
+                throw new IOException("Broken directory record at "+(extent*blockSize+pos)+" in "+image);
+
+            long start = (u32(d,pos+2)+(d[pos+1]&0xFF))*blockSize;    // data follows the extended attribute record
+            long size = u32(d,pos+10);
+            long lastModified = toTime(d,pos+18);
+            int flags = d[pos+25]&0xFF;
+            int nameLen = d[pos+32]&0xFF;
+            boolean self = nameLen==1 && (d[pos+33]==0 || d[pos+33]==1);
+
+            String name;
+            long childLink = -1;
+            if(rockRidge) {
+                SystemUse u = new SystemUse();
+                readSystemUse(d,pos+33+nameLen+(nameLen%2==0?1:0)+suspSkip,pos+len,u,0);
+                if(u.relocated) {
+                    // the actual location of a deep directory, which is reached through its child link
+                    pos += len;
+                    continue;
+                }
+                name = u.name!=null ? u.name.toString() : toIsoName(d,pos+33,nameLen);
+                childLink = u.childLink;
+            } else
+            if(joliet)
+                name = stripVersion(new String(d,pos+33,nameLen,"UTF-16BE"));
+            else
+                name = toIsoName(d,pos+33,nameLen);
+            pos += len;
+
+            if(self)    continue;
+
+            if(childLink>=0) {
+                Entry child = new Entry(name,true,0,lastModified);
+                dir.add(child);
+                readDirectory(child,childLink,-1);
+            } else
+            if((flags&2)!=0) {
+                Entry child = new Entry(name,true,0,lastModified);
+                dir.add(child);
+                readDirectory(child,start/blockSize,size);
+            } else {
+                extents.add(start);
+                extents.add(size);
+                if((flags&0x80)!=0)
+                    continue;   // more sections follow
+                dir.add(new FileEntry(name,lastModified,extents));
+                extents.clear();
+            }
+        }
+    }
+
+    private static final class SystemUse {
+        StringBuilder name;
+        boolean relocated;
+        long childLink = -1;
+    }
+
+    /**
+     * Reads the Rock Ridge entries of the system use area of a directory record.
+     */
+    private void readSystemUse(byte[] d, int pos, int end, SystemUse u, int depth) throws IOException {
+        long ce=-1, ceOffset=0, ceLength=0;
+        while(pos+4<=end) {
+            int len = d[pos+2]&0xFF;
+            if(len<4 || pos+len>end)    break;
+            char c1=(char)d[pos], c2=(char)d[pos+1];
+            if(c1=='N' && c2=='M' && len>=5) {
+                int flags = d[pos+4];
+                if((flags&6)==0) { // not the "." nor ".." alias
+                    if(u.name==null)    u.name = new StringBuilder();
+                    u.name.append(new String(d,pos+5,len-5,"UTF-8"));
+                }
+            }
+            if(c1=='R' && c2=='E')
+                u.relocated = true;
+            if(c1=='C' && c2=='L' && len>=12)
+                u.childLink = u32(d,pos+4);
+            if(c1=='C' && c2=='E' && len>=28) {
+                ce = u32(d,pos+4);
+                ceOffset = u32(d,pos+12);
+                ceLength = u32(d,pos+20);
+            }
+            if(c1=='S' && c2=='T')
+                break;
+            pos += len;
+        }
+        if(ce>=0 && depth<16) {
+            // continuation area
+            byte[] c = read(ce*blockSize+ceOffset,(int)ceLength);
+            readSystemUse(c,0,c.length,u,depth+1);
+        }
+    }
+
+    void write(Entry e, long offset, long length, OutputStream out) throws IOException {
+        long[] extents = ((FileEntry)e).extents;
+        ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+        for (int i=0; i<extents.length && length>0; i+=2) {
+            long size = extents[i+1];
+            if(offset>=size) {
+                offset -= size;
+                continue;
+            }
+            long n = Math.min(size-offset,length);
+            long pos = extents[i]+offset;
+            for (long end=pos+n; pos<end; ) {
+                buf.clear().limit((int)Math.min(buf.capacity(),end-pos));
+                int t = channel.read(buf,pos);
+                if(t<=0)
+                    throw new EOFException(image+" is truncated");
+                out.write(buf.array(),0,t);
+                pos += t;
+            }
+            length -= n;
+            offset = 0;
+        }
+    }
+
+    protected void close() throws IOException {
+        file.close();
+    }
+
+    private byte[] read(long pos, int len) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(len);
+        while(buf.hasRemaining()) {
+            if(channel.read(buf,pos+buf.position())<0)
+                throw new EOFException(image+" is truncated");
+        }
+        return buf.array();
+    }
+
+    /**
+     * File in the image, stored in one or more sections.
+     */
+    private static final class FileEntry extends Entry {
+        /**
+         * Pairs of the offset in the image and the size of the sections.
+         */
+        final long[] extents;
+
+        FileEntry(String name, long lastModified, List<Long> extents) {
+            super(name,false,sum(extents),lastModified);
+            this.extents = new long[extents.size()];
+            for (int i=0; i<this.extents.length; i++)
+                this.extents[i] = extents.get(i);
+        }
+
+        private static long sum(List<Long> extents) {
+            long size=0;
+            for (int i=1; i<extents.size(); i+=2)
+                size += extents.get(i);
+            return size;
+        }
+    }
+
+    private static String toIsoName(byte[] d, int pos, int len) throws IOException {
+        String name = stripVersion(new String(d,pos,len,"US-ASCII"));
+        if(name.endsWith("."))  // a name without an extension
+            name = name.substring(0,name.length()-1);
+        return name;
+    }
+
+    private static String stripVersion(String name) {
+        int idx = name.lastIndexOf(';');
+        return idx<0 ? name : name.substring(0,idx);
+    }
+
+    /**
+     * Parses the 7 byte recording date and time of a directory record.
+     */
+    private static long toTime(byte[] d, int pos) {
+        Calendar c = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
+        c.clear();
+        c.set(1900+(d[pos]&0xFF),(d[pos+1]&0xFF)-1,d[pos+2]&0xFF,d[pos+3]&0xFF,d[pos+4]&0xFF,d[pos+5]&0xFF);
+        return c.getTimeInMillis()-d[pos+6]*15L*60*1000;   // offset from GMT in 15 minute intervals
+    }
+
+    /**
+     * Reads the little endian half of a both-endian 16 bit number.
+     */
+    private static int u16(byte[] d, int pos) {
+        return (d[pos]&0xFF) | (d[pos+1]&0xFF)<<8;
+    }
+
+    /**
+     * Reads the little endian half of a both-endian 32 bit number.
+     */
+    private static long u32(byte[] d, int pos) {
+        return (d[pos]&0xFFL) | (d[pos+1]&0xFFL)<<8 | (d[pos+2]&0xFFL)<<16 | (d[pos+3]&0xFFL)<<24;
+    }
+
+    private static final int SECTOR_SIZE = 2048;
+
+    private static final int BUFFER_SIZE = 64*1024;
+}
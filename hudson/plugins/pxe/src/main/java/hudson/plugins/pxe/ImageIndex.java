@@ -0,0 +1,130 @@
+package hudson.plugins.pxe;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Directory tree of an image file, read once and shared by all the requests that serve files from the image.
+ *
+ * <p>
+ * An index stays open while it's in use, and it's closed once it's {@link #evict() evicted}
+ * and the last request using it {@link #release() releases} it.
+ *
+ * @see ImageTree
+ */
+abstract class ImageIndex {
+    final File image;
+    /**
+     * Timestamp and size of the image when it was indexed.
+     */
+    private final long lastModified, length;
+
+    final Entry root;
+
+    private int users;
+    private boolean evicted;
+
+    protected ImageIndex(File image) {
+        this.image = image;
+        this.lastModified = image.lastModified();
+        this.length = image.length();
+        this.root = new Entry("",true,0,lastModified);
+    }
+
+    /**
+     * Timestamp of the image when it was indexed.
+     */
+    long getTimestamp() {
+        return lastModified;
+    }
+
+    /**
+     * Returns false if the image has changed since it was indexed.
+     */
+    boolean isUpToDate() {
+        return image.lastModified()==lastModified && image.length()==length;
+    }
+
+    /**
+     * Finds the entry by its '/'-separated path, or null if there's no such entry.
+     */
+    Entry get(String path) {
+        Entry e = root;
+        for (String token : path.split("/")) {
+            if(token.length()==0)   continue;
+            e = e.getChild(token);
+            if(e==null)     return null;
+        }
+        return e;
+    }
+
+    /**
+     * Writes the given range of the contents of a file entry.
+     */
+    abstract void write(Entry e, long offset, long length, OutputStream out) throws IOException;
+
+    /**
+     * Releases the resources held to read the image.
+     */
+    protected abstract void close() throws IOException;
+
+    synchronized void acquire() {
+        users++;
+    }
+
+    synchronized void release() throws IOException {
+        if(--users==0 && evicted)
+            close();
+    }
+
+    /**
+     * Marks this index as no longer used for new requests. Evicting it again does nothing.
+     */
+    synchronized void evict() throws IOException {
+        if(evicted)     return;
+        evicted = true;
+        if(users==0)
+            close();
+    }
+
+    /**
+     * File or directory in the image.
+     */
+    static class Entry {
+        final String name;
+        final long size;
+        final long lastModified;
+        /**
+         * Child entries by their names, or null if this is a file.
+         */
+        private final SortedMap<String,Entry> children;
+
+        Entry(String name, boolean directory, long size, long lastModified) {
+            this.name = name;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.children = directory ? new TreeMap<String,Entry>() : null;
+        }
+
+        boolean isDirectory() {
+            return children!=null;
+        }
+
+        Entry getChild(String name) {
+            if(children==null)  return null;
+            return children.get(name);
+        }
+
+        Collection<Entry> getChildren() {
+            return children.values();
+        }
+
+        void add(Entry e) {
+            children.put(e.name,e);
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package hudson.plugins.pxe;
+
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
+import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
+import static javax.servlet.http.HttpServletResponse.SC_PARTIAL_CONTENT;
+import static javax.servlet.http.HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Binding the contents of an image file to an HTTP URL space.
+ *
+ * <p>
+ * The directory tree of an image is read once into an {@link ImageIndex} that's shared by all the requests,
+ * and read again only when the image file changes. Files support conditional GET and single byte ranges,
+ * so that installers can resume and split downloads.
+ */
+public abstract class ImageTree implements HttpResponse {
+    protected final File image;
+
+    protected ImageTree(File image) {
+        this.image = image;
+    }
+
+    /**
+     * Reads the directory tree of the image.
+     */
+    abstract ImageIndex createIndex() throws IOException;
+
+    public void generateResponse(StaplerRequest req, StaplerResponse rsp, Object node) throws IOException, ServletException {
+        ImageIndex index = acquireIndex();
+        try {
+            ImageIndex.Entry e = index.get(req.getRestOfPath());
+            if(e==null) {
+                rsp.sendError(SC_NOT_FOUND);
+                return;
+            }
+            if(e.isDirectory()) {
+                // if the target page to be displayed is a directory and the path doesn't end with '/', redirect
+                StringBuffer reqUrl = req.getRequestURL();
+                if(reqUrl.charAt(reqUrl.length()-1)!='/') {
+                    rsp.sendRedirect2(reqUrl.append('/').toString());
+                    return;
+                }
+
+                rsp.setContentType("text/html");
+                PrintWriter w = new PrintWriter(rsp.getWriter());
+                w.println("<html><body>");
+                for (ImageIndex.Entry f : e.getChildren())
+                    w.printf("<LI><A HREF='%1$s%2$s'>%1$s%2$s</A></LI>",f.name,f.isDirectory()?"/":"");
+                w.println("</body></html>");
+                w.flush();
+            } else {
+                serveFile(req,rsp,index,e,getContentType(req,e.name));
+            }
+        } finally {
+            index.release();
+        }
+    }
+
+    /**
+     * Serves a file entry, honoring the conditional and range headers of the request.
+     */
+    static void serveFile(HttpServletRequest req, HttpServletResponse rsp, ImageIndex index, ImageIndex.Entry e, String contentType) throws IOException {
+        long size = e.size;
+        long lastModified = e.lastModified/1000*1000;  // HTTP dates are in seconds
+        String etag = '"'+Long.toHexString(index.getTimestamp())+'-'+Long.toHexString(size)+'"';
+
+        rsp.setHeader("Accept-Ranges","bytes");
+        rsp.setHeader("ETag",etag);
+        rsp.setDateHeader("Last-Modified",lastModified);
+        rsp.setDateHeader("Expires",System.currentTimeMillis()+EXPIRATION);
+
+        if(isNotModified(req,etag,lastModified)) {
+            rsp.setStatus(SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start=0, end=size-1;
+        String range = req.getHeader("Range");
+        if(range!=null && isCurrent(req,etag,lastModified)) {
+            long[] r = parseRange(range,size);
+            if(r==UNSATISFIABLE) {
+                rsp.setHeader("Content-Range","bytes */"+size);
+                rsp.sendError(SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if(r!=null) {
+                start = r[0];
+                end = r[1];
+                rsp.setStatus(SC_PARTIAL_CONTENT);
+                rsp.setHeader("Content-Range","bytes "+start+"-"+end+"/"+size);
+            }
+        }
+
+        rsp.setContentType(contentType);
+        rsp.setHeader("Content-Length",Long.toString(end-start+1));
+        if(req.getMethod().equals("HEAD"))
+            return;
+        index.write(e,start,end-start+1,rsp.getOutputStream());
+    }
+
+    private String getContentType(StaplerRequest req, String name) {
+        if(name.endsWith(".rpm")) // force the RPM package type
+            return "application/x-redhat-package-manager";
+        String type = req.getStapler().getServletContext().getMimeType(name);
+        return type!=null ? type : "application/octet-stream";
+    }
+
+    /**
+     * Checks the If-None-Match and If-Modified-Since headers.
+     */
+    private static boolean isNotModified(HttpServletRequest req, String etag, long lastModified) {
+        String match = req.getHeader("If-None-Match");
+        if(match!=null) {
+            for (String tag : match.split(",")) {
+                tag = tag.trim();
+                if(tag.startsWith("W/"))    tag = tag.substring(2);
+                if(tag.equals("*") || tag.equals(etag))
+                    return true;
+            }
+            return false;
+        }
+        long since = getDateHeader(req,"If-Modified-Since");
+        return since>=0 && lastModified<=since;
+    }
+
+    /**
+     * Checks the If-Range header, which makes a range request for a stale copy fetch the whole file instead.
+     */
+    private static boolean isCurrent(HttpServletRequest req, String etag, long lastModified) {
+        String ifRange = req.getHeader("If-Range");
+        if(ifRange==null)   return true;
+        ifRange = ifRange.trim();
+        if(ifRange.startsWith("\"") || ifRange.startsWith("W/"))
+            return ifRange.equals(etag);
+        return getDateHeader(req,"If-Range")==lastModified;
+    }
+
+    private static long getDateHeader(HttpServletRequest req, String name) {
+        try {
+            return req.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;  // not a date
+        }
+    }
+
+    /**
+     * Parses the Range header.
+     *
+     * @return
+     *      the first and the last byte positions, {@link #UNSATISFIABLE} if the range is out of the file,
+     *      or null if the header is to be ignored and the whole file served. Multiple ranges are
+     *      ignored that way, as installers don't use them.
+     */
+    static long[] parseRange(String header, long size) {
+        header = header.trim();
+        if(!header.startsWith("bytes="))    return null;
+        String spec = header.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if(dash<0 || spec.indexOf(',')>=0)  return null;
+        String first = spec.substring(0,dash).trim(), last = spec.substring(dash+1).trim();
+        try {
+            long start, end;
+            if(first.length()==0) {
+                // the last N bytes
+                if(last.length()==0)    return null;
+                long n = Long.parseLong(last);
+                if(n<=0)    return n==0 ? UNSATISFIABLE : null;
+                start = Math.max(0,size-n);
+                end = size-1;
+            } else {
+                start = Long.parseLong(first);
+                end = size-1;
+                if(last.length()>0) {
+                    long l = Long.parseLong(last);
+                    if(l<start) return null;
+                    end = Math.min(l,end);
+                }
+            }
+            if(start>=size) return UNSATISFIABLE;
+            return new long[]{start,end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    static final long[] UNSATISFIABLE = new long[0];
+
+    /**
+     * Gets the up-to-date index of the image, which the caller has to {@link ImageIndex#release() release}.
+     *
+     * <p>
+     * The index is read outside the lock, so that reading a large image doesn't hold up the requests
+     * for other images. Concurrent requests for the same image wait for the one that's reading it.
+     */
+    ImageIndex acquireIndex() throws IOException {
+        while(true) {
+            FutureTask<ImageIndex> task;
+            boolean created = false;
+            synchronized (INDICES) {
+                task = INDICES.get(image);
+                if(task==null) {
+                    task = new FutureTask<ImageIndex>(new Callable<ImageIndex>() {
+                        public ImageIndex call() throws IOException {
+                            return createIndex();
+                        }
+                    });
+                    INDICES.put(image,task);
+                    created = true;
+                }
+            }
+            if(created)
+                task.run();
+
+            ImageIndex index;
+            try {
+                index = task.get();
+            } catch (InterruptedException e) {
+                throw (IOException)new InterruptedIOException().initCause(e);
+            } catch (ExecutionException e) {
+                synchronized (INDICES) {
+                    // let the next request try again
+                    if(INDICES.get(image)==task)
+                        INDICES.remove(image);
+                }
+                Throwable cause = e.getCause();
+                if(cause instanceof IOException)    throw (IOException)cause;
+                if(cause instanceof RuntimeException)   throw (RuntimeException)cause;
+                if(cause instanceof Error)  throw (Error)cause;
+                throw (IOException)new IOException("Failed to read "+image).initCause(cause);
+            }
+
+            synchronized (INDICES) {
+                if(INDICES.get(image)==task) {
+                    if(index.isUpToDate()) {
+                        index.acquire();
+                        return index;
+                    }
+                    INDICES.remove(image);
+                }
+            }
+            // evicted or changed while it was being read
+            index.evict();
+        }
+    }
+
+    /**
+     * Drops the index of an image, which is read again by the next request.
+     */
+    static void evictIndex(File image) throws IOException {
+        FutureTask<ImageIndex> task;
+        synchronized (INDICES) {
+            task = INDICES.remove(image);
+        }
+        // an index still being read is evicted by the requests waiting for it
+        if(task!=null && task.isDone()) {
+            try {
+                task.get().evict();
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);    // it's done
+            } catch (ExecutionException e) {
+                // nothing was opened
+            }
+        }
+    }
+
+    /**
+     * Indices of the images being served, by their files.
+     */
+    private static final Map<File,FutureTask<ImageIndex>> INDICES = new HashMap<File,FutureTask<ImageIndex>>();
+
+    private static final long EXPIRATION = 1000L*1000*1000;
+}
@@ -51,6 +51,11 @@ public abstract class IsoBasedBootConfiguration extends BootConfiguration {
         rsp.sendRedirect("./image/");
     }
 
+    @Override
+    protected void shutdown() throws IOException {
+        ImageTree.evictIndex(iso);
+    }
+
     public String getDisplayName() {
         return getRelease();
     }
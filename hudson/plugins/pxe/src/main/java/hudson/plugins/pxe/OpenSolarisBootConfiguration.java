@@ -77,6 +77,7 @@ public class OpenSolarisBootConfiguration extends IsoBasedBootConfiguration {
 
     @Override
     protected void shutdown() throws IOException {
+        super.shutdown();
         if(aiServer!=null) // we might have failed to initialize ai server.
             aiServer.close();
     }
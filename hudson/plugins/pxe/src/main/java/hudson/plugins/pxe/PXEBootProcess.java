@@ -4,6 +4,7 @@ import hudson.remoting.Callable;
 import hudson.remoting.Channel;
 import org.jvnet.hudson.proxy_dhcp.ProxyDhcpService;
 import org.jvnet.hudson.proxy_dhcp.DHCPPacket;
+import org.jvnet.hudson.tftpd.CachingPathResolver;
 import org.jvnet.hudson.tftpd.PathResolver;
 import org.jvnet.hudson.tftpd.TFTPServer;
 
@@ -40,9 +41,9 @@ public class PXEBootProcess implements Callable<DaemonService, IOException> {
             }
         });
 
-        // serve up resources
+        // serve up resources. keep the images read from the master, as many nodes tend to boot at once
         LOGGER.info("Starting a TFTP service");
-        final Thread tftp = start(new TFTPServer(resolver));
+        final Thread tftp = start(new TFTPServer(new CachingPathResolver(resolver)));
 
         LOGGER.info("All services ready");
         return Channel.current().export(DaemonService.class,new DaemonService() {
@@ -50,6 +50,11 @@ public abstract class ZipBasedBootConfiguration extends BootConfiguration {
         rsp.sendRedirect("./image/");
     }
 
+    @Override
+    protected void shutdown() throws IOException {
+        ImageTree.evictIndex(zip);
+    }
+
     public String getDisplayName() {
         return getRelease();
     }
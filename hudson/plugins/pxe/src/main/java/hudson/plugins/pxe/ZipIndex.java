@@ -0,0 +1,83 @@
+package hudson.plugins.pxe;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * {@link ImageIndex} of a zip file.
+ *
+ * <p>
+ * The {@link ZipFile} is kept open, and the directories that are only implied by the
+ * paths of the entries are added to the tree.
+ */
+final class ZipIndex extends ImageIndex {
+    private final ZipFile zip;
+
+    ZipIndex(File file) throws IOException {
+        super(file);
+        zip = new ZipFile(file);
+
+        Enumeration<? extends ZipEntry> list = zip.entries();
+        while (list.hasMoreElements()) {
+            ZipEntry ze = list.nextElement();
+            String[] tokens = ze.getName().split("/");
+            Entry dir = root;
+            for (int i=0; i<tokens.length; i++) {
+                String token = tokens[i];
+                if(token.length()==0)   continue;
+                if(i==tokens.length-1 && !ze.isDirectory()) {
+                    dir.add(new FileEntry(token,ze));
+                    break;
+                }
+                Entry e = dir.getChild(token);
+                if(e==null || !e.isDirectory()) {
+                    e = new Entry(token,true,0,ze.getTime());
+                    dir.add(e);
+                }
+                dir = e;
+            }
+        }
+    }
+
+    void write(Entry e, long offset, long length, OutputStream out) throws IOException {
+        // entries are usually compressed, so they have to be inflated from the beginning
+        InputStream in = zip.getInputStream(((FileEntry)e).entry);
+        try {
+            while(offset>0) {
+                long n = in.skip(offset);
+                if(n<=0)
+                    throw new EOFException(e.name+" is truncated");
+                offset -= n;
+            }
+            byte[] buf = new byte[8192];
+            while(length>0) {
+                int len = in.read(buf,0,(int)Math.min(buf.length,length));
+                if(len<0)
+                    throw new EOFException(e.name+" is truncated");
+                out.write(buf,0,len);
+                length -= len;
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    protected void close() throws IOException {
+        zip.close();
+    }
+
+    private static final class FileEntry extends Entry {
+        final ZipEntry entry;
+
+        FileEntry(String name, ZipEntry entry) {
+            super(name,false,entry.getSize(),entry.getTime());
+            this.entry = entry;
+        }
+    }
+}
@@ -0,0 +1,626 @@
+package hudson.plugins.pxe;
+
+import junit.framework.TestCase;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Serves files from ISO9660 and zip images with the range and conditional request headers.
+ */
+public class ImageTreeTest extends TestCase {
+    private final List<File> images = new ArrayList<File>();
+
+    private final byte[] readme = content(3000,1);
+    /**
+     * Sections of BOOT/SPLIT.BIN in the ISO image.
+     */
+    private final byte[] split1 = content(2048,2), split2 = content(1000,3);
+    private final byte[] kernel = content(50000,4);
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (File f : images) {
+            ImageTree.evictIndex(f);
+            f.delete();
+        }
+    }
+
+    public void testIsoWholeFile() throws Exception {
+        ImageTree tree = new ISO9660Tree(createIso());
+        Response rsp = get(tree,"README.TXT");
+        assertEquals(200,rsp.status);
+        assertTrue(Arrays.equals(readme,rsp.body()));
+        assertEquals("3000",rsp.headers.get("Content-Length"));
+        assertEquals("bytes",rsp.headers.get("Accept-Ranges"));
+        assertNotNull(rsp.headers.get("ETag"));
+        assertEquals(format(RECORDED),rsp.headers.get("Last-Modified"));
+        assertNull(rsp.headers.get("Content-Range"));
+    }
+
+    public void testIsoRange() throws Exception {
+        ImageTree tree = new ISO9660Tree(createIso());
+        Response rsp = get(tree,"README.TXT","Range","bytes=100-199");
+        assertEquals(206,rsp.status);
+        assertEquals("bytes 100-199/3000",rsp.headers.get("Content-Range"));
+        assertEquals("100",rsp.headers.get("Content-Length"));
+        assertTrue(Arrays.equals(slice(readme,100,200),rsp.body()));
+
+        // the end is capped at the file size
+        rsp = get(tree,"README.TXT","Range","bytes=2990-5000");
+        assertEquals(206,rsp.status);
+        assertEquals("bytes 2990-2999/3000",rsp.headers.get("Content-Range"));
+        assertTrue(Arrays.equals(slice(readme,2990,3000),rsp.body()));
+    }
+
+    public void testIsoRangeAcrossSections() throws Exception {
+        ImageTree tree = new ISO9660Tree(createIso());
+        byte[] whole = concat(split1,split2);
+
+        Response rsp = get(tree,"BOOT/SPLIT.BIN");
+        assertEquals(200,rsp.status);
+        assertTrue(Arrays.equals(whole,rsp.body()));
+
+        rsp = get(tree,"BOOT/SPLIT.BIN","Range","bytes=2000-2099");
+        assertEquals(206,rsp.status);
+        assertEquals("bytes 2000-2099/3048",rsp.headers.get("Content-Range"));
+        assertTrue(Arrays.equals(slice(whole,2000,2100),rsp.body()));
+
+        rsp = get(tree,"BOOT/SPLIT.BIN","Range","bytes=-10");
+        assertEquals("bytes 3038-3047/3048",rsp.headers.get("Content-Range"));
+        assertTrue(Arrays.equals(slice(whole,3038,3048),rsp.body()));
+
+        rsp = get(tree,"BOOT/SPLIT.BIN","Range","bytes=2048-");
+        assertEquals("bytes 2048-3047/3048",rsp.headers.get("Content-Range"));
+        assertTrue(Arrays.equals(split2,rsp.body()));
+    }
+
+    public void testIsoUnsatisfiableRange() throws Exception {
+        ImageTree tree = new ISO9660Tree(createIso());
+        Response rsp = get(tree,"README.TXT","Range","bytes=3000-");
+        assertEquals(416,rsp.status);
+        assertEquals("bytes */3000",rsp.headers.get("Content-Range"));
+        assertEquals(0,rsp.body().length);
+    }
+
+    public void testIsoIfNoneMatch() throws Exception {
+        ImageTree tree = new ISO9660Tree(createIso());
+        String etag = get(tree,"README.TXT").headers.get("ETag");
+
+        Response rsp = get(tree,"README.TXT","If-None-Match",etag);
+        assertEquals(304,rsp.status);
+        assertEquals(0,rsp.body().length);
+        assertEquals(304,get(tree,"README.TXT","If-None-Match","\"other\", W/"+etag).status);
+        assertEquals(304,get(tree,"README.TXT","If-None-Match","*").status);
+
+        // a different tag wins over a matching date
+        rsp = get(tree,"README.TXT","If-None-Match","\"other\"","If-Modified-Since",format(RECORDED));
+        assertEquals(200,rsp.status);
+        assertTrue(Arrays.equals(readme,rsp.body()));
+    }
+
+    public void testIsoIfModifiedSince() throws Exception {
+        ImageTree tree = new ISO9660Tree(createIso());
+        assertEquals(304,get(tree,"README.TXT","If-Modified-Since",format(RECORDED)).status);
+        assertEquals(304,get(tree,"README.TXT","If-Modified-Since",format(RECORDED+60000)).status);
+        assertEquals(200,get(tree,"README.TXT","If-Modified-Since",format(RECORDED-1000)).status);
+        // not a date
+        assertEquals(200,get(tree,"README.TXT","If-Modified-Since","yesterday").status);
+    }
+
+    public void testIsoIfRange() throws Exception {
+        ImageTree tree = new ISO9660Tree(createIso());
+        String etag = get(tree,"README.TXT").headers.get("ETag");
+
+        Response rsp = get(tree,"README.TXT","Range","bytes=0-9","If-Range",etag);
+        assertEquals(206,rsp.status);
+        assertTrue(Arrays.equals(slice(readme,0,10),rsp.body()));
+
+        rsp = get(tree,"README.TXT","Range","bytes=0-9","If-Range",format(RECORDED));
+        assertEquals(206,rsp.status);
+
+        // the client's copy is stale, so it gets the whole file
+        rsp = get(tree,"README.TXT","Range","bytes=0-9","If-Range","\"stale\"");
+        assertEquals(200,rsp.status);
+        assertNull(rsp.headers.get("Content-Range"));
+        assertTrue(Arrays.equals(readme,rsp.body()));
+
+        rsp = get(tree,"README.TXT","Range","bytes=0-9","If-Range",format(RECORDED-1000));
+        assertEquals(200,rsp.status);
+        assertTrue(Arrays.equals(readme,rsp.body()));
+    }
+
+    public void testIgnoredRanges() throws Exception {
+        ImageTree tree = new ISO9660Tree(createIso());
+        for (String range : new String[]{"bytes=0-9,20-29","bytes=10-5","lines=1-2","bytes=a-b"}) {
+            Response rsp = get(tree,"README.TXT","Range",range);
+            assertEquals(range,200,rsp.status);
+            assertNull(range,rsp.headers.get("Content-Range"));
+            assertTrue(range,Arrays.equals(readme,rsp.body()));
+        }
+    }
+
+    public void testHead() throws Exception {
+        ImageTree tree = new ISO9660Tree(createIso());
+        Request req = new Request("README.TXT","Range","bytes=10-19");
+        req.method = "HEAD";
+        Response rsp = serve(tree,req);
+        assertEquals(206,rsp.status);
+        assertEquals("10",rsp.headers.get("Content-Length"));
+        assertEquals("bytes 10-19/3000",rsp.headers.get("Content-Range"));
+        assertEquals(0,rsp.body().length);
+    }
+
+    public void testZipRange() throws Exception {
+        ImageTree tree = new ZipTree(createZip());
+        Response rsp = get(tree,"images/pxeboot/vmlinuz");
+        assertEquals(200,rsp.status);
+        assertEquals("50000",rsp.headers.get("Content-Length"));
+        assertTrue(Arrays.equals(kernel,rsp.body()));
+
+        // the entry is deflated, so this has to skip over the inflated data
+        rsp = get(tree,"images/pxeboot/vmlinuz","Range","bytes=40000-40999");
+        assertEquals(206,rsp.status);
+        assertEquals("bytes 40000-40999/50000",rsp.headers.get("Content-Range"));
+        assertTrue(Arrays.equals(slice(kernel,40000,41000),rsp.body()));
+
+        rsp = get(tree,"images/pxeboot/vmlinuz","Range","bytes=-100");
+        assertTrue(Arrays.equals(slice(kernel,49900,50000),rsp.body()));
+
+        assertEquals(416,get(tree,"images/pxeboot/vmlinuz","Range","bytes=50000-50001").status);
+    }
+
+    public void testZipConditionalGet() throws Exception {
+        ImageTree tree = new ZipTree(createZip());
+        Response first = get(tree,"images/pxeboot/vmlinuz");
+        String etag = first.headers.get("ETag");
+        String lastModified = first.headers.get("Last-Modified");
+
+        assertEquals(304,get(tree,"images/pxeboot/vmlinuz","If-None-Match",etag).status);
+        assertEquals(304,get(tree,"images/pxeboot/vmlinuz","If-Modified-Since",lastModified).status);
+        assertEquals(200,get(tree,"images/pxeboot/vmlinuz","If-None-Match","\"other\"").status);
+
+        Response rsp = get(tree,"images/pxeboot/vmlinuz","Range","bytes=5-9","If-Range",etag);
+        assertEquals(206,rsp.status);
+        assertTrue(Arrays.equals(slice(kernel,5,10),rsp.body()));
+        assertEquals(200,get(tree,"images/pxeboot/vmlinuz","Range","bytes=5-9","If-Range","\"stale\"").status);
+    }
+
+    public void testDirectories() throws Exception {
+        ImageIndex iso = new ISO9660Tree(createIso()).acquireIndex();
+        try {
+            assertEquals(Arrays.asList("BOOT","README.TXT"),names(iso.root));
+            assertEquals(Arrays.asList("SPLIT.BIN"),names(iso.get("BOOT")));
+            assertNull(iso.get("BOOT/NONE"));
+        } finally {
+            iso.release();
+        }
+
+        ImageIndex zip = new ZipTree(createZip()).acquireIndex();
+        try {
+            assertEquals(Arrays.asList("images","readme.txt"),names(zip.root));
+            assertEquals(Arrays.asList("pxeboot"),names(zip.get("images")));
+            assertEquals(Arrays.asList("initrd.img","vmlinuz"),names(zip.get("images/pxeboot/")));
+        } finally {
+            zip.release();
+        }
+    }
+
+    public void testChangedImageIsIndexedAgain() throws Exception {
+        File zip = createZip();
+        ImageTree tree = new ZipTree(zip);
+        ImageIndex before = tree.acquireIndex();
+        try {
+            assertSame(before,tree.acquireIndex());
+            before.release();
+
+            // replace the image while a request is still reading the old one
+            File replacement = createZip();
+            writeZip(replacement,content(60000,5));
+            assertTrue(replacement.renameTo(zip));
+
+            ImageIndex after = tree.acquireIndex();
+            try {
+                assertNotSame(before,after);
+                assertEquals(60000,after.get("images/pxeboot/vmlinuz").size);
+            } finally {
+                after.release();
+            }
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            before.write(before.get("images/pxeboot/vmlinuz"),0,10,out);
+            assertTrue(Arrays.equals(slice(kernel,0,10),out.toByteArray()));
+        } finally {
+            before.release();
+        }
+    }
+
+    public void testEvictedIndexIsReadAgain() throws Exception {
+        File iso = createIso();
+        ImageTree tree = new ISO9660Tree(iso);
+        ImageIndex before = tree.acquireIndex();
+        before.release();
+        ImageTree.evictIndex(iso);
+        ImageIndex after = tree.acquireIndex();
+        after.release();
+        assertNotSame(before,after);
+    }
+
+    public void testConcurrentRequestsReadTheIndexOnce() throws Exception {
+        final File zip = createZip();
+        final int[] count = new int[1];
+        final ImageTree tree = new ZipTree(zip) {
+            @Override
+            ImageIndex createIndex() throws IOException {
+                synchronized (count) {
+                    count[0]++;
+                }
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    throw new IOException(e.toString());
+                }
+                return super.createIndex();
+            }
+        };
+
+        final List<ImageIndex> acquired = Collections.synchronizedList(new ArrayList<ImageIndex>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i=0; i<10; i++) {
+            Thread t = new Thread() {
+                public void run() {
+                    try {
+                        ImageIndex index = tree.acquireIndex();
+                        acquired.add(index);
+                        index.release();
+                    } catch (IOException e) {
+                        throw new Error(e);
+                    }
+                }
+            };
+            t.start();
+            threads.add(t);
+        }
+
+        // requests for another image aren't held up meanwhile
+        long start = System.currentTimeMillis();
+        new ISO9660Tree(createIso()).acquireIndex().release();
+        assertTrue(System.currentTimeMillis()-start<200);
+
+        for (Thread t : threads)
+            t.join();
+        assertEquals(1,count[0]);
+        assertEquals(10,acquired.size());
+        for (ImageIndex index : acquired)
+            assertSame(acquired.get(0),index);
+    }
+
+    public void testFailedIndexIsNotKept() throws Exception {
+        File iso = createIso();
+        byte[] broken = new byte[17*2048];
+        writeFile(iso,broken);
+        ImageTree tree = new ISO9660Tree(iso);
+        try {
+            tree.acquireIndex();
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+
+        writeIso(iso);
+        ImageIndex index = tree.acquireIndex();
+        index.release();
+        assertNotNull(index.get("README.TXT"));
+    }
+
+    public void testParseRange() {
+        assertRange(0,99,ImageTree.parseRange("bytes=0-99",1000));
+        assertRange(500,999,ImageTree.parseRange(" bytes= 500 - ",1000));
+        assertRange(900,999,ImageTree.parseRange("bytes=-100",1000));
+        assertRange(0,999,ImageTree.parseRange("bytes=-2000",1000));
+        assertRange(990,999,ImageTree.parseRange("bytes=990-2000",1000));
+        assertSame(ImageTree.UNSATISFIABLE,ImageTree.parseRange("bytes=1000-",1000));
+        assertSame(ImageTree.UNSATISFIABLE,ImageTree.parseRange("bytes=-0",1000));
+        assertNull(ImageTree.parseRange("bytes=0-1,5-6",1000));
+        assertNull(ImageTree.parseRange("bytes=5-1",1000));
+        assertNull(ImageTree.parseRange("bytes=-",1000));
+        assertNull(ImageTree.parseRange("bytes=x-1",1000));
+        assertNull(ImageTree.parseRange("items=0-1",1000));
+    }
+
+    private static void assertRange(long start, long end, long[] r) {
+        assertNotNull(r);
+        assertEquals(2,r.length);
+        assertEquals(start,r[0]);
+        assertEquals(end,r[1]);
+    }
+
+    private Response get(ImageTree tree, String path, String... headers) throws IOException {
+        return serve(tree,new Request(path,headers));
+    }
+
+    private Response serve(ImageTree tree, Request req) throws IOException {
+        Response rsp = new Response();
+        ImageIndex index = tree.acquireIndex();
+        try {
+            ImageIndex.Entry e = index.get(req.path);
+            assertNotNull(req.path,e);
+            ImageTree.serveFile(req.proxy(),rsp.proxy(),index,e,"application/octet-stream");
+        } finally {
+            index.release();
+        }
+        return rsp;
+    }
+
+    private static List<String> names(ImageIndex.Entry dir) {
+        List<String> names = new ArrayList<String>();
+        for (ImageIndex.Entry e : dir.getChildren())
+            names.add(e.name);
+        return names;
+    }
+
+    /**
+     * Request with the given headers, as name and value pairs.
+     */
+    private static final class Request implements InvocationHandler {
+        final String path;
+        final Map<String,String> headers = new HashMap<String,String>();
+        String method = "GET";
+
+        Request(String path, String... headers) {
+            this.path = path;
+            for (int i=0; i<headers.length; i+=2)
+                this.headers.put(headers[i],headers[i+1]);
+        }
+
+        HttpServletRequest proxy() {
+            return (HttpServletRequest)Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class[]{HttpServletRequest.class},this);
+        }
+
+        public Object invoke(Object proxy, Method m, Object[] args) {
+            String n = m.getName();
+            if(n.equals("getMethod"))
+                return method;
+            if(n.equals("getHeader"))
+                return headers.get(args[0]);
+            if(n.equals("getDateHeader")) {
+                String v = headers.get(args[0]);
+                if(v==null)     return -1L;
+                try {
+                    return httpDate().parse(v).getTime();
+                } catch (ParseException e) {
+                    throw new IllegalArgumentException(v);
+                }
+            }
+            throw new UnsupportedOperationException(n);
+        }
+    }
+
+    private static final class Response implements InvocationHandler {
+        int status = 200;
+        final Map<String,String> headers = new HashMap<String,String>();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        HttpServletResponse proxy() {
+            return (HttpServletResponse)Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class[]{HttpServletResponse.class},this);
+        }
+
+        byte[] body() {
+            return body.toByteArray();
+        }
+
+        public Object invoke(Object proxy, Method m, Object[] args) {
+            String n = m.getName();
+            if(n.equals("setStatus") || n.equals("sendError")) {
+                status = (Integer)args[0];
+                return null;
+            }
+            if(n.equals("setHeader")) {
+                headers.put((String)args[0],(String)args[1]);
+                return null;
+            }
+            if(n.equals("setDateHeader")) {
+                headers.put((String)args[0],format((Long)args[1]));
+                return null;
+            }
+            if(n.equals("setContentType")) {
+                headers.put("Content-Type",(String)args[0]);
+                return null;
+            }
+            if(n.equals("getOutputStream")) {
+                return new ServletOutputStream() {
+                    public void write(int b) {
+                        body.write(b);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) {
+                        body.write(b,off,len);
+                    }
+                };
+            }
+            throw new UnsupportedOperationException(n);
+        }
+    }
+
+    private static SimpleDateFormat httpDate() {
+        SimpleDateFormat f = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz",Locale.US);
+        f.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return f;
+    }
+
+    private static String format(long time) {
+        return httpDate().format(new Date(time));
+    }
+
+    private File createTempFile(String suffix) throws IOException {
+        File f = File.createTempFile("image",suffix);
+        images.add(f);
+        return f;
+    }
+
+    private File createZip() throws IOException {
+        File f = createTempFile(".zip");
+        writeZip(f,kernel);
+        return f;
+    }
+
+    private void writeZip(File f, byte[] kernel) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(f));
+        try {
+            zip.putNextEntry(new ZipEntry("readme.txt"));
+            zip.write(readme);
+            zip.putNextEntry(new ZipEntry("images/"));
+            zip.putNextEntry(new ZipEntry("images/pxeboot/vmlinuz"));
+            zip.write(kernel);
+            zip.putNextEntry(new ZipEntry("images/pxeboot/initrd.img"));
+            zip.write(split2);
+        } finally {
+            zip.close();
+        }
+    }
+
+    private File createIso() throws IOException {
+        File f = createTempFile(".iso");
+        writeIso(f);
+        return f;
+    }
+
+    /**
+     * Writes an ISO9660 image without extensions, which has README.TXT in the root directory
+     * and BOOT/SPLIT.BIN recorded in two sections.
+     */
+    private void writeIso(File f) throws IOException {
+        byte[] d = new byte[24*SECTOR];
+
+        int pvd = 16*SECTOR;
+        d[pvd] = 1;
+        volumeId(d,pvd);
+        put16(d,pvd+128,SECTOR);
+        record(d,pvd+156,new byte[]{0},ROOT,SECTOR,2);
+        volumeId(d,17*SECTOR);
+        d[17*SECTOR] = (byte)255;
+
+        int pos = ROOT*SECTOR;
+        pos += record(d,pos,new byte[]{0},ROOT,SECTOR,2);
+        pos += record(d,pos,new byte[]{1},ROOT,SECTOR,2);
+        pos += record(d,pos,"BOOT".getBytes("US-ASCII"),BOOT,SECTOR,2);
+        record(d,pos,"README.TXT;1".getBytes("US-ASCII"),20,readme.length,0);
+
+        pos = BOOT*SECTOR;
+        pos += record(d,pos,new byte[]{0},BOOT,SECTOR,2);
+        pos += record(d,pos,new byte[]{1},ROOT,SECTOR,2);
+        pos += record(d,pos,"SPLIT.BIN;1".getBytes("US-ASCII"),22,split1.length,0x80);
+        record(d,pos,"SPLIT.BIN;1".getBytes("US-ASCII"),23,split2.length,0);
+
+        System.arraycopy(readme,0,d,20*SECTOR,readme.length);
+        System.arraycopy(split1,0,d,22*SECTOR,split1.length);
+        System.arraycopy(split2,0,d,23*SECTOR,split2.length);
+        writeFile(f,d);
+    }
+
+    private static void volumeId(byte[] d, int pos) {
+        d[pos+1]='C'; d[pos+2]='D'; d[pos+3]='0'; d[pos+4]='0'; d[pos+5]='1';
+        d[pos+6]=1;
+    }
+
+    /**
+     * Writes a directory record, and returns its length.
+     */
+    private static int record(byte[] d, int pos, byte[] name, int extent, int size, int flags) {
+        int len = 33+name.length+(name.length%2==0?1:0);
+        d[pos] = (byte)len;
+        put32(d,pos+2,extent);
+        put32(d,pos+10,size);
+        Calendar c = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
+        c.setTimeInMillis(RECORDED);
+        d[pos+18] = (byte)(c.get(Calendar.YEAR)-1900);
+        d[pos+19] = (byte)(c.get(Calendar.MONTH)+1);
+        d[pos+20] = (byte)c.get(Calendar.DAY_OF_MONTH);
+        d[pos+21] = (byte)c.get(Calendar.HOUR_OF_DAY);
+        d[pos+22] = (byte)c.get(Calendar.MINUTE);
+        d[pos+23] = (byte)c.get(Calendar.SECOND);
+        d[pos+25] = (byte)flags;
+        put16(d,pos+28,1);
+        d[pos+32] = (byte)name.length;
+        System.arraycopy(name,0,d,pos+33,name.length);
+        return len;
+    }
+
+    /**
+     * Writes a both-endian 16 bit number.
+     */
+    private static void put16(byte[] d, int pos, int v) {
+        d[pos] = d[pos+3] = (byte)v;
+        d[pos+1] = d[pos+2] = (byte)(v>>8);
+    }
+
+    /**
+     * Writes a both-endian 32 bit number.
+     */
+    private static void put32(byte[] d, int pos, long v) {
+        for (int i=0; i<4; i++)
+            d[pos+i] = d[pos+7-i] = (byte)(v>>(8*i));
+    }
+
+    private static void writeFile(File f, byte[] data) throws IOException {
+        FileOutputStream out = new FileOutputStream(f);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte[] content(int size, long seed) {
+        byte[] b = new byte[size];
+        new Random(seed).nextBytes(b);
+        return b;
+    }
+
+    private static byte[] slice(byte[] b, int from, int to) {
+        byte[] r = new byte[to-from];
+        System.arraycopy(b,from,r,0,r.length);
+        return r;
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] r = new byte[a.length+b.length];
+        System.arraycopy(a,0,r,0,a.length);
+        System.arraycopy(b,0,r,a.length,b.length);
+        return r;
+    }
+
+    private static final int SECTOR = 2048;
+    private static final int ROOT = 18, BOOT = 19;
+
+    /**
+     * Recording time of the files in the ISO image, 2009-10-17 12:34:56 GMT.
+     */
+    private static final long RECORDED = 1255782896000L;
+}
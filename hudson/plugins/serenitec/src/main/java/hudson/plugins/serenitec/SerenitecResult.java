@@ -9,7 +9,6 @@
 package hudson.plugins.serenitec;
 
 
-import hudson.XmlFile;
 import hudson.model.AbstractBuild;
 import hudson.model.ModelObject;
 import hudson.plugins.serenitec.parseur.ReportEntry;
@@ -18,19 +17,22 @@ import hudson.plugins.serenitec.parseur.ReportPointeur;
 import hudson.plugins.serenitec.util.ErrorDetails;
 import hudson.plugins.serenitec.util.Project;
 import hudson.plugins.serenitec.util.ProjectDetails;
+import hudson.plugins.serenitec.util.ProjectFile;
 import hudson.plugins.serenitec.util.ResultAction;
 import hudson.plugins.serenitec.util.SeverityDetails;
 import hudson.plugins.serenitec.util.SourceDetail;
 import hudson.plugins.serenitec.util.model.EntriesContainer;
 import hudson.plugins.serenitec.util.model.EntriesProvider;
-import hudson.plugins.serenitec.util.model.EntryStream;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
-import java.lang.ref.WeakReference;
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.servlet.http.HttpServletResponse;
 
@@ -38,8 +40,6 @@ import org.apache.commons.lang.StringUtils;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 
-import com.thoughtworks.xstream.XStream;
-
 /**
  * Represents the results of the warning analysis. One instance of this class is persisted for each build via an XML file.
  * 
@@ -52,11 +52,7 @@ public class SerenitecResult implements ModelObject, Serializable, EntriesProvid
     /** Unique identifier of this class. */
     private static final long    serialVersionUID  = 2768250056765266658L;
     private static final float   PERCENTAGE_100_0F = 100.0f;
-    /** Serialization provider. */
-    private static final XStream XSTREAM           = new EntryStream();
-    static {
-        XSTREAM.alias("Entry", ReportEntry.class);
-    }
+    private static final Logger  LOGGER            = Logger.getLogger(SerenitecResult.class.getName());
 
     /**
      * Compute the percentage ratio between two numbers.
@@ -70,10 +66,15 @@ public class SerenitecResult implements ModelObject, Serializable, EntriesProvid
         return _n1 * SerenitecResult.PERCENTAGE_100_0F / _n2;
     }
 
-    /** The parsed warnings result. */
+    /** The parsed warnings result, read back from the {@link ProjectFile} of the build once it has been collected. */
     @SuppressWarnings("Se")
-    private transient WeakReference<Project> projectSerenitec;
+    private transient SoftReference<Project> projectSerenitec;
+    /** The parsed warnings result of a build recorded before it was written to a {@link ProjectFile} */
     private Project                          save_project;
+    /*
+     * The lists of entries, patterns and files, except the list of all the files, are only set for the builds recorded
+     * before the project was written to a ProjectFile, they are read from the project otherwise.
+     */
     /** All the entries */
     private List<ReportEntry>                rules;
     /** All the active entries */
@@ -211,17 +212,15 @@ public class SerenitecResult implements ModelObject, Serializable, EntriesProvid
         owner = build;
         errors = new ArrayList<String>();
 
-        save_project = project;
+        projectSerenitec = new SoftReference<Project>(project);
         /**
          * Get the activated rules
          */
-        rules = project.getContainer().getRules();
-        numberOfRules = rules.size();
+        numberOfRules = project.getContainer().getNumberOfRules();
 
         /**
          * Get the entries
          */
-        entries = project.getContainer().getEntries();
         numberOfEntry = project.getContainer().getNumberOfEntry();
 
         /**
@@ -243,26 +242,18 @@ public class SerenitecResult implements ModelObject, Serializable, EntriesProvid
         /**
          * Get the not fixed entries
          */
-        entriesnotfixed = project.getContainer().getEntriesNotFixed();
-        numberOfNotFixedEntry = entriesnotfixed.size();
+        numberOfNotFixedEntry = project.getContainer().getNumberOfNotFixedEntry();
         numberOfNotFixedEntryPercent = doPercentage(numberOfNotFixedEntry, numberOfEntry);
 
         /**
          * Get the fixed errors
          */
-        entriesfixed = project.getContainer().getEntriesFixed();
-        numberOfFixedEntry = entriesfixed.size();
+        numberOfFixedEntry = project.getContainer().getNumberOfFixedEntry();
         numberOfFixedEntryPercent = doPercentage(numberOfFixedEntry, numberOfEntry);
 
-        /**
-         * Get the top five entries
-         */
-        topFiveEntries = project.getContainer().getTopFiveEntries();
-
         /**
          * Get the number of patterns
          */
-        pointeurs = project.getContainer().getPointeurs();
         numberOfPointeurs = project.getContainer().getNumberOfPointeurs();
         numberMoyenneOfPointeursPerEntry = numberOfPointeurs / numberOfEntry;
 
@@ -325,7 +316,6 @@ public class SerenitecResult implements ModelObject, Serializable, EntriesProvid
 
             numberOfNotFixedEntryBefore = previousProject.getContainer().getEntriesNotFixed().size();
             numberOfFixedEntryBefore = previousProject.getContainer().getEntriesFixed().size();
-            topFiveEntriesBefore = previousProject.getContainer().getTopFiveEntries();
             numberOfSeverityFormatageBefore = previousProject.getContainer().getNumberOfSeverityFormatage();
             numberOfSeverityPerformanceBefore = previousProject.getContainer().getNumberOfSeverityPerformance();
             numberOfSeverityDesignBefore = previousProject.getContainer().getNumberOfSeverityDesign();
@@ -338,8 +328,7 @@ public class SerenitecResult implements ModelObject, Serializable, EntriesProvid
             /**
              * Get the new entries
              */
-            newEntries = project.getContainer().getNewEntries();
-            numberOfNewEntry = newEntries.size();
+            numberOfNewEntry = project.getContainer().getNewEntries().size();
             numberOfNewEntryPercent = doPercentage(numberOfNewEntry, numberOfEntry);
 
             System.out.println("TEST");
@@ -352,16 +341,14 @@ public class SerenitecResult implements ModelObject, Serializable, EntriesProvid
             numberOfNewEntryBefore = 0;
             numberOfNewEntryPercent = 0;
             numberOfNewEntry = 0;
-            newEntries = new ArrayList<ReportEntry>();
             numberOfNotFixedEntryBefore = 0;
             numberOfFixedEntryBefore = 0;
-            topFiveEntriesBefore = new ArrayList<ReportEntry>();
             numberOfSeverityFormatageBefore = 0;
             numberOfSeverityPerformanceBefore = 0;
             numberOfSeverityDesignBefore = 0;
             numberOfSeverityLowSecurityBefore = 0;
             numberOfSeverityHighSecurityBefore = 0;
-            newEntries = project.getContainer().getRules();
+            project.setNewEntries(project.getRules());
             numberOfNewEntry = numberOfRules;
             numberOfNewEntryBefore = 0;
             numberOfFilesWithErrorsBefore = 0;
@@ -388,6 +375,13 @@ public class SerenitecResult implements ModelObject, Serializable, EntriesProvid
         /** delta between this build and the one before */
         delta = numberOfEntry - numberOfEntryBefore;
         numberOfModules = project.getModules().size();
+
+        try {
+            ProjectFile.write(getDataFile(), project);
+        } catch (final IOException exception) {
+            LOGGER.log(Level.WARNING, "Could not write the serenitec result of " + owner + ", keeping it in the build", exception);
+            save_project = project;
+        }
         System.out.println("End of SerenitecResult");
     }
     /**
@@ -497,7 +491,7 @@ public class SerenitecResult implements ModelObject, Serializable, EntriesProvid
 
     public List<String> getModifiedFiles() {
 
-        return modifiedFiles;
+        return modifiedFiles == null ? getContainer().getModifiedFiles() : modifiedFiles;
     }
 
     public EntriesContainer getContainer() {
@@ -510,9 +504,9 @@ public class SerenitecResult implements ModelObject, Serializable, EntriesProvid
      * 
      * @return the serialization file.
      */
-    private XmlFile getDataFile() {
+    private File getDataFile() {
 
-        return new XmlFile(XSTREAM, new File(getOwner().getRootDir(), "compiler-serenitec.xml"));
+        return ProjectFile.getFile(getOwner().getRootDir());
     }
 
     /**
@@ -561,37 +555,36 @@ public class SerenitecResult implements ModelObject, Serializable, EntriesProvid
             // normal, low);
         } else if (link.startsWith("Severity")) {
             System.out.println("Analyse de la severit  :  " + StringUtils.substringAfter(link, "Severity."));
-            resultat = new SeverityDetails(getOwner(), save_project, Integer.parseInt(StringUtils.substringAfter(link, "Severity.")));
+            resultat = new SeverityDetails(getOwner(), getProject(), Integer.parseInt(StringUtils.substringAfter(link, "Severity.")));
         } else if (link.startsWith("Errors")) {
             System.out.println("Analyse d'une erreur :  " + StringUtils.substringAfter(link, "Errors."));
-            resultat = new ErrorDetails(getOwner(), save_project, StringUtils.substringAfter(link, "Errors."));
+            resultat = new ErrorDetails(getOwner(), getProject(), StringUtils.substringAfter(link, "Errors."));
         } else if (link.startsWith("testedRules")) {
-            resultat = new ProjectDetails(getOwner(), "testedRules", rules);
+            resultat = new ProjectDetails(getOwner(), "testedRules", getRules());
         } else if (link.startsWith("errors")) {
-            resultat = new ProjectDetails(getOwner(), "errors", entries);
+            resultat = new ProjectDetails(getOwner(), "errors", getActiveEntry());
         } else if (link.startsWith("newErrors")) {
-            resultat = new ProjectDetails(getOwner(), "newErrors", newEntries);
+            resultat = new ProjectDetails(getOwner(), "newErrors", getNewEntries());
         } else if (link.startsWith("fixedErrors")) {
-            resultat = new ProjectDetails(getOwner(), "fixedErrors", entriesfixed);
+            resultat = new ProjectDetails(getOwner(), "fixedErrors", getEntriesFixed());
         } else if (link.startsWith("unfixedErrors")) {
-            resultat = new ProjectDetails(getOwner(), "unfixedErrors", entriesnotfixed);
+            resultat = new ProjectDetails(getOwner(), "unfixedErrors", getEntriesNotFixed());
         }
         if (link.startsWith("patterns")) {
             resultat = new ProjectDetails(getOwner(), "patterns", fichiers);
         } else if (link.startsWith("source.")) {
-            System.out.println(StringUtils.substringAfter(link, "source."));
-            System.out.println("******************************************" + "***************");
-            System.out.println(save_project.getContainer().getPointeur(Integer.parseInt(StringUtils.substringAfter(link, "source."))));
-            System.out.println("******************************************" + "***************");
-
             int key = Integer.parseInt(StringUtils.substringAfter(link, "source."));
             /**
              * We find the pattern having this ID key
              */
             ReportPointeur send_pattern = null;
-            for (ReportPointeur pattern : pointeurs) {
-                if (pattern.getKey() == key) {
-                    send_pattern = pattern;
+            if (pointeurs == null) {
+                send_pattern = getContainer().getPointeur(key);
+            } else {
+                for (ReportPointeur pattern : pointeurs) {
+                    if (pattern.getKey() == key) {
+                        send_pattern = pattern;
+                    }
                 }
             }
             resultat = new SourceDetail(getOwner(), send_pattern);
@@ -617,7 +610,7 @@ public class SerenitecResult implements ModelObject, Serializable, EntriesProvid
      */
     public List<ReportEntry> getEntries() {
 
-        return rules;
+        return getRules();
     }
 
     /**
@@ -625,7 +618,7 @@ public class SerenitecResult implements ModelObject, Serializable, EntriesProvid
      */
     public List<ReportEntry> getEntriesFixed() {
 
-        return entriesfixed;
+        return entriesfixed == null ? getContainer().getEntriesFixed() : entriesfixed;
     }
 
     /**
@@ -633,7 +626,7 @@ public class SerenitecResult implements ModelObject, Serializable, EntriesProvid
      */
     public List<ReportEntry> getEntriesNotFixed() {
 
-        return entriesnotfixed;
+        return entriesnotfixed == null ? getContainer().getEntriesNotFixed() : entriesnotfixed;
     }
 
     /**
@@ -658,7 +651,7 @@ public class SerenitecResult implements ModelObject, Serializable, EntriesProvid
 
     public List<ReportEntry> getActiveEntry() {
 
-        return entries;
+        return entries == null ? getContainer().getEntries() : entries;
     }
 
     /**
@@ -666,7 +659,7 @@ public class SerenitecResult implements ModelObject, Serializable, EntriesProvid
      */
     public List<ReportEntry> getNewEntries() {
 
-        return newEntries;
+        return newEntries == null ? getContainer().getNewEntries() : newEntries;
     }
 
     /**
@@ -990,14 +983,37 @@ public class SerenitecResult implements ModelObject, Serializable, EntriesProvid
      * 
      * @return the associated project of this result.
      */
-    public Project getProject() {
+    public synchronized Project getProject() {
+
+        if (save_project != null) {
+            return save_project;
+        }
+        Project project = projectSerenitec == null ? null : projectSerenitec.get();
+        if (project == null) {
+            project = loadProject();
+            projectSerenitec = new SoftReference<Project>(project);
+        }
+        return project;
+    }
+
+    /**
+     * Reads the project back from the {@link ProjectFile} of the build.
+     * 
+     * @return the project, an empty project if it could not be read
+     */
+    private Project loadProject() {
 
-        return save_project;
+        try {
+            return ProjectFile.read(getDataFile());
+        } catch (final IOException exception) {
+            LOGGER.log(Level.WARNING, "Could not read the serenitec result of " + owner, exception);
+            return new Project();
+        }
     }
 
     public Project getProjectSerenitec() {
 
-        return projectSerenitec.get();
+        return getProject();
     }
 
     /**
@@ -1005,7 +1021,7 @@ public class SerenitecResult implements ModelObject, Serializable, EntriesProvid
      */
     public List<ReportEntry> getTopFiveEntries() {
 
-        return topFiveEntries;
+        return topFiveEntries == null ? getContainer().getTopFiveEntries() : topFiveEntries;
     }
 
     /**
@@ -1013,7 +1029,14 @@ public class SerenitecResult implements ModelObject, Serializable, EntriesProvid
      */
     public List<ReportEntry> getTopFiveEntriesBefore() {
 
-        return topFiveEntriesBefore;
+        if (topFiveEntriesBefore != null) {
+            return topFiveEntriesBefore;
+        }
+        final Project previousResult = getPreviousResult();
+        if (previousResult == null) {
+            return Collections.emptyList();
+        }
+        return previousResult.getContainer().getTopFiveEntries();
     }
 
     /**
@@ -1021,14 +1044,14 @@ public class SerenitecResult implements ModelObject, Serializable, EntriesProvid
      */
     public boolean hasRules() {
 
-        return rules.size() > 0;
+        return numberOfRules > 0;
     }
     /**
      * @return if it has entries
      */
     public boolean hasEntries() {
 
-        return entries.size() > 0;
+        return numberOfEntry > 0;
     }
 
     /**
@@ -1095,7 +1118,7 @@ public class SerenitecResult implements ModelObject, Serializable, EntriesProvid
 
     public List<ReportEntry> getRules() {
 
-        return rules;
+        return rules == null ? getContainer().getRules() : rules;
     }
     public int getNumberOfSeverityDesignPatterns() {
 
@@ -28,6 +28,16 @@ public class ReportPointeur
         key = nbrePointeur;
         nbrePointeur++;
     }
+    /**
+     * Creates a pattern with a known key, used when a pattern is loaded back from a build.
+     * 
+     * @param key
+     *            the key of the pattern
+     */
+    public ReportPointeur(final int key) {
+
+        this.key = key;
+    }
     public boolean equals(final ReportPointeur _o) {
 
         boolean etat = false;
@@ -60,6 +60,72 @@ public class Diff
         filevec[0] = new file_data(a, h);
         filevec[1] = new file_data(b, h);
     }
+
+    /** Prepare to find differences between two arrays of equivalence numbers,
+    see {@link #forLines(String[], String[])}.  */
+    private Diff(int[] a, int[] b, int equivMax)
+    {
+        equiv_max = equivMax;
+        filevec[0] = new file_data(a);
+        filevec[1] = new file_data(b);
+    }
+
+    /** Prepare to find differences between the lines of two files using less
+    memory than {@link #Diff(Object[], Object[])}.  The lines are translated
+    to equivalence numbers with an open addressing table of ints, instead of a
+    <code>Hashtable</code> holding an <code>Integer</code> for every line, and
+    the line arrays are not referenced by the returned object.  The comparison
+    itself is the same linear space algorithm.
+    @param a the lines of the first file
+    @param b the lines of the second file
+    @return the object to run the comparison with
+     */
+    public static Diff forLines(String[] a, String[] b)
+    {
+        int capacity = 16;
+        while (capacity < 2 * (a.length + b.length))
+        {
+            capacity <<= 1;
+        }
+        final int[] table = new int[ capacity ];
+        final String[] classes = new String[ a.length + b.length + 1 ];
+        final int[] counter = { 1 };
+        final int[] ea = equivalences(a, table, classes, counter);
+        final int[] eb = equivalences(b, table, classes, counter);
+        return new Diff(ea, eb, counter[0]);
+    }
+
+    /** Assign each line the number of its equivalence class, the slots of
+    TABLE hold the class numbers and CLASSES the first line of each class.  */
+    private static int[] equivalences(String[] lines, int[] table, String[] classes, int[] counter)
+    {
+        final int mask = table.length - 1;
+        final int[] equivs = new int[ lines.length ];
+        for (int i = 0; i < lines.length; ++i)
+        {
+            final String line = lines[i] == null ? "" : lines[i];
+            int h = line.hashCode();
+            h ^= (h >>> 16);
+            int slot = (h * 0x9E3779B9) & mask;
+            for (;;)
+            {
+                final int equiv = table[slot];
+                if (equiv == 0)
+                {
+                    table[slot] = equivs[i] = counter[0];
+                    classes[counter[0]++] = line;
+                    break;
+                }
+                if (classes[equiv].equals(line))
+                {
+                    equivs[i] = equiv;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+        return equivs;
+    }
     /** 1 more than the maximum equivalence value used for this or its
     sibling file. */
     private int equiv_max = 1;
@@ -894,6 +960,15 @@ public class Diff
             nondiscarded_lines = j;
         }
 
+        file_data(int[] equivs)
+        {
+            buffered_lines = equivs.length;
+
+            this.equivs = equivs;
+            undiscarded = new int[ buffered_lines ];
+            realindexes = new int[ buffered_lines ];
+        }
+
         file_data(Object[] data, Hashtable h)
         {
             buffered_lines = data.length;
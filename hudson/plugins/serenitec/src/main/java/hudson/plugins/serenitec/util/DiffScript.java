@@ -0,0 +1,228 @@
+/**
+ * Hudson Serenitec plugin
+ */
+package hudson.plugins.serenitec.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The edit script of two files, as computed by {@link Diff}, held in an int array of four ints per change rather
+ * than in a chain of change objects. Scripts are cached in a directory of the build, in a file named after the
+ * content hash of the two files, so a file pair is only compared once.
+ */
+public final class DiffScript
+{
+
+    /** Name of the cache directory in the build directory */
+    public static final String CACHE_DIRECTORY = "serenitec-diffs";
+
+    private static final int LINE0    = 0;
+    private static final int LINE1    = 1;
+    private static final int DELETED  = 2;
+    private static final int INSERTED = 3;
+    private static final int FIELDS   = 4;
+
+    /** The changes, FIELDS ints each, in the order of the lines */
+    private final int[]      changes;
+
+    private DiffScript(int[] changes) {
+
+        this.changes = changes;
+    }
+
+    /**
+     * Compares two files.
+     * 
+     * @param a
+     *            the lines of the first file
+     * @param b
+     *            the lines of the second file
+     * @return the edit script
+     */
+    public static DiffScript compute(String[] a, String[] b) {
+
+        Diff.change first = Diff.forLines(a, b).diff_2(false);
+        int size = 0;
+        for (Diff.change change = first; change != null; change = change.link) {
+            size++;
+        }
+        int[] changes = new int[size * FIELDS];
+        int index = 0;
+        for (Diff.change change = first; change != null; change = change.link) {
+            changes[index + LINE0] = change.line0;
+            changes[index + LINE1] = change.line1;
+            changes[index + DELETED] = change.deleted;
+            changes[index + INSERTED] = change.inserted;
+            index += FIELDS;
+        }
+        return new DiffScript(changes);
+    }
+
+    /**
+     * Returns the edit script of two files from the cache, comparing the files and caching the script if it is not
+     * cached yet. If the cache cannot be read or written the script is still returned.
+     * 
+     * @param cacheDirectory
+     *            the cache directory
+     * @param a
+     *            the lines of the first file
+     * @param b
+     *            the lines of the second file
+     * @return the edit script
+     */
+    public static DiffScript get(File cacheDirectory, String[] a, String[] b) {
+
+        File cached = new File(cacheDirectory, key(a, b) + ".diff");
+        if (cached.exists()) {
+            try {
+                return read(cached);
+            } catch (IOException ex) {
+                Logger.getLogger(DiffScript.class.getName()).log(Level.WARNING, "Unreadable diff cache " + cached, ex);
+            }
+        }
+        DiffScript script = compute(a, b);
+        try {
+            if (!cacheDirectory.exists()) {
+                cacheDirectory.mkdirs();
+            }
+            script.write(cached);
+        } catch (IOException ex) {
+            Logger.getLogger(DiffScript.class.getName()).log(Level.WARNING, "Could not cache the diff " + cached, ex);
+        }
+        return script;
+    }
+
+    /**
+     * @return the number of changes
+     */
+    public int size() {
+
+        return changes.length / FIELDS;
+    }
+
+    /**
+     * @param index
+     *            the change
+     * @return the first affected line of the first file
+     */
+    public int getLine0(int index) {
+
+        return changes[index * FIELDS + LINE0];
+    }
+
+    /**
+     * @param index
+     *            the change
+     * @return the first affected line of the second file
+     */
+    public int getLine1(int index) {
+
+        return changes[index * FIELDS + LINE1];
+    }
+
+    /**
+     * @param index
+     *            the change
+     * @return the number of lines deleted from the first file
+     */
+    public int getDeleted(int index) {
+
+        return changes[index * FIELDS + DELETED];
+    }
+
+    /**
+     * @param index
+     *            the change
+     * @return the number of lines inserted in the second file
+     */
+    public int getInserted(int index) {
+
+        return changes[index * FIELDS + INSERTED];
+    }
+
+    /**
+     * Writes the script to a temporary file of its own in the directory of the cache file and renames it, so that
+     * concurrent writers of the same script do not write into the same file.
+     */
+    void write(File file) throws IOException {
+
+        File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(changes.length);
+            for (int value : changes) {
+                out.writeInt(value);
+            }
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            if (!file.exists()) {
+                throw new IOException("Could not rename " + tmp + " to " + file);
+            }
+            // another writer cached the same script first
+        }
+    }
+
+    static DiffScript read(File file) throws IOException {
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            int length = in.readInt();
+            if (length < 0 || length % FIELDS != 0 || length > file.length() / 4) {
+                throw new IOException("Corrupted diff cache " + file);
+            }
+            int[] changes = new int[length];
+            for (int i = 0; i < length; i++) {
+                changes[i] = in.readInt();
+            }
+            return new DiffScript(changes);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return the SHA-1 of the lines of the two files, in hexadecimal
+     */
+    static String key(String[] a, String[] b) {
+
+        return digest(a) + digest(b);
+    }
+
+    private static String digest(String[] lines) {
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            for (String line : lines) {
+                if (line != null) {
+                    digest.update(line.getBytes("UTF-8"));
+                }
+                digest.update((byte) '\n');
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte value : digest.digest()) {
+                hex.append(Character.forDigit((value >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(value & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -61,6 +61,7 @@ public class Project extends EntriesContainer
     public void addModule(final MavenModule module) {
 
         addEntries(module.getEntries());
+        addModuleMapping(module);
         if (module.hasError()) {
             hasModuleError = true;
             addError(module.getError());
@@ -117,6 +118,38 @@ public class Project extends EntriesContainer
         return hasModuleError || error != null;
     }
 
+    /**
+     * Returns whether a module with an error is part of this project, without the errors of the project itself.
+     * 
+     * @return <code>true</code> if at least one module has an error.
+     */
+    boolean hasModuleError() {
+
+        return hasModuleError;
+    }
+
+    /**
+     * Sets whether a module with an error is part of this project.
+     * 
+     * @param hasModuleError
+     *            <code>true</code> if at least one module has an error.
+     */
+    void setModuleError(final boolean hasModuleError) {
+
+        this.hasModuleError = hasModuleError;
+    }
+
+    /**
+     * Adds a module that was read back with this project, its entries are already in this project.
+     * 
+     * @param module
+     *            the module
+     */
+    void restoreModule(final MavenModule module) {
+
+        addModuleMapping(module);
+    }
+
     /**
      * Rebuilds the priorities mapping.
      * 
@@ -0,0 +1,293 @@
+/**
+ * Hudson Serenitec plugin
+ */
+package hudson.plugins.serenitec.util;
+
+import hudson.plugins.serenitec.parseur.ReportDescription;
+import hudson.plugins.serenitec.parseur.ReportEntry;
+import hudson.plugins.serenitec.parseur.ReportPointeur;
+import hudson.plugins.serenitec.util.model.MavenModule;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Reads and writes the {@link Project} of a build as a compressed binary file in the build directory, so a large
+ * result is neither kept in <tt>build.xml</tt> nor loaded with the build, and can be read back once it is needed.
+ * <p>
+ * The file holds a magic number and a version, the project, its rules with their descriptions and patterns, the new
+ * entries and the modules. Entries are written once and referred to by their position in the rules. Strings, e.g.
+ * the path of a file with many patterns, are written once and referred to by their position in the file, so they are
+ * also shared once read back.
+ */
+public final class ProjectFile
+{
+
+    /** Name of the file in the build directory */
+    public static final String FILE_NAME = "serenitec-result.bin";
+
+    private static final int   MAGIC     = 0x53455245;
+    private static final int   VERSION   = 1;
+
+    private static final int   NULL      = -1;
+    private static final int   NEW       = -2;
+
+    private ProjectFile() {
+
+    }
+
+    /**
+     * Returns the file of a build.
+     *
+     * @param buildDir
+     *            the build directory
+     * @return the file
+     */
+    public static File getFile(final File buildDir) {
+
+        return new File(buildDir, FILE_NAME);
+    }
+
+    /**
+     * Writes a project, replacing the file if it exists.
+     *
+     * @param file
+     *            the file
+     * @param project
+     *            the project
+     * @throws IOException
+     *             if the file could not be written
+     */
+    public static void write(final File file, final Project project) throws IOException {
+
+        final File tmp = new File(file.getPath() + ".tmp");
+        final ProjectWriter out = new ProjectWriter(new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(
+                new FileOutputStream(tmp)))));
+        try {
+            out.write(project);
+        } finally {
+            out.data.close();
+        }
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Could not replace " + file);
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Could not rename " + tmp + " to " + file);
+        }
+    }
+
+    /**
+     * Reads a project.
+     *
+     * @param file
+     *            the file
+     * @return the project
+     * @throws IOException
+     *             if the file could not be read
+     */
+    public static Project read(final File file) throws IOException {
+
+        final ProjectReader in = new ProjectReader(new DataInputStream(new BufferedInputStream(new GZIPInputStream(
+                new FileInputStream(file)))));
+        try {
+            if (in.data.readInt() != MAGIC) {
+                throw new IOException(file + " is not a serenitec result");
+            }
+            final int version = in.data.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported serenitec result version " + version + ": " + file);
+            }
+            return in.read();
+        } finally {
+            in.data.close();
+        }
+    }
+
+    private static final class ProjectWriter
+    {
+
+        private final DataOutputStream          data;
+        private final Map<String, Integer>      strings = new HashMap<String, Integer>();
+        private final Map<ReportEntry, Integer> indexes = new IdentityHashMap<ReportEntry, Integer>();
+
+        ProjectWriter(final DataOutputStream data) {
+
+            this.data = data;
+        }
+
+        void write(final Project project) throws IOException {
+
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            writeString(project.getName());
+            writeString(project.getWorkspacePath());
+            writeString(project.getError());
+            data.writeBoolean(project.hasModuleError());
+
+            final List<ReportEntry> rules = project.getRules();
+            data.writeInt(rules.size());
+            for (final ReportEntry rule : rules) {
+                indexes.put(rule, indexes.size());
+                writeString(rule.getName());
+                data.writeInt(rule.getSeverity());
+                data.writeInt(rule.getDescriptions().size());
+                for (final ReportDescription description : rule.getDescriptions()) {
+                    writeString(description.getDescription());
+                    writeString(description.getLanguage());
+                    writeString(description.getHelpreference());
+                }
+                data.writeInt(rule.getPointeurs().size());
+                for (final ReportPointeur pointeur : rule.getPointeurs()) {
+                    data.writeInt(pointeur.getKey());
+                    writeString(pointeur.getFilename());
+                    writeString(pointeur.getFullpath());
+                    data.writeInt(pointeur.getLinenumber());
+                    data.writeBoolean(pointeur.isIsfixed());
+                }
+            }
+            writeEntries(project.getNewEntries());
+
+            data.writeInt(project.getModules().size());
+            for (final MavenModule module : project.getModules()) {
+                writeString(module.getName());
+                writeString(module.getError());
+                writeEntries(module.getRules());
+            }
+        }
+
+        private void writeEntries(final List<ReportEntry> entries) throws IOException {
+
+            final List<Integer> known = new ArrayList<Integer>();
+            if (entries != null) {
+                for (final ReportEntry entry : entries) {
+                    final Integer index = indexes.get(entry);
+                    if (index != null) {
+                        known.add(index);
+                    }
+                }
+            }
+            data.writeInt(known.size());
+            for (final Integer index : known) {
+                data.writeInt(index);
+            }
+        }
+
+        private void writeString(final String value) throws IOException {
+
+            if (value == null) {
+                data.writeInt(NULL);
+                return;
+            }
+            final Integer index = strings.get(value);
+            if (index != null) {
+                data.writeInt(index);
+                return;
+            }
+            strings.put(value, strings.size());
+            data.writeInt(NEW);
+            final byte[] bytes = value.getBytes("UTF-8");
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        }
+    }
+
+    private static final class ProjectReader
+    {
+
+        private final DataInputStream   data;
+        private final List<String>      strings = new ArrayList<String>();
+        private final List<ReportEntry> rules   = new ArrayList<ReportEntry>();
+
+        ProjectReader(final DataInputStream data) {
+
+            this.data = data;
+        }
+
+        Project read() throws IOException {
+
+            final Project project = new Project();
+            project.setName(readString());
+            project.setWorkspacePath(readString());
+            project.setError(readString());
+            project.setModuleError(data.readBoolean());
+
+            final int size = data.readInt();
+            for (int i = 0; i < size; i++) {
+                final ReportEntry rule = new ReportEntry();
+                rule.setName(readString());
+                rule.setSeverity(data.readInt());
+                final int descriptions = data.readInt();
+                for (int j = 0; j < descriptions; j++) {
+                    final ReportDescription description = new ReportDescription();
+                    description.setDescription(readString());
+                    description.setLanguage(readString());
+                    description.setHelpreference(readString());
+                    rule.getDescriptions().add(description);
+                }
+                final int pointeurs = data.readInt();
+                for (int j = 0; j < pointeurs; j++) {
+                    final ReportPointeur pointeur = new ReportPointeur(data.readInt());
+                    pointeur.setFilename(readString());
+                    pointeur.setFullpath(readString());
+                    pointeur.setLinenumber(data.readInt());
+                    pointeur.setIsfixed(data.readBoolean());
+                    rule.getPointeurs().add(pointeur);
+                }
+                rules.add(rule);
+            }
+            project.addEntries(rules);
+            project.setNewEntries(readEntries());
+
+            final int modules = data.readInt();
+            for (int i = 0; i < modules; i++) {
+                final MavenModule module = new MavenModule(readString());
+                final String error = readString();
+                if (error != null) {
+                    module.setError(error);
+                }
+                module.addEntries(readEntries());
+                project.restoreModule(module);
+            }
+            return project;
+        }
+
+        private List<ReportEntry> readEntries() throws IOException {
+
+            final int size = data.readInt();
+            final List<ReportEntry> entries = new ArrayList<ReportEntry>(size);
+            for (int i = 0; i < size; i++) {
+                entries.add(rules.get(data.readInt()));
+            }
+            return entries;
+        }
+
+        private String readString() throws IOException {
+
+            final int index = data.readInt();
+            if (index == NULL) {
+                return null;
+            }
+            if (index != NEW) {
+                return strings.get(index);
+            }
+            final byte[] bytes = new byte[data.readInt()];
+            data.readFully(bytes);
+            final String value = new String(bytes, "UTF-8");
+            strings.add(value);
+            return value;
+        }
+    }
+}
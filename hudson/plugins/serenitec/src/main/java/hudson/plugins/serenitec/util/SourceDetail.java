@@ -14,20 +14,36 @@ import hudson.model.ModelObject;
 import hudson.plugins.serenitec.parseur.ReportPointeur;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.Vector;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
 /**
  * Renders a source file containing an annotation for the whole file or a specific line number.
  * 
+ * The diff of the two files is computed once and cached in the build directory, see {@link DiffScript}. The table is
+ * written row by row to a writer, and a range of rows can be rendered, so large files are shown one page at a time.
+ * 
  * @author Georges Bossert
  */
 public class SourceDetail implements ModelObject
 {
 
+    /** Number of rows of the table shown on one page */
+    public static final int           PAGE_SIZE = 1000;
+    /** Size of the chunks the table is streamed in */
+    private static final int          CHUNK_SIZE = 8192;
+
     /**
      * Pattern from which we want the source
      */
@@ -38,8 +54,11 @@ public class SourceDetail implements ModelObject
     private final String              _fileBefore;
     private final String              _fileAfter;
 
-    /** Source Code */
-    private String                    _sourceCode;
+    /** Lines of the two files and their diff, loaded on first use */
+    private String[]                  _linesBefore;
+    private String[]                  _linesAfter;
+    private DiffScript                _script;
+    private int                       _rowCount = -1;
 
     public SourceDetail(final AbstractBuild<?, ?> owner, ReportPointeur pattern) {
 
@@ -55,193 +74,256 @@ public class SourceDetail implements ModelObject
         return filepath + ".bis";
     }
 
+    /**
+     * @return the whole table
+     */
     public String getSourceCode() {
 
-        execute();
-        return _sourceCode;
+        return getSourceCode(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param from
+     *            the first row of the page, as given in the request, may be null
+     * @return the table of one page of rows
+     */
+    public String getSourceCode(String from) {
+
+        int first = getFirstRow(from);
+        return getSourceCode(first, first + PAGE_SIZE);
     }
 
     /**
-     * Execute the diff
+     * @param from
+     *            the first row, inclusive
+     * @param to
+     *            the last row, exclusive
+     * @return the table of the rows in the range
      */
-    private void execute() {
+    public String getSourceCode(int from, int to) {
 
+        StringWriter out = new StringWriter();
         try {
-            String[] a = file2string(_fileBefore);
-            String[] b = file2string(_fileAfter);
-            Diff diff = new Diff(a, b);
-
-            Diff.change next = diff.diff_2(false);
-            next = diff.diff_2(false);
-
-            StringBuilder stb = new StringBuilder();
-            stb.append("<table class=\"diff\" cellpadding=\"0\" cellspacing=\"0\" >");
-            stb.append("<tr>");
-            stb.append("<td class=\"ligne_entete\">&nbsp;</td>");
-            stb.append("<td class=\"original_entete\">Original File<br /><small>" + _fileBefore + "</small></td>");
-            stb.append("<td class=\"ligne_entete\">&nbsp;</td>");
-            stb.append("<td class=\"refactored_entete\">Refactored File<br /><small>" + _fileAfter + "</small></td>");
-
-            stb.append("</tr>");
-
-            /**
-             * generation html source code for those two files
-             */
-            int max = a.length;
-            if (max < b.length) {
-                max = b.length;
+            writeSourceCode(out, from, to);
+        } catch (IOException ex) {
+            Logger.getLogger(SourceDetail.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Streams the table to the response, the range of rows is taken from the <code>from</code> and <code>to</code>
+     * parameters, by default the whole table.
+     */
+    public void doTable(final StaplerRequest request, final StaplerResponse response) throws IOException {
+
+        int from = getFirstRow(request.getParameter("from"));
+        int to = Integer.MAX_VALUE;
+        if (request.getParameter("to") != null) {
+            try {
+                to = Integer.parseInt(request.getParameter("to"));
+            } catch (NumberFormatException ex) {
+                // the whole table
             }
-            String ligneAvant, ligneApres;
-            int numeroLigneAvant = 0, numeroLigneApres = 0;
-            while (numeroLigneAvant < a.length || numeroLigneApres < b.length) {
-                stb.append("<tr>");
-                if (numeroLigneAvant >= a.length || a[numeroLigneAvant] == null) {
-                    ligneAvant = "";
-                } else {
-                    ligneAvant = a[numeroLigneAvant];
-                }
-                if (numeroLigneApres >= b.length || b[numeroLigneApres] == null) {
-                    ligneApres = "";
-                } else {
-                    ligneApres = b[numeroLigneApres];
-                }
+        }
+        response.setContentType("text/html;charset=UTF-8");
+        Writer out = new BufferedWriter(response.getWriter(), CHUNK_SIZE);
+        writeSourceCode(out, from, to);
+        out.flush();
+    }
 
-                if (next != null && next.line0 == numeroLigneAvant) {
-                    if (next.inserted > 0 && next.deleted == 0) {
-                        for (int i = 0; i < next.inserted; i++) {
-
-                            stb.append("<tr>");
-                            stb.append("<td class=\"ligne_normal\">" + numeroLigneAvant + "</td>");
-                            stb.append("<td class=\"original_added\">&nbsp;</td>");
-                            stb.append("<td class=\"ligne_added\">" + numeroLigneApres + "</td>");
-                            stb.append("<td class=\"refactored_added\">" + ligneApres + "</td>");
-
-                            stb.append("</tr>");
-
-                            numeroLigneApres++;
-                            if (numeroLigneApres >= b.length || b[numeroLigneApres] == null) {
-                                ligneApres = "";
-                            } else {
-                                ligneApres = b[numeroLigneApres];
-                            }
-                        }
-                    }
-                    if (next.deleted > 0 && next.inserted == 0) {
-                        for (int i = 0; i < next.deleted; i++) {
-
-                            stb.append("<tr>");
-                            stb.append("<td class=\"ligne_deleted\">" + numeroLigneAvant + "</td>");
-                            stb.append("<td class=\"original_deleted\">" + ligneAvant + "</td>");
-                            stb.append("<td class=\"ligne_normal\">" + numeroLigneApres + "</td>");
-                            stb.append("<td class=\"refactored_deleted\">&nbsp;</td>");
-
-                            stb.append("</tr>");
-
-                            numeroLigneAvant++;
-                            if (numeroLigneAvant >= a.length || a[numeroLigneAvant] == null) {
-                                ligneAvant = "";
-                            } else {
-                                ligneAvant = a[numeroLigneAvant];
-                            }
-                        }
-                    }
-                    if (next.deleted > 0 && next.inserted > 0) {
-                        int max_temp = 0;
-                        int min_temp = 0;
-
-                        max_temp = next.deleted;
-                        min_temp = next.inserted;
-
-                        if (max_temp < next.inserted) {
-                            max_temp = next.inserted;
-                            min_temp = next.deleted;
-                        }
-                        for (int i = 1; i <= max_temp; i++) {
-                            if (i > min_temp) {
-                                if (next.deleted > next.inserted) {
-                                    stb.append("<tr>");
-                                    stb.append("<td class=\"ligne_deleted\">" + numeroLigneAvant + "</td>");
-                                    stb.append("<td class=\"original_deleted\">" + ligneAvant + "</td>");
-                                    stb.append("<td class=\"ligne_normal\">" + numeroLigneApres + "</td>");
-                                    stb.append("<td class=\"refactored_deleted\">&nbsp;</td>");
-                                    stb.append("</tr>");
-                                    numeroLigneAvant++;
-                                    if (numeroLigneAvant >= a.length || a[numeroLigneAvant] == null) {
-                                        ligneAvant = "";
-                                    } else {
-                                        ligneAvant = a[numeroLigneAvant];
-                                    }
-                                } else {
-                                    stb.append("<tr>");
-                                    stb.append("<td class=\"ligne_normal\">" + numeroLigneAvant + "</td>");
-                                    stb.append("<td class=\"original_added\">&nbsp;</td>");
-                                    stb.append("<td class=\"ligne_added\">" + numeroLigneApres + "</td>");
-                                    stb.append("<td class=\"refactored_added\">" + ligneApres + "</td>");
-                                    stb.append("</tr>");
-                                    numeroLigneApres++;
-                                    if (numeroLigneApres >= b.length || b[numeroLigneApres] == null) {
-                                        ligneApres = "";
-                                    } else {
-                                        ligneApres = b[numeroLigneApres];
-                                    }
-                                }
-
-                            } else {
-                                stb.append("<tr>");
-                                stb.append("<td class=\"ligne_modified\">" + numeroLigneAvant + "</td>");
-                                stb.append("<td class=\"original_modified\">" + ligneAvant + "</td>");
-                                stb.append("<td class=\"ligne_modified\">" + numeroLigneApres + "</td>");
-                                stb.append("<td class=\"refactored_modified\">" + ligneApres + "</td>");
-                                stb.append("</tr>");
-                                numeroLigneAvant++;
-                                numeroLigneApres++;
-                                if (numeroLigneAvant >= a.length || a[numeroLigneAvant] == null) {
-                                    ligneAvant = "";
-                                } else {
-                                    ligneAvant = a[numeroLigneAvant];
-                                }
-                                if (numeroLigneApres >= b.length || b[numeroLigneApres] == null) {
-                                    ligneApres = "";
-                                } else {
-                                    ligneApres = b[numeroLigneApres];
-                                }
-                            }
-                        }
+    /**
+     * Writes the table of a range of rows.
+     * 
+     * @param out
+     *            the writer
+     * @param from
+     *            the first row, inclusive
+     * @param to
+     *            the last row, exclusive
+     */
+    public void writeSourceCode(Writer out, int from, int to) throws IOException {
+
+        load();
+        out.write("<table class=\"diff\" cellpadding=\"0\" cellspacing=\"0\" >");
+        out.write("<tr>");
+        out.write("<td class=\"ligne_entete\">&nbsp;</td>");
+        out.write("<td class=\"original_entete\">Original File<br /><small>" + _fileBefore + "</small></td>");
+        out.write("<td class=\"ligne_entete\">&nbsp;</td>");
+        out.write("<td class=\"refactored_entete\">Refactored File<br /><small>" + _fileAfter + "</small></td>");
+        out.write("</tr>");
+        render(out, _linesBefore, _linesAfter, _script, from, to);
+        out.write("</table>");
+    }
+
+    /**
+     * @return the number of rows of the table
+     */
+    public int getRowCount() {
+
+        if (_rowCount < 0) {
+            try {
+                load();
+                _rowCount = render(null, _linesBefore, _linesAfter, _script, 0, 0);
+            } catch (IOException ex) {
+                Logger.getLogger(SourceDetail.class.getName()).log(Level.SEVERE, null, ex);
+                return 0;
+            }
+        }
+        return _rowCount;
+    }
+
+    /**
+     * @param from
+     *            the first row of the current page, may be null
+     * @return the first row of the previous page, or -1 if this is the first page
+     */
+    public int getPreviousPage(String from) {
+
+        int first = getFirstRow(from);
+        return first == 0 ? -1 : Math.max(0, first - PAGE_SIZE);
+    }
+
+    /**
+     * @param from
+     *            the first row of the current page, may be null
+     * @return the first row of the next page, or -1 if this is the last page
+     */
+    public int getNextPage(String from) {
 
+        int next = getFirstRow(from) + PAGE_SIZE;
+        return next < getRowCount() ? next : -1;
+    }
+
+    private static int getFirstRow(String from) {
+
+        if (from != null) {
+            try {
+                return Math.max(0, Integer.parseInt(from));
+            } catch (NumberFormatException ex) {
+                // first page
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Reads the files and gets their diff from the cache
+     */
+    private synchronized void load() throws IOException {
+
+        if (_script == null) {
+            _linesBefore = file2string(_fileBefore);
+            _linesAfter = file2string(_fileAfter);
+            _script = DiffScript.get(new File(_owner.getRootDir(), DiffScript.CACHE_DIRECTORY), _linesBefore, _linesAfter);
+        }
+    }
+
+    /**
+     * Generation of the html rows for those two files
+     * 
+     * @param out
+     *            the writer, null to only count the rows
+     * @param a
+     *            the lines of the original file
+     * @param b
+     *            the lines of the refactored file
+     * @param script
+     *            the diff of the two files
+     * @param from
+     *            the first row written, inclusive
+     * @param to
+     *            the last row written, exclusive
+     * @return the number of rows of the whole table
+     */
+    static int render(Writer out, String[] a, String[] b, DiffScript script, int from, int to) throws IOException {
+
+        int next = 0;
+        int row = 0;
+        int numeroLigneAvant = 0, numeroLigneApres = 0;
+        while (numeroLigneAvant < a.length || numeroLigneApres < b.length) {
+            if (out != null && row >= to) {
+                break;
+            }
+            if (next < script.size() && script.getLine0(next) == numeroLigneAvant) {
+                int deleted = script.getDeleted(next);
+                int inserted = script.getInserted(next);
+                int modified = Math.min(deleted, inserted);
+                for (int i = 0; i < modified; i++) {
+                    if (visible(out, row++, from, to)) {
+                        row(out, "ligne_modified", numeroLigneAvant, "original_modified", line(a, numeroLigneAvant), "ligne_modified",
+                                numeroLigneApres, "refactored_modified", line(b, numeroLigneApres));
+                    }
+                    numeroLigneAvant++;
+                    numeroLigneApres++;
+                }
+                for (int i = modified; i < deleted; i++) {
+                    if (visible(out, row++, from, to)) {
+                        row(out, "ligne_deleted", numeroLigneAvant, "original_deleted", line(a, numeroLigneAvant), "ligne_normal",
+                                numeroLigneApres, "refactored_deleted", "&nbsp;");
                     }
-                    next = next.link;
-                } else {
-                    stb.append("<tr>");
-                    stb.append("<td class=\"ligne_normal\">" + numeroLigneAvant + "</td>");
-                    stb.append("<td class=\"original_normal\">" + ligneAvant + "</td>");
-                    stb.append("<td class=\"ligne_normal\">" + numeroLigneApres + "</td>");
-                    stb.append("<td class=\"refactored_normal\">" + ligneApres + "</td>");
-                    stb.append("</tr>");
                     numeroLigneAvant++;
+                }
+                for (int i = modified; i < inserted; i++) {
+                    if (visible(out, row++, from, to)) {
+                        row(out, "ligne_normal", numeroLigneAvant, "original_added", "&nbsp;", "ligne_added", numeroLigneApres,
+                                "refactored_added", line(b, numeroLigneApres));
+                    }
                     numeroLigneApres++;
                 }
+                next++;
+            } else {
+                if (visible(out, row++, from, to)) {
+                    row(out, "ligne_normal", numeroLigneAvant, "original_normal", line(a, numeroLigneAvant), "ligne_normal",
+                            numeroLigneApres, "refactored_normal", line(b, numeroLigneApres));
+                }
+                numeroLigneAvant++;
+                numeroLigneApres++;
             }
-            stb.append("</table>");
-            _sourceCode = stb.toString();
-        } catch (IOException ex) {
-            Logger.getLogger(SourceDetail.class.getName()).log(Level.SEVERE, null, ex);
         }
+        return row;
+    }
+
+    private static boolean visible(Writer out, int row, int from, int to) {
+
+        return out != null && row >= from && row < to;
+    }
+
+    private static String line(String[] lines, int number) {
+
+        if (number >= lines.length || lines[number] == null) {
+            return "";
+        }
+        return lines[number];
+    }
+
+    private static void row(Writer out, String classeAvant, int numeroLigneAvant, String classeLigneAvant, String ligneAvant,
+            String classeApres, int numeroLigneApres, String classeLigneApres, String ligneApres) throws IOException {
+
+        out.write("<tr>");
+        out.write("<td class=\"" + classeAvant + "\">" + numeroLigneAvant + "</td>");
+        out.write("<td class=\"" + classeLigneAvant + "\">" + ligneAvant + "</td>");
+        out.write("<td class=\"" + classeApres + "\">" + numeroLigneApres + "</td>");
+        out.write("<td class=\"" + classeLigneApres + "\">" + ligneApres + "</td>");
+        out.write("</tr>");
     }
 
     static String[] file2string(String file) throws IOException {
 
         BufferedReader rdr = new BufferedReader(new FileReader(file));
-        Vector s = new Vector();
-        for (;;) {
-            String line = rdr.readLine();
-            if (line == null) {
-                break;
+        List<String> s = new ArrayList<String>();
+        try {
+            for (;;) {
+                String line = rdr.readLine();
+                if (line == null) {
+                    break;
+                }
+                s.add(line);
             }
-            s.addElement(line);
+        } finally {
+            rdr.close();
         }
-        String[] a = new String[s.size()];
-        s.copyInto(a);
-        return a;
+        return s.toArray(new String[s.size()]);
     }
 
     public AbstractBuild<?, ?> getOwner() {
@@ -21,7 +21,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -56,27 +56,15 @@ public abstract class EntriesContainer implements EntriesProvider, Serializable
     private final List<ReportEntry>                        rules      = new ArrayList<ReportEntry>();
     /** The active entries */
     private final List<ReportEntry>                        entries    = new ArrayList<ReportEntry>();
-    /** The entries mapped by severity. */
-    private transient Map<Integer, ArrayList<ReportEntry>> entriesBySeverity;
-    /** The entries mapped by name. */
-    private transient Map<String, ArrayList<ReportEntry>>  entriesByName;
-    /** The not fixed entries */
-    private transient List<ReportEntry>                    entriesNotFixed;
-    /** The fixed entries */
-    private transient List<ReportEntry>                    entriesFixed;
+    /** The lookups of the active entries, rebuilt when entries are added or loaded. */
+    private transient EntriesIndex                         index;
     /** The new entries */
     private transient final List<ReportEntry>              newEntries = new ArrayList<ReportEntry>();
-    /** Entries mapped by number of pointeurs */
-    private transient List<ReportEntry>                    entriesOrderByNumberOfPointeurs;
-    /** The TOP5 entries */
-    private transient List<ReportEntry>                    topFiveEntries;
     /** The files */
     private transient final List<ReportFile>               fichiers;
-    /** The list of pointeurs */
-    private transient List<ReportPointeur>                 pointeurs;
-    /** The files that contain annotations mapped by file name. */
+    /** The packages of the patterns mapped by name, created on first use. */
     private transient Map<String, Package>                 packagesByName;
-    /** The files that contain annotations mapped by file name. */
+    /** The modules of this container mapped by name. */
     private transient Map<String, MavenModule>             modulesByName;
     /** Name of this container. */
     private String                                         name;
@@ -139,6 +127,7 @@ public abstract class EntriesContainer implements EntriesProvider, Serializable
             addEntry(entry);
         }
         initialize();
+        findNewEntries();
     }
     public final void addEntries(final Collection<? extends ReportEntry> detectedEntries, AbstractBuild<?, ?> build) {
 
@@ -265,7 +254,7 @@ public abstract class EntriesContainer implements EntriesProvider, Serializable
      */
     public boolean containsPackage(final String packageName) {
 
-        return packagesByName.containsKey(packageName);
+        return getPackagesByName().containsKey(packageName);
     }
 
     /**
@@ -313,22 +302,11 @@ public abstract class EntriesContainer implements EntriesProvider, Serializable
      */
     public ReportPointeur getPointeur(int key) {
 
-        for (ReportPointeur pointeur : pointeurs) {
-            if (pointeur.getKey() == key) {
-                return pointeur;
-            }
-        }
-        return null;
+        return index.getPointeur(key);
     }
     public List<String> getModifiedFiles() {
 
-        List<String> resultat = new ArrayList<String>();
-        for (ReportPointeur pointeur : pointeurs) {
-            if (!resultat.contains(pointeur.getFilename())) {
-                resultat.add(pointeur.getFilename());
-            }
-        }
-        return resultat;
+        return index.getModifiedFiles();
     }
     public final List<ReportEntry> getRules() {
 
@@ -342,22 +320,22 @@ public abstract class EntriesContainer implements EntriesProvider, Serializable
 
     public final Map<String, ArrayList<ReportEntry>> getEntriesByName() {
 
-        return entriesByName;
+        return index.getEntriesByName();
     }
 
     public final Map<Integer, ArrayList<ReportEntry>> getEntriesBySeverity() {
 
-        return entriesBySeverity;
+        return index.getEntriesBySeverity();
     }
 
     public final List<ReportEntry> getEntriesFixed() {
 
-        return entriesFixed;
+        return index.getEntriesFixed();
     }
 
     public List<ReportEntry> getEntriesNotFixed() {
 
-        return entriesNotFixed;
+        return index.getEntriesNotFixed();
     }
 
     /**
@@ -468,117 +446,66 @@ public abstract class EntriesContainer implements EntriesProvider, Serializable
     }
     public int getNumberOfFixedEntry() {
 
-        return entriesFixed.size();
+        return index.getEntriesFixed().size();
     }
 
     public int getNumberOfNotFixedEntry() {
 
-        return entriesNotFixed.size();
+        return index.getEntriesNotFixed().size();
     }
 
     public int getNumberOfPointeurs() {
 
-        System.out.println("EntriesContainer.getNumberOfPointeurs : " + pointeurs.size());
-        return pointeurs.size();
+        return index.getPointeurs().size();
     }
     public int getNumberOfSeverityDesignPatterns() {
 
-        int resultat = 0;
-        if (entriesBySeverity.containsKey(3)) {
-            for (ReportEntry entry : entriesBySeverity.get(3)) {
-                resultat += entry.getNumberOfPointeurs();
-            }
-        }
-        return resultat;
+        return index.getNumberOfSeverityPatterns(3);
     }
 
     public int getNumberOfSeverityFormatagePatterns() {
 
-        int resultat = 0;
-        if (entriesBySeverity.containsKey(1)) {
-            for (ReportEntry entry : entriesBySeverity.get(1)) {
-                resultat += entry.getNumberOfPointeurs();
-            }
-        }
-        return resultat;
+        return index.getNumberOfSeverityPatterns(1);
     }
 
     public int getNumberOfSeverityHighSecurityPatterns() {
 
-        int resultat = 0;
-        if (entriesBySeverity.containsKey(5)) {
-            for (ReportEntry entry : entriesBySeverity.get(5)) {
-                resultat += entry.getNumberOfPointeurs();
-            }
-        }
-        return resultat;
+        return index.getNumberOfSeverityPatterns(5);
     }
 
     public int getNumberOfSeverityLowSecurityPatterns() {
 
-        int resultat = 0;
-        if (entriesBySeverity.containsKey(4)) {
-            for (ReportEntry entry : entriesBySeverity.get(4)) {
-                resultat += entry.getNumberOfPointeurs();
-            }
-        }
-        return resultat;
+        return index.getNumberOfSeverityPatterns(4);
     }
 
     public int getNumberOfSeverityPerformancePatterns() {
 
-        int resultat = 0;
-        if (entriesBySeverity.containsKey(2)) {
-            for (ReportEntry entry : entriesBySeverity.get(2)) {
-                resultat += entry.getNumberOfPointeurs();
-            }
-        }
-        return resultat;
+        return index.getNumberOfSeverityPatterns(2);
     }
 
     public int getNumberOfSeverityDesign() {
 
-        if (entriesBySeverity.containsKey(3)) {
-            return entriesBySeverity.get(3).size();
-        } else {
-            return 0;
-        }
+        return index.getNumberOfSeverity(3);
     }
 
     public int getNumberOfSeverityFormatage() {
 
-        if (entriesBySeverity.containsKey(1)) {
-            return entriesBySeverity.get(1).size();
-        } else {
-            return 0;
-        }
+        return index.getNumberOfSeverity(1);
     }
 
     public int getNumberOfSeverityHighSecurity() {
 
-        if (entriesBySeverity.containsKey(5)) {
-            return entriesBySeverity.get(5).size();
-        } else {
-            return 0;
-        }
+        return index.getNumberOfSeverity(5);
     }
 
     public int getNumberOfSeverityLowSecurity() {
 
-        if (entriesBySeverity.containsKey(4)) {
-            return entriesBySeverity.get(4).size();
-        } else {
-            return 0;
-        }
+        return index.getNumberOfSeverity(4);
     }
 
     public int getNumberOfSeverityPerformance() {
 
-        if (entriesBySeverity.containsKey(2)) {
-            return entriesBySeverity.get(2).size();
-        } else {
-            return 0;
-        }
+        return index.getNumberOfSeverity(2);
     }
 
     /**
@@ -590,8 +517,8 @@ public abstract class EntriesContainer implements EntriesProvider, Serializable
      */
     public Package getPackage(final String packageName) {
 
-        if (packagesByName.containsKey(packageName)) {
-            return packagesByName.get(packageName);
+        if (getPackagesByName().containsKey(packageName)) {
+            return getPackagesByName().get(packageName);
         }
         throw new NoSuchElementException("Package not found: " + packageName);
     }
@@ -613,12 +540,32 @@ public abstract class EntriesContainer implements EntriesProvider, Serializable
      */
     public Collection<Package> getPackages() {
 
-        return Collections.unmodifiableCollection(packagesByName.values());
+        return Collections.unmodifiableCollection(getPackagesByName().values());
+    }
+
+    /**
+     * Returns the packages of the patterns, a package holding the entries that have a pattern in one of its files. The
+     * packages are created the first time they are asked for.
+     * 
+     * @return the packages mapped by name
+     */
+    private synchronized Map<String, Package> getPackagesByName() {
+
+        if (packagesByName == null) {
+            final Map<String, Package> packages = new LinkedHashMap<String, Package>();
+            for (final Map.Entry<String, List<ReportEntry>> mapping : index.getEntriesByPackage().entrySet()) {
+                final Package container = new Package(mapping.getKey());
+                container.addEntries(mapping.getValue());
+                packages.put(mapping.getKey(), container);
+            }
+            packagesByName = packages;
+        }
+        return packagesByName;
     }
 
     public final List<ReportPointeur> getPointeurs() {
 
-        return pointeurs;
+        return index.getPointeurs();
     }
 
     /**
@@ -635,7 +582,7 @@ public abstract class EntriesContainer implements EntriesProvider, Serializable
 
     public final List<ReportEntry> getTopFiveEntries() {
 
-        return topFiveEntries;
+        return index.getTopFiveEntries();
     }
 
     /** {@inheritDoc} */
@@ -650,104 +597,61 @@ public abstract class EntriesContainer implements EntriesProvider, Serializable
      */
     private void initialize() {
 
-        entriesBySeverity = new Hashtable<Integer, ArrayList<ReportEntry>>();
-        entriesByName = new Hashtable<String, ArrayList<ReportEntry>>();
-        entriesNotFixed = new ArrayList<ReportEntry>();
-        entriesFixed = new ArrayList<ReportEntry>();
-        topFiveEntries = new ArrayList<ReportEntry>();
-        entriesOrderByNumberOfPointeurs = new ArrayList<ReportEntry>();
-        pointeurs = new ArrayList<ReportPointeur>();
-
-        /**
-         * NEW ENTRIES
-         */
-
-        System.out.println("Execution de EntriesContainer.addEntries() : -------------------------");
-        boolean doit = true;
-        if (build != null) {
-            Object previous = build.getPreviousBuild();
-            boolean go = true;
-            while (previous != null && previous instanceof AbstractBuild<?, ?> && go) {
-                AbstractBuild<?, ?> previousBuild = (AbstractBuild<?, ?>) previous;
-                SerenitecResultAction previousAction = previousBuild.getAction(SerenitecResultAction.class);
-                if (previousAction != null) {
-                    List<ReportEntry> prec_entries = previousAction.getResult().getContainer().getEntries();
-                    if (prec_entries != null) {
-                        for (ReportEntry entry : entries) {
-                            System.out.println("Entry : " + entry.getName() + " est nouvelle ?");
-                            for (ReportEntry temp_entry : prec_entries) {
-                                if (temp_entry.equals(entry)) {
-                                    doit = false;
-                                }
-                            }
-                            if (doit) {
-                                newEntries.add(entry);
-                                System.out.println("New Entry Found !!");
-                            }
-                            doit = true;
+        Collections.sort(rules, Collections.reverseOrder());
+        index = new EntriesIndex(rules, entries);
+        packagesByName = null;
+        if (modulesByName == null) {
+            modulesByName = new HashMap<String, MavenModule>();
+        }
+    }
+
+    /**
+     * Finds the entries that were not reported by the last build with a result, looking the entries up by name in
+     * the index of the previous result.
+     */
+    private void findNewEntries() {
+
+        if (build == null) {
+            return;
+        }
+        newEntries.clear();
+        Object previous = build.getPreviousBuild();
+        while (previous != null && previous instanceof AbstractBuild<?, ?>) {
+            final AbstractBuild<?, ?> previousBuild = (AbstractBuild<?, ?>) previous;
+            final SerenitecResultAction previousAction = previousBuild.getAction(SerenitecResultAction.class);
+            if (previousAction != null) {
+                final EntriesContainer previousContainer = previousAction.getResult().getContainer();
+                if (previousContainer.getEntries() != null) {
+                    for (final ReportEntry entry : entries) {
+                        if (!previousContainer.containsEntry(entry)) {
+                            newEntries.add(entry);
                         }
-                        go = false;
                     }
+                    return;
                 }
-                previous = previousBuild.getPreviousBuild();
             }
+            previous = previousBuild.getPreviousBuild();
         }
-        System.out.println("Fin de execution de EntriesContainer.addEntries() : -------------------------");
-
-        boolean etat_pointeur;
-        for (final ReportEntry entry : entries) {
-            /**
-             * ENTRIES BY SEVERITY
-             */
-            if (entriesBySeverity.containsKey(entry.getSeverity())) {
-                final ArrayList<ReportEntry> temp = entriesBySeverity.get(entry.getSeverity());
-                temp.add(entry);
-                entriesBySeverity.put(entry.getSeverity(), temp);
-            } else {
-                final ArrayList<ReportEntry> temp = new ArrayList<ReportEntry>();
-                temp.add(entry);
-                entriesBySeverity.put(entry.getSeverity(), temp);
-            }
-            /**
-             * ENTRIES BY NAME
-             */
-            if (entriesByName.containsKey(entry.getName())) {
-                final ArrayList<ReportEntry> temp = entriesByName.get(entry.getName());
-                temp.add(entry);
-                entriesByName.put(entry.getName(), temp);
-            }
-            /**
-             * ENTRIES NOT FIXED & ENTRIES FIXED
-             */
-            etat_pointeur = true;
-            for (final ReportPointeur pointeur : entry.getPointeurs()) {
-                if (!pointeur.isIsfixed()) {
-                    etat_pointeur = false;
+    }
+
+    /**
+     * Returns whether this container has an active entry equal to the given entry.
+     * 
+     * @param entry
+     *            the entry to look for
+     * @return <code>true</code> if this container reports the entry
+     */
+    public boolean containsEntry(final ReportEntry entry) {
+
+        final List<ReportEntry> candidates = index.getEntriesByName().get(entry.getName());
+        if (candidates != null) {
+            for (final ReportEntry candidate : candidates) {
+                if (candidate.equals(entry)) {
+                    return true;
                 }
-                /**
-                 * POINTEURS
-                 */
-                pointeurs.add(pointeur);
-            }
-            if (etat_pointeur) {
-                entriesFixed.add(entry);
-            } else {
-                entriesNotFixed.add(entry);
             }
         }
-        /**
-         * TOP FIVE ENTRIES
-         */
-        entriesOrderByNumberOfPointeurs = rules;
-        Collections.sort(entriesOrderByNumberOfPointeurs, Collections.reverseOrder());
-        int i = 0;
-        while (i < 5 && i < entriesOrderByNumberOfPointeurs.size()) {
-            topFiveEntries.add(entriesOrderByNumberOfPointeurs.get(i));
-            i++;
-        }
-
-        packagesByName = new HashMap<String, Package>();
-        modulesByName = new HashMap<String, MavenModule>();
+        return false;
     }
 
     /**
@@ -832,6 +736,29 @@ public abstract class EntriesContainer implements EntriesProvider, Serializable
         return newEntries;
     }
 
+    /**
+     * Replaces the new entries of this container.
+     * 
+     * @param entries
+     *            the new entries
+     */
+    public void setNewEntries(final Collection<? extends ReportEntry> entries) {
+
+        newEntries.clear();
+        newEntries.addAll(entries);
+    }
+
+    /**
+     * Maps a module of this container by its name, the entries of the module must already be in this container.
+     * 
+     * @param module
+     *            the module
+     */
+    protected final void addModuleMapping(final MavenModule module) {
+
+        modulesByName.put(module.getName(), module);
+    }
+
     public List<ReportFile> getFichiers() {
 
         return fichiers;
@@ -0,0 +1,171 @@
+/**
+ * Hudson Serenitec plugin
+ */
+package hudson.plugins.serenitec.util.model;
+
+import hudson.plugins.serenitec.parseur.ReportEntry;
+import hudson.plugins.serenitec.parseur.ReportPointeur;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The lookups of an {@link EntriesContainer}, built in a single pass over its active entries when the entries are
+ * added or loaded, so the views do not scan the entries again for each value they display.
+ * <p>
+ * The package of a pattern is the directory of the file it was found in.
+ */
+final class EntriesIndex
+{
+
+    /** The number of entries in the top five */
+    private static final int                           TOP_FIVE           = 5;
+
+    private final Map<Integer, ReportPointeur>         pointeursByKey     = new HashMap<Integer, ReportPointeur>();
+    private final Map<Integer, ArrayList<ReportEntry>> entriesBySeverity  = new HashMap<Integer, ArrayList<ReportEntry>>();
+    private final Map<Integer, Integer>                patternsBySeverity = new HashMap<Integer, Integer>();
+    private final Map<String, ArrayList<ReportEntry>>  entriesByName      = new HashMap<String, ArrayList<ReportEntry>>();
+    private final Map<String, List<ReportEntry>>       entriesByPackage   = new LinkedHashMap<String, List<ReportEntry>>();
+    private final List<ReportPointeur>                 pointeurs          = new ArrayList<ReportPointeur>();
+    private final List<String>                         modifiedFiles;
+    private final List<ReportEntry>                    entriesFixed       = new ArrayList<ReportEntry>();
+    private final List<ReportEntry>                    entriesNotFixed    = new ArrayList<ReportEntry>();
+    private final List<ReportEntry>                    topFiveEntries;
+
+    /**
+     * Indexes the entries of a container.
+     *
+     * @param rules
+     *            all the rules, ordered by decreasing number of patterns
+     * @param entries
+     *            the active entries
+     */
+    EntriesIndex(final List<ReportEntry> rules, final List<ReportEntry> entries) {
+
+        final LinkedHashSet<String> files = new LinkedHashSet<String>();
+        for (final ReportEntry entry : entries) {
+            final Integer severity = entry.getSeverity();
+            add(entriesBySeverity, severity, entry);
+            final Integer patterns = patternsBySeverity.get(severity);
+            patternsBySeverity.put(severity, (patterns == null ? 0 : patterns) + entry.getNumberOfPointeurs());
+            add(entriesByName, entry.getName(), entry);
+
+            boolean fixed = true;
+            final LinkedHashSet<String> packages = new LinkedHashSet<String>();
+            for (final ReportPointeur pointeur : entry.getPointeurs()) {
+                if (!pointeur.isIsfixed()) {
+                    fixed = false;
+                }
+                pointeurs.add(pointeur);
+                pointeursByKey.put(pointeur.getKey(), pointeur);
+                files.add(pointeur.getFilename());
+                packages.add(getPackageName(pointeur));
+            }
+            for (final String packageName : packages) {
+                List<ReportEntry> packageEntries = entriesByPackage.get(packageName);
+                if (packageEntries == null) {
+                    packageEntries = new ArrayList<ReportEntry>();
+                    entriesByPackage.put(packageName, packageEntries);
+                }
+                packageEntries.add(entry);
+            }
+            if (fixed) {
+                entriesFixed.add(entry);
+            } else {
+                entriesNotFixed.add(entry);
+            }
+        }
+        modifiedFiles = new ArrayList<String>(files);
+        topFiveEntries = new ArrayList<ReportEntry>(rules.subList(0, Math.min(TOP_FIVE, rules.size())));
+    }
+
+    private static <K> void add(final Map<K, ArrayList<ReportEntry>> map, final K key, final ReportEntry entry) {
+
+        ArrayList<ReportEntry> list = map.get(key);
+        if (list == null) {
+            list = new ArrayList<ReportEntry>();
+            map.put(key, list);
+        }
+        list.add(entry);
+    }
+
+    /**
+     * Returns the package of a pattern, the directory of the file it was found in.
+     *
+     * @param pointeur
+     *            the pattern
+     * @return the package name, an empty string for a pattern without a path
+     */
+    static String getPackageName(final ReportPointeur pointeur) {
+
+        final String path = pointeur.getFullpath() == null ? pointeur.getFilename() : pointeur.getFullpath();
+        if (path == null) {
+            return "";
+        }
+        final String parent = new File(path).getParent();
+        return parent == null ? "" : parent;
+    }
+
+    ReportPointeur getPointeur(final int key) {
+
+        return pointeursByKey.get(key);
+    }
+
+    Map<Integer, ArrayList<ReportEntry>> getEntriesBySeverity() {
+
+        return entriesBySeverity;
+    }
+
+    int getNumberOfSeverity(final int severity) {
+
+        final List<ReportEntry> list = entriesBySeverity.get(severity);
+        return list == null ? 0 : list.size();
+    }
+
+    int getNumberOfSeverityPatterns(final int severity) {
+
+        final Integer patterns = patternsBySeverity.get(severity);
+        return patterns == null ? 0 : patterns;
+    }
+
+    Map<String, ArrayList<ReportEntry>> getEntriesByName() {
+
+        return entriesByName;
+    }
+
+    Map<String, List<ReportEntry>> getEntriesByPackage() {
+
+        return Collections.unmodifiableMap(entriesByPackage);
+    }
+
+    List<ReportPointeur> getPointeurs() {
+
+        return pointeurs;
+    }
+
+    List<String> getModifiedFiles() {
+
+        return modifiedFiles;
+    }
+
+    List<ReportEntry> getEntriesFixed() {
+
+        return entriesFixed;
+    }
+
+    List<ReportEntry> getEntriesNotFixed() {
+
+        return entriesNotFixed;
+    }
+
+    List<ReportEntry> getTopFiveEntries() {
+
+        return topFiveEntries;
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Hudson Serenitec plugin
+ */
+package hudson.plugins.serenitec.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.Random;
+
+/**
+ * Benchmark of {@link Diff} on two files of 50 000 lines with about one changed line in a hundred, comparing the
+ * <code>Object[]</code> constructor with the {@link Diff#forLines(String[], String[])} variant. Run it with the
+ * test classpath, e.g. <code>java -Xmx256m hudson.plugins.serenitec.util.DiffBenchmark [lines] [runs]</code>.
+ */
+public final class DiffBenchmark
+{
+
+    private DiffBenchmark() {
+
+    }
+
+    public static void main(String[] args) {
+
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Random random = new Random(42);
+        String[] a = new String[lines];
+        for (int i = 0; i < lines; i++) {
+            a[i] = "    int value" + random.nextInt(lines / 4) + " = compute(" + i % 97 + ");";
+        }
+        String[] b = a.clone();
+        for (int i = 0; i < lines / 100; i++) {
+            b[random.nextInt(lines)] = "    // changed " + i;
+        }
+
+        int expected = size(new Diff(a, b).diff_2(false));
+        if (DiffScript.compute(a, b).size() != expected) {
+            throw new IllegalStateException("The variants do not find the same changes");
+        }
+        System.out.println(lines + " lines, " + expected + " changes");
+        for (int run = 0; run < runs; run++) {
+            long memory = allocated();
+            long start = System.nanoTime();
+            new Diff(a, b).diff_2(false);
+            long objectsTime = System.nanoTime() - start;
+            long objectsMemory = allocated() - memory;
+
+            memory = allocated();
+            start = System.nanoTime();
+            Diff.forLines(a, b).diff_2(false);
+            long forLinesTime = System.nanoTime() - start;
+            long forLinesMemory = allocated() - memory;
+
+            System.out.println("Object[]: " + objectsTime / 1000000 + " ms, " + objectsMemory / 1024 + " kB allocated"
+                    + " | forLines: " + forLinesTime / 1000000 + " ms, " + forLinesMemory / 1024 + " kB allocated");
+        }
+    }
+
+    /**
+     * @return the bytes allocated by this thread, on JVMs that count them, otherwise 0
+     */
+    private static long allocated() {
+
+        try {
+            Object threads = ManagementFactory.getThreadMXBean();
+            Method method = Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes", long.class);
+            return ((Long) method.invoke(threads, Long.valueOf(Thread.currentThread().getId()))).longValue();
+        } catch (Exception ex) {
+            return 0;
+        }
+    }
+
+    private static int size(Diff.change change) {
+
+        int size = 0;
+        for (; change != null; change = change.link) {
+            size++;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Hudson Serenitec plugin
+ */
+package hudson.plugins.serenitec.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the edit script of {@link Diff#forLines(String[], String[])} against the <code>Object[]</code> constructor,
+ * the cache of {@link DiffScript} and the paging of {@link SourceDetail}.
+ */
+public class DiffScriptTest
+{
+
+    /** A class with a modified, a deleted and an inserted line, and lines that occur more than once */
+    private static final String[] BEFORE = {
+            "public class Foo {", "", "    int a = 1;", "    int b = 2;", "", "    void bar() {", "    }", "",
+            "    void baz() {", "    }", "}" };
+    private static final String[] AFTER  = {
+            "public class Foo {", "", "    int a = 3;", "", "    void bar() {", "        a++;", "    }", "",
+            "    void baz() {", "    }", "", "    void qux() {", "    }", "}" };
+
+    private File                  cacheDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+
+        cacheDirectory = File.createTempFile("diffs", "");
+        cacheDirectory.delete();
+    }
+
+    @After
+    public void tearDown() {
+
+        File[] files = cacheDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        cacheDirectory.delete();
+    }
+
+    @Test
+    public void forLines() {
+
+        Diff.change expected = new Diff(BEFORE, AFTER).diff_2(false);
+        Diff.change actual = Diff.forLines(BEFORE, AFTER).diff_2(false);
+        int size = 0;
+        for (; expected != null; expected = expected.link, actual = actual.link) {
+            assertTrue(actual != null);
+            assertEquals(expected.line0, actual.line0);
+            assertEquals(expected.line1, actual.line1);
+            assertEquals(expected.deleted, actual.deleted);
+            assertEquals(expected.inserted, actual.inserted);
+            size++;
+        }
+        assertEquals(null, actual);
+        assertTrue(size > 1);
+    }
+
+    @Test
+    public void cache() throws IOException {
+
+        DiffScript computed = DiffScript.get(cacheDirectory, BEFORE, AFTER);
+        File cached = new File(cacheDirectory, DiffScript.key(BEFORE, AFTER) + ".diff");
+        assertTrue(cached.exists());
+        // no temporary file is left behind
+        assertEquals(1, cacheDirectory.list().length);
+        assertSame(computed, DiffScript.read(cached));
+        assertSame(computed, DiffScript.get(cacheDirectory, BEFORE, AFTER));
+        // the same files the other way round are another pair
+        assertEquals(computed.size(), DiffScript.get(cacheDirectory, AFTER, BEFORE).size());
+        assertEquals(2, cacheDirectory.list().length);
+    }
+
+    @Test
+    public void corruptedCache() throws IOException {
+
+        DiffScript computed = DiffScript.compute(BEFORE, AFTER);
+        cacheDirectory.mkdirs();
+        File cached = new File(cacheDirectory, DiffScript.key(BEFORE, AFTER) + ".diff");
+        FileOutputStream out = new FileOutputStream(cached);
+        try {
+            // a length that does not fit the file
+            out.write(new byte[] { 0, 0, 1, 0, 0, 0, 0, 1 });
+        } finally {
+            out.close();
+        }
+        assertSame(computed, DiffScript.get(cacheDirectory, BEFORE, AFTER));
+        // and the cache is written again
+        assertSame(computed, DiffScript.read(cached));
+    }
+
+    @Test
+    public void pages() throws IOException {
+
+        DiffScript script = DiffScript.compute(BEFORE, AFTER);
+        StringWriter whole = new StringWriter();
+        int rows = SourceDetail.render(whole, BEFORE, AFTER, script, 0, Integer.MAX_VALUE);
+        assertEquals(rows, SourceDetail.render(null, BEFORE, AFTER, script, 0, 0));
+        assertTrue(rows >= AFTER.length);
+
+        StringBuilder paged = new StringBuilder();
+        for (int from = 0; from < rows; from += 3) {
+            StringWriter page = new StringWriter();
+            SourceDetail.render(page, BEFORE, AFTER, script, from, from + 3);
+            assertEquals(Math.min(3, rows - from), count(page.toString(), "<tr>"));
+            paged.append(page);
+        }
+        assertEquals(whole.toString(), paged.toString());
+    }
+
+    private static void assertSame(DiffScript expected, DiffScript actual) {
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getLine0(i), actual.getLine0(i));
+            assertEquals(expected.getLine1(i), actual.getLine1(i));
+            assertEquals(expected.getDeleted(i), actual.getDeleted(i));
+            assertEquals(expected.getInserted(i), actual.getInserted(i));
+        }
+    }
+
+    private static int count(String text, String pattern) {
+
+        int count = 0;
+        for (int index = text.indexOf(pattern); index >= 0; index = text.indexOf(pattern, index + 1)) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,217 @@
+/**
+ * Hudson Serenitec plugin
+ */
+package hudson.plugins.serenitec.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import hudson.plugins.serenitec.parseur.ReportDescription;
+import hudson.plugins.serenitec.parseur.ReportEntry;
+import hudson.plugins.serenitec.parseur.ReportPointeur;
+import hudson.plugins.serenitec.util.model.MavenModule;
+import hudson.plugins.serenitec.util.model.Package;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Writes a {@link Project} with {@link ProjectFile} and checks what is read back, including the lookups that are
+ * rebuilt from the entries.
+ */
+public class ProjectFileTest
+{
+
+    private static final String FOO = "/ws/src/a/Foo.java";
+    private static final String BAR = "/ws/src/b/Bar.java";
+
+    private File                file;
+
+    @Before
+    public void setUp() throws IOException {
+
+        file = File.createTempFile("serenitec", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+
+        file.delete();
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+
+        // two patterns, one of them fixed
+        final ReportEntry unused = entry("UnusedImport", 1);
+        unused.getDescriptions().add(description("Unused import", "en", "http://example.org/unused"));
+        unused.getDescriptions().add(description("Import inutile", "fr", null));
+        unused.getPointeurs().add(pointeur(101, "Foo.java", FOO, 3, false));
+        unused.getPointeurs().add(pointeur(102, "Bar.java", BAR, 7, true));
+        // all its patterns fixed, one without a path
+        final ReportEntry injection = entry("SqlInjection", 5);
+        injection.getDescriptions().add(description("Query built from input", null, null));
+        injection.getPointeurs().add(pointeur(201, "Foo.java", FOO, 10, true));
+        injection.getPointeurs().add(pointeur(202, "Baz.java", null, 1, true));
+        // not reported, so not active
+        final ReportEntry empty = entry("EmptyBlock", 3);
+
+        final Project project = new Project();
+        project.setName("demo");
+        project.setWorkspacePath("/ws");
+        project.setModuleError(true);
+        project.addEntries(Arrays.asList(unused, injection, empty));
+        project.setNewEntries(Collections.singletonList(injection));
+        final MavenModule core = new MavenModule("core");
+        core.addEntries(Collections.singletonList(unused));
+        project.restoreModule(core);
+        final MavenModule web = new MavenModule("web");
+        web.setError("No result");
+        project.restoreModule(web);
+
+        ProjectFile.write(file, project);
+        final Project read = ProjectFile.read(file);
+
+        assertEquals("demo", read.getName());
+        assertEquals("/ws", read.getWorkspacePath());
+        assertNull(read.getError());
+        assertTrue(read.hasError());
+
+        // the rules, with their descriptions and patterns
+        final List<ReportEntry> rules = read.getRules();
+        assertEquals(3, rules.size());
+        final ReportEntry readUnused = rules.get(0);
+        final ReportEntry readInjection = rules.get(1);
+        final ReportEntry readEmpty = rules.get(2);
+        assertEquals("UnusedImport", readUnused.getName());
+        assertEquals(1, readUnused.getSeverity());
+        assertEquals(2, readUnused.getDescriptions().size());
+        assertDescription("Unused import", "en", "http://example.org/unused", readUnused.getDescriptions().get(0));
+        assertDescription("Import inutile", "fr", null, readUnused.getDescriptions().get(1));
+        assertEquals(2, readUnused.getPointeurs().size());
+        assertPointeur(101, "Foo.java", FOO, 3, false, readUnused.getPointeurs().get(0));
+        assertPointeur(102, "Bar.java", BAR, 7, true, readUnused.getPointeurs().get(1));
+        assertEquals("SqlInjection", readInjection.getName());
+        assertEquals(5, readInjection.getSeverity());
+        assertDescription("Query built from input", null, null, readInjection.getDescriptions().get(0));
+        assertPointeur(201, "Foo.java", FOO, 10, true, readInjection.getPointeurs().get(0));
+        assertPointeur(202, "Baz.java", null, 1, true, readInjection.getPointeurs().get(1));
+        assertEquals("EmptyBlock", readEmpty.getName());
+        assertEquals(3, readEmpty.getSeverity());
+        assertTrue(readEmpty.getDescriptions().isEmpty());
+        assertFalse(readEmpty.isActive());
+        assertEquals(Arrays.asList(readUnused, readInjection), read.getEntries());
+        // a string is read once and shared
+        assertSame(readUnused.getPointeurs().get(0).getFullpath(), readInjection.getPointeurs().get(0).getFullpath());
+
+        // the new entries and the modules refer to the rules that were read
+        assertEquals(1, read.getNewEntries().size());
+        assertSame(readInjection, read.getNewEntries().get(0));
+        assertEquals(2, read.getModules().size());
+        final MavenModule readCore = read.getModule("core");
+        assertNull(readCore.getError());
+        assertEquals(1, readCore.getRules().size());
+        assertSame(readUnused, readCore.getRules().get(0));
+        final MavenModule readWeb = read.getModule("web");
+        assertEquals("No result", readWeb.getError());
+        assertTrue(readWeb.getRules().isEmpty());
+
+        // the lookups of the index
+        assertSame(readUnused.getPointeurs().get(1), read.getPointeur(102));
+        assertSame(readInjection.getPointeurs().get(1), read.getPointeur(202));
+        assertNull(read.getPointeur(999));
+        assertEquals(4, read.getNumberOfPointeurs());
+        assertEquals(1, read.getNumberOfSeverityFormatage());
+        assertEquals(2, read.getNumberOfSeverityFormatagePatterns());
+        assertEquals(1, read.getNumberOfSeverityHighSecurity());
+        assertEquals(2, read.getNumberOfSeverityHighSecurityPatterns());
+        assertEquals(0, read.getNumberOfSeverityDesign());
+        assertEquals(0, read.getNumberOfSeverityDesignPatterns());
+        assertEquals(Arrays.asList(readInjection), read.getEntriesFixed());
+        assertEquals(Arrays.asList(readUnused), read.getEntriesNotFixed());
+        assertEquals(Arrays.asList("Foo.java", "Bar.java", "Baz.java"), read.getModifiedFiles());
+        assertEquals(Arrays.asList(readUnused, readInjection, readEmpty), read.getTopFiveEntries());
+
+        // the entries by package, the directory of their patterns
+        final String packageA = new File(FOO).getParent();
+        final String packageB = new File(BAR).getParent();
+        final List<String> packages = new ArrayList<String>();
+        for (final Package pakkage : read.getPackages()) {
+            packages.add(pakkage.getName());
+        }
+        assertEquals(Arrays.asList(packageA, packageB, ""), packages);
+        assertEquals(Arrays.asList(readUnused, readInjection), read.getPackage(packageA).getEntries());
+        assertEquals(Arrays.asList(readUnused), read.getPackage(packageB).getEntries());
+        assertEquals(Arrays.asList(readInjection), read.getPackage("").getEntries());
+    }
+
+    @Test(expected = IOException.class)
+    public void notAResult() throws IOException {
+
+        final GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(file));
+        try {
+            out.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        } finally {
+            out.close();
+        }
+        ProjectFile.read(file);
+    }
+
+    private static ReportEntry entry(final String name, final int severity) {
+
+        final ReportEntry entry = new ReportEntry();
+        entry.setName(name);
+        entry.setSeverity(severity);
+        return entry;
+    }
+
+    private static ReportDescription description(final String text, final String language, final String help) {
+
+        final ReportDescription description = new ReportDescription();
+        description.setDescription(text);
+        description.setLanguage(language);
+        description.setHelpreference(help);
+        return description;
+    }
+
+    private static ReportPointeur pointeur(final int key, final String filename, final String fullpath, final int line,
+            final boolean fixed) {
+
+        final ReportPointeur pointeur = new ReportPointeur(key);
+        pointeur.setFilename(filename);
+        pointeur.setFullpath(fullpath);
+        pointeur.setLinenumber(line);
+        pointeur.setIsfixed(fixed);
+        return pointeur;
+    }
+
+    private static void assertDescription(final String text, final String language, final String help,
+            final ReportDescription actual) {
+
+        assertEquals(text, actual.getDescription());
+        assertEquals(language, actual.getLanguage());
+        assertEquals(help, actual.getHelpreference());
+    }
+
+    private static void assertPointeur(final int key, final String filename, final String fullpath, final int line,
+            final boolean fixed, final ReportPointeur actual) {
+
+        assertEquals(key, actual.getKey());
+        assertEquals(filename, actual.getFilename());
+        assertEquals(fullpath, actual.getFullpath());
+        assertEquals(line, actual.getLinenumber());
+        assertEquals(fixed, actual.isIsfixed());
+    }
+}
@@ -122,6 +122,64 @@ public final class Collector implements IConstants {
 		method.setWaitTime(waitTime);
 	}
 
+	/**
+	 * This method is called by the byte code injection at the start of a method. The start time is pushed on the call stack of the thread in the
+	 * {@link Timings}, the method in the database is only updated in {@link #collectTimings()}.
+	 * 
+	 * @param methodIndex the index of the method in the {@link Timings}
+	 */
+	public static final void collectStart(final int methodIndex) {
+		Timings.start(methodIndex);
+	}
+
+	/**
+	 * This method is called by the byte code injection at the end of a method, in a return or a throw.
+	 * 
+	 * @param methodIndex the index of the method in the {@link Timings}
+	 */
+	public static final void collectEnd(final int methodIndex) {
+		Timings.end(methodIndex);
+	}
+
+	/**
+	 * This method is called by the byte code injection before a wait, join, sleep or yield in a method.
+	 * 
+	 * @param methodIndex the index of the method in the {@link Timings}
+	 */
+	public static final void collectStartWait(final int methodIndex) {
+		Timings.startWait(methodIndex);
+	}
+
+	/**
+	 * This method is called by the byte code injection after a wait, join, sleep or yield in a method, and in the exception handlers.
+	 * 
+	 * @param methodIndex the index of the method in the {@link Timings}
+	 */
+	public static final void collectEndWait(final int methodIndex) {
+		Timings.endWait(methodIndex);
+	}
+
+	/**
+	 * Merges the timings of all the threads into the methods in the database. This is called before each snapshot and at shutdown.
+	 */
+	public static final void collectTimings() {
+		List<Timings.Signature> signatures = Timings.getSignatures();
+		long[] aggregates = Timings.drain(signatures.size());
+		for (int methodIndex = 0; methodIndex < signatures.size(); methodIndex++) {
+			int offset = methodIndex * Timings.AGGREGATES;
+			long invocations = aggregates[offset + Timings.INVOCATIONS];
+			if (invocations == 0) {
+				continue;
+			}
+			Timings.Signature signature = signatures.get(methodIndex);
+			Method<?, ?> method = getMethod(signature.getClassName(), signature.getMethodName(), signature.getMethodDescription());
+			method.setInvocations(method.getInvocations() + (int) invocations);
+			method.setTotalTime(method.getTotalTime() + aggregates[offset + Timings.TOTAL]);
+			method.setNetTime(method.getNetTime() + aggregates[offset + Timings.NET]);
+			method.setWaitTime(method.getWaitTime() + aggregates[offset + Timings.WAIT]);
+		}
+	}
+
 	/**
 	 * This method accumulates the number of times a thread goes through each line in a method.
 	 * 
@@ -135,6 +193,37 @@ public final class Collector implements IConstants {
 		line.increment();
 	}
 
+	/**
+	 * This method is called by the lines enhanced in the probe mode. The hit is just an increment in the counters for the class, the lines are only updated
+	 * when the probes are folded into the database in {@link #collectProbes()}.
+	 * 
+	 * @param classIndex the index of the class in the probes
+	 * @param probe the slot for the line in the probes of the class
+	 */
+	public static final void collectCoverage(final int classIndex, final int probe) {
+		Probes.increment(classIndex, probe);
+	}
+
+	/**
+	 * Folds the hits on the probes into the lines in the database. The probes are reset so this can be called more than once, typically it is called at
+	 * shutdown before the accumulation and aggregation.
+	 */
+	public static final void collectProbes() {
+		int classCount = Probes.getClassCount();
+		for (int classIndex = 0; classIndex < classCount; classIndex++) {
+			List<Probes.Probe> probes = Probes.getProbes(classIndex);
+			for (int probe = 0; probe < probes.size(); probe++) {
+				long hits = Probes.drain(classIndex, probe);
+				if (hits > 0) {
+					Probes.Probe definition = probes.get(probe);
+					Line<?, ?> line = getLine(definition.getClassName(), definition.getMethodName(), definition.getMethodDescription(), definition
+							.getLineNumber());
+					line.setCounter(line.getCounter() + hits);
+				}
+			}
+		}
+	}
+
 	/**
 	 * This method just collect the line specified in the parameter list.
 	 * 
@@ -155,6 +155,43 @@ public class Configuration {
 		return -1;
 	}
 
+	public boolean isCoverageProbes() {
+		String coverageProbes = System.getProperty(IConstants.COVERAGE_PROBES);
+		return coverageProbes != null && Boolean.TRUE.toString().equals(coverageProbes.trim());
+	}
+
+	public int getSnapshotRetention(final String property, final int defaultRetention) {
+		String retention = System.getProperty(property);
+		if (retention != null && Toolkit.isDigits(retention)) {
+			return Integer.parseInt(retention);
+		}
+		return defaultRetention;
+	}
+
+	public int getOdbBatchSize() {
+		String batchSize = System.getProperty(IConstants.ODB_BATCH_SIZE);
+		if (batchSize != null && Toolkit.isDigits(batchSize)) {
+			return Integer.parseInt(batchSize);
+		}
+		return 1;
+	}
+
+	public long getOdbBatchInterval() {
+		String batchInterval = System.getProperty(IConstants.ODB_BATCH_INTERVAL);
+		if (batchInterval != null && Toolkit.isDigits(batchInterval)) {
+			return Long.parseLong(batchInterval);
+		}
+		return 1000;
+	}
+
+	public int getAggregatorThreads() {
+		String aggregatorThreads = System.getProperty(IConstants.AGGREGATOR_THREADS);
+		if (aggregatorThreads != null && Toolkit.isDigits(aggregatorThreads)) {
+			return Integer.parseInt(aggregatorThreads);
+		}
+		return 1;
+	}
+
 	public double getTimeUnitDenominator() {
 		String timeUnit = System.getProperty(IConstants.TIME_UNIT);
 		if (timeUnit != null && Toolkit.isDigits(timeUnit)) {
@@ -29,6 +29,9 @@ public interface IConstants {
 	/** The database file, 'serenity.ram', 'serenity.odb', 'serenity.jpa'. */
 	public String DATABASE_FILE_RAM = SERENITY_DIRECTORY + File.separatorChar + SERENITY_RAM;
 	public String DATABASE_FILE_ODB = SERENITY_DIRECTORY + File.separatorChar + SERENITY_ODB;
+	/** The file for the profiling samples in the columnar format, 'serenity.samples'. */
+	public String SERENITY_SAMPLES = "serenity.samples";
+	public String SAMPLES_FILE = SERENITY_DIRECTORY + File.separatorChar + SERENITY_SAMPLES;
 	/** The JPA persistence unit name, 'SerenityPersistenceUnit'. */
 	public String SERENITY_PERSISTENCE_UNIT = "SerenityPersistenceUnit";
 	/** The logging configuration file, '/META-INF/log4j.properties'. */
@@ -56,8 +59,20 @@ public interface IConstants {
 	public String SNAPSHOT_INTERVAL = "snapshotInterval";
 	/** The interval between report dumps for the profiler. */
 	public String REPORT_INTERVAL = "reportInterval";
+	/** The number of raw, per minute and per hour profiling samples that are retained for each method. */
+	public String SNAPSHOT_RAW = "snapshotRaw";
+	public String SNAPSHOT_MINUTES = "snapshotMinutes";
+	public String SNAPSHOT_HOURS = "snapshotHours";
 	/** The time unit to use, default is nano seconds. */
 	public String TIME_UNIT = "timeUnit";
+	/** Whether the coverage is collected in the probe arrays rather than directly in the lines, 'coverage.probes'. */
+	public String COVERAGE_PROBES = "coverage.probes";
+	/** The number of writes that the odb database groups into one commit, 'odb.batch.size'. */
+	public String ODB_BATCH_SIZE = "odb.batch.size";
+	/** The maximum time in milliseconds that writes to the odb database are left uncommitted, 'odb.batch.interval'. */
+	public String ODB_BATCH_INTERVAL = "odb.batch.interval";
+	/** The number of threads that the aggregator uses, one is the sequential aggregation, 'aggregator.threads'. */
+	public String AGGREGATOR_THREADS = "aggregator.threads";
 
 	public String COVERAGE = "coverage";
 	public String COMPLEXITY = "complexity";
@@ -80,6 +95,8 @@ public interface IConstants {
 	public String COLLECT_END_WAIT = "collectEndWait";
 	/** The byte code signature of the profiling methods in the {@link Collector}. */
 	public String PROFILING_METHOD_DESCRIPTION = Type.getMethodDescriptor(Type.VOID_TYPE, PROFILING_TYPES);
+	/** The byte code signature of the profiling methods in the {@link Collector} that take the index of the method in the {@link Timings}. */
+	public String PROFILING_INDEX_METHOD_DESCRIPTION = Type.getMethodDescriptor(Type.VOID_TYPE, new Type[] { Type.INT_TYPE });
 
 	public Type[] noTypes = new Type[] {};
 	public Type[] longTypes = new Type[] { Type.LONG_TYPE };
@@ -0,0 +1,206 @@
+package com.ikokoon.serenity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.log4j.Logger;
+
+/**
+ * This class holds the probe counters for the coverage when the probe mode is switched on. At instrumentation time each class is given a dense index and
+ * each line in the class a dense slot in the counter array for the class. The instructions added to the classes then only increment the counter in the array
+ * at runtime, there is no hashing, no lookup in the database and no lock. At the end of the processing the counters are folded back into the lines in the
+ * database by the {@link Collector}.
+ *
+ * The registration of classes and probes is synchronized as it only happens during the instrumentation. The counter arrays are published copy on write so
+ * that the increments can read them without a lock. When a class is sealed again with more lines the counters that it replaces are retired rather than
+ * copied, a thread that still has the old array can increment it at any time, and the hits on the retired counters are added in when the probes are
+ * drained.
+ */
+public final class Probes {
+
+	/** The LOGGER. */
+	private static final Logger LOGGER = Logger.getLogger(Probes.class);
+
+	/** The counters for the probes in each class, indexed by the class index. */
+	private static volatile AtomicLongArray[] COUNTERS = new AtomicLongArray[0];
+	/** The probe definitions for each class, indexed by the class index and then the probe. */
+	private static final List<List<Probe>> PROBES = new ArrayList<List<Probe>>();
+	/** The names of the classes, indexed by the class index. */
+	private static final List<String> CLASS_NAMES = new ArrayList<String>();
+	/** The class indexes keyed on the class name. */
+	private static final Map<String, Integer> CLASS_INDEXES = new HashMap<String, Integer>();
+	/** The probe indexes for each class keyed on the method name, description and line number. */
+	private static final List<Map<String, Integer>> PROBE_INDEXES = new ArrayList<Map<String, Integer>>();
+	/** The counters that were replaced when the class was sealed again, indexed by the class index. */
+	private static final List<List<AtomicLongArray>> RETIRED = new ArrayList<List<AtomicLongArray>>();
+
+	/**
+	 * The definition of a probe, i.e. the line in the method in the class that the counter is for.
+	 */
+	public static final class Probe {
+
+		private final String className;
+		private final String methodName;
+		private final String methodDescription;
+		private final int lineNumber;
+
+		Probe(final String className, final String methodName, final String methodDescription, final int lineNumber) {
+			this.className = className;
+			this.methodName = methodName;
+			this.methodDescription = methodDescription;
+			this.lineNumber = lineNumber;
+		}
+
+		public String getClassName() {
+			return className;
+		}
+
+		public String getMethodName() {
+			return methodName;
+		}
+
+		public String getMethodDescription() {
+			return methodDescription;
+		}
+
+		public int getLineNumber() {
+			return lineNumber;
+		}
+
+	}
+
+	/**
+	 * Returns the index of the class in the probe counters, registering the class if this is the first time it is seen.
+	 *
+	 * @param className the name of the class
+	 * @return the dense index of the class
+	 */
+	public static synchronized int getClassIndex(final String className) {
+		Integer classIndex = CLASS_INDEXES.get(className);
+		if (classIndex == null) {
+			classIndex = Integer.valueOf(PROBES.size());
+			CLASS_INDEXES.put(className, classIndex);
+			CLASS_NAMES.add(className);
+			PROBES.add(new ArrayList<Probe>());
+			PROBE_INDEXES.add(new HashMap<String, Integer>());
+			RETIRED.add(new ArrayList<AtomicLongArray>());
+		}
+		return classIndex.intValue();
+	}
+
+	/**
+	 * Returns the slot for the line in the counters of the class, registering the line if it has not been seen. If the class is instrumented again, by another
+	 * class loader or by the accumulator, then the same slots are returned for the same lines.
+	 *
+	 * @param classIndex the index of the class from {@link #getClassIndex(String)}
+	 * @param methodName the name of the method that the line is in
+	 * @param methodDescription the description of the method
+	 * @param lineNumber the line number
+	 * @return the dense slot of the line in the counters for the class
+	 */
+	public static synchronized int getProbe(final int classIndex, final String methodName, final String methodDescription, final int lineNumber) {
+		Map<String, Integer> probeIndexes = PROBE_INDEXES.get(classIndex);
+		String key = methodName + methodDescription + ":" + lineNumber;
+		Integer probe = probeIndexes.get(key);
+		if (probe == null) {
+			List<Probe> probes = PROBES.get(classIndex);
+			probe = Integer.valueOf(probes.size());
+			probes.add(new Probe(CLASS_NAMES.get(classIndex), methodName, methodDescription, lineNumber));
+			probeIndexes.put(key, probe);
+		}
+		return probe.intValue();
+	}
+
+	/**
+	 * Allocates the counters for the class once the instrumentation of the class is finished. This must be called before the class is returned to the Jvm as
+	 * the instructions in the class will increment the counters as soon as the class is executed.
+	 *
+	 * @param classIndex the index of the class from {@link #getClassIndex(String)}
+	 */
+	public static synchronized void seal(final int classIndex) {
+		AtomicLongArray[] counters = COUNTERS;
+		if (classIndex >= counters.length) {
+			AtomicLongArray[] grown = new AtomicLongArray[PROBES.size()];
+			System.arraycopy(counters, 0, grown, 0, counters.length);
+			counters = grown;
+		} else {
+			counters = counters.clone();
+		}
+		int size = PROBES.get(classIndex).size();
+		AtomicLongArray existing = counters[classIndex];
+		if (existing != null && existing.length() == size) {
+			return;
+		}
+		if (existing != null) {
+			// The class was instrumented again with more lines, copying the hits would lose the increments that race with the copy
+			RETIRED.get(classIndex).add(existing);
+		}
+		counters[classIndex] = new AtomicLongArray(size);
+		COUNTERS = counters;
+		LOGGER.debug("Sealed probes for class : " + classIndex + ", probes : " + size);
+	}
+
+	/**
+	 * Increments the counter for the probe. This is the hot path called from the instrumented lines, it is lock free and does not allocate.
+	 *
+	 * @param classIndex the index of the class
+	 * @param probe the slot of the line in the class
+	 */
+	public static final void increment(final int classIndex, final int probe) {
+		COUNTERS[classIndex].incrementAndGet(probe);
+	}
+
+	/**
+	 * @return the number of classes that have been registered
+	 */
+	public static synchronized int getClassCount() {
+		return PROBES.size();
+	}
+
+	/**
+	 * Returns a copy of the probe definitions for the class.
+	 *
+	 * @param classIndex the index of the class
+	 * @return the probes for the class, the index in the list is the slot of the probe
+	 */
+	public static synchronized List<Probe> getProbes(final int classIndex) {
+		return new ArrayList<Probe>(PROBES.get(classIndex));
+	}
+
+	/**
+	 * Returns the hits for the probe and resets the counter to zero, so the counters can be folded into the lines more than once without counting the hits
+	 * twice.
+	 *
+	 * @param classIndex the index of the class
+	 * @param probe the slot of the line in the class
+	 * @return the hits on the probe since the last drain
+	 */
+	public static long drain(final int classIndex, final int probe) {
+		long hits = 0;
+		AtomicLongArray[] counters = COUNTERS;
+		if (classIndex < counters.length && counters[classIndex] != null && probe < counters[classIndex].length()) {
+			hits += counters[classIndex].getAndSet(probe, 0);
+		}
+		for (AtomicLongArray retired : getRetired(classIndex)) {
+			if (probe < retired.length()) {
+				hits += retired.getAndSet(probe, 0);
+			}
+		}
+		return hits;
+	}
+
+	private static synchronized List<AtomicLongArray> getRetired(final int classIndex) {
+		if (classIndex >= RETIRED.size()) {
+			return new ArrayList<AtomicLongArray>();
+		}
+		return new ArrayList<AtomicLongArray>(RETIRED.get(classIndex));
+	}
+
+	/** Only static access. */
+	private Probes() {
+	}
+
+}
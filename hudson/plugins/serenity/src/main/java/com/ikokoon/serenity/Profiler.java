@@ -9,7 +9,7 @@ import java.util.TimerTask;
 import org.apache.log4j.Logger;
 
 import com.ikokoon.serenity.model.Method;
-import com.ikokoon.serenity.model.Snapshot;
+import com.ikokoon.serenity.model.Samples;
 import com.ikokoon.serenity.persistence.IDataBase;
 import com.ikokoon.serenity.process.Reporter;
 import com.ikokoon.serenity.process.Snapshooter;
@@ -20,19 +20,19 @@ import com.ikokoon.serenity.process.Snapshooter;
  * <pre>
  * Model:
  * Class class
- *     List<Snapshot> snapshots
- *         long net
- *         long total
- *         long wait
- *         Date start
- *         Date end
+ *     Samples samples
+ *         long[] start
+ *         long[] end
+ *         long[] total
+ *         long[] net
+ *         long[] wait
  *     List<Method> methods
- *         List<Snapshot> snapshots
- *             long net
- *             long total
- *             long wait
- *             Date start
- *             Date end
+ *         Samples samples
+ *             long[] start
+ *             long[] end
+ *             long[] total
+ *             long[] net
+ *             long[] wait
  * 
  * Calculations:
  * 1) Calculate the total time for each method - totalMethodTime()
@@ -136,9 +136,9 @@ public class Profiler {
 	 */
 	public static List<Double> methodSeries(Method<?, ?> method) {
 		List<Double> series = new ArrayList<Double>();
-		List<Snapshot<?, ?>> snapshots = method.getSnapshots();
-		for (Snapshot<?, ?> snapshot : snapshots) {
-			series.add(getValue(snapshot.getTotal()));
+		long[] totals = getColumn(method, Samples.TOTAL);
+		for (long total : totals) {
+			series.add(getValue(total));
 		}
 		return series;
 	}
@@ -150,15 +150,26 @@ public class Profiler {
 	 */
 	public static List<Double> methodNetSeries(Method<?, ?> method) {
 		List<Double> series = new ArrayList<Double>();
-		List<Snapshot<?, ?>> snapshots = method.getSnapshots();
-		for (Snapshot<?, ?> snapshot : snapshots) {
-			double netTime = snapshot.getTotal() - snapshot.getWait();
-			snapshot.setNet(getValue(netTime));
-			series.add(snapshot.getNet());
+		long[] totals = getColumn(method, Samples.TOTAL);
+		long[] waits = getColumn(method, Samples.WAIT);
+		for (int i = 0; i < totals.length; i++) {
+			double netTime = totals[i] - waits[i];
+			series.add(getValue(netTime));
 		}
 		return series;
 	}
 
+	/**
+	 * Returns one column of the samples for the method, or an empty column if no snapshot has been taken for the method.
+	 */
+	private static long[] getColumn(Method<?, ?> method, int column) {
+		Samples samples = method.getSamples();
+		if (samples == null) {
+			return new long[0];
+		}
+		return samples.getColumn(column);
+	}
+
 	/**
 	 * Calculate the total time for each method:<br>
 	 * totalMethodTime()<br>
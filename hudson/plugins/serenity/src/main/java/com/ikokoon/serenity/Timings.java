@@ -0,0 +1,252 @@
+package com.ikokoon.serenity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * This class holds the timings for the profiled methods. At instrumentation time each method is given a dense index. At runtime each thread keeps its own
+ * call stack of start and wait times in primitive arrays, so concurrent and recursive invocations of the same method do not overwrite each other, and the
+ * finished frames are added to the aggregates for the thread. The aggregates of all the threads are merged into the methods in the database by the
+ * {@link Collector} when a snapshot is taken, there is no global lock on the hot path.
+ *
+ * For each frame the total time is the time from the start to the end of the method, the wait time is the time spent in wait, join, sleep and yield in the
+ * method and the net time is the total time less the time in the child methods and less the wait time.
+ */
+public final class Timings {
+
+	/** The number of aggregates for each method, the invocations, total, net and wait time. */
+	public static final int AGGREGATES = 4;
+	public static final int INVOCATIONS = 0;
+	public static final int TOTAL = 1;
+	public static final int NET = 2;
+	public static final int WAIT = 3;
+
+	/** The signatures of the methods, indexed by the method index. */
+	private static final List<Signature> SIGNATURES = new ArrayList<Signature>();
+	/** The method indexes keyed on the class name, method name and description. */
+	private static final Map<String, Integer> METHOD_INDEXES = new HashMap<String, Integer>();
+	/** The timings of all the threads that have been profiled, for the merge. */
+	private static final Queue<Frames> FRAMES = new ConcurrentLinkedQueue<Frames>();
+	/** The timings for the current thread. */
+	private static final ThreadLocal<Frames> LOCAL_FRAMES = new ThreadLocal<Frames>() {
+		protected Frames initialValue() {
+			Frames frames = new Frames(Thread.currentThread());
+			FRAMES.add(frames);
+			return frames;
+		}
+	};
+
+	/**
+	 * The signature of a profiled method.
+	 */
+	public static final class Signature {
+
+		private final String className;
+		private final String methodName;
+		private final String methodDescription;
+
+		Signature(final String className, final String methodName, final String methodDescription) {
+			this.className = className;
+			this.methodName = methodName;
+			this.methodDescription = methodDescription;
+		}
+
+		public String getClassName() {
+			return className;
+		}
+
+		public String getMethodName() {
+			return methodName;
+		}
+
+		public String getMethodDescription() {
+			return methodDescription;
+		}
+
+	}
+
+	/**
+	 * The call stack and the aggregates for one thread. The stack is only touched by the owning thread. The aggregates are written by the owning thread
+	 * and drained by the snapshot thread, so they are guarded by the monitor of this object which is only ever contended during the merge.
+	 */
+	static final class Frames {
+
+		private final Thread thread;
+
+		private int depth;
+		private int[] methods = new int[32];
+		private long[] starts = new long[32];
+		private long[] children = new long[32];
+		private long[] waits = new long[32];
+		private long[] waitStarts = new long[32];
+
+		private long[] aggregates = new long[0];
+
+		Frames(final Thread thread) {
+			this.thread = thread;
+		}
+
+		void start(final int methodIndex, final long time) {
+			if (depth == methods.length) {
+				grow();
+			}
+			methods[depth] = methodIndex;
+			starts[depth] = time;
+			children[depth] = 0;
+			waits[depth] = 0;
+			waitStarts[depth] = 0;
+			depth++;
+		}
+
+		void end(final int methodIndex, final long time) {
+			// Frames that were left by an exception without the end being called are closed here too
+			while (depth > 0) {
+				depth--;
+				int frameMethodIndex = methods[depth];
+				long total = time - starts[depth];
+				long wait = waits[depth];
+				long net = total - children[depth] - wait;
+				if (depth > 0) {
+					children[depth - 1] += total;
+				}
+				add(frameMethodIndex, total, net, wait);
+				if (frameMethodIndex == methodIndex) {
+					break;
+				}
+			}
+		}
+
+		void startWait(final long time) {
+			if (depth > 0) {
+				waitStarts[depth - 1] = time;
+			}
+		}
+
+		void endWait(final long time) {
+			// The end wait is also called from every exception handler so there may not have been a start
+			if (depth > 0 && waitStarts[depth - 1] != 0) {
+				waits[depth - 1] += time - waitStarts[depth - 1];
+				waitStarts[depth - 1] = 0;
+			}
+		}
+
+		private synchronized void add(final int methodIndex, final long total, final long net, final long wait) {
+			int offset = methodIndex * AGGREGATES;
+			if (offset + AGGREGATES > aggregates.length) {
+				long[] grown = new long[Math.max(offset + AGGREGATES, aggregates.length * 2)];
+				System.arraycopy(aggregates, 0, grown, 0, aggregates.length);
+				aggregates = grown;
+			}
+			aggregates[offset + INVOCATIONS]++;
+			aggregates[offset + TOTAL] += total;
+			aggregates[offset + NET] += net;
+			aggregates[offset + WAIT] += wait;
+		}
+
+		synchronized void drain(final long[] merged) {
+			int length = Math.min(aggregates.length, merged.length);
+			for (int i = 0; i < length; i++) {
+				merged[i] += aggregates[i];
+				aggregates[i] = 0;
+			}
+		}
+
+		boolean isAlive() {
+			return thread.isAlive();
+		}
+
+		private void grow() {
+			int length = methods.length * 2;
+			methods = copy(methods, length);
+			starts = copy(starts, length);
+			children = copy(children, length);
+			waits = copy(waits, length);
+			waitStarts = copy(waitStarts, length);
+		}
+
+		private static int[] copy(final int[] array, final int length) {
+			int[] copy = new int[length];
+			System.arraycopy(array, 0, copy, 0, array.length);
+			return copy;
+		}
+
+		private static long[] copy(final long[] array, final int length) {
+			long[] copy = new long[length];
+			System.arraycopy(array, 0, copy, 0, array.length);
+			return copy;
+		}
+
+	}
+
+	/**
+	 * Returns the index of the method, registering the method if this is the first time it is seen. This is called at instrumentation time.
+	 *
+	 * @param className the name of the class
+	 * @param methodName the name of the method
+	 * @param methodDescription the byte code description of the method
+	 * @return the dense index of the method
+	 */
+	public static synchronized int getMethodIndex(final String className, final String methodName, final String methodDescription) {
+		String key = className + "." + methodName + methodDescription;
+		Integer methodIndex = METHOD_INDEXES.get(key);
+		if (methodIndex == null) {
+			methodIndex = Integer.valueOf(SIGNATURES.size());
+			METHOD_INDEXES.put(key, methodIndex);
+			SIGNATURES.add(new Signature(className, methodName, methodDescription));
+		}
+		return methodIndex.intValue();
+	}
+
+	/**
+	 * @return a copy of the signatures of the methods, the index in the list is the index of the method
+	 */
+	public static synchronized List<Signature> getSignatures() {
+		return new ArrayList<Signature>(SIGNATURES);
+	}
+
+	public static void start(final int methodIndex) {
+		LOCAL_FRAMES.get().start(methodIndex, System.nanoTime());
+	}
+
+	public static void end(final int methodIndex) {
+		LOCAL_FRAMES.get().end(methodIndex, System.nanoTime());
+	}
+
+	public static void startWait(final int methodIndex) {
+		LOCAL_FRAMES.get().startWait(System.nanoTime());
+	}
+
+	public static void endWait(final int methodIndex) {
+		LOCAL_FRAMES.get().endWait(System.nanoTime());
+	}
+
+	/**
+	 * Merges the aggregates of all the threads and resets them. The threads that have died are removed once they are drained.
+	 *
+	 * @param methodCount the number of methods to merge the aggregates for
+	 * @return the merged aggregates, {@link #AGGREGATES} longs for each method starting at the method index times {@link #AGGREGATES}
+	 */
+	public static long[] drain(final int methodCount) {
+		long[] merged = new long[methodCount * AGGREGATES];
+		Iterator<Frames> iterator = FRAMES.iterator();
+		while (iterator.hasNext()) {
+			Frames frames = iterator.next();
+			boolean alive = frames.isAlive();
+			frames.drain(merged);
+			if (!alive) {
+				iterator.remove();
+			}
+		}
+		return merged;
+	}
+
+	/** Only static access. */
+	private Timings() {
+	}
+
+}
@@ -14,7 +14,7 @@ import org.objectweb.asm.ClassWriter;
 
 import com.ikokoon.serenity.instrumentation.VisitorFactory;
 import com.ikokoon.serenity.persistence.DataBaseOdb;
-import com.ikokoon.serenity.persistence.DataBaseRam;
+import com.ikokoon.serenity.persistence.DataBaseHash;
 import com.ikokoon.serenity.persistence.DataBaseToolkit;
 import com.ikokoon.serenity.persistence.IDataBase;
 import com.ikokoon.serenity.process.Accumulator;
@@ -88,7 +88,7 @@ public class Transformer implements ClassFileTransformer, IConstants {
 			IDataBase odbDataBase = IDataBase.DataBaseManager.getDataBase(DataBaseOdb.class, IConstants.DATABASE_FILE_ODB, null);
 			DataBaseToolkit.clear(odbDataBase);
 			// This is the ram database that will hold all the data in memory for better performance
-			IDataBase ramDataBase = IDataBase.DataBaseManager.getDataBase(DataBaseRam.class, IConstants.DATABASE_FILE_RAM, odbDataBase);
+			IDataBase ramDataBase = IDataBase.DataBaseManager.getDataBase(DataBaseHash.class, IConstants.DATABASE_FILE_RAM, odbDataBase);
 			DataBaseToolkit.clear(ramDataBase);
 			Collector.initialize(ramDataBase);
 			Profiler.initialize(ramDataBase);
@@ -110,6 +110,11 @@ public class Transformer implements ClassFileTransformer, IConstants {
 				LOGGER.info("Starting accumulation : " + start);
 
 				long processStart = System.currentTimeMillis();
+				Collector.collectProbes();
+				Collector.collectTimings();
+				LOGGER.info("Probes and timings : " + (System.currentTimeMillis() - processStart));
+
+				processStart = System.currentTimeMillis();
 				new Accumulator(null).execute();
 				LOGGER.info("Accumlulator : " + (System.currentTimeMillis() - processStart));
 
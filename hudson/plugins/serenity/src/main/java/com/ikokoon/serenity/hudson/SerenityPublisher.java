@@ -18,7 +18,9 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -36,6 +38,7 @@ import com.ikokoon.serenity.persistence.DataBaseOdb;
 import com.ikokoon.serenity.persistence.DataBaseRam;
 import com.ikokoon.serenity.persistence.DataBaseToolkit;
 import com.ikokoon.serenity.persistence.IDataBase;
+import com.ikokoon.serenity.persistence.SamplesFile;
 import com.ikokoon.serenity.process.Aggregator;
 import com.ikokoon.serenity.process.Pruner;
 import com.ikokoon.toolkit.LoggingConfigurator;
@@ -62,6 +65,7 @@ public class SerenityPublisher extends Recorder implements Serializable {
 
 	/** The pattern to exclude from the file filter. */
 	static final String SERENITY_ODB_REGEX = ".*(serenity.odb)";
+	static final String SERENITY_SAMPLES_REGEX = ".*(serenity.samples)";
 	static final String SERENITY_SOURCE_REGEX = ".*serenity.*.source.*";
 	/** The LOGGER. */
 	protected static Logger LOGGER = Logger.getLogger(SerenityPublisher.class);
@@ -96,6 +100,9 @@ public class SerenityPublisher extends Recorder implements Serializable {
 			prune(build, buildListener, targetDataBase);
 			targetDataBase.close();
 
+			// Merge the profiling samples into the build directory for the profiling charts
+			copySamplesToBuildDirectory(build, buildListener);
+
 			printStream.println("Publishing the Serenity results...");
 			ISerenityResult result = new SerenityResult(build);
 			SerenityBuildAction buildAction = new SerenityBuildAction(build, result);
@@ -208,6 +215,53 @@ public class SerenityPublisher extends Recorder implements Serializable {
 		return targetDataBase;
 	}
 
+	/**
+	 * Scans the output directory for the project for the profiling samples files, copies them to local files and merges them into the samples file in the
+	 * build directory.
+	 * 
+	 * @param build the build for this project
+	 * @param buildListener the listener of the build
+	 */
+	private void copySamplesToBuildDirectory(final AbstractBuild<?, ?> build, final BuildListener buildListener) {
+		PrintStream printStream = buildListener.getLogger();
+		try {
+			List<FilePath> samplesFiles = new ArrayList<FilePath>();
+			Pattern pattern = Pattern.compile(SERENITY_SAMPLES_REGEX);
+			for (final FilePath moduleRoot : build.getModuleRoots()) {
+				findFilesAndDirectories(moduleRoot, samplesFiles, pattern, printStream);
+			}
+			if (samplesFiles.isEmpty()) {
+				return;
+			}
+			Map<Long, long[][]> samples = new HashMap<Long, long[][]>();
+			for (final FilePath samplesFile : samplesFiles) {
+				if (samplesFile.isDirectory()) {
+					continue;
+				}
+				File sourceFile = null;
+				try {
+					// The samples file could be on a remote machine
+					sourceFile = File.createTempFile("serenity", ".samples", new File(IConstants.SERENITY_DIRECTORY));
+					samplesFile.copyTo(new FilePath(sourceFile));
+					samples.putAll(SamplesFile.read(sourceFile));
+				} catch (Exception e) {
+					printStream.println("Unable to copy Serenity samples file from : " + samplesFile);
+					LOGGER.error(null, e);
+				} finally {
+					if (sourceFile != null && !sourceFile.delete()) {
+						sourceFile.deleteOnExit();
+					}
+				}
+			}
+			File targetSamplesFile = new File(build.getRootDir(), IConstants.SAMPLES_FILE);
+			printStream.println("Writing samples... " + targetSamplesFile);
+			SamplesFile.write(targetSamplesFile, samples);
+		} catch (Exception e) {
+			printStream.println(e.getMessage());
+			LOGGER.error(null, e);
+		}
+	}
+
 	/**
 	 * Runs the aggregator on the final database to generate the statistics etc.
 	 * 
@@ -26,6 +26,7 @@ import com.ikokoon.serenity.model.Package;
 import com.ikokoon.serenity.model.Project;
 import com.ikokoon.serenity.persistence.DataBaseOdb;
 import com.ikokoon.serenity.persistence.IDataBase;
+import com.ikokoon.serenity.persistence.SamplesFile;
 import com.ikokoon.toolkit.Toolkit;
 
 /**
@@ -179,6 +180,40 @@ public class SerenityResult implements ISerenityResult {
 		return getModel(null, composite);
 	}
 
+	/**
+	 * Generates the model for the profiling chart of the selected method or class. The samples are read from the columnar samples file of the build, so
+	 * the database is not opened.
+	 *
+	 * @return the model for the profiling chart, or an empty string if there are no samples for the composite
+	 */
+	public String getProfileModel() {
+		if (composite == null) {
+			return "";
+		}
+		File samplesFile = new File(abstractBuild.getRootDir(), IConstants.SAMPLES_FILE);
+		if (!samplesFile.exists()) {
+			return "";
+		}
+		try {
+			long[][] samples = SamplesFile.read(samplesFile, composite.getId());
+			if (samples == null) {
+				return "";
+			}
+			String name = composite.toString();
+			if (composite instanceof Class) {
+				name = ((Class<?, ?>) composite).getName();
+			} else if (composite instanceof Method) {
+				name = ((Method<?, ?>) composite).getName();
+			}
+			HighchartsModeller modeller = new HighchartsModeller(null);
+			modeller.visit(name, samples);
+			return modeller.getModel();
+		} catch (Exception e) {
+			logger.error("Exception reading the samples for : " + composite, e);
+		}
+		return "";
+	}
+
 	public String getProjectModel() {
 		// Move the build forward to the last build because Hudson will go to the last stable build
 		// which we don't want, we want the last build
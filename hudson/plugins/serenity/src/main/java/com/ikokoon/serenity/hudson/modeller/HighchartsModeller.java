@@ -1,15 +1,19 @@
 package com.ikokoon.serenity.hudson.modeller;
 
 import java.io.InputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.log4j.Logger;
 
+import com.ikokoon.serenity.Configuration;
 import com.ikokoon.serenity.model.Class;
 import com.ikokoon.serenity.model.Composite;
 import com.ikokoon.serenity.model.Package;
 import com.ikokoon.serenity.model.Project;
+import com.ikokoon.serenity.model.Samples;
 import com.ikokoon.toolkit.Toolkit;
 
 /**
@@ -74,6 +78,75 @@ public class HighchartsModeller implements IModeller {
         }
     }
 
+    /**
+     * Visits the profiling samples for a method or a class and generates a model string for the Highcharts time series of the total, net and wait
+     * times in the configured time unit. The samples are the columns read from the samples file.<br>
+     *
+     * totalData - [12.5, 10.1, 11.7]<br>
+     * categoryData - ['10:15', '10:16', '10:17']<br>
+     *
+     * @param compositeName
+     *            the name of the method or the class for the title
+     * @param samples
+     *            the columns of the samples, see {@link Samples#getColumns()}
+     */
+    public void visit(String compositeName, long[][] samples) {
+        InputStream inputStream = this.getClass().getResourceAsStream(modelName != null ? modelName : "Profile");
+        model = Toolkit.getContents(inputStream).toString();
+        double denominator = Configuration.getConfiguration().getTimeUnitDenominator();
+        model = Toolkit.replaceAll(model, "timeUnit", getTimeUnit(denominator));
+        model = Toolkit.replaceAll(model, "compositeName", compositeName);
+        SimpleDateFormat dateFormat = new SimpleDateFormat("HH:mm");
+        StringBuilder categories = new StringBuilder("[");
+        long[] starts = samples[Samples.START];
+        for (int i = 0; i < starts.length; i++) {
+            if (i > 0) {
+                categories.append(",");
+            }
+            categories.append("'");
+            categories.append(dateFormat.format(new Date(starts[i])));
+            categories.append("'");
+        }
+        categories.append("]");
+        model = Toolkit.replaceAll(model, "categoryData", categories.toString());
+        model = Toolkit.replaceAll(model, "totalData", getData(samples[Samples.TOTAL], denominator));
+        model = Toolkit.replaceAll(model, "netData", getData(samples[Samples.NET], denominator));
+        model = Toolkit.replaceAll(model, "waitData", getData(samples[Samples.WAIT], denominator));
+    }
+
+    /**
+     * Returns the label of the time unit the samples are charted in, the samples are in nanoseconds and divided by the denominator.
+     *
+     * @param denominator
+     *            the time unit denominator from the configuration
+     * @return the label of the time unit, escaped for a JavaScript string
+     */
+    static String getTimeUnit(double denominator) {
+        if (denominator == 1d) {
+            return "ns";
+        } else if (denominator == 1000d) {
+            return "\\u00B5s";
+        } else if (denominator == 1000000d) {
+            return "ms";
+        } else if (denominator == 1000000000d) {
+            return "s";
+        }
+        return "ns/" + (long) denominator;
+    }
+
+    private String getData(long[] column, double denominator) {
+        // In the same unit as the profiler series
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < column.length; i++) {
+            if (i > 0) {
+                builder.append(",");
+            }
+            builder.append(column[i] / denominator);
+        }
+        builder.append("]");
+        return builder.toString();
+    }
+
 	private String getName(Composite<?, ?>... composites) {
         for (Composite<?, ?> composite : composites) {
             if (composite instanceof Project) {
@@ -7,6 +7,8 @@ import org.objectweb.asm.MethodAdapter;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 
+import com.ikokoon.serenity.Configuration;
+import com.ikokoon.serenity.Probes;
 import com.ikokoon.serenity.instrumentation.VisitorFactory;
 import com.ikokoon.toolkit.Toolkit;
 
@@ -50,4 +52,15 @@ public class CoverageClassAdapter extends ClassAdapter implements Opcodes {
 		return methodAdapter;
 	}
 
+	/**
+	 * In the probe mode the counters for the lines in the class are allocated here, after all the methods have been given their probes and before the class
+	 * is returned to the Jvm.
+	 */
+	public void visitEnd() {
+		if (Configuration.getConfiguration().isCoverageProbes()) {
+			Probes.seal(Probes.getClassIndex(className));
+		}
+		super.visitEnd();
+	}
+
 }
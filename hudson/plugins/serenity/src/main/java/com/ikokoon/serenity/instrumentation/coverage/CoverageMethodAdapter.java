@@ -8,6 +8,8 @@ import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 
 import com.ikokoon.serenity.Collector;
+import com.ikokoon.serenity.Configuration;
+import com.ikokoon.serenity.Probes;
 import com.ikokoon.toolkit.Toolkit;
 
 /**
@@ -35,6 +37,8 @@ public class CoverageMethodAdapter extends MethodAdapter {
 	protected String collectorMethodName = "collectCoverage";
 	/** The byte code signature of the coverage method in the {@link Collector}. */
 	protected String collectorMethodDescription = Type.getMethodDescriptor(Type.VOID_TYPE, types);
+	/** The byte code signature of the probe coverage method in the {@link Collector}. */
+	protected String collectorProbeMethodDescription = Type.getMethodDescriptor(Type.VOID_TYPE, new Type[] { intType, intType });
 
 	/** The name of the class that this method adapter is enhancing the methods for. */
 	private String className;
@@ -42,6 +46,8 @@ public class CoverageMethodAdapter extends MethodAdapter {
 	private String methodName;
 	/** The description of the method being enhanced. */
 	private String methodDescription;
+	/** The index of the class in the {@link Probes}, or -1 if the probe mode is not on. */
+	private int classIndex = -1;
 
 	/**
 	 * The constructor initialises a {@link CoverageMethodAdapter} that takes all the interesting items for the method that is to be enhanced
@@ -61,6 +67,9 @@ public class CoverageMethodAdapter extends MethodAdapter {
 		this.className = Toolkit.slashToDot(className);
 		this.methodName = methodName;
 		this.methodDescription = methodDescription;
+		if (Configuration.getConfiguration().isCoverageProbes()) {
+			this.classIndex = Probes.getClassIndex(this.className);
+		}
 		logger.debug("Class name : " + className + ", name : " + methodName + ", desc : " + methodDescription);
 	}
 
@@ -68,9 +77,19 @@ public class CoverageMethodAdapter extends MethodAdapter {
 	 * This is the method that actually adds the instructions to the enhanced class. It adds an instruction to call a collector class which then
 	 * collects the data about each line being called. This method puts five strings onto the stack. These are then popped by the call to the
 	 * collector class and passed as parameters to the collector method.
+	 *
+	 * In the probe mode the line is given a slot in the probes for the class and only the class index and the slot are put on the stack.
 	 */
 	public void visitLineNumber(int lineNumber, Label label) {
 		logger.debug("visitLineNumber : " + lineNumber + ", " + label + ", " + label.getOffset() + ", " + className + ", " + methodName);
+		if (classIndex > -1) {
+			int probe = Probes.getProbe(classIndex, methodName, methodDescription, lineNumber);
+			this.mv.visitLdcInsn(classIndex);
+			this.mv.visitLdcInsn(probe);
+			this.mv.visitMethodInsn(Opcodes.INVOKESTATIC, collectorClassName, collectorMethodName, collectorProbeMethodDescription);
+			this.mv.visitLineNumber(lineNumber, label);
+			return;
+		}
 		this.mv.visitLdcInsn(className);
 		this.mv.visitLdcInsn(methodName);
 		this.mv.visitLdcInsn(methodDescription);
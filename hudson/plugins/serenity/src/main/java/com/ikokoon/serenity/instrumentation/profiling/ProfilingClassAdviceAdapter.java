@@ -9,6 +9,7 @@ import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 
 import com.ikokoon.serenity.IConstants;
+import com.ikokoon.serenity.Timings;
 import com.ikokoon.toolkit.Toolkit;
 
 /**
@@ -71,6 +72,8 @@ public class ProfilingClassAdviceAdapter extends ClassAdapter {
 			return methodVisitor;
 		}
 
+		// The timings are collected against the index of the method in the thread call stacks
+		final int methodIndex = Timings.getMethodIndex(className, methodName, methodDescription);
 		MethodAdapter methodAdapter = new ProfilingMethodAdviceAdapter(methodVisitor, access, methodName, methodDescription) {
 
 			private Label[] catchBlockLabels = new Label[0];
@@ -80,12 +83,12 @@ public class ProfilingClassAdviceAdapter extends ClassAdapter {
 				if (methodName.equals("<init>") || methodName.equals("<clinit>")) {
 					insertInstruction(IConstants.COLLECTOR_CLASS_NAME, IConstants.COLLECT_ALLOCATION, IConstants.PROFILING_METHOD_DESCRIPTION);
 				}
-				insertInstruction(IConstants.COLLECTOR_CLASS_NAME, IConstants.COLLECT_START, IConstants.PROFILING_METHOD_DESCRIPTION);
+				insertIndexInstruction(IConstants.COLLECTOR_CLASS_NAME, IConstants.COLLECT_START, IConstants.PROFILING_INDEX_METHOD_DESCRIPTION);
 			}
 
 			@Override
 			protected void onMethodExit(int inst) {
-				insertInstruction(IConstants.COLLECTOR_CLASS_NAME, IConstants.COLLECT_END, IConstants.PROFILING_METHOD_DESCRIPTION);
+				insertIndexInstruction(IConstants.COLLECTOR_CLASS_NAME, IConstants.COLLECT_END, IConstants.PROFILING_INDEX_METHOD_DESCRIPTION);
 			}
 
 			@Override
@@ -107,7 +110,7 @@ public class ProfilingClassAdviceAdapter extends ClassAdapter {
 					if (label == interruptedCatchBlockLabel) {
 						// This is an exception label, handler, so stop the wait, we don't know what the
 						// caught exception was so to be safe just call the stop wait
-						insertInstruction(IConstants.COLLECTOR_CLASS_NAME, IConstants.COLLECT_END_WAIT, IConstants.PROFILING_METHOD_DESCRIPTION);
+						insertIndexInstruction(IConstants.COLLECTOR_CLASS_NAME, IConstants.COLLECT_END_WAIT, IConstants.PROFILING_INDEX_METHOD_DESCRIPTION);
 					}
 				}
 			}
@@ -115,9 +118,9 @@ public class ProfilingClassAdviceAdapter extends ClassAdapter {
 			@Override
 			public void visitMethodInsn(int opcode, String owner, String name, String desc) {
 				if (isWaitInsn(opcode, owner, name, desc)) {
-					insertInstruction(IConstants.COLLECTOR_CLASS_NAME, IConstants.COLLECT_START_WAIT, IConstants.PROFILING_METHOD_DESCRIPTION);
+					insertIndexInstruction(IConstants.COLLECTOR_CLASS_NAME, IConstants.COLLECT_START_WAIT, IConstants.PROFILING_INDEX_METHOD_DESCRIPTION);
 					super.visitMethodInsn(opcode, owner, name, desc);
-					insertInstruction(IConstants.COLLECTOR_CLASS_NAME, IConstants.COLLECT_END_WAIT, IConstants.PROFILING_METHOD_DESCRIPTION);
+					insertIndexInstruction(IConstants.COLLECTOR_CLASS_NAME, IConstants.COLLECT_END_WAIT, IConstants.PROFILING_INDEX_METHOD_DESCRIPTION);
 				} else {
 					super.visitMethodInsn(opcode, owner, name, desc);
 				}
@@ -130,6 +133,11 @@ public class ProfilingClassAdviceAdapter extends ClassAdapter {
 				super.visitMethodInsn(Opcodes.INVOKESTATIC, collectorClassName, collectorMethodName, collectorMethodDescription);
 			}
 
+			private void insertIndexInstruction(String collectorClassName, String collectorMethodName, String collectorMethodDescription) {
+				super.visitLdcInsn(methodIndex);
+				super.visitMethodInsn(Opcodes.INVOKESTATIC, collectorClassName, collectorMethodName, collectorMethodDescription);
+			}
+
 		};
 		return methodAdapter;
 	}
@@ -7,6 +7,7 @@ import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 
 import com.ikokoon.serenity.IConstants;
+import com.ikokoon.serenity.Timings;
 import com.ikokoon.toolkit.Toolkit;
 
 /**
@@ -27,6 +28,8 @@ public class ProfilingMethodAdapter extends MethodAdapter implements Opcodes {
 	private String methodName;
 	/** The description of the method being enhanced. */
 	private String methodDescription;
+	/** The index of the method in the {@link Timings}. */
+	private int methodIndex;
 
 	private String objectName = "java/lang/Object";
 	private String threadName = "java/lang/Thread";
@@ -55,6 +58,7 @@ public class ProfilingMethodAdapter extends MethodAdapter implements Opcodes {
 		this.className = Toolkit.slashToDot(className);
 		this.methodName = methodName;
 		this.methodDescription = methodDescription;
+		this.methodIndex = Timings.getMethodIndex(this.className, methodName, methodDescription);
 		logger.debug("Class name : " + className + ", name : " + methodName + ", desc : " + methodDescription);
 
 		if (methodName.equals("<clinit>")) {
@@ -82,7 +86,7 @@ public class ProfilingMethodAdapter extends MethodAdapter implements Opcodes {
 			// IConstants.profilingMethodDescription);
 			// this.visitMethodInsn(INVOKESTATIC, collectorClassName, "collectAllocation", "(Ljava/lang/String;)V");
 		}
-		insertInstruction(IConstants.COLLECTOR_CLASS_NAME, IConstants.COLLECT_START, IConstants.PROFILING_METHOD_DESCRIPTION);
+		insertIndexInstruction(IConstants.COLLECTOR_CLASS_NAME, IConstants.COLLECT_START, IConstants.PROFILING_INDEX_METHOD_DESCRIPTION);
 		// this.visitLdcInsn(className);
 		// this.visitLdcInsn(methodName);
 		// this.visitMethodInsn(INVOKESTATIC, collectorClassName, "collectStart", "(Ljava/lang/String;Ljava/lang/String;)V");
@@ -104,7 +108,7 @@ public class ProfilingMethodAdapter extends MethodAdapter implements Opcodes {
 		case Opcodes.LRETURN:
 		case Opcodes.RETURN:
 		case Opcodes.ATHROW:
-			insertInstruction(IConstants.COLLECTOR_CLASS_NAME, IConstants.COLLECT_END, IConstants.PROFILING_METHOD_DESCRIPTION);
+			insertIndexInstruction(IConstants.COLLECTOR_CLASS_NAME, IConstants.COLLECT_END, IConstants.PROFILING_INDEX_METHOD_DESCRIPTION);
 			// this.visitLdcInsn(className);
 			// this.visitLdcInsn(methodName);
 			// this.visitMethodInsn(INVOKESTATIC, collectorClassName, "collectEnd", "(Ljava/lang/String;Ljava/lang/String;)V");
@@ -114,13 +118,13 @@ public class ProfilingMethodAdapter extends MethodAdapter implements Opcodes {
 		}
 		this.mv.visitInsn(inst);
 		if (Opcodes.MONITORENTER == inst) {
-			insertInstruction(IConstants.COLLECTOR_CLASS_NAME, IConstants.COLLECT_START_WAIT, IConstants.PROFILING_METHOD_DESCRIPTION);
+			insertIndexInstruction(IConstants.COLLECTOR_CLASS_NAME, IConstants.COLLECT_START_WAIT, IConstants.PROFILING_INDEX_METHOD_DESCRIPTION);
 			// this.visitLdcInsn(className);
 			// this.visitLdcInsn(methodName);
 			// this.visitMethodInsn(INVOKESTATIC, collectorClassName, "beginWait", "(Ljava/lang/String;Ljava/lang/String;)V");
 			// super.visitInsn(inst);
 
-			insertInstruction(IConstants.COLLECTOR_CLASS_NAME, IConstants.COLLECT_END_WAIT, IConstants.PROFILING_METHOD_DESCRIPTION);
+			insertIndexInstruction(IConstants.COLLECTOR_CLASS_NAME, IConstants.COLLECT_END_WAIT, IConstants.PROFILING_INDEX_METHOD_DESCRIPTION);
 			// this.visitLdcInsn(className);
 			// this.visitLdcInsn(methodName);
 			// this.visitMethodInsn(INVOKESTATIC, collectorClassName, "endWait", "(Ljava/lang/String;Ljava/lang/String;)V");
@@ -133,13 +137,13 @@ public class ProfilingMethodAdapter extends MethodAdapter implements Opcodes {
 	@Override
 	public void visitMethodInsn(int opcode, String owner, String name, String desc) {
 		if (isWaitInsn(opcode, owner, name, desc)) {
-			insertInstruction(IConstants.COLLECTOR_CLASS_NAME, IConstants.COLLECT_START_WAIT, IConstants.PROFILING_METHOD_DESCRIPTION);
+			insertIndexInstruction(IConstants.COLLECTOR_CLASS_NAME, IConstants.COLLECT_START_WAIT, IConstants.PROFILING_INDEX_METHOD_DESCRIPTION);
 			// this.visitLdcInsn(className);
 			// this.visitLdcInsn(methodName);
 			// this.visitMethodInsn(INVOKESTATIC, collectorClassName, "beginWait", "(Ljava/lang/String;Ljava/lang/String;)V");
 			// super.visitMethodInsn(opcode, owner, name, desc);
 			this.mv.visitMethodInsn(opcode, owner, name, desc);
-			insertInstruction(IConstants.COLLECTOR_CLASS_NAME, IConstants.COLLECT_END_WAIT, IConstants.PROFILING_METHOD_DESCRIPTION);
+			insertIndexInstruction(IConstants.COLLECTOR_CLASS_NAME, IConstants.COLLECT_END_WAIT, IConstants.PROFILING_INDEX_METHOD_DESCRIPTION);
 			// this.visitLdcInsn(className);
 			// this.visitLdcInsn(methodName);
 			// this.visitMethodInsn(INVOKESTATIC, collectorClassName, "endWait", "(Ljava/lang/String;Ljava/lang/String;)V");
@@ -156,6 +160,11 @@ public class ProfilingMethodAdapter extends MethodAdapter implements Opcodes {
 		this.mv.visitMethodInsn(Opcodes.INVOKESTATIC, collectorClassName, collectorMethodName, collectorMethodDescription);
 	}
 
+	private void insertIndexInstruction(String collectorClassName, String collectorMethodName, String collectorMethodDescription) {
+		this.mv.visitLdcInsn(this.methodIndex);
+		this.mv.visitMethodInsn(Opcodes.INVOKESTATIC, collectorClassName, collectorMethodName, collectorMethodDescription);
+	}
+
 	/**
 	 * Code to handle unwinding the call stack when an exception is thrown.
 	 */
@@ -33,6 +33,8 @@ public class Class<E, F> extends Composite<Package<?, ?>, Method<?, ?>> implemen
 	private List<Afferent> afferent = new ArrayList<Afferent>();
 
 	private List<Snapshot<?, ?>> snapshots = new ArrayList<Snapshot<?, ?>>();
+	/** Only kept in memory while profiling, the samples are written to the samples file and not to the object database. */
+	private transient Samples samples;
 
 	private String source;
 
@@ -156,6 +158,14 @@ public class Class<E, F> extends Composite<Package<?, ?>, Method<?, ?>> implemen
 		this.snapshots = snapshots;
 	}
 
+	public Samples getSamples() {
+		return samples;
+	}
+
+	public void setSamples(Samples samples) {
+		this.samples = samples;
+	}
+
 	public String getSource() {
 		return source;
 	}
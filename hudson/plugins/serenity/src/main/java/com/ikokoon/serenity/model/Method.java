@@ -33,6 +33,8 @@ public class Method<E, F> extends Composite<Class<?, ?>, Line<?, ?>> implements
 	private long waitTime;
 
 	private List<Snapshot<?, ?>> snapshots = new ArrayList<Snapshot<?, ?>>();
+	/** Only kept in memory while profiling, the samples are written to the samples file and not to the object database. */
+	private transient Samples samples;
 
 	public String getName() {
 		return name;
@@ -156,6 +158,14 @@ public class Method<E, F> extends Composite<Class<?, ?>, Line<?, ?>> implements
 		this.snapshots = snapshots;
 	}
 
+	public Samples getSamples() {
+		return samples;
+	}
+
+	public void setSamples(Samples samples) {
+		this.samples = samples;
+	}
+
 	public String toString() {
 		return getId() + ":" + name;
 	}
@@ -168,6 +178,7 @@ public class Method<E, F> extends Composite<Class<?, ?>, Line<?, ?>> implements
 		setStartTime(0);
 		setStartWait(0);
 		setTotalTime(0);
+		setWaitTime(0);
 	}
 
 	public int compareTo(Method<?, ?> o) {
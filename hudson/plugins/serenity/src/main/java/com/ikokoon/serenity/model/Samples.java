@@ -0,0 +1,232 @@
+package com.ikokoon.serenity.model;
+
+import java.io.Serializable;
+
+/**
+ * This class holds the profiling samples for a method or a class in bounded ring buffers of primitives rather than in a list of snapshot objects. The
+ * samples are kept in three tiers. The newest samples are kept raw, at the snapshot interval. When the raw tier is full the oldest sample is folded into
+ * the minute tier, where the samples that start in the same minute are added together, and when the minute tier is full the oldest minute is folded into
+ * the hour tier in the same way. When the hour tier is full the oldest hour is dropped. So the history is bounded regardless of how long the soak test
+ * runs, and the series over the tiers is always in time order.
+ *
+ * The values are held in columns, {@link #START}, {@link #END}, {@link #TOTAL}, {@link #NET} and {@link #WAIT}, the times in milliseconds and the
+ * durations in the unit that the profiler collects them in.
+ */
+public class Samples implements Serializable {
+
+	public static final int COLUMNS = 5;
+	public static final int START = 0;
+	public static final int END = 1;
+	public static final int TOTAL = 2;
+	public static final int NET = 3;
+	public static final int WAIT = 4;
+
+	/** The default number of raw samples, minutes and hours that are retained. */
+	public static final int RAW = 60;
+	public static final int MINUTES = 60;
+	public static final int HOURS = 24 * 7;
+
+	private static final long MINUTE = 60 * 1000;
+	private static final long HOUR = 60 * MINUTE;
+
+	/** The start of the open sample, i.e. the time of the last snapshot. */
+	private long open;
+
+	private Tier raw;
+	private Tier minutes;
+	private Tier hours;
+
+	/**
+	 * One ring buffer of samples, the oldest sample is at the head. The columns are separate arrays that are allocated with the first sample and grown
+	 * up to the capacity, so the methods and classes that are seldom sampled stay small.
+	 */
+	static class Tier implements Serializable {
+
+		private static final int INITIAL = 4;
+
+		private long period;
+		private int capacity;
+		private int head;
+		private int size;
+		private long[] starts;
+		private long[] ends;
+		private long[] totals;
+		private long[] nets;
+		private long[] waits;
+
+		Tier() {
+		}
+
+		Tier(final int capacity, final long period) {
+			this.period = period;
+			this.capacity = Math.max(1, capacity);
+		}
+
+		int size() {
+			return size;
+		}
+
+		long get(final int column, final int index) {
+			long[] values = getColumn(column);
+			return values[(head + index) % values.length];
+		}
+
+		private long[] getColumn(final int column) {
+			switch (column) {
+			case START:
+				return starts;
+			case END:
+				return ends;
+			case TOTAL:
+				return totals;
+			case NET:
+				return nets;
+			default:
+				return waits;
+			}
+		}
+
+		/**
+		 * Makes room for one more sample if the tier is not at its capacity yet, the samples are copied to the new columns in order so the head is reset.
+		 */
+		private void grow() {
+			int length = starts == null ? 0 : starts.length;
+			if (size < length || length == capacity) {
+				return;
+			}
+			int grown = Math.min(capacity, Math.max(INITIAL, length * 2));
+			starts = grow(starts, grown);
+			ends = grow(ends, grown);
+			totals = grow(totals, grown);
+			nets = grow(nets, grown);
+			waits = grow(waits, grown);
+			head = 0;
+		}
+
+		private long[] grow(final long[] values, final int length) {
+			long[] grown = new long[length];
+			for (int i = 0; i < size; i++) {
+				grown[i] = values[(head + i) % values.length];
+			}
+			return grown;
+		}
+
+		/**
+		 * Adds the sample to the tier. If the tier is downsampled and the sample starts in the same period as the last sample then it is added to the last
+		 * sample, otherwise it is appended.
+		 *
+		 * @param sample the values of the sample, one for each column
+		 * @param evicted the array to copy the oldest sample to if it is pushed out of the tier
+		 * @return whether a sample was pushed out of the tier
+		 */
+		boolean add(final long[] sample, final long[] evicted) {
+			if (size > 0 && period > 0) {
+				int last = (head + size - 1) % starts.length;
+				if (starts[last] / period == sample[START] / period) {
+					ends[last] = Math.max(ends[last], sample[END]);
+					totals[last] += sample[TOTAL];
+					nets[last] += sample[NET];
+					waits[last] += sample[WAIT];
+					return false;
+				}
+			}
+			grow();
+			boolean full = size == capacity;
+			if (full) {
+				for (int column = 0; column < COLUMNS; column++) {
+					evicted[column] = getColumn(column)[head];
+				}
+				head = (head + 1) % capacity;
+				size--;
+			}
+			int slot = (head + size) % starts.length;
+			for (int column = 0; column < COLUMNS; column++) {
+				getColumn(column)[slot] = sample[column];
+			}
+			size++;
+			return full;
+		}
+
+	}
+
+	public Samples() {
+		this(RAW, MINUTES, HOURS);
+	}
+
+	/**
+	 * Constructor takes the retention for each of the tiers.
+	 *
+	 * @param raw the number of raw samples to keep
+	 * @param minutes the number of per minute samples to keep
+	 * @param hours the number of per hour samples to keep
+	 */
+	public Samples(final int raw, final int minutes, final int hours) {
+		this.raw = new Tier(raw, 0);
+		this.minutes = new Tier(minutes, MINUTE);
+		this.hours = new Tier(hours, HOUR);
+	}
+
+	public long getOpen() {
+		return open;
+	}
+
+	public void setOpen(long open) {
+		this.open = open;
+	}
+
+	/**
+	 * Adds a sample, folding the oldest samples into the coarser tiers if the raw tier is full.
+	 *
+	 * @param start the start of the sample in milliseconds
+	 * @param end the end of the sample in milliseconds
+	 * @param total the total time in the sample
+	 * @param net the net time in the sample
+	 * @param wait the wait time in the sample
+	 */
+	public synchronized void add(final long start, final long end, final long total, final long net, final long wait) {
+		long[] sample = new long[] { start, end, total, net, wait };
+		long[] evicted = new long[COLUMNS];
+		if (raw.add(sample, evicted)) {
+			long[] evictedMinute = new long[COLUMNS];
+			if (minutes.add(evicted, evictedMinute)) {
+				hours.add(evictedMinute, evicted);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of samples over all the tiers
+	 */
+	public synchronized int size() {
+		return hours.size() + minutes.size() + raw.size();
+	}
+
+	/**
+	 * Returns one column of the samples over all the tiers, the oldest first.
+	 *
+	 * @param column the column, {@link #START}, {@link #END}, {@link #TOTAL}, {@link #NET} or {@link #WAIT}
+	 * @return the values in the column
+	 */
+	public synchronized long[] getColumn(final int column) {
+		long[] values = new long[size()];
+		int index = 0;
+		for (Tier tier : new Tier[] { hours, minutes, raw }) {
+			for (int i = 0; i < tier.size(); i++) {
+				values[index++] = tier.get(column, i);
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * @return all the columns of the samples over all the tiers, indexed by the column and then the sample
+	 */
+	public synchronized long[][] getColumns() {
+		long[][] columns = new long[COLUMNS][];
+		for (int column = 0; column < COLUMNS; column++) {
+			columns[column] = getColumn(column);
+		}
+		return columns;
+	}
+
+}
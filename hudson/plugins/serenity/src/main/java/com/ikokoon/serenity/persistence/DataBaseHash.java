@@ -0,0 +1,422 @@
+package com.ikokoon.serenity.persistence;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.log4j.Logger;
+
+import com.ikokoon.serenity.model.Composite;
+import com.ikokoon.serenity.model.Package;
+import com.ikokoon.serenity.model.Project;
+import com.ikokoon.toolkit.Toolkit;
+
+/**
+ * This is the in memory database with a hash index in place of the sorted list in the {@link DataBaseRam}. The composites are held in open addressing
+ * tables keyed on the primitive long id. The tables are striped on the id so that inserts in different stripes don't contend, and the lookups are lock free,
+ * the keys and the values are read with volatile semantics and the tables are published when they are resized. Inserts are constant time rather than
+ * shifting the whole index for every new line or method.
+ *
+ * The behaviour is the same as the {@link DataBaseRam}, the underlying database is consulted when a composite is not in the index, the packages and the
+ * project are committed to the underlying database on close and the close event is fired to the listeners.
+ */
+public final class DataBaseHash extends DataBase {
+
+	/** The number of stripes, must be a power of two. */
+	private static final int STRIPES = 16;
+	/** The initial capacity of each stripe, must be a power of two. */
+	private static final int INITIAL_CAPACITY = 256;
+	/** The marker for a removed composite, the slot stays in the probe chain until the next resize. */
+	private static final Object TOMBSTONE = new Object();
+
+	private Logger logger = Logger.getLogger(this.getClass());
+	/** The database file for access. */
+	private String dataBaseFile;
+	/** The underlying persistence database to the file system. */
+	private IDataBase dataBase;
+	/** The closed flag. */
+	private volatile boolean closed = true;
+
+	/** The stripes of the index of packages, classes, methods and lines. */
+	private final Stripe[] stripes = new Stripe[STRIPES];
+
+	/**
+	 * An open addressing table with linear probing. The keys are set before the values so a reader that sees a composite in a slot also sees its key.
+	 */
+	private static final class Table {
+
+		private final AtomicLongArray keys;
+		private final AtomicReferenceArray<Object> values;
+		private final int mask;
+
+		Table(final int capacity) {
+			keys = new AtomicLongArray(capacity);
+			values = new AtomicReferenceArray<Object>(capacity);
+			mask = capacity - 1;
+		}
+
+		int capacity() {
+			return mask + 1;
+		}
+
+	}
+
+	/**
+	 * One stripe of the index. The writers take the monitor of the stripe, the readers only read the volatile table.
+	 */
+	private static final class Stripe {
+
+		private volatile Table table = new Table(INITIAL_CAPACITY);
+		/** The number of used slots, live and removed. */
+		private int used;
+
+		Composite<?, ?> get(final long id) {
+			Table table = this.table;
+			int slot = index(id, table.mask);
+			while (true) {
+				Object value = table.values.get(slot);
+				if (value == null) {
+					return null;
+				}
+				if (value != TOMBSTONE && table.keys.get(slot) == id) {
+					return (Composite<?, ?>) value;
+				}
+				slot = (slot + 1) & table.mask;
+			}
+		}
+
+		synchronized boolean put(final long id, final Composite<?, ?> composite) {
+			if (get(id) != null) {
+				return false;
+			}
+			if ((used + 1) * 4 > table.capacity() * 3) {
+				resize();
+			}
+			Table table = this.table;
+			int slot = index(id, table.mask);
+			while (table.values.get(slot) != null) {
+				slot = (slot + 1) & table.mask;
+			}
+			table.keys.set(slot, id);
+			table.values.set(slot, composite);
+			used++;
+			return true;
+		}
+
+		synchronized boolean remove(final long id) {
+			Table table = this.table;
+			int slot = index(id, table.mask);
+			while (true) {
+				Object value = table.values.get(slot);
+				if (value == null) {
+					return false;
+				}
+				if (value != TOMBSTONE && table.keys.get(slot) == id) {
+					table.values.set(slot, TOMBSTONE);
+					return true;
+				}
+				slot = (slot + 1) & table.mask;
+			}
+		}
+
+		synchronized void clear() {
+			table = new Table(INITIAL_CAPACITY);
+			used = 0;
+		}
+
+		void collect(final Class<?> klass, final List<Composite<?, ?>> list) {
+			Table table = this.table;
+			for (int slot = 0; slot < table.capacity(); slot++) {
+				Object value = table.values.get(slot);
+				if (value != null && value != TOMBSTONE && klass.isInstance(value)) {
+					list.add((Composite<?, ?>) value);
+				}
+			}
+		}
+
+		private void resize() {
+			Table table = this.table;
+			int live = 0;
+			for (int slot = 0; slot < table.capacity(); slot++) {
+				Object value = table.values.get(slot);
+				if (value != null && value != TOMBSTONE) {
+					live++;
+				}
+			}
+			// Only grow if the table is full of live composites, otherwise just clean out the removed ones
+			int capacity = (live + 1) * 2 > table.capacity() ? table.capacity() * 2 : table.capacity();
+			Table resized = new Table(capacity);
+			for (int slot = 0; slot < table.capacity(); slot++) {
+				Object value = table.values.get(slot);
+				if (value != null && value != TOMBSTONE) {
+					long id = table.keys.get(slot);
+					int newSlot = index(id, resized.mask);
+					while (resized.values.get(newSlot) != null) {
+						newSlot = (newSlot + 1) & resized.mask;
+					}
+					resized.keys.set(newSlot, id);
+					resized.values.set(newSlot, value);
+				}
+			}
+			used = live;
+			this.table = resized;
+		}
+
+		private static int index(final long id, final int mask) {
+			// Spread the bits of the id, the stripe is taken from the low bits
+			long hash = id * 0x9E3779B97F4A7C15L;
+			return (int) (hash >>> 40) & mask;
+		}
+
+	}
+
+	/** Sorts the composites on the id so the lists are in the same order as the {@link DataBaseRam}. */
+	private static final Comparator<Composite<?, ?>> ID_COMPARATOR = new Comparator<Composite<?, ?>>() {
+		public int compare(Composite<?, ?> one, Composite<?, ?> two) {
+			return one.getId().compareTo(two.getId());
+		}
+	};
+
+	/**
+	 * Constructor takes the underlying database that will commit the data to the file system.
+	 *
+	 * @param dataBaseFile
+	 *            the database file, used as the key for the listeners
+	 * @param dataBase
+	 *            the underlying database that will actually persist the objects to the file system
+	 */
+	DataBaseHash(String dataBaseFile, IDataBase dataBase) {
+		logger.info("Opening hash database with " + dataBase + " underneath.");
+		this.dataBaseFile = dataBaseFile;
+		this.dataBase = dataBase;
+		for (int i = 0; i < stripes.length; i++) {
+			stripes[i] = new Stripe();
+		}
+		closed = false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public final <E extends Composite<?, ?>> E persist(E composite) {
+		setIds(composite);
+		return composite;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public final <E extends Composite<?, ?>> void persistAll(Collection<E> composites) {
+		for (E composite : composites) {
+			setIds(composite);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public final <E extends Composite<?, ?>> E find(Class<E> klass, Long id) {
+		return search(klass, id);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public final <E extends Composite<?, ?>> E find(Class<E> klass, List<?> parameters) {
+		Long id = Toolkit.hash(parameters.toArray());
+		return search(klass, id);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public final <E extends Composite<?, ?>> List<E> find(Class<E> klass) {
+		return find(klass, 0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public <E extends Composite<?, ?>> List<E> find(Class<E> klass, int start, int end) {
+		List<Composite<?, ?>> composites = new ArrayList<Composite<?, ?>>();
+		for (Stripe stripe : stripes) {
+			stripe.collect(klass, composites);
+		}
+		Collections.sort(composites, ID_COMPARATOR);
+		List<E> list = new ArrayList<E>();
+		int counter = 0;
+		for (Composite<?, ?> composite : composites) {
+			list.add((E) composite);
+			if (counter++ >= end) {
+				break;
+			}
+		}
+		if (list.size() == 0) {
+			// Try to find some in the underlying database
+			if (this.dataBase != null) {
+				list = this.dataBase.find(klass, start, end);
+				if (list != null && list.size() > 0) {
+					for (final Composite composite : list) {
+						insert(composite);
+					}
+				}
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public <E extends Composite<?, ?>> List<E> find(Class<E> klass, Map<String, ?> parameters) {
+		throw new RuntimeException("Not implempented.");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized final <E extends Composite<?, ?>> E remove(Class<E> klass, Long id) {
+		Composite<?, ?> composite = find(klass, id);
+		if (composite != null) {
+			Composite<?, ?> parent = composite.getParent();
+			if (parent != null) {
+				List<?> children = parent.getChildren();
+				if (children != null) {
+					children.remove(composite);
+				}
+			}
+			composite.setParent(null);
+			if (!getStripe(id).remove(id)) {
+				logger.warn("Didn't remove composite with id : " + id + ", because it wasn't in the index.");
+			}
+		}
+		if (this.dataBase != null) {
+			this.dataBase.remove(klass, id);
+		}
+		return (E) composite;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized final boolean isClosed() {
+		if (dataBase != null) {
+			if (!closed && dataBase.isClosed()) {
+				closed = true;
+			}
+		}
+		return closed;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized final void close() {
+		if (closed) {
+			logger.info("User tried to close the database again");
+			return;
+		}
+		logger.info("Comitting and closing the database");
+
+		try {
+			logger.info("Persisting index : " + dataBase);
+			if (dataBase != null) {
+				List<Composite<?, ?>> composites = new ArrayList<Composite<?, ?>>();
+				for (Stripe stripe : stripes) {
+					stripe.collect(Composite.class, composites);
+				}
+				Collections.sort(composites, ID_COMPARATOR);
+				List<Composite<?, ?>> roots = new ArrayList<Composite<?, ?>>();
+				for (Composite<?, ?> composite : composites) {
+					if (Package.class.isInstance(composite) || Project.class.isInstance(composite)) {
+						logger.debug("Persisting : " + composite);
+						roots.add(composite);
+					}
+				}
+				dataBase.persistAll(roots);
+				dataBase.close();
+			} else {
+				logger.warn("Persistence database was null : " + this);
+			}
+			for (Stripe stripe : stripes) {
+				stripe.clear();
+			}
+
+			IDataBaseEvent dataBaseEvent = new DataBaseEvent(this, IDataBaseEvent.Type.DATABASE_CLOSE);
+			IDataBase.DataBaseManager.fireDataBaseEvent(dataBaseFile, dataBaseEvent);
+		} catch (Exception e) {
+			logger.error("Exception comitting and closing the database", e);
+		}
+		closed = true;
+	}
+
+	/**
+	 * Sets the ids in the graph of composites and inserts them into the index.
+	 *
+	 * @param composite
+	 *            the composite to set the id for and insert, with its children
+	 */
+	@SuppressWarnings("unchecked")
+	final void setIds(Composite<?, ?> composite) {
+		if (composite == null) {
+			return;
+		}
+		super.setId(composite);
+		insert(composite);
+		logger.debug("Persisted object : " + composite);
+		List<Composite<?, ?>> children = (List<Composite<?, ?>>) composite.getChildren();
+		for (Composite<?, ?> child : children) {
+			setIds(child);
+		}
+	}
+
+	/**
+	 * Looks for the composite in the index, and then in the underlying database.
+	 *
+	 * @param klass
+	 *            the class to search for
+	 * @param id
+	 *            the id of the composite to get
+	 * @return the composite from the index, or the underlying database, or null if no such composites exists
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	final <E extends Composite<?, ?>> E search(Class klass, long id) {
+		Composite<?, ?> composite = getStripe(id).get(id);
+		if (composite != null) {
+			return (E) composite;
+		}
+		// Look for the object in the underlying database
+		if (this.dataBase != null) {
+			composite = this.dataBase.find(klass, id);
+			if (composite != null) {
+				insert(composite);
+			}
+			return (E) composite;
+		}
+		return null;
+	}
+
+	/**
+	 * Insert the composite into the index.
+	 *
+	 * @param toInsert
+	 *            the composite to insert into the index
+	 */
+	final void insert(Composite<?, ?> toInsert) {
+		long id = toInsert.getId();
+		boolean inserted = getStripe(id).put(id, toInsert);
+		logger.debug("Inserted : " + toInsert + " - " + inserted);
+	}
+
+	private Stripe getStripe(final long id) {
+		return stripes[(int) (id ^ (id >>> 32)) & (STRIPES - 1)];
+	}
+
+}
@@ -1,5 +1,6 @@
 package com.ikokoon.serenity.persistence;
 
+import com.ikokoon.serenity.Configuration;
 import com.ikokoon.serenity.model.Composite;
 import com.ikokoon.toolkit.Toolkit;
 import org.apache.log4j.Logger;
@@ -19,6 +20,10 @@ import java.util.*;
 /**
  * This is the database class using Neodatis as the persistence tool.
  *
+ * The writes can be grouped into batches, the commit is then done once the batch size is reached or once the batch interval has passed since the last
+ * commit, and in any case when the database is closed. A timer commits the batch once the interval has passed when there are no more writes. The default
+ * batch size of one commits every write.
+ *
  * @author Michael Couck
  * @since 01-12-2009
  * @version 01.00
@@ -32,6 +37,16 @@ public class DataBaseOdb extends DataBase {
 	private String dataBaseFile;
 	/** The closed flag. */
 	private boolean closed = true;
+	/** The number of writes to group into one commit. */
+	private int batchSize;
+	/** The maximum time in milliseconds that writes are left uncommitted. */
+	private long batchInterval;
+	/** The number of writes since the last commit. */
+	private int pending;
+	/** The time of the last commit. */
+	private long lastCommit = System.currentTimeMillis();
+	/** The timer that commits the batch when the database is idle, only when the writes are batched. */
+	private Timer timer;
 
 	/**
 	 * Constructor initialises a {@link DataBaseOdb} object.
@@ -42,10 +57,20 @@ public class DataBaseOdb extends DataBase {
 	public DataBaseOdb(final String dataBaseFile) {
 		synchronized (DataBaseOdb.class) {
 			this.dataBaseFile = dataBaseFile;
+			this.batchSize = Math.max(1, Configuration.getConfiguration().getOdbBatchSize());
+			this.batchInterval = Configuration.getConfiguration().getOdbBatchInterval();
 			logger.info("Opening ODB database on file : " + new File(dataBaseFile).getAbsolutePath());
 			try {
 				odb = ODBFactory.open(this.dataBaseFile);
 				closed = false;
+				if (batchSize > 1 && batchInterval > 0) {
+					timer = new Timer("Odb batch commit : " + dataBaseFile, true);
+					timer.schedule(new TimerTask() {
+						public void run() {
+							commitIdle();
+						}
+					}, batchInterval, batchInterval);
+				}
 			} catch (final Exception e) {
 				logger.error("Exception initialising the database : " + dataBaseFile + ", " + this, e);
 			}
@@ -130,6 +155,8 @@ public class DataBaseOdb extends DataBase {
 
 	private synchronized void commit() {
 		try {
+			pending = 0;
+			lastCommit = System.currentTimeMillis();
 			if (!isClosed()) {
 				odb.commit();
 			}
@@ -140,6 +167,32 @@ public class DataBaseOdb extends DataBase {
 		}
 	}
 
+	/**
+	 * Commits the writes if the batch is full or if the batch interval has passed since the last commit.
+	 */
+	private synchronized void commitBatch() {
+		pending++;
+		if (pending >= batchSize || System.currentTimeMillis() - lastCommit >= batchInterval) {
+			commit();
+		}
+	}
+
+	/**
+	 * Commits the writes that are waiting in the batch if the batch interval has passed since the last commit, called from the timer.
+	 */
+	private synchronized void commitIdle() {
+		if (pending > 0 && System.currentTimeMillis() - lastCommit >= batchInterval) {
+			commit();
+		}
+	}
+
+	/**
+	 * @return the number of writes since the last commit
+	 */
+	synchronized int getPending() {
+		return pending;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -148,13 +201,32 @@ public class DataBaseOdb extends DataBase {
         if (isClosed()) {
             return null;
         }
+		store(composite);
+		commitBatch();
+		return composite;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized <E extends Composite<?, ?>> void persistAll(final Collection<E> composites) {
+		if (isClosed()) {
+			return;
+		}
+		for (final E composite : composites) {
+			store(composite);
+		}
+		commit();
+	}
+
+	private synchronized <E extends Composite<?, ?>> void store(final E composite) {
 		try {
 			setIds(composite);
 			E duplicate = (E) find(composite.getClass(), composite.getId());
 			if (duplicate != null) {
 				if (duplicate != composite) {
 					logger.warn("Attempted to persist a duplicate composite : " + composite + ", " + this);
-					return composite;
+					return;
 				}
 			}
 			logger.debug("Persisting composite : " + composite);
@@ -162,8 +234,6 @@ public class DataBaseOdb extends DataBase {
 		} catch (final Exception e) {
 			logger.error("Exception persisting object : " + composite + ", " + this, e);
 		}
-		commit();
-		return composite;
 	}
 
 	/**
@@ -178,7 +248,7 @@ public class DataBaseOdb extends DataBase {
 		} catch (final Exception e) {
 			logger.error("Exception deleting object : " + id + ", " + this, e);
 		}
-		commit();
+		commitBatch();
 		return composite;
 	}
 
@@ -206,6 +276,9 @@ public class DataBaseOdb extends DataBase {
 				logger.info("Stack dump        : " + bos.toString());
 			}
 
+			if (timer != null) {
+				timer.cancel();
+			}
 			commit();
 			odb.close();
 
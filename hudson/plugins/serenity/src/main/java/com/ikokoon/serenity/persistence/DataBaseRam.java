@@ -1,6 +1,7 @@
 package com.ikokoon.serenity.persistence;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -61,6 +62,15 @@ public final class DataBaseRam extends DataBase {
 		return composite;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized final <E extends Composite<?, ?>> void persistAll(Collection<E> composites) {
+		for (E composite : composites) {
+			setIds(composite);
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -164,12 +174,14 @@ public final class DataBaseRam extends DataBase {
 		try {
 			logger.info("Persisting index : " + dataBase);
 			if (dataBase != null) {
+				List<Composite<?, ?>> composites = new ArrayList<Composite<?, ?>>();
 				for (Composite<?, ?> composite : index) {
 					if (Package.class.isInstance(composite) || Project.class.isInstance(composite)) {
 						logger.debug("Persisting : " + composite);
-						dataBase.persist(composite);
+						composites.add(composite);
 					}
 				}
+				dataBase.persistAll(composites);
 				dataBase.close();
 			} else {
 				logger.warn("Persistence database was null : " + this);
@@ -1,6 +1,7 @@
 package com.ikokoon.serenity.persistence;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,6 +29,8 @@ import com.ikokoon.toolkit.ObjectFactory;
  * @version 01.3 <br>
  *          Added a find method that can be implemented as a fuzzy search method by the implementation with multiple search criteria. For example
  *          'where x like n and y in m'.
+ * @version 01.4 <br>
+ *          Added the persist all method so the implementations can write a whole graph of composites in one transaction.
  */
 public interface IDataBase {
 
@@ -141,6 +144,17 @@ public interface IDataBase {
 	 */
 	public <E extends Composite<?, ?>> E persist(E composite);
 
+	/**
+	 * Persists a collection of composites to the persistent store. The implementations that have transactions will write the composites, and the
+	 * children of the composites, in one transaction rather than one transaction for each composite.
+	 *
+	 * @param <E>
+	 *            the type of the composites
+	 * @param composites
+	 *            the composites to persist
+	 */
+	public <E extends Composite<?, ?>> void persistAll(Collection<E> composites);
+
 	/**
 	 * Selects a composite based on the class type and the id of the class.
 	 *
@@ -0,0 +1,251 @@
+package com.ikokoon.serenity.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.log4j.Logger;
+
+import com.ikokoon.serenity.model.Samples;
+
+/**
+ * This class writes and reads the profiling samples in a compact columnar file, so the charts can load the samples for one method without opening the
+ * object database.
+ *
+ * <pre>
+ * int     magic
+ * int     version
+ * int     entries
+ * entries x { long id, int offset }     sorted on the id, the offset is from the start of the data
+ * entries x {
+ *     varint  samples
+ *     varlong start of the first sample, then the deltas of the starts
+ *     varlong end - start for each sample
+ *     varlong total, net and wait, one column after the other
+ * }
+ * </pre>
+ *
+ * The index is fixed width so a single entry can be found with a binary search and read with one seek.
+ */
+public final class SamplesFile {
+
+	private static final Logger LOGGER = Logger.getLogger(SamplesFile.class);
+
+	private static final int MAGIC = 0x53524e53;
+	private static final int VERSION = 1;
+	private static final int HEADER = 12;
+	private static final int INDEX_ENTRY = 12;
+
+	/**
+	 * Writes the samples to the file, replacing the file if it exists.
+	 *
+	 * @param file the file to write the samples to
+	 * @param samples the columns of the samples, see {@link Samples#getColumns()}, keyed on the id of the method or the class
+	 * @throws IOException
+	 */
+	public static void write(final File file, final Map<Long, long[][]> samples) throws IOException {
+		Map<Long, long[][]> sorted = new TreeMap<Long, long[][]>(samples);
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		long[] ids = new long[sorted.size()];
+		int[] offsets = new int[sorted.size()];
+		int entry = 0;
+		for (Map.Entry<Long, long[][]> mapEntry : sorted.entrySet()) {
+			ids[entry] = mapEntry.getKey().longValue();
+			offsets[entry] = data.size();
+			writeEntry(data, mapEntry.getValue());
+			entry++;
+		}
+		if (file.getParentFile() != null && !file.getParentFile().exists()) {
+			file.getParentFile().mkdirs();
+		}
+		// Write to a temporary file first so a reader never sees half a file
+		File temporary = new File(file.getAbsolutePath() + ".tmp");
+		DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+		try {
+			outputStream.writeInt(MAGIC);
+			outputStream.writeInt(VERSION);
+			outputStream.writeInt(ids.length);
+			for (int i = 0; i < ids.length; i++) {
+				outputStream.writeLong(ids[i]);
+				outputStream.writeInt(offsets[i]);
+			}
+			data.writeTo(outputStream);
+		} finally {
+			outputStream.close();
+		}
+		if (file.exists() && !file.delete()) {
+			LOGGER.warn("Couldn't delete the old samples file : " + file);
+		}
+		if (!temporary.renameTo(file)) {
+			throw new IOException("Couldn't rename the samples file : " + temporary + ", to : " + file);
+		}
+	}
+
+	/**
+	 * Reads all the samples in the file.
+	 *
+	 * @param file the samples file
+	 * @return the columns of the samples keyed on the id of the method or the class
+	 * @throws IOException
+	 */
+	public static Map<Long, long[][]> read(final File file) throws IOException {
+		Map<Long, long[][]> samples = new HashMap<Long, long[][]>();
+		DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			int entries = readHeader(inputStream, file);
+			long[] ids = new long[entries];
+			for (int i = 0; i < entries; i++) {
+				ids[i] = inputStream.readLong();
+				inputStream.readInt();
+			}
+			for (int i = 0; i < entries; i++) {
+				samples.put(Long.valueOf(ids[i]), readEntry(inputStream));
+			}
+		} finally {
+			inputStream.close();
+		}
+		return samples;
+	}
+
+	/**
+	 * Reads the samples for one method or class from the file, only the index and the entry are read.
+	 *
+	 * @param file the samples file
+	 * @param id the id of the method or the class
+	 * @return the columns of the samples or null if there are no samples for the id
+	 * @throws IOException
+	 */
+	public static long[][] read(final File file, final Long id) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			byte[] header = new byte[HEADER];
+			randomAccessFile.readFully(header);
+			int entries = readHeader(new DataInputStream(new ByteArrayInputStream(header)), file);
+			long dataStart = HEADER + (long) entries * INDEX_ENTRY;
+			int low = 0;
+			int high = entries - 1;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				randomAccessFile.seek(HEADER + (long) middle * INDEX_ENTRY);
+				long middleId = randomAccessFile.readLong();
+				if (middleId < id.longValue()) {
+					low = middle + 1;
+				} else if (middleId > id.longValue()) {
+					high = middle - 1;
+				} else {
+					int offset = randomAccessFile.readInt();
+					long end = randomAccessFile.length();
+					if (middle + 1 < entries) {
+						randomAccessFile.readLong();
+						end = dataStart + randomAccessFile.readInt();
+					}
+					byte[] bytes = new byte[(int) (end - dataStart - offset)];
+					randomAccessFile.seek(dataStart + offset);
+					randomAccessFile.readFully(bytes);
+					return readEntry(new ByteArrayInputStream(bytes));
+				}
+			}
+			return null;
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	private static int readHeader(final DataInputStream inputStream, final File file) throws IOException {
+		if (inputStream.readInt() != MAGIC) {
+			throw new IOException("Not a samples file : " + file);
+		}
+		int version = inputStream.readInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported samples file version : " + version + ", " + file);
+		}
+		return inputStream.readInt();
+	}
+
+	private static void writeEntry(final OutputStream outputStream, final long[][] columns) throws IOException {
+		long[] starts = columns[Samples.START];
+		writeVarLong(outputStream, starts.length);
+		long previous = 0;
+		for (int i = 0; i < starts.length; i++) {
+			writeVarLong(outputStream, zigZag(starts[i] - previous));
+			previous = starts[i];
+		}
+		for (int i = 0; i < starts.length; i++) {
+			writeVarLong(outputStream, zigZag(columns[Samples.END][i] - starts[i]));
+		}
+		for (int column = Samples.TOTAL; column < Samples.COLUMNS; column++) {
+			for (int i = 0; i < starts.length; i++) {
+				writeVarLong(outputStream, zigZag(columns[column][i]));
+			}
+		}
+	}
+
+	private static long[][] readEntry(final InputStream inputStream) throws IOException {
+		int size = (int) readVarLong(inputStream);
+		long[][] columns = new long[Samples.COLUMNS][size];
+		long previous = 0;
+		for (int i = 0; i < size; i++) {
+			previous += unZigZag(readVarLong(inputStream));
+			columns[Samples.START][i] = previous;
+		}
+		for (int i = 0; i < size; i++) {
+			columns[Samples.END][i] = columns[Samples.START][i] + unZigZag(readVarLong(inputStream));
+		}
+		for (int column = Samples.TOTAL; column < Samples.COLUMNS; column++) {
+			for (int i = 0; i < size; i++) {
+				columns[column][i] = unZigZag(readVarLong(inputStream));
+			}
+		}
+		return columns;
+	}
+
+	private static long zigZag(final long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unZigZag(final long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static void writeVarLong(final OutputStream outputStream, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			outputStream.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		outputStream.write((int) value);
+	}
+
+	private static long readVarLong(final InputStream inputStream) throws IOException {
+		long value = 0;
+		int shift = 0;
+		while (true) {
+			int b = inputStream.read();
+			if (b < 0) {
+				throw new IOException("Unexpected end of the samples file");
+			}
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+			shift += 7;
+		}
+	}
+
+	/** Only static access. */
+	private SamplesFile() {
+	}
+
+}
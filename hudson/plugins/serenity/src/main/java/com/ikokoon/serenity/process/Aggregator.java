@@ -1,5 +1,6 @@
 package com.ikokoon.serenity.process;
 
+import com.ikokoon.serenity.Configuration;
 import com.ikokoon.serenity.IConstants;
 import com.ikokoon.serenity.persistence.IDataBase;
 import com.ikokoon.serenity.process.aggregator.ProjectAggregator;
@@ -15,6 +16,8 @@ import com.ikokoon.serenity.process.aggregator.ProjectAggregator;
  *
  * Metrics are also gathered for the dependency, afferent and efferent and the abstractness and stability calculated from that.
  *
+ * If the 'aggregator.threads' property is more than one then the classes are aggregated in parallel, then the packages, and then the project.
+ *
  * @author Michael Couck
  * @since 18.07.09
  * @version 01.00
@@ -41,7 +44,7 @@ public class Aggregator extends AProcess implements IConstants {
 	public void execute() {
 		super.execute();
 		logger.info("Running Aggregator : ");
-		new ProjectAggregator(dataBase).aggregate();
+		new ProjectAggregator(dataBase, Configuration.getConfiguration().getAggregatorThreads()).aggregate();
 	}
 
 }
\ No newline at end of file
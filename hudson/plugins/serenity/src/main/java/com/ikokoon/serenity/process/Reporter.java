@@ -5,8 +5,8 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.InputStream;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
@@ -32,7 +32,7 @@ import com.ikokoon.serenity.IConstants;
 import com.ikokoon.serenity.Profiler;
 import com.ikokoon.serenity.model.Class;
 import com.ikokoon.serenity.model.Method;
-import com.ikokoon.serenity.model.Snapshot;
+import com.ikokoon.serenity.model.Samples;
 import com.ikokoon.serenity.persistence.IDataBase;
 import com.ikokoon.toolkit.Toolkit;
 
@@ -119,8 +119,8 @@ public class Reporter extends AProcess {
 		List<Method> methods = dataBase.find(Method.class);
 		sortedMethods.addAll(methods);
 
-		List<Snapshot<?, ?>> snapshots = methods.size() > 0 ? methods.get(0).getSnapshots() : new ArrayList<Snapshot<?, ?>>();
-		Element tableElement = tableElement(snapshots);
+		Samples samples = methods.size() > 0 ? methods.get(0).getSamples() : null;
+		Element tableElement = tableElement(samples != null ? samples : new Samples());
 
 		for (Method method : sortedMethods) {
 			Class<?, ?> klass = (Class<?, ?>) method.getParent();
@@ -156,7 +156,7 @@ public class Reporter extends AProcess {
 
 	}
 
-	private Element tableElement(List<Snapshot<?, ?>> snapshots) {
+	private Element tableElement(Samples samples) {
 		Document document = DocumentHelper.createDocument();
 		Element htmlElement = document.addElement("html");
 		Element headElement = addElement(htmlElement, "head", null);
@@ -169,24 +169,23 @@ public class Reporter extends AProcess {
 
 		Element headerRowElement = addElement(tableElement, "tr", null);
 		String periods = "no periods";
-		if (snapshots.size() > 0) {
+		if (samples.size() > 0) {
 			SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy hh:mm:ss");
-			Snapshot<?, ?> firstSnapshot = snapshots.get(0);
-			Snapshot<?, ?> lastSnapshot = snapshots.get(snapshots.size() - 1);
+			long[] starts = samples.getColumn(Samples.START);
+			long[] ends = samples.getColumn(Samples.END);
 
-			String start = dateFormat.format(firstSnapshot.getStart());
-			String end = dateFormat.format(lastSnapshot.getStart());
+			String start = dateFormat.format(new Date(starts[0]));
+			String end = dateFormat.format(new Date(ends[ends.length - 1]));
 
 			StringBuilder builder = new StringBuilder(start);
 			builder.append(" to ");
 			builder.append(end);
 
-			if (firstSnapshot != null && firstSnapshot.getEnd() != null && firstSnapshot.getStart() != null) {
-				long intervals = firstSnapshot.getEnd().getTime() - firstSnapshot.getStart().getTime();
-				builder.append(", at intervals of : ");
-				builder.append(intervals);
-				builder.append(" ms.");
-			}
+			// The last sample is always a raw sample, i.e. at the snapshot interval
+			long intervals = ends[ends.length - 1] - starts[starts.length - 1];
+			builder.append(", at intervals of : ");
+			builder.append(intervals);
+			builder.append(" ms.");
 
 			periods = builder.toString();
 		}
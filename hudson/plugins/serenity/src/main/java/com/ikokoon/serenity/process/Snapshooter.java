@@ -1,14 +1,23 @@
 package com.ikokoon.serenity.process;
 
-import java.util.Date;
+import java.io.File;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import com.ikokoon.serenity.Collector;
+import com.ikokoon.serenity.Configuration;
+import com.ikokoon.serenity.IConstants;
 import com.ikokoon.serenity.model.Class;
 import com.ikokoon.serenity.model.Method;
-import com.ikokoon.serenity.model.Snapshot;
+import com.ikokoon.serenity.model.Samples;
 import com.ikokoon.serenity.persistence.IDataBase;
+import com.ikokoon.serenity.persistence.SamplesFile;
 
 /**
+ * Takes a snapshot of the profiling times of the methods and the classes. The times since the last snapshot are added to the bounded {@link Samples} of
+ * each method and class, the method times are reset, and then all the samples are written to the columnar samples file for the charts.
+ *
  * @author Michael Couck
  * @since 27.06.10
  * @version 01.00
@@ -23,64 +32,74 @@ public class Snapshooter extends AProcess {
 	}
 
 	public void execute() {
+		// Merge the timings of the threads into the methods first
+		Collector.collectTimings();
 		takeSnapshot(dataBase);
 		super.execute();
 	}
 
 	@SuppressWarnings("rawtypes")
-	private static void takeSnapshot(IDataBase dataBase) {
+	private void takeSnapshot(IDataBase dataBase) {
 		long time = System.currentTimeMillis();
 		List<Class> classes = dataBase.find(Class.class);
+		Map<Long, long[][]> samples = new HashMap<Long, long[][]>();
 		for (Class klass : classes) {
-			takeSnapshot(time, klass);
+			takeSnapshot(time, klass, samples);
+		}
+		try {
+			SamplesFile.write(new File(IConstants.SAMPLES_FILE), samples);
+		} catch (Exception e) {
+			logger.error("Exception writing the samples file : " + IConstants.SAMPLES_FILE, e);
 		}
 	}
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
-	private static Class takeSnapshot(long time, Class klass) {
+	private static Class takeSnapshot(long time, Class klass, Map<Long, long[][]> samples) {
 		List<Method> methods = klass.getChildren();
 		long netClassTime = 0;
 		long totalClassTime = 0;
 		long totalWaitTime = 0;
 		for (Method method : methods) {
-			takeSnapshot(time, method);
+			// The class totals must be added before the snapshot resets the method
 			netClassTime += method.getNetTime();
 			totalClassTime += method.getTotalTime();
-			totalWaitTime += method.getTotalTime();
+			totalWaitTime += method.getWaitTime();
+			takeSnapshot(time, method, samples);
 		}
-		List<Snapshot> snapshots = klass.getSnapshots();
-		int size = snapshots.size();
-		if (size > 0) {
-			// Finalise the last snapshot
-			Snapshot snapshot = snapshots.get(size - 1);
-			snapshot.setEnd(new Date(time));
-			snapshot.setNet(netClassTime);
-			snapshot.setTotal(totalClassTime);
-			snapshot.setWait(totalWaitTime);
+		Samples classSamples = klass.getSamples();
+		if (classSamples == null) {
+			klass.setSamples(newSamples(time));
+		} else {
+			// Close the open sample and open the next one
+			classSamples.add(classSamples.getOpen(), time, totalClassTime, netClassTime, totalWaitTime);
+			classSamples.setOpen(time);
+			samples.put(klass.getId(), classSamples.getColumns());
 		}
-		Snapshot snapshot = new Snapshot();
-		snapshot.setStart(new Date(time));
-		snapshots.add(snapshot);
 		return klass;
 	}
 
-	@SuppressWarnings({ "unchecked", "rawtypes" })
-	private static Method takeSnapshot(long time, Method method) {
-		List<Snapshot> snapshots = method.getSnapshots();
-		int size = snapshots.size();
-		if (size > 0) {
-			// Finalise the last snapshot
-			Snapshot snapshot = snapshots.get(size - 1);
-			snapshot.setEnd(new Date(time));
-			snapshot.setNet(method.getNetTime());
-			snapshot.setTotal(method.getTotalTime());
+	@SuppressWarnings("rawtypes")
+	private static Method takeSnapshot(long time, Method method, Map<Long, long[][]> samples) {
+		Samples methodSamples = method.getSamples();
+		if (methodSamples == null) {
+			method.setSamples(newSamples(time));
+		} else {
+			// Close the open sample and open the next one
+			methodSamples.add(methodSamples.getOpen(), time, method.getTotalTime(), method.getNetTime(), method.getWaitTime());
+			methodSamples.setOpen(time);
+			samples.put(method.getId(), methodSamples.getColumns());
 			// Reset the method data
 			method.reset();
 		}
-		Snapshot snapshot = new Snapshot();
-		snapshot.setStart(new Date(time));
-		snapshots.add(snapshot);
 		return method;
 	}
 
+	private static Samples newSamples(long time) {
+		Configuration configuration = Configuration.getConfiguration();
+		Samples samples = new Samples(configuration.getSnapshotRetention(IConstants.SNAPSHOT_RAW, Samples.RAW), configuration.getSnapshotRetention(
+				IConstants.SNAPSHOT_MINUTES, Samples.MINUTES), configuration.getSnapshotRetention(IConstants.SNAPSHOT_HOURS, Samples.HOURS));
+		samples.setOpen(time);
+		return samples;
+	}
+
 }
@@ -33,6 +33,13 @@ public class PackageAggregator extends AAggregator {
 		for (Class klass : classes) {
 			new ClassAggregator(dataBase, klass).aggregate();
 		}
+		reduce();
+	}
+
+	/**
+	 * Aggregates the package from the classes in the package, the classes must already be aggregated.
+	 */
+	void reduce() {
 		aggregate(pakkage);
 		setPrecision(pakkage);
 		dataBase.persist(pakkage);
@@ -1,11 +1,17 @@
 package com.ikokoon.serenity.process.aggregator;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.ikokoon.serenity.model.Afferent;
+import com.ikokoon.serenity.model.Class;
 import com.ikokoon.serenity.model.Efferent;
 import com.ikokoon.serenity.model.Line;
 import com.ikokoon.serenity.model.Method;
@@ -15,22 +21,38 @@ import com.ikokoon.serenity.persistence.IDataBase;
 import com.ikokoon.toolkit.Toolkit;
 
 /**
+ * Aggregates the project from the packages. With more than one thread the classes, which are independent of each other, are aggregated in parallel, then
+ * the packages are reduced from the classes in parallel and finally the project from the packages. Each composite is only aggregated from its own
+ * children so the results are the same as the sequential aggregation.
+ *
  * @author Michael Couck
  * @since 07.03.10
  * @version 01.00
  */
 public class ProjectAggregator extends AAggregator {
 
+	/** The number of threads to aggregate the classes and packages with. */
+	private int threads;
+
 	public ProjectAggregator(IDataBase dataBase) {
+		this(dataBase, 1);
+	}
+
+	public ProjectAggregator(IDataBase dataBase, int threads) {
 		super(dataBase);
+		this.threads = threads;
 	}
 
 	@SuppressWarnings("rawtypes")
 	public void aggregate() {
 		// First do the packages
 		List<Package> packages = dataBase.find(Package.class);
-		for (Package pakkage : packages) {
-			new PackageAggregator(dataBase, pakkage).aggregate();
+		if (threads > 1) {
+			aggregate(packages);
+		} else {
+			for (Package pakkage : packages) {
+				new PackageAggregator(dataBase, pakkage).aggregate();
+			}
 		}
 		Project<?, ?> project = dataBase.find(Project.class, Toolkit.hash(Project.class.getName()));
 		if (project == null) {
@@ -42,6 +64,76 @@ public class ProjectAggregator extends AAggregator {
 		dataBase.persist(project);
 	}
 
+	/**
+	 * Aggregates the classes in all the packages in parallel, then the packages in parallel once all the classes are done.
+	 *
+	 * @param packages
+	 *            the packages to aggregate
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	protected void aggregate(List<Package> packages) {
+		ExecutorService executorService = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (Package<?, ?> pakkage : packages) {
+				List<Class<?, ?>> classes = pakkage.getChildren();
+				for (final Class klass : classes) {
+					futures.add(executorService.submit(new Runnable() {
+						public void run() {
+							new ClassAggregator(dataBase, klass).aggregate();
+						}
+					}));
+				}
+			}
+			join(futures);
+			for (final Package<?, ?> pakkage : packages) {
+				futures.add(executorService.submit(new Runnable() {
+					public void run() {
+						new PackageAggregator(dataBase, pakkage).reduce();
+					}
+				}));
+			}
+			join(futures);
+		} finally {
+			executorService.shutdown();
+		}
+	}
+
+	/**
+	 * Waits for the aggregations to finish. The first failure is thrown once they are all done, so a failed class or package doesn't leave the project
+	 * aggregated from partial results.
+	 *
+	 * @param futures
+	 *            the aggregations to wait for
+	 */
+	private void join(List<Future<?>> futures) {
+		Throwable failure = null;
+		try {
+			for (Future<?> future : futures) {
+				try {
+					future.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException("Interrupted waiting for the aggregation", e);
+				} catch (ExecutionException e) {
+					logger.error("Exception aggregating : ", e.getCause());
+					if (failure == null) {
+						failure = e.getCause();
+					}
+				}
+			}
+		} finally {
+			futures.clear();
+		}
+		if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		} else if (failure instanceof Error) {
+			throw (Error) failure;
+		} else if (failure != null) {
+			throw new RuntimeException("Exception aggregating", failure);
+		}
+	}
+
 	@SuppressWarnings("rawtypes")
 	protected void aggregate(Project<?, ?> project) {
 		List<Package> packages = dataBase.find(Package.class);
@@ -2,7 +2,8 @@
  * Loads the data in the serenity result. The URL is called that will get the
  * Stapler doDynamic invocation. The model for the class and id will be
  * generated. The frames are then forced to reload which will transfer the model
- * data to the chart and source pages.
+ * data to the chart, profile and source pages. A method only has a profile, so
+ * only the profile frame is reloaded for a method.
  *
  * @param class
  *            the class of the composite, i.e. Project, Package or Class
@@ -23,10 +24,12 @@ function loadFrames(klass, id, evt) {
 	xmlhttp.onreadystatechange = function() {
 		if (xmlhttp.readyState == 4) {
 			if (xmlhttp.status == 200) {
-				var d = window.document;
-				var f = d.frames ? d.frames['chart'] : d.getElementById('chart');
-				var p = f.document || f.contentWindow.document;
-				p.location.reload(true);
+				if (klass != 'com.ikokoon.serenity.model.Method') {
+					reloadFrame('chart');
+				}
+				if (klass == 'com.ikokoon.serenity.model.Class' || klass == 'com.ikokoon.serenity.model.Method') {
+					reloadFrame('profile');
+				}
 				if (klass == 'com.ikokoon.serenity.model.Class') {
 					loadSource();
 				}
@@ -45,6 +48,21 @@ function loadFrames(klass, id, evt) {
     }
 }
 
+/**
+ * Reloads a frame on the page, the frame then gets the model of the selected
+ * composite.
+ *
+ * @param name
+ *            the name of the frame
+ * @return nothing
+ */
+function reloadFrame(name) {
+	var d = window.document;
+	var f = d.frames ? d.frames[name] : d.getElementById(name);
+	var p = f.document || f.contentWindow.document;
+	p.location.reload(true);
+}
+
 function loadSource() {
 	var xmlhttp = null;
 	// Object of the current windows
@@ -82,8 +100,10 @@ function resizeFrames() {
 	var usableHeight = pageHeight() * 85 / 100;
 	var chart = document.frames ? document.frames['chart'] : document.getElementById('chart');
 	chart.height = 180;
+	var profile = document.frames ? document.frames['profile'] : document.getElementById('profile');
+	profile.height = 180;
 	var source = document.frames ? document.frames['source'] : document.getElementById('source');
-	source.height = usableHeight - chart.height - 65;
+	source.height = usableHeight - chart.height - profile.height - 65;
 	// alert('Width : ' + pageWidth() + ', height : ' + pageHeight() + ', chart : ' + chart.height + ', source : ' + source.height);
 }
 
@@ -90,6 +90,59 @@ public class CollectorTest extends ATest implements IConstants {
 		assertEquals(2.0, line.getCounter(), 0);
 	}
 
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void collectCoverageProbes() {
+		int classIndex = Probes.getClassIndex(className);
+		int probe = Probes.getProbe(classIndex, methodName, methodDescription, (int) lineNumber);
+		// The same line must get the same slot
+		assertEquals(probe, Probes.getProbe(classIndex, methodName, methodDescription, (int) lineNumber));
+		Probes.seal(classIndex);
+
+		Collector.collectCoverage(classIndex, probe);
+		Collector.collectCoverage(classIndex, probe);
+		Collector.collectProbes();
+
+		Line line = (Line) dataBase.find(Line.class, Toolkit.hash(className, methodName, lineNumber));
+		assertNotNull(line);
+		assertEquals(2.0, line.getCounter(), 0);
+
+		// The probes are drained so folding again doesn't count the hits twice
+		Collector.collectProbes();
+		assertEquals(2.0, line.getCounter(), 0);
+	}
+
+	@Test
+	public void collectCoverageProbesWhileSealing() throws Exception {
+		final int classIndex = Probes.getClassIndex(className + "Sealing");
+		final int probe = Probes.getProbe(classIndex, methodName, methodDescription, 1);
+		Probes.seal(classIndex);
+
+		final int hits = 100000;
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				public void run() {
+					for (int hit = 0; hit < hits; hit++) {
+						Collector.collectCoverage(classIndex, probe);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		// The class is instrumented again with more lines while the threads are hitting the probe
+		for (int line = 2; line < 1000; line++) {
+			Probes.getProbe(classIndex, methodName, methodDescription, line);
+			Probes.seal(classIndex);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(threads.length * hits, Probes.drain(classIndex, probe));
+		assertEquals(0, Probes.drain(classIndex, probe));
+	}
+
 	@Test
 	@SuppressWarnings("rawtypes")
 	public void collectMetricsInterface() {
@@ -27,10 +27,12 @@ import com.ikokoon.serenity.instrumentation.complexity.ComplexityTest;
 import com.ikokoon.serenity.instrumentation.coverage.CoverageTest;
 import com.ikokoon.serenity.instrumentation.dependency.DependencyTest;
 // import com.ikokoon.serenity.persistence.DataBaseJpaTest;
+import com.ikokoon.serenity.persistence.DataBaseHashTest;
 import com.ikokoon.serenity.persistence.DataBaseManagerTest;
 import com.ikokoon.serenity.persistence.DataBaseOdbTest;
 import com.ikokoon.serenity.persistence.DataBaseRamTest;
 import com.ikokoon.serenity.persistence.DataBaseToolkitTest;
+import com.ikokoon.serenity.persistence.SamplesFileTest;
 import com.ikokoon.serenity.process.AccumulatorTest;
 import com.ikokoon.serenity.process.AggregatorTest;
 import com.ikokoon.serenity.process.ListenerTest;
@@ -57,6 +59,7 @@ import com.ikokoon.toolkit.TypeTest;
 
 		// Top level tests, functional rather than unit
 		CollectorTest.class, // Tests that the collector is collecting the data
+		TimingsTest.class, // Tests the per thread timings for the profiler
 		TransformerTest.class, // Tests that the transformer is transforming the classes
 		ListenerTest.class, // For the listener that listens to dump the reports
 		ProfilerTest.class, // Tests the profiler in a couple of ways
@@ -74,7 +77,9 @@ import com.ikokoon.toolkit.TypeTest;
 		DataBaseManagerTest.class, // The test for opening and closing the databases
 		DataBaseToolkitTest.class, // Testing the clear and copy functions
 		DataBaseRamTest.class, // The in memory database
-		DataBaseOdbTest.class // The Neodatis database
+		DataBaseHashTest.class, // The in memory database with the hash index
+		DataBaseOdbTest.class, // The Neodatis database
+		SamplesFileTest.class // The profiling samples and the samples file
 		// DataBaseJpaTest.class // The JPA database(experimental)
 
 })
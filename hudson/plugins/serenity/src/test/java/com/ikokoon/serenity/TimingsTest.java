@@ -0,0 +1,85 @@
+package com.ikokoon.serenity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ikokoon.serenity.model.Method;
+import com.ikokoon.serenity.persistence.DataBaseRam;
+import com.ikokoon.serenity.persistence.DataBaseToolkit;
+import com.ikokoon.serenity.persistence.IDataBase;
+import com.ikokoon.toolkit.Toolkit;
+
+/**
+ * Tests that the timings for the methods are kept per thread and are merged correctly for recursive and concurrent invocations.
+ */
+public class TimingsTest extends ATest implements IConstants {
+
+	private IDataBase dataBase;
+
+	@Before
+	public void open() {
+		dataBase = IDataBase.DataBaseManager.getDataBase(DataBaseRam.class, IConstants.DATABASE_FILE_RAM, mockInternalDataBase);
+		DataBaseToolkit.clear(dataBase);
+		Collector.initialize(dataBase);
+		// Clear the timings of the other tests
+		Collector.collectTimings();
+	}
+
+	@After
+	public void close() {
+		dataBase.close();
+	}
+
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void recursive() throws Exception {
+		int methodIndex = Timings.getMethodIndex(className, methodName, methodDescription);
+		Collector.collectStart(methodIndex);
+		Collector.collectStart(methodIndex);
+		Collector.collectStartWait(methodIndex);
+		Thread.sleep(10);
+		Collector.collectEndWait(methodIndex);
+		Collector.collectEnd(methodIndex);
+		Collector.collectEnd(methodIndex);
+		Collector.collectTimings();
+
+		Method method = (Method) dataBase.find(Method.class, Toolkit.hash(className, methodName, methodDescription));
+		assertNotNull(method);
+		assertEquals(2, method.getInvocations());
+		assertTrue(method.getWaitTime() >= 10 * 1000 * 1000);
+		// The net time excludes the child frame and the wait
+		assertTrue(method.getTotalTime() >= method.getNetTime() + method.getWaitTime());
+	}
+
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void concurrent() throws Exception {
+		final int methodIndex = Timings.getMethodIndex(className, methodName, methodDescription);
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				public void run() {
+					for (int j = 0; j < 1000; j++) {
+						Collector.collectStart(methodIndex);
+						Collector.collectEnd(methodIndex);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Collector.collectTimings();
+
+		Method method = (Method) dataBase.find(Method.class, Toolkit.hash(className, methodName, methodDescription));
+		assertNotNull(method);
+		assertEquals(4000, method.getInvocations());
+	}
+
+}
@@ -1,11 +1,16 @@
 package com.ikokoon.serenity.hudson.modeller;
 
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 import org.junit.Test;
 
 import com.ikokoon.serenity.ATest;
+import com.ikokoon.serenity.IConstants;
 import com.ikokoon.serenity.model.Class;
 import com.ikokoon.serenity.model.Package;
 import com.ikokoon.serenity.model.Project;
+import com.ikokoon.serenity.model.Samples;
 import com.ikokoon.target.Target;
 
 /**
@@ -109,4 +114,32 @@ public class ModellerTest extends ATest {
 		// TODO implement me
 	}
 
+	@Test
+	public void visitProfile() {
+		long[][] samples = new long[Samples.COLUMNS][];
+		samples[Samples.START] = new long[] { 0, 60000 };
+		samples[Samples.END] = new long[] { 60000, 120000 };
+		samples[Samples.TOTAL] = new long[] { 3000000, 5000000 };
+		samples[Samples.NET] = new long[] { 2000000, 4000000 };
+		samples[Samples.WAIT] = new long[] { 1000000, 1000000 };
+
+		// The default unit is microseconds
+		HighchartsModeller modeller = new HighchartsModeller(null);
+		modeller.visit("method", samples);
+		String model = modeller.getModel();
+		assertTrue(model, model.contains("[3000.0,5000.0]"));
+		assertTrue(model, model.contains("' \\u00B5s'"));
+		assertFalse(model, model.contains("' ms'"));
+
+		System.setProperty(IConstants.TIME_UNIT, "1000000");
+		try {
+			modeller.visit("method", samples);
+			model = modeller.getModel();
+			assertTrue(model, model.contains("[3.0,5.0]"));
+			assertTrue(model, model.contains("' ms'"));
+		} finally {
+			System.clearProperty(IConstants.TIME_UNIT);
+		}
+	}
+
 }
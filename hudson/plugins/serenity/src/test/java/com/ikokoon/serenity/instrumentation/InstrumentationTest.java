@@ -15,6 +15,7 @@ import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
 
 import com.ikokoon.serenity.ATest;
+import com.ikokoon.serenity.Collector;
 import com.ikokoon.serenity.IConstants;
 import com.ikokoon.serenity.instrumentation.profiling.ProfilingClassAdapter;
 import com.ikokoon.serenity.instrumentation.profiling.ProfilingClassAdviceAdapter;
@@ -69,7 +70,7 @@ public class InstrumentationTest extends ATest {
 		reader = new ClassReader(classBytes);
 		writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
 		InstrumentationClassAdapterChecker instrumentationClassAdapterChecker = new InstrumentationClassAdapterChecker(writer,
-				IConstants.COLLECT_START, IConstants.PROFILING_METHOD_DESCRIPTION);
+				IConstants.COLLECT_START, IConstants.PROFILING_INDEX_METHOD_DESCRIPTION);
 		reader.accept(instrumentationClassAdapterChecker, 0);
 
 		final byte[] finalClassBytes = classBytes;
@@ -93,6 +94,8 @@ public class InstrumentationTest extends ATest {
 
 		Long joinTime = 1000l;
 		Toolkit.executeMethod(target, joinMethodName, new Object[] { joinTime, 0 });
+		// The timings are kept in the thread until they are merged into the methods
+		Collector.collectTimings();
 		DataBaseToolkit.dump(dataBase, null, "Dump after profiling");
 
 		Method<Class<?, ?>, Line<?, ?>> method = dataBase.find(Method.class, Arrays.asList(className, joinMethodName, joinMethodDescription));
@@ -112,13 +115,9 @@ public class InstrumentationTest extends ATest {
 		LOGGER.warn("Total time : " + method.getTotalTime());
 
 		assertTrue(method.getInvocations() > 0);
-		assertTrue(method.getStartTime() > 0);
-		assertTrue(method.getEndTime() > 0);
-		assertTrue(method.getStartWait() > 0);
-		assertTrue(method.getEndWait() > 0);
 		assertTrue(method.getWaitTime() > 0);
-		// assertTrue(method.getNetTime() > 0);
-		assertTrue(method.getTotalTime() > 0);
+		assertTrue(method.getNetTime() >= 0);
+		assertTrue(method.getTotalTime() >= method.getWaitTime() + method.getNetTime());
 	}
 
 	interface Interface {
@@ -154,7 +153,7 @@ public class InstrumentationTest extends ATest {
 		reader = new ClassReader(classBytes);
 		writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
 		InstrumentationClassAdapterChecker instrumentationClassAdapterChecker = new InstrumentationClassAdapterChecker(writer,
-				IConstants.COLLECT_START, IConstants.PROFILING_METHOD_DESCRIPTION);
+				IConstants.COLLECT_START, IConstants.PROFILING_INDEX_METHOD_DESCRIPTION);
 		reader.accept(instrumentationClassAdapterChecker, 0);
 	}
 
@@ -194,7 +193,7 @@ public class InstrumentationTest extends ATest {
 		writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
 		// ClassVisitor classVisitor, Class<?> methodVisitorClass, String collectorMethodName, String collectorMethodDescription
 		InstrumentationClassAdapterChecker instrumentationClassAdapterChecker = new InstrumentationClassAdapterChecker(writer,
-				IConstants.COLLECT_START, IConstants.PROFILING_METHOD_DESCRIPTION);
+				IConstants.COLLECT_START, IConstants.PROFILING_INDEX_METHOD_DESCRIPTION);
 		reader.accept(instrumentationClassAdapterChecker, 0);
 
 		final byte[] finalClassBytes = classBytes;
@@ -0,0 +1,174 @@
+package com.ikokoon.serenity.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ikokoon.serenity.ATest;
+import com.ikokoon.serenity.IConstants;
+import com.ikokoon.serenity.model.Class;
+import com.ikokoon.serenity.model.Line;
+import com.ikokoon.serenity.model.Method;
+import com.ikokoon.serenity.model.Package;
+import com.ikokoon.toolkit.Executer;
+import com.ikokoon.toolkit.Toolkit;
+
+public class DataBaseHashTest extends ATest {
+
+	private static final String DATABASE_FILE_HASH = IConstants.DATABASE_FILE_RAM + ".hash";
+
+	private IDataBase dataBase;
+
+	@Before
+	public void open() {
+		dataBase = IDataBase.DataBaseManager.getDataBase(DataBaseHash.class, DATABASE_FILE_HASH, mockInternalDataBase);
+		DataBaseToolkit.clear(dataBase);
+	}
+
+	@After
+	public void close() {
+		dataBase.close();
+	}
+
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void persist() {
+		Package pakkage = getPackage();
+		dataBase.persist(pakkage);
+		pakkage = (Package) dataBase.find(Package.class, pakkage.getId());
+		assertNotNull(pakkage);
+
+		Long classId = ((Class) pakkage.getChildren().get(0)).getId();
+		Class klass = (Class) dataBase.find(Class.class, classId);
+		assertNotNull(klass);
+	}
+
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void findParameters() {
+		Package pakkage = getPackage();
+		dataBase.persist(pakkage);
+
+		List<Object> parameters = new ArrayList<Object>();
+		parameters.add(className);
+		parameters.add(methodName);
+		parameters.add(methodDescription);
+		Method method = (Method) dataBase.find(Method.class, parameters);
+		assertNotNull(method);
+
+		parameters.clear();
+		parameters.add(className);
+		parameters.add(method.getName());
+		parameters.add(lineNumber);
+		Line line = (Line) dataBase.find(Line.class, parameters);
+		assertNotNull(line);
+	}
+
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void findClass() {
+		for (int i = 0; i < 1000; i++) {
+			Package pakkage = getPackage();
+			pakkage.setName(packageName + "." + i);
+			dataBase.persist(pakkage);
+		}
+		List<Package> packages = dataBase.find(Package.class);
+		assertEquals(1000, packages.size());
+		// The list is in the same order as the sorted index of the ram database
+		for (int i = 1; i < packages.size(); i++) {
+			assertTrue(packages.get(i - 1).getId() < packages.get(i).getId());
+		}
+	}
+
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void removeId() {
+		Package pakkage = getPackage();
+		dataBase.persist(pakkage);
+		Class klass = (Class) pakkage.getChildren().iterator().next();
+		klass = (Class) dataBase.find(Class.class, klass.getId());
+		assertNotNull(klass);
+		dataBase.remove(Class.class, klass.getId());
+		klass = (Class) dataBase.find(Class.class, klass.getId());
+		assertNull(klass);
+		// The package is still there after the removed class
+		assertNotNull(dataBase.find(Package.class, pakkage.getId()));
+	}
+
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void concurrentFind() throws Exception {
+		final List<Long> ids = new ArrayList<Long>();
+		for (int i = 0; i < 10000; i++) {
+			Class klass = new Class();
+			klass.setName(className + "." + i);
+			dataBase.persist(klass);
+			ids.add(klass.getId());
+		}
+		final boolean[] found = new boolean[] { true };
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				public void run() {
+					for (Long id : ids) {
+						if (dataBase.find(Class.class, id) == null) {
+							found[0] = false;
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertTrue(found[0]);
+	}
+
+	/**
+	 * Compares the inserts and the selects against the {@link DataBaseRam}. Each line is a new composite so the ram database shifts the index on every
+	 * insert.
+	 */
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void performance() {
+		IDataBase ramDataBase = IDataBase.DataBaseManager.getDataBase(DataBaseRam.class, IConstants.DATABASE_FILE_RAM, mockInternalDataBase);
+		DataBaseToolkit.clear(ramDataBase);
+		double ram = performance(ramDataBase, "ram");
+		double hash = performance(dataBase, "hash");
+		LOGGER.warn("Ram : " + ram + ", hash : " + hash);
+		assertTrue(hash > 1000);
+		ramDataBase.close();
+	}
+
+	@SuppressWarnings("rawtypes")
+	private double performance(final IDataBase dataBase, final String type) {
+		final int[] counter = new int[] { 0 };
+		double inserts = 50000;
+		double insertsPerSecond = Executer.execute(new Executer.IPerform() {
+			public void execute() {
+				Line line = new Line();
+				line.setClassName(className);
+				line.setMethodName(methodName);
+				line.setNumber(counter[0]++);
+				dataBase.persist(line);
+			}
+		}, "inserts of line into the " + type + " database", inserts);
+		final Long lineId = Toolkit.hash(className, methodName, (double) (counter[0] / 2));
+		double selectsPerSecond = Executer.execute(new Executer.IPerform() {
+			public void execute() {
+				dataBase.find(Line.class, lineId);
+			}
+		}, "selects of line from the " + type + " database", inserts);
+		return insertsPerSecond + selectsPerSecond;
+	}
+
+}
@@ -16,6 +16,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import com.ikokoon.serenity.ATest;
+import com.ikokoon.serenity.IConstants;
 import com.ikokoon.serenity.model.Class;
 import com.ikokoon.serenity.model.Composite;
 import com.ikokoon.serenity.model.Line;
@@ -139,6 +140,79 @@ public class DataBaseOdbTest extends ATest {
 		assertEquals(1, classes.size());
 	}
 
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void persistAll() {
+		List<Package> packages = new ArrayList<Package>();
+		for (int i = 0; i < 10; i++) {
+			Package pakkage = getPackage();
+			pakkage.setName(packageName + "." + i);
+			packages.add(pakkage);
+		}
+		dataBase.persistAll(packages);
+		for (Package pakkage : packages) {
+			assertNotNull(dataBase.find(Package.class, pakkage.getId()));
+		}
+	}
+
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void persistBatch() {
+		File batchDataBaseFile = new File("./src/test/resources/DataBaseOdbTestBatch.odb");
+		System.setProperty(IConstants.ODB_BATCH_SIZE, "100");
+		System.setProperty(IConstants.ODB_BATCH_INTERVAL, "60000");
+		try {
+			IDataBase batchDataBase = IDataBase.DataBaseManager.getDataBase(DataBaseOdb.class, batchDataBaseFile.getAbsolutePath(), null);
+			List<Long> ids = new ArrayList<Long>();
+			for (int i = 0; i < 10; i++) {
+				Package pakkage = getPackage();
+				pakkage.setName(packageName + "." + i);
+				batchDataBase.persist(pakkage);
+				ids.add(pakkage.getId());
+			}
+			// The batch is not full so the packages are only committed on the close
+			batchDataBase.close();
+			batchDataBase = IDataBase.DataBaseManager.getDataBase(DataBaseOdb.class, batchDataBaseFile.getAbsolutePath(), null);
+			for (Long id : ids) {
+				assertNotNull(batchDataBase.find(Package.class, id));
+			}
+			batchDataBase.close();
+		} finally {
+			System.clearProperty(IConstants.ODB_BATCH_SIZE);
+			System.clearProperty(IConstants.ODB_BATCH_INTERVAL);
+			Toolkit.deleteFile(batchDataBaseFile, 3);
+		}
+	}
+
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void persistBatchIdle() throws Exception {
+		File batchDataBaseFile = new File("./src/test/resources/DataBaseOdbTestBatchIdle.odb");
+		System.setProperty(IConstants.ODB_BATCH_SIZE, "100");
+		System.setProperty(IConstants.ODB_BATCH_INTERVAL, "100");
+		try {
+			DataBaseOdb batchDataBase = (DataBaseOdb) IDataBase.DataBaseManager.getDataBase(DataBaseOdb.class, batchDataBaseFile.getAbsolutePath(),
+					null);
+			for (int i = 0; i < 3; i++) {
+				Package pakkage = getPackage();
+				pakkage.setName(packageName + "." + i);
+				batchDataBase.persist(pakkage);
+			}
+			assertEquals(3, batchDataBase.getPending());
+			// There are no more writes, the timer has to commit the batch
+			long timeout = System.currentTimeMillis() + 5000;
+			while (batchDataBase.getPending() > 0 && System.currentTimeMillis() < timeout) {
+				Thread.sleep(50);
+			}
+			assertEquals(0, batchDataBase.getPending());
+			batchDataBase.close();
+		} finally {
+			System.clearProperty(IConstants.ODB_BATCH_SIZE);
+			System.clearProperty(IConstants.ODB_BATCH_INTERVAL);
+			Toolkit.deleteFile(batchDataBaseFile, 3);
+		}
+	}
+
 	// @Test
 	@SuppressWarnings("rawtypes")
 	public void memoryUsage() {
@@ -0,0 +1,103 @@
+package com.ikokoon.serenity.persistence;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.ikokoon.serenity.ATest;
+import com.ikokoon.serenity.model.Samples;
+import com.ikokoon.toolkit.Toolkit;
+
+/**
+ * Tests the ring buffers of the profiling samples and the columnar samples file.
+ */
+public class SamplesFileTest extends ATest {
+
+	private File samplesFile = new File("./src/test/resources/SamplesFileTest.samples");
+
+	@After
+	public void close() {
+		Toolkit.deleteFile(samplesFile, 3);
+	}
+
+	@Test
+	public void downsample() {
+		Samples samples = new Samples(10, 5, 3);
+		long minute = 60 * 1000;
+		long start = 0;
+		// Ten hours of samples every ten seconds
+		for (int i = 0; i < 6 * 60 * 10; i++) {
+			samples.add(start, start + 10000, 100, 60, 10);
+			start += 10000;
+		}
+		// Never more than the retention of the tiers
+		assertEquals(10 + 5 + 3, samples.size());
+		long[] starts = samples.getColumn(Samples.START);
+		for (int i = 1; i < starts.length; i++) {
+			assertTrue(starts[i - 1] < starts[i]);
+		}
+		// The last raw samples are at the snapshot interval, the minutes before that are six samples each
+		long[] totals = samples.getColumn(Samples.TOTAL);
+		assertEquals(100, totals[totals.length - 1]);
+		assertEquals(600, totals[3 + 1]);
+		assertEquals(minute, starts[3 + 2] - starts[3 + 1]);
+		// The hours are sixty minutes of six samples each
+		assertEquals(100 * 6 * 60, totals[1]);
+	}
+
+	@Test
+	public void grow() {
+		// The tiers start empty and grow to their capacity, the samples are an hour apart so none are folded together
+		Samples samples = new Samples(7, 5, 3);
+		long hour = 60 * 60 * 1000;
+		assertEquals(0, samples.getColumn(Samples.TOTAL).length);
+		for (int n = 1; n <= 40; n++) {
+			samples.add(n * hour, n * hour + 1000, n, n, n);
+			long[] totals = samples.getColumn(Samples.TOTAL);
+			assertEquals(Math.min(n, 7 + 5 + 3), totals.length);
+			for (int i = 0; i < totals.length; i++) {
+				assertEquals(n - totals.length + 1 + i, totals[i]);
+			}
+		}
+	}
+
+	@Test
+	public void writeAndRead() throws Exception {
+		Map<Long, long[][]> samples = new HashMap<Long, long[][]>();
+		for (long id = -50; id < 50; id++) {
+			Samples methodSamples = new Samples();
+			long start = System.currentTimeMillis();
+			for (int i = 0; i < 100; i++) {
+				methodSamples.add(start, start + 1000, id * i * 1000, id * i * 500, i);
+				start += 1000;
+			}
+			samples.put(Long.valueOf(id * 7919), methodSamples.getColumns());
+		}
+		SamplesFile.write(samplesFile, samples);
+
+		Map<Long, long[][]> read = SamplesFile.read(samplesFile);
+		assertEquals(samples.size(), read.size());
+		for (Map.Entry<Long, long[][]> entry : samples.entrySet()) {
+			long[][] expected = entry.getValue();
+			long[][] actual = read.get(entry.getKey());
+			for (int column = 0; column < Samples.COLUMNS; column++) {
+				assertArrayEquals(expected[column], actual[column]);
+			}
+			// And the single entry read from the index
+			actual = SamplesFile.read(samplesFile, entry.getKey());
+			for (int column = 0; column < Samples.COLUMNS; column++) {
+				assertArrayEquals(expected[column], actual[column]);
+			}
+		}
+		assertNull(SamplesFile.read(samplesFile, Long.valueOf(1)));
+	}
+
+}
@@ -5,7 +5,10 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -18,17 +21,21 @@ import com.ikokoon.serenity.Collector;
 import com.ikokoon.serenity.Configuration;
 import com.ikokoon.serenity.IConstants;
 import com.ikokoon.serenity.instrumentation.dependency.DependencyClassAdapter;
+import com.ikokoon.serenity.model.Afferent;
 import com.ikokoon.serenity.model.Class;
+import com.ikokoon.serenity.model.Efferent;
 import com.ikokoon.serenity.model.Line;
 import com.ikokoon.serenity.model.Method;
 import com.ikokoon.serenity.model.Package;
 import com.ikokoon.serenity.model.Project;
+import com.ikokoon.serenity.persistence.DataBaseHash;
 import com.ikokoon.serenity.persistence.DataBaseOdb;
 import com.ikokoon.serenity.persistence.DataBaseRam;
 import com.ikokoon.serenity.persistence.DataBaseToolkit;
 import com.ikokoon.serenity.persistence.IDataBase;
 import com.ikokoon.serenity.process.aggregator.MethodAggregator;
 import com.ikokoon.serenity.process.aggregator.PackageAggregator;
+import com.ikokoon.serenity.process.aggregator.ProjectAggregator;
 import com.ikokoon.target.discovery.Discovery;
 import com.ikokoon.target.discovery.IDiscovery;
 import com.ikokoon.toolkit.Executer;
@@ -248,6 +255,136 @@ public class AggregatorTest extends ATest implements IConstants {
 		}
 	}
 
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void aggregateParallel() {
+		IDataBase sequentialDataBase = getSyntheticDataBase("sequential.ram", 10, 10, 10, 10);
+		IDataBase parallelDataBase = getSyntheticDataBase("parallel.ram", 10, 10, 10, 10);
+		try {
+			new ProjectAggregator(sequentialDataBase, 1).aggregate();
+			new ProjectAggregator(parallelDataBase, 4).aggregate();
+
+			Long projectId = Toolkit.hash(Project.class.getName());
+			Project<?, ?> sequentialProject = sequentialDataBase.find(Project.class, projectId);
+			Project<?, ?> parallelProject = parallelDataBase.find(Project.class, projectId);
+			assertEquals(sequentialProject.getLines(), parallelProject.getLines(), 0);
+			assertEquals(sequentialProject.getMethods(), parallelProject.getMethods(), 0);
+			assertEquals(sequentialProject.getClasses(), parallelProject.getClasses(), 0);
+			assertEquals(sequentialProject.getCoverage(), parallelProject.getCoverage(), 0);
+			assertEquals(sequentialProject.getComplexity(), parallelProject.getComplexity(), 0);
+			assertEquals(sequentialProject.getStability(), parallelProject.getStability(), 0);
+			assertEquals(sequentialProject.getAbstractness(), parallelProject.getAbstractness(), 0);
+			assertEquals(sequentialProject.getDistance(), parallelProject.getDistance(), 0);
+
+			List<Package> sequentialPackages = sequentialDataBase.find(Package.class);
+			for (Package<?, ?> sequentialPackage : sequentialPackages) {
+				Package<?, ?> parallelPackage = parallelDataBase.find(Package.class, sequentialPackage.getId());
+				assertEquals(sequentialPackage.getCoverage(), parallelPackage.getCoverage(), 0);
+				assertEquals(sequentialPackage.getComplexity(), parallelPackage.getComplexity(), 0);
+				assertEquals(sequentialPackage.getStability(), parallelPackage.getStability(), 0);
+				assertEquals(sequentialPackage.getDistance(), parallelPackage.getDistance(), 0);
+				for (Class<?, ?> sequentialClass : sequentialPackage.getChildren()) {
+					Class<?, ?> parallelClass = parallelDataBase.find(Class.class, sequentialClass.getId());
+					assertEquals(sequentialClass.getCoverage(), parallelClass.getCoverage(), 0);
+					assertEquals(sequentialClass.getComplexity(), parallelClass.getComplexity(), 0);
+					assertEquals(sequentialClass.getStability(), parallelClass.getStability(), 0);
+				}
+			}
+		} finally {
+			sequentialDataBase.close();
+			parallelDataBase.close();
+		}
+	}
+
+	@Test(expected = NullPointerException.class)
+	@SuppressWarnings("rawtypes")
+	public void aggregateParallelFailure() {
+		IDataBase dataBase = getSyntheticDataBase("failure.ram", 2, 2, 2, 2);
+		try {
+			// A class without its methods fails the aggregation of the class, which must not be swallowed by the join
+			List<Class> classes = dataBase.find(Class.class);
+			classes.get(0).setChildren(null);
+			new ProjectAggregator(dataBase, 4).aggregate();
+		} finally {
+			dataBase.close();
+		}
+	}
+
+	/**
+	 * Aggregates a large synthetic model with one, two and four threads to show the scaling over the cores.
+	 */
+	@Test
+	public void aggregateParallelPerformance() {
+		int[] threadCounts = new int[] { 1, 2, 4 };
+		for (final int threads : threadCounts) {
+			final IDataBase dataBase = getSyntheticDataBase("performance.ram", 20, 20, 10, 10);
+			try {
+				double aggregationsPerSecond = Executer.execute(new Executer.IPerform() {
+					public void execute() {
+						new ProjectAggregator(dataBase, threads).aggregate();
+					}
+				}, "aggregations of the synthetic model with " + threads + " threads", 3);
+				LOGGER.warn("Threads : " + threads + ", aggregations per second : " + aggregationsPerSecond);
+			} finally {
+				dataBase.close();
+			}
+		}
+	}
+
+	/**
+	 * Builds a model with the same structure and the same line counters every time it is called.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private IDataBase getSyntheticDataBase(String dataBaseFile, int packages, int classes, int methods, int lines) {
+		IDataBase dataBase = IDataBase.DataBaseManager.getDataBase(DataBaseHash.class, dataBaseFile, mockInternalDataBase);
+		DataBaseToolkit.clear(dataBase);
+		Random random = new Random(packages * classes * methods * lines);
+		for (int p = 0; p < packages; p++) {
+			Package pakkage = new Package();
+			pakkage.setName(packageName + ".synthetic" + p);
+			pakkage.setChildren(new ArrayList<Class>());
+			for (int c = 0; c < classes; c++) {
+				Class klass = new Class();
+				klass.setName(pakkage.getName() + ".Synthetic" + c);
+				klass.setParent(pakkage);
+				klass.setInterfaze(c % 5 == 0);
+				pakkage.getChildren().add(klass);
+				int efferents = random.nextInt(5);
+				for (int e = 0; e < efferents; e++) {
+					Efferent efferent = new Efferent();
+					efferent.setName(efferentName + random.nextInt(packages));
+					klass.getEfferent().add(efferent);
+				}
+				int afferents = random.nextInt(5);
+				for (int a = 0; a < afferents; a++) {
+					Afferent afferent = new Afferent();
+					afferent.setName(afferentName + random.nextInt(packages));
+					klass.getAfferent().add(afferent);
+				}
+				for (int m = 0; m < methods; m++) {
+					Method method = new Method();
+					method.setName(methodName + m);
+					method.setDescription(methodDescription);
+					method.setClassName(klass.getName());
+					method.setComplexity(1 + random.nextInt(10));
+					method.setParent(klass);
+					klass.getChildren().add(method);
+					for (int l = 0; l < lines; l++) {
+						Line line = new Line();
+						line.setNumber(l);
+						line.setCounter(random.nextInt(3));
+						line.setMethodName(method.getName());
+						line.setClassName(klass.getName());
+						line.setParent(method);
+						method.getChildren().add(line);
+					}
+				}
+			}
+			dataBase.persist(pakkage);
+		}
+		return dataBase;
+	}
+
 	protected double getStability(Package<?, ?> pakkage) {
 		double efferent = 0d;
 		double afferent = 0d;
@@ -2,6 +2,7 @@ package org.jvnet.hudson.pxeboot;
 
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.DatagramPacket;
@@ -42,8 +43,11 @@ public class DataInputStream2 extends DataInputStream {
     public String readNullTerminatedString() throws IOException {
         StringBuilder buf = new StringBuilder();
         int ch;
-        while((ch=read())!=0)
+        while((ch=read())!=0) {
+            if(ch<0)
+                throw new EOFException("Missing the terminating NUL");
             buf.append((char)ch);
+        }
         return buf.toString();
     }
 }
@@ -0,0 +1,185 @@
+package org.jvnet.hudson.tftpd;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * {@link PathResolver} that keeps the large files of another {@link PathResolver} once they are read,
+ * so that when many clients boot at once, the kernel and the initrd they all fetch are read only once.
+ *
+ * <p>
+ * A file is copied into a temporary file and mapped into memory, then served as a {@link Data} whose
+ * {@link Data#getBuffer() buffer} is shared by all the sessions, so it's neither read nor copied again.
+ * Files are still looked up in the wrapped {@link PathResolver} on every request, and a cached copy is
+ * discarded if the size changes, so this relies on {@link Data#size()} being cheap.
+ * Small files, which are often generated, aren't cached.
+ *
+ * <p>
+ * Files that are not requested for a while are dropped, as are the least recently used ones
+ * when the total size exceeds the limit.
+ */
+public class CachingPathResolver implements PathResolver {
+    private final PathResolver resolver;
+    private final int minSize;
+    private final long maxSize;
+    private final long expiration;
+
+    /**
+     * Cached files by their names, from the least recently used.
+     */
+    private final Map<String,Entry> entries = new LinkedHashMap<String,Entry>(16,0.75f,true);
+    private long totalSize;
+
+    public CachingPathResolver(PathResolver resolver) {
+        this(resolver,MIN_SIZE,MAX_SIZE,EXPIRATION);
+    }
+
+    /**
+     * @param minSize
+     *      Files smaller than this many bytes are not cached.
+     * @param maxSize
+     *      Maximum total size of the cached files in bytes.
+     * @param expiration
+     *      Milliseconds after which a file that hasn't been requested is dropped.
+     */
+    public CachingPathResolver(PathResolver resolver, int minSize, long maxSize, long expiration) {
+        this.resolver = resolver;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.expiration = expiration;
+    }
+
+    public Data open(String fileName) throws IOException {
+        Data data = resolver.open(fileName);
+        if(data==null || data.getBuffer()!=null)
+            return data;    // nothing to gain
+
+        int size = data.size();
+        if(size<minSize || size>maxSize)
+            return data;
+
+        Entry e;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            evictExpired(now);
+            e = entries.get(fileName);
+            if(e==null || e.size!=size) {
+                if(e!=null)
+                    remove(fileName);
+                e = new Entry(size);
+                entries.put(fileName,e);
+                totalSize += size;
+                evictLeastRecentlyUsed(e);
+            }
+            e.lastUsed = now;
+        }
+
+        try {
+            return e.get(data);
+        } catch (IOException x) {
+            synchronized (this) {
+                if(entries.get(fileName)==e)
+                    remove(fileName);
+            }
+            throw x;
+        }
+    }
+
+    /**
+     * Drops all the cached files.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        totalSize = 0;
+    }
+
+    private void evictExpired(long now) {
+        for (Iterator<Entry> itr = entries.values().iterator(); itr.hasNext();) {
+            Entry e = itr.next();
+            if(now-e.lastUsed>expiration) {
+                itr.remove();
+                totalSize -= e.size;
+            }
+        }
+    }
+
+    private void evictLeastRecentlyUsed(Entry keep) {
+        for (Iterator<Entry> itr = entries.values().iterator(); totalSize>maxSize && itr.hasNext();) {
+            Entry e = itr.next();
+            if(e!=keep) {
+                itr.remove();
+                totalSize -= e.size;
+            }
+        }
+    }
+
+    private void remove(String fileName) {
+        Entry e = entries.remove(fileName);
+        if(e!=null)
+            totalSize -= e.size;
+    }
+
+    private static final class Entry {
+        private final int size;
+        private long lastUsed;
+        private Data data;
+
+        Entry(int size) {
+            this.size = size;
+        }
+
+        /**
+         * Returns the cached copy, reading it from the given data if this is the first request.
+         * Concurrent requests wait for the first one to finish reading.
+         */
+        synchronized Data get(Data source) throws IOException {
+            if(data==null)
+                data = load(source);
+            return data;
+        }
+
+        private Data load(Data source) throws IOException {
+            long start = System.currentTimeMillis();
+            File tmp = File.createTempFile("tftp",".cache");
+            try {
+                InputStream in = source.read();
+                if(in==null)
+                    throw new IOException("No data");
+                try {
+                    OutputStream out = new FileOutputStream(tmp);
+                    try {
+                        byte[] buf = new byte[8192];
+                        int len;
+                        while((len=in.read(buf))>=0)
+                            out.write(buf,0,len);
+                    } finally {
+                        out.close();
+                    }
+                } finally {
+                    in.close();
+                }
+                Data d = Data.from(tmp);
+                LOGGER.fine("Cached "+d.size()+" bytes in "+(System.currentTimeMillis()-start)+"ms");
+                return d;
+            } finally {
+                // the mapping outlives the file where the OS allows it
+                if(!tmp.delete())
+                    tmp.deleteOnExit();
+            }
+        }
+    }
+
+    private static final int MIN_SIZE = Integer.getInteger(CachingPathResolver.class.getName()+".minSize",64*1024);
+    private static final long MAX_SIZE = Long.getLong(CachingPathResolver.class.getName()+".maxSize",1024L*1024*1024);
+    private static final long EXPIRATION = Long.getLong(CachingPathResolver.class.getName()+".expiration",10*60*1000L);
+
+    private static final Logger LOGGER = Logger.getLogger(CachingPathResolver.class.getName());
+}
@@ -1,9 +1,12 @@
 package org.jvnet.hudson.tftpd;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ByteArrayInputStream;
+import java.io.RandomAccessFile;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
 
 /**
  * @author Kohsuke Kawaguchi
@@ -35,6 +38,21 @@ public abstract class Data {
         return size;
     }
 
+    /**
+     * Returns the content of this data as a buffer, if it's in memory or mapped from a file.
+     *
+     * <p>
+     * This allows the TFTP server to send the blocks straight from the buffer, shared by all the sessions
+     * sending the same data, instead of reading and copying them for each session.
+     *
+     * @return
+     *      A read-only buffer whose position is 0 and limit is {@link #size()}, not shared with other callers,
+     *      or null if the data can be only read as a stream.
+     */
+    public ByteBuffer getBuffer() throws IOException {
+        return null;
+    }
+
     /**
      * Creates a {@link Data} object from a URL.
      */
@@ -63,14 +81,85 @@ public abstract class Data {
      * Creates a {@link Data} object around a byte array.
      */
     public static Data from(final byte[] data) {
-        return new Data() {
-            public InputStream read() {
-                return new ByteArrayInputStream(data);
-            }
+        return from(ByteBuffer.wrap(data));
+    }
 
-            public int size() {
-                return data.length;
-            }
-        };
+    /**
+     * Creates a {@link Data} object around the remaining bytes of a buffer.
+     * The buffer must not be modified afterward.
+     */
+    public static Data from(ByteBuffer data) {
+        return new BufferData(data.slice().asReadOnlyBuffer());
+    }
+
+    /**
+     * Creates a {@link Data} object that maps a file into memory.
+     * The file is mapped once, so it shouldn't be changed afterward.
+     */
+    public static Data from(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file,"r");
+        try {
+            return from(raf.getChannel().map(MapMode.READ_ONLY,0,raf.length()));
+        } finally {
+            // the mapping stays valid
+            raf.close();
+        }
+    }
+
+    private static final class BufferData extends Data {
+        private final ByteBuffer data;
+
+        BufferData(ByteBuffer data) {
+            this.data = data;
+        }
+
+        public InputStream read() {
+            return new BufferInputStream(data.duplicate());
+        }
+
+        @Override
+        public int size() {
+            return data.remaining();
+        }
+
+        @Override
+        public ByteBuffer getBuffer() {
+            return data.duplicate();
+        }
+    }
+
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buf;
+
+        BufferInputStream(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public int read() {
+            if(!buf.hasRemaining())     return -1;
+            return buf.get()&0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if(len==0)  return 0;
+            if(!buf.hasRemaining())     return -1;
+            len = Math.min(len,buf.remaining());
+            buf.get(b,off,len);
+            return len;
+        }
+
+        @Override
+        public long skip(long n) {
+            n = Math.max(0,Math.min(n,buf.remaining()));
+            buf.position(buf.position()+(int)n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buf.remaining();
+        }
     }
 }
@@ -0,0 +1,109 @@
+package org.jvnet.hudson.tftpd;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Snapshot of the progress of a file transfer by {@link TFTPServer}.
+ *
+ * @see TFTPServer#getSessions()
+ */
+public final class SessionStatistics {
+    private final String fileName;
+    private final InetSocketAddress client;
+    private final int blockSize;
+    private final int windowSize;
+    private final long bytesTransferred;
+    private final long packetsSent;
+    private final long retransmissions;
+    private final long elapsed;
+    private final long roundTripTime;
+
+    SessionStatistics(String fileName, InetSocketAddress client, int blockSize, int windowSize,
+                      long bytesTransferred, long packetsSent, long retransmissions, long elapsed, long roundTripTime) {
+        this.fileName = fileName;
+        this.client = client;
+        this.blockSize = blockSize;
+        this.windowSize = windowSize;
+        this.bytesTransferred = bytesTransferred;
+        this.packetsSent = packetsSent;
+        this.retransmissions = retransmissions;
+        this.elapsed = elapsed;
+        this.roundTripTime = roundTripTime;
+    }
+
+    /**
+     * Name of the file being transferred.
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    public InetSocketAddress getClient() {
+        return client;
+    }
+
+    /**
+     * Negotiated size of a block, 512 bytes unless the client asked for the <tt>blksize</tt> option.
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Negotiated number of blocks sent before an acknowledgement is awaited,
+     * 1 unless the client asked for the <tt>windowsize</tt> option.
+     */
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Number of bytes the client has acknowledged so far.
+     */
+    public long getBytesTransferred() {
+        return bytesTransferred;
+    }
+
+    /**
+     * Number of packets sent so far, including retransmissions.
+     */
+    public long getPacketsSent() {
+        return packetsSent;
+    }
+
+    /**
+     * Number of data packets that were sent more than once.
+     */
+    public long getRetransmissions() {
+        return retransmissions;
+    }
+
+    /**
+     * Milliseconds since the transfer started.
+     */
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * Smoothed round trip time in milliseconds, or -1 if it's not measured yet.
+     */
+    public long getRoundTripTime() {
+        return roundTripTime;
+    }
+
+    /**
+     * Bytes per second acknowledged by the client.
+     */
+    public long getThroughput() {
+        if(elapsed<=0)  return 0;
+        return bytesTransferred*1000/elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return fileName+" -> "+client+": "+bytesTransferred+" bytes in "+elapsed+"ms ("+getThroughput()/1024+"KB/s, "
+                +packetsSent+" packets, "+retransmissions+" retransmissions, rtt="+roundTripTime+"ms, blksize="+blockSize
+                +", windowsize="+windowSize+")";
+    }
+}
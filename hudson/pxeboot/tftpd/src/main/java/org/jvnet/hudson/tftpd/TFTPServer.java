@@ -1,13 +1,10 @@
 package org.jvnet.hudson.tftpd;
 
-import org.jvnet.hudson.tftpd.impl.TFTP;
-import org.jvnet.hudson.tftpd.impl.TFTPAckPacket;
-import org.jvnet.hudson.tftpd.impl.TFTPDataPacket;
 import org.jvnet.hudson.tftpd.impl.TFTPErrorPacket;
 import static org.jvnet.hudson.tftpd.impl.TFTPErrorPacket.FILE_NOT_FOUND;
+import static org.jvnet.hudson.tftpd.impl.TFTPErrorPacket.ILLEGAL_OPERATION;
 import org.jvnet.hudson.tftpd.impl.TFTPOAckPacket;
 import org.jvnet.hudson.tftpd.impl.TFTPPacket;
-import org.jvnet.hudson.tftpd.impl.TFTPPacketException;
 import org.jvnet.hudson.tftpd.impl.TFTPReadRequestPacket;
 
 import java.io.BufferedReader;
@@ -16,8 +13,28 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.DatagramPacket;
 import java.net.InetSocketAddress;
-import java.net.SocketTimeoutException;
+import java.net.PortUnreachableException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Level;
 import static java.util.logging.Level.FINE;
@@ -27,15 +44,58 @@ import java.util.logging.Logger;
 /**
  * TFTP server.
  *
+ * <p>
+ * All the sessions are multiplexed by a single thread over non-blocking channels, one per session
+ * as TFTP requires each transfer to use its own port. Files are opened by a few other threads,
+ * as {@link PathResolver} and {@link Data} may block.
+ *
+ * <p>
+ * Besides <tt>blksize</tt> and <tt>tsize</tt>, the <tt>timeout</tt> option (RFC 2349) and
+ * the <tt>windowsize</tt> option (RFC 7440) are supported. The latter lets the client acknowledge
+ * a window of blocks at once, instead of one block per round trip. Unless the client sets the timeout,
+ * the retransmission timeout of each session adapts to its round trip time.
+ *
+ * <p>
+ * {@link Data} that has a {@link Data#getBuffer() buffer} is sent straight from it. Wrap the {@link PathResolver}
+ * in a {@link CachingPathResolver} to share a single copy of the large files among the sessions.
+ *
  * @author Kohsuke Kawaguchi
  */
 public class TFTPServer implements Runnable {
     private final PathResolver resolver;
-    private final TFTP tftp = new TFTP();
+    private final int port;
+
+    /**
+     * Sessions in progress, keyed by the address of the client.
+     */
+    private final Map<InetSocketAddress,TFTPSession> sessions = new ConcurrentHashMap<InetSocketAddress,TFTPSession>();
+    /**
+     * Sessions whose file has been opened, to be registered by the event loop.
+     */
+    private final Queue<TFTPSession> opened = new ConcurrentLinkedQueue<TFTPSession>();
+    /**
+     * Clients whose file is being opened. Only accessed by the event loop.
+     */
+    private final Set<InetSocketAddress> opening = new HashSet<InetSocketAddress>();
+    /**
+     * Buffer to receive packets into. Only accessed by the event loop.
+     */
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocate(MAX_PACKET_SIZE);
+
+    private volatile Selector selector;
+    private volatile boolean closed;
 
     public TFTPServer(PathResolver resolver) {
+        this(resolver,TFTP_PORT);
+    }
+
+    /**
+     * @param port
+     *      UDP port to listen to requests on.
+     */
+    public TFTPServer(PathResolver resolver, int port) {
         this.resolver = resolver;
-        tftp.setDefaultTimeout(0); // infinite
+        this.port = port;
     }
 
     /**
@@ -45,11 +105,10 @@ public class TFTPServer implements Runnable {
         try {
             execute();
         } catch (IOException e) {
-            if("Socket closed".equals(e.getMessage()))
-                // there's no reliable way to detect this situation
-                LOGGER.fine("TFTP accept thread closed");
+            if(closed)
+                LOGGER.fine("TFTP server thread closed");
             else
-                LOGGER.log(INFO, "IOException in the TFTP accept thread",e);
+                LOGGER.log(INFO, "IOException in the TFTP server thread",e);
         }
     }
 
@@ -60,26 +119,50 @@ public class TFTPServer implements Runnable {
      * Blocks until {@link #close()} is invoked to initiate the shutdown.
      */
     public void execute() throws IOException {
-        tftp.open(TFTP_PORT);
-        LOGGER.fine("TFTP server ready for action");
-
+        ExecutorService openers = Executors.newFixedThreadPool(OPENER_THREADS, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "TFTP file opener");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        selector = Selector.open();
+        DatagramChannel channel = DatagramChannel.open();
         try {
-            while(true) {
-                try {
-                    TFTPPacket p = tftp.receive();
-                    if (p instanceof TFTPReadRequestPacket) {
-                        TFTPReadRequestPacket rp = (TFTPReadRequestPacket) p;
-                        LOGGER.fine("Starting a new session to transfer "+rp.getFilename());
-                        new TFTPSession(rp); // this starts a new thread if necessary
-                    } else {
-                        LOGGER.fine("Unexpected packet "+p);
-                    }
-                } catch (TFTPPacketException e) {
-                    LOGGER.log(FINE, "Invalid packet received",e);
+            channel.socket().bind(new InetSocketAddress(port));
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ);
+            LOGGER.fine("TFTP server ready for action");
+
+            while(!closed) {
+                selector.select(nextTimeout());
+                registerOpenedSessions();
+
+                Iterator<SelectionKey> itr = selector.selectedKeys().iterator();
+                while(itr.hasNext()) {
+                    SelectionKey key = itr.next();
+                    itr.remove();
+                    if(!key.isValid())
+                        continue;
+                    if(key.channel()==channel)
+                        receiveRequests(channel,openers);
+                    else
+                        ((TFTPSession)key.attachment()).onReady(key);
                 }
+
+                checkTimeouts();
             }
         } finally {
-            close();
+            closed = true;
+            channel.close();
+            openers.shutdownNow();
+            for (TFTPSession s : sessions.values())
+                s.close();
+            sessions.clear();
+            TFTPSession s;
+            while((s=opened.poll())!=null)
+                s.close();
+            selector.close();
         }
     }
 
@@ -87,147 +170,603 @@ public class TFTPServer implements Runnable {
      * Closes the daemon.
      */
     public synchronized void close() {
-        if(tftp.isOpen())
-            tftp.close();
+        closed = true;
+        Selector s = selector;
+        if(s!=null)
+            s.wakeup();
     }
 
     /**
-     * Each TFTP session is handled by a separate thread.
+     * Returns the progress of the sessions in progress.
      */
-    final class TFTPSession extends TFTP implements Runnable {
+    public List<SessionStatistics> getSessions() {
+        List<SessionStatistics> r = new ArrayList<SessionStatistics>();
+        for (TFTPSession s : sessions.values())
+            r.add(s.getStatistics());
+        return r;
+    }
+
+    /**
+     * Reads all the pending requests and starts opening the files they ask for.
+     */
+    private void receiveRequests(DatagramChannel channel, ExecutorService openers) throws IOException {
+        while(true) {
+            ByteBuffer buf = receiveBuffer;
+            buf.clear();
+            InetSocketAddress client = (InetSocketAddress)channel.receive(buf);
+            if(client==null)
+                return;
+
+            TFTPPacket p;
+            try {
+                p = TFTPPacket.newTFTPPacket(
+                        new DatagramPacket(buf.array(),buf.position(),client.getAddress(),client.getPort()));
+            } catch (IOException e) {
+                LOGGER.log(FINE, "Invalid packet received",e);
+                continue;
+            }
+
+            if (p instanceof TFTPReadRequestPacket) {
+                if(sessions.containsKey(client) || opening.contains(client)) {
+                    LOGGER.fine("Ignoring a retransmitted request from "+client);
+                    continue;
+                }
+                TFTPReadRequestPacket rp = (TFTPReadRequestPacket) p;
+                LOGGER.fine("Starting a new session to transfer "+rp.getFilename());
+                opening.add(client);
+                openers.execute(new TFTPSession(rp,client));
+            } else {
+                LOGGER.fine("Unexpected packet "+p);
+            }
+        }
+    }
+
+    private void registerOpenedSessions() {
+        TFTPSession s;
+        while((s=opened.poll())!=null) {
+            opening.remove(s.client);
+            if(!closed && s.start())
+                sessions.put(s.client,s);
+            else
+                s.close();
+        }
+    }
+
+    private void checkTimeouts() {
+        long now = System.nanoTime();
+        for (TFTPSession s : sessions.values())
+            if(now-s.deadline>=0)
+                s.onTimeout(now);
+    }
+
+    /**
+     * Milliseconds until the earliest retransmission, or 0 to wait indefinitely.
+     */
+    private long nextTimeout() {
+        long now = System.nanoTime();
+        long min = Long.MAX_VALUE;
+        for (TFTPSession s : sessions.values())
+            min = Math.min(min,s.deadline-now);
+        if(min==Long.MAX_VALUE)
+            return 0;
+        return Math.max(1,(min+999999)/1000000);
+    }
+
+    /**
+     * A transfer of a file to a client.
+     *
+     * <p>
+     * {@link #run()} opens the file on one of the opener threads, and the rest happens on the event loop.
+     * Block numbers are kept as longs and only truncated to 16 bits on the wire,
+     * so that they can roll over for large files.
+     */
+    final class TFTPSession implements Runnable {
         private final String fileName;
-        private /*final*/ Data data;
-        private /*final*/ InputStream stream;
-        private final InetSocketAddress dest;
+        private final InetSocketAddress client;
         private final TFTPReadRequestPacket session;
+        private DatagramChannel channel;
+        private SelectionKey key;
+        private Data data;
+        /**
+         * The content of {@link #data} if it has a buffer, in which case blocks are sent from it
+         * and {@link #stream} isn't used.
+         */
+        private ByteBuffer content;
+        private InputStream stream;
+        private boolean ready;
+
         private int blockSize = TFTPPacket.SEGMENT_SIZE;
+        /**
+         * Number of blocks sent before an acknowledgement is awaited.
+         */
+        private int windowSize = 1;
+
+        /**
+         * OACK packet sent as block 0, or null if no option was negotiated.
+         */
+        private ByteBuffer[] oack;
+        /**
+         * Packets of the blocks in the current window. Block n is in <tt>blocks[n%windowSize]</tt>.
+         * When sending from {@link #content}, each packet is a header followed by a view of the block.
+         */
+        private ByteBuffer[][] blocks;
+        /**
+         * When each block in the window was first sent, and whether it has been sent again since,
+         * in which case its acknowledgement doesn't tell the round trip time.
+         */
+        private long[] sentAt;
+        private boolean[] resent;
+
+        /**
+         * Last block acknowledged by the client, -1 until the OACK is acknowledged.
+         */
+        private long acked;
+        /**
+         * Next block to send.
+         */
+        private long next;
+        /**
+         * Highest block sent and highest block read from the stream.
+         */
+        private long highestSent, highestRead;
+        /**
+         * The last block of the file, -1 until it's read.
+         */
+        private long lastBlock = -1;
+        /**
+         * The block after which the window was last resent because of a duplicate ACK.
+         */
+        private long resentAfter = -2;
+
+        private boolean fixedTimeout;
+        private long rto = INITIAL_RTO;
+        private long srtt = -1, rttvar;
+        private int retries;
+        /**
+         * When the unacknowledged blocks are retransmitted, in {@link System#nanoTime()}.
+         */
+        private long deadline;
 
+        private long startTime;
+        private volatile long bytesAcked, packetsSent, retransmissions;
 
-        TFTPSession(TFTPReadRequestPacket rp) throws IOException {
-            open();
-            session = rp;
-            fileName = rp.getFilename();
-            dest = new InetSocketAddress(rp.getAddress(),rp.getPort());
+        TFTPSession(TFTPReadRequestPacket rp, InetSocketAddress client) {
+            this.session = rp;
+            this.fileName = rp.getFilename();
+            this.client = client;
+        }
+
+        /**
+         * Opens the file and negotiates the options, then hands the session to the event loop.
+         */
+        public void run() {
             try {
-                data = resolver.open(fileName);
-                if(data ==null) // this is against the contract, but be defensive.
-                    sendError(FILE_NOT_FOUND, "no such file exists: "+fileName);
-                else {
-                    stream = data.read();
-                    if(stream==null)
+                channel = DatagramChannel.open();
+                channel.socket().bind(new InetSocketAddress(0));
+                channel.connect(client);
+                try {
+                    data = resolver.open(fileName);
+                    if(data ==null) // this is against the contract, but be defensive.
                         sendError(FILE_NOT_FOUND, "no such file exists: "+fileName);
-                    else
-                        new Thread(this).start();
+                    else {
+                        content = data.getBuffer();
+                        if(content==null)
+                            stream = data.read();
+                        if(content==null && stream==null)
+                            sendError(FILE_NOT_FOUND, "no such file exists: "+fileName);
+                        else {
+                            negotiate();
+                            ready = true;
+                        }
+                    }
+                } catch (IOException e) {
+                    sendError(FILE_NOT_FOUND, "failed to read "+fileName+" : "+e.getMessage());
+                    LOGGER.log(Level.INFO,"Failed to read "+fileName,e);
                 }
             } catch (IOException e) {
-                sendError(FILE_NOT_FOUND, "failed to read "+fileName+" : "+e.getMessage());
-                LOGGER.log(Level.INFO,"Failed to read "+fileName,e);
+                LOGGER.log(Level.INFO,"Failed to open a session to "+client,e);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING,"Failed to open a session to "+client,e);
             }
+
+            opened.add(this);
+            Selector s = selector;
+            if(s!=null)
+                s.wakeup();
         }
 
         /**
-         * Sends a TFTP error packet.
+         * Processes the options the client asked for, and prepares the OACK for those accepted.
          */
-        private void sendError(int errorCode, String msg) throws IOException {
-            LOGGER.info("Error: "+msg+" -> "+dest);
-            send(new TFTPErrorPacket(dest.getAddress(),dest.getPort(), errorCode,msg));
+        private void negotiate() throws IOException {
+            Map<String,String> options = new HashMap<String,String>();
+            for (Entry<String,String> e : session.options.entrySet())
+                options.put(e.getKey().toLowerCase(Locale.ENGLISH),e.getValue());
+
+            TFTPOAckPacket oack = new TFTPOAckPacket(client.getAddress(), client.getPort());
+            if(!options.isEmpty())
+                LOGGER.fine("Got options "+options);
+
+            int blksize = parseOption(options,"blksize",MIN_BLOCK_SIZE,Integer.MAX_VALUE);
+            if(blksize>0) {
+                blockSize = Math.min(blksize,MAX_BLOCK_SIZE);
+                oack.options.put("blksize",String.valueOf(blockSize));
+            }
+            if(options.containsKey("tsize"))
+                oack.options.put("tsize",String.valueOf(content!=null ? content.remaining() : data.size()));
+            int timeout = parseOption(options,"timeout",1,255);
+            if(timeout>0) {
+                fixedTimeout = true;
+                rto = timeout*1000000000L;
+                oack.options.put("timeout",String.valueOf(timeout));
+            }
+            int windowsize = parseOption(options,"windowsize",1,Integer.MAX_VALUE);
+            if(windowsize>0) {
+                // the window is only buffered when reading from a stream
+                int max = content!=null ? MAX_WINDOW_SIZE : Math.max(1, Math.min(MAX_WINDOW_SIZE, MAX_WINDOW_BYTES/blockSize));
+                windowSize = Math.min(windowsize,max);
+                oack.options.put("windowsize",String.valueOf(windowSize));
+            }
+
+            blocks = new ByteBuffer[windowSize][];
+            for (int i=0; i<windowSize; i++) {
+                if(content!=null)
+                    blocks[i] = new ByteBuffer[] {ByteBuffer.allocate(4), content.duplicate()};
+                else
+                    blocks[i] = new ByteBuffer[] {ByteBuffer.allocate(blockSize+4)};
+            }
+            if(content!=null)
+                lastBlock = content.remaining()/blockSize+1;
+            sentAt = new long[windowSize];
+            resent = new boolean[windowSize];
+
+            if(oack.options.isEmpty()) {
+                acked = 0;
+                next = 1;
+            } else {
+                DatagramPacket dp = oack.newDatagram();
+                this.oack = new ByteBuffer[] {ByteBuffer.wrap(dp.getData(),dp.getOffset(),dp.getLength()).slice()};
+                acked = -1;
+                next = 0;
+            }
+            highestSent = acked;
         }
 
         /**
-         * Reads the next data packet out of the {@link #data}, in a way that follows the TFTP protocol.
+         * Returns the value of an option, or -1 if it's not asked for or out of range.
          */
-        private TFTPDataPacket readNextBlock(int blockNumber) throws IOException {
-            byte[] buf = new byte[blockSize];
-            int read = 0;
+        private int parseOption(Map<String,String> options, String name, int min, int max) {
+            String value = options.get(name);
+            if(value==null)
+                return -1;
+            try {
+                int v = Integer.parseInt(value.trim());
+                if(min<=v && v<=max)
+                    return v;
+            } catch (NumberFormatException e) {
+                // fall through
+            }
+            LOGGER.fine("Ignoring option "+name+"="+value+" from "+client);
+            return -1;
+        }
 
-            while(true) {
-                int chunk = stream.read(buf, read, buf.length-read);
-                if(chunk<=0)
-                    break;
-                read += chunk;
+        /**
+         * Registers the session to the event loop and sends the first window.
+         *
+         * @return
+         *      false if the session couldn't be opened.
+         */
+        boolean start() {
+            if(!ready)
+                return false;
+            try {
+                channel.configureBlocking(false);
+                key = channel.register(selector, SelectionKey.OP_READ, this);
+                startTime = System.nanoTime();
+                deadline = startTime+rto;
+                sendWindow();
+                return true;
+            } catch (IOException e) {
+                LOGGER.log(INFO, "IO exception in TFTP session", e);
+                return false;
             }
-            return new TFTPDataPacket(dest.getAddress(),dest.getPort(),blockNumber,buf,0,read);
         }
 
-        private void sendAndWait(TFTPPacket p, int expected) throws IOException {
-            int retry = 0;
-            while (true) {
-                send(p);
-                try {
-                    if(waitAck(expected))
-                        return; // got an ACK
-                } catch (SocketTimeoutException e) {
-                    if(retry++ > 5)
-                        throw e; // too many retries. abort
-                    LOGGER.fine("Retransmitting "+p);
-                }
+        void onReady(SelectionKey key) {
+            try {
+                if(key.isReadable())
+                    receive();
+                if(key.isValid() && key.isWritable())
+                    sendWindow();
+            } catch (IOException e) {
+                abort(e);
             }
         }
 
-        private boolean waitAck(int expected) throws IOException {
-            TFTPPacket p = receive();
-            if (!(p instanceof TFTPAckPacket)) {
+        private void receive() throws IOException {
+            while(key.isValid()) {
+                ByteBuffer buf = receiveBuffer;
+                buf.clear();
+                if(channel.read(buf)<=0)
+                    return;
+                if(buf.position()<4)
+                    continue;
+
+                int type = buf.getShort(0);
+                if(type==TFTPPacket.ACKNOWLEDGEMENT) {
+                    onAck(buf.getShort(2)&0xFFFF);
+                    continue;
+                }
+
+                TFTPPacket p = TFTPPacket.newTFTPPacket(
+                        new DatagramPacket(buf.array(),buf.position(),client.getAddress(),client.getPort()));
                 if (p instanceof TFTPErrorPacket) {
                     TFTPErrorPacket ep = (TFTPErrorPacket) p;
-                    LOGGER.info("Expecting ACK="+expected+" but got "+p+" :"+ep.getError()+":"+ep.getMessage());
+                    LOGGER.info("Expecting ACK="+(acked+1)+" but got "+p+" :"+ep.getError()+":"+ep.getMessage());
                 } else {
-                    LOGGER.info("Expecting ACK="+expected+" but got "+p);
-                    sendError(FILE_NOT_FOUND, "");
+                    LOGGER.info("Expecting ACK="+(acked+1)+" but got "+p);
+                    sendError(ILLEGAL_OPERATION, "");
                 }
-                throw new IOException("Aborting");
+                finish(false);
             }
+        }
 
-            TFTPAckPacket ack = (TFTPAckPacket) p;
-            if(ack.getBlockNumber()!=expected) {
-                LOGGER.info("Expecting ACK="+expected+" but got ACK for "+ack.getBlockNumber()+" instead. Retransmitting");
-                return false;
+        private void onAck(int blockNumber) throws IOException {
+            // the block acknowledged, among those sent since the last acknowledgement
+            long n = acked + ((blockNumber-acked)&0xFFFF);
+            long now = System.nanoTime();
+            if(n==acked && acked+1<next && resentAfter!=acked) {
+                // the client missed the block after the ones it acknowledged, RFC 7440.
+                // resend the window, but only once, or every duplicate would double the traffic
+                // (Sorcerer's Apprentice Syndrome)
+                LOGGER.fine("Client "+client+" acknowledged "+blockNumber+" again, resending the window");
+                resentAfter = acked;
+                next = acked+1;
+                deadline = now+rto;
+                sendWindow();
+                return;
             }
+            if(n==acked || n>=next) {
+                LOGGER.fine("Ignoring ACK for "+blockNumber+" from "+client);
+                return;
+            }
+
+            int slot = slot(n);
+            if(!resent[slot])
+                updateRoundTripTime(now-sentAt[slot]);
+
+            long bytes = bytesAcked;
+            for (long i=Math.max(1,acked+1); i<=n; i++)
+                bytes += dataLength(i);
+            bytesAcked = bytes;
+            acked = n;
+            retries = 0;
 
-            return true;
+            if(n==lastBlock) {
+                finish(true);
+                return;
+            }
+            if(n+1<next) {
+                // the client missed the block after n. resend from there.
+                LOGGER.fine("Client "+client+" acknowledged "+blockNumber+", resending the rest of the window");
+                next = n+1;
+            }
+            deadline = now+rto;
+            sendWindow();
         }
 
-        public void run() {
+        void onTimeout(long now) {
+            if(++retries>MAX_RETRIES) {
+                LOGGER.info("No ACK for block "+(acked+1)+" of "+fileName+" from "+client+". Aborting");
+                finish(false);
+                return;
+            }
+            if(!fixedTimeout)
+                rto = Math.min(rto*2,MAX_RTO);
+            next = acked+1;
+            deadline = now+rto;
+            LOGGER.fine("Retransmitting block "+next+" of "+fileName+" to "+client);
             try {
-                boolean hasTsize = session.options.containsKey("tsize");
-                boolean hasBlksize = session.options.containsKey("blksize");
-                if(hasTsize || hasBlksize) {
-                    LOGGER.fine("Got options "+session.options);
-                    TFTPOAckPacket oack = new TFTPOAckPacket(dest.getAddress(), dest.getPort());
-                    if(hasTsize)
-                        oack.options.put("tsize",String.valueOf(data.size()));
-                    if(hasBlksize) {
-                        blockSize = Integer.parseInt(session.options.get("blksize"));
-                        oack.options.put("blksize",String.valueOf(blockSize));
-                    }
-                    sendAndWait(oack,0);
-                }
+                sendWindow();
+            } catch (IOException e) {
+                abort(e);
+            }
+        }
 
-                for( int blockNumber=1; ; blockNumber++ ) {
-                    TFTPDataPacket dp = readNextBlock(blockNumber);
-                    LOGGER.fine("Sending block #"+blockNumber+" ("+dp.getDataLength()+")");
-                    sendAndWait(dp,blockNumber);
+        private void updateRoundTripTime(long rtt) {
+            // RFC 6298
+            if(srtt<0) {
+                srtt = rtt;
+                rttvar = rtt/2;
+            } else {
+                rttvar = (3*rttvar+Math.abs(srtt-rtt))/4;
+                srtt = (7*srtt+rtt)/8;
+            }
+            if(!fixedTimeout)
+                rto = Math.max(MIN_RTO,Math.min(MAX_RTO,srtt+4*rttvar));
+        }
 
-                    if(dp.getDataLength()<blockSize) {
-                        LOGGER.fine("Transmission complete");
-                        return;
-                    }
+        /**
+         * Sends the blocks of the window that haven't been sent yet.
+         * If the socket buffer is full, resumes when the channel becomes writable.
+         */
+        private void sendWindow() throws IOException {
+            while(next<=windowEnd()) {
+                if(channel.write(packet(next))==0) {
+                    key.interestOps(SelectionKey.OP_READ|SelectionKey.OP_WRITE);
+                    return;
                 }
-            } catch(IOException e) {
-                LOGGER.log(INFO, "IO exception in TFTP session", e);
-            } finally {
-                LOGGER.fine("Closing a session");
-                close();
-                try {
-                    if(stream!=null)
-                        stream.close();
-                } catch (IOException e) {
-                    LOGGER.log(FINE, "Failed to close "+ data,e);
+                packetsSent++;
+
+                int slot = slot(next);
+                if(next<=highestSent) {
+                    resent[slot] = true;
+                    retransmissions++;
+                } else {
+                    highestSent = next;
+                    resent[slot] = false;
+                    sentAt[slot] = System.nanoTime();
                 }
+                next++;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        /**
+         * The last block that may be sent before the next acknowledgement.
+         */
+        private long windowEnd() {
+            if(acked<0)
+                return 0;   // only the OACK until it's acknowledged
+            long end = acked+windowSize;
+            if(lastBlock>=0)
+                end = Math.min(end,lastBlock);
+            return end;
+        }
+
+        private int slot(long blockNumber) {
+            return (int)(blockNumber%windowSize);
+        }
+
+        /**
+         * Returns the packet of a block ready to be sent, reading the block if it's not read yet.
+         */
+        private ByteBuffer[] packet(long blockNumber) throws IOException {
+            if(blockNumber==0) {
+                oack[0].rewind();
+                return oack;
+            }
+            ByteBuffer[] p = blocks[slot(blockNumber)];
+            if(content!=null) {
+                // point the view to the block
+                setHeader(p[0].array(),blockNumber);
+                p[0].rewind();
+                int start = (int)((blockNumber-1)*blockSize);
+                p[1].clear();
+                p[1].position(start);
+                p[1].limit(start+dataLength(blockNumber));
+                return p;
+            }
+            if(blockNumber>highestRead) {
+                readBlock(blockNumber,p[0]);
+                highestRead = blockNumber;
+            }
+            p[0].rewind();
+            return p;
+        }
+
+        /**
+         * Length of the data in a block that has been read.
+         */
+        private int dataLength(long blockNumber) {
+            if(content!=null)
+                return (int)Math.min(blockSize,content.remaining()-(blockNumber-1)*blockSize);
+            return blocks[slot(blockNumber)][0].limit()-4;
+        }
+
+        private void setHeader(byte[] buf, long blockNumber) {
+            buf[0] = 0;
+            buf[1] = (byte)TFTPPacket.DATA;
+            buf[2] = (byte)(blockNumber>>8);
+            buf[3] = (byte)blockNumber;
+        }
+
+        /**
+         * Reads the next data packet out of the {@link #data}, in a way that follows the TFTP protocol.
+         */
+        private void readBlock(long blockNumber, ByteBuffer p) throws IOException {
+            byte[] buf = p.array();
+            setHeader(buf,blockNumber);
+
+            int read = 0;
+            while(read<blockSize) {
+                int chunk = stream.read(buf, 4+read, blockSize-read);
+                if(chunk<=0)
+                    break;
+                read += chunk;
+            }
+            p.clear();
+            p.limit(4+read);
+            if(read<blockSize)
+                lastBlock = blockNumber;
+        }
+
+        /**
+         * Sends a TFTP error packet.
+         */
+        private void sendError(int errorCode, String msg) {
+            LOGGER.info("Error: "+msg+" -> "+client);
+            DatagramPacket dp = new TFTPErrorPacket(client.getAddress(),client.getPort(),errorCode,msg).newDatagram();
+            try {
+                channel.write(ByteBuffer.wrap(dp.getData(),dp.getOffset(),dp.getLength()));
+            } catch (IOException e) {
+                LOGGER.log(FINE, "Failed to send an error to "+client,e);
+            }
+        }
+
+        SessionStatistics getStatistics() {
+            long rtt = srtt;
+            return new SessionStatistics(fileName,client,blockSize,windowSize,bytesAcked,packetsSent,retransmissions,
+                    (System.nanoTime()-startTime)/1000000, rtt<0 ? -1 : rtt/1000000);
+        }
+
+        private void abort(IOException e) {
+            if(e instanceof PortUnreachableException)
+                LOGGER.fine("Client "+client+" went away");
+            else
+                LOGGER.log(INFO, "IO exception in TFTP session", e);
+            finish(false);
+        }
+
+        private void finish(boolean complete) {
+            sessions.remove(client);
+            close();
+            if(complete)
+                LOGGER.fine("Transmission complete: "+getStatistics());
+            else
+                LOGGER.fine("Transmission aborted: "+getStatistics());
+        }
+
+        void close() {
+            LOGGER.fine("Closing a session");
+            try {
+                if(channel!=null)
+                    channel.close();
+            } catch (IOException e) {
+                LOGGER.log(FINE, "Failed to close the channel to "+client,e);
+            }
+            try {
+                if(stream!=null)
+                    stream.close();
+            } catch (IOException e) {
+                LOGGER.log(FINE, "Failed to close "+ data,e);
             }
         }
     }
 
     private static final int TFTP_PORT = 69;
+    private static final int OPENER_THREADS = 4;
+
+    /**
+     * Valid range of the <tt>blksize</tt> option, RFC 2348.
+     */
+    private static final int MIN_BLOCK_SIZE = 8;
+    private static final int MAX_BLOCK_SIZE = 65464;
+    private static final int MAX_PACKET_SIZE = MAX_BLOCK_SIZE+4;
+    /**
+     * Limits of the window a session buffers, in blocks and in bytes.
+     */
+    private static final int MAX_WINDOW_SIZE = 64;
+    private static final int MAX_WINDOW_BYTES = 256*1024;
+
+    /**
+     * Retransmission timeouts in nanoseconds.
+     */
+    private static final long INITIAL_RTO = 1000000000L;
+    private static final long MIN_RTO = 50000000L;
+    private static final long MAX_RTO = 10000000000L;
+    private static final int MAX_RETRIES = 6;
+
     private static final Logger LOGGER = Logger.getLogger(TFTPServer.class.getName());
 
     /**
@@ -252,7 +791,7 @@ public class TFTPServer implements Runnable {
                     }
                 };
             }
-        });
+        }, args.length>0 ? Integer.parseInt(args[0]) : TFTP_PORT);
         new Thread(server).start();
         new BufferedReader(new InputStreamReader(System.in)).readLine();
         server.close();
@@ -0,0 +1,246 @@
+package org.jvnet.hudson.tftpd;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Checks when {@link CachingPathResolver} serves a cached copy and when it reads the file again.
+ */
+public class CachingPathResolverTest extends TestCase {
+    private final Map<String,byte[]> files = Collections.synchronizedMap(new HashMap<String,byte[]>());
+    private final Map<String,Integer> reads = new HashMap<String,Integer>();
+    /**
+     * If set, reading a file waits for this latch.
+     */
+    private volatile CountDownLatch gate;
+    private volatile boolean failing;
+
+    /**
+     * Serves {@link #files} as streams, counting how many times each is read.
+     */
+    private final PathResolver source = new PathResolver() {
+        public Data open(final String fileName) throws IOException {
+            final byte[] content = files.get(fileName);
+            if(content==null)
+                return null;
+            return new Data() {
+                public InputStream read() throws IOException {
+                    synchronized (reads) {
+                        Integer n = reads.get(fileName);
+                        reads.put(fileName, n==null ? 1 : n+1);
+                    }
+                    if(failing)
+                        throw new IOException("Failed to read "+fileName);
+                    CountDownLatch g = gate;
+                    if(g!=null) {
+                        try {
+                            g.await();
+                        } catch (InterruptedException e) {
+                            throw new IOException(e.toString());
+                        }
+                    }
+                    return new ByteArrayInputStream(content);
+                }
+                public int size() {
+                    return content.length;
+                }
+            };
+        }
+    };
+
+    public void testHit() throws Exception {
+        byte[] content = content(100000);
+        files.put("kernel", content);
+        CachingPathResolver resolver = new CachingPathResolver(source, 1000, 1000000, 60000);
+
+        Data d = resolver.open("kernel");
+        assertEquals(1, reads("kernel"));
+        assertNotNull(d.getBuffer());
+        assertEquals(content.length, d.size());
+        assertTrue(Arrays.equals(content, readFully(d)));
+        assertTrue(Arrays.equals(content, toArray(d.getBuffer())));
+
+        assertSame(d, resolver.open("kernel"));
+        assertSame(d, resolver.open("kernel"));
+        assertEquals(1, reads("kernel"));
+    }
+
+    public void testConcurrentMissesLoadOnce() throws Exception {
+        files.put("initrd", content(500000));
+        final CachingPathResolver resolver = new CachingPathResolver(source, 1000, 1000000, 60000);
+        gate = new CountDownLatch(1);
+
+        final List<Data> opened = Collections.synchronizedList(new ArrayList<Data>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i=0; i<20; i++) {
+            Thread t = new Thread() {
+                public void run() {
+                    try {
+                        opened.add(resolver.open("initrd"));
+                    } catch (IOException e) {
+                        throw new Error(e);
+                    }
+                }
+            };
+            t.start();
+            threads.add(t);
+        }
+        // let all the threads ask for the file while the first one is reading it
+        Thread.sleep(200);
+        gate.countDown();
+        for (Thread t : threads)
+            t.join();
+
+        assertEquals(1, reads("initrd"));
+        assertEquals(20, opened.size());
+        for (Data d : opened)
+            assertSame(opened.get(0), d);
+        assertTrue(Arrays.equals(files.get("initrd"), readFully(opened.get(0))));
+    }
+
+    public void testSmallAndLargeFilesAreNotCached() throws Exception {
+        files.put("menu", content(999));
+        files.put("huge", content(1000001));
+        CachingPathResolver resolver = new CachingPathResolver(source, 1000, 1000000, 60000);
+
+        Data d = resolver.open("menu");
+        assertNull(d.getBuffer());
+        assertNotSame(d, resolver.open("menu"));
+        d = resolver.open("huge");
+        assertNull(d.getBuffer());
+        assertNotSame(d, resolver.open("huge"));
+        // the data is returned as is, without reading it
+        assertEquals(0, reads("menu"));
+        assertEquals(0, reads("huge"));
+    }
+
+    public void testDataInMemoryIsNotCached() throws Exception {
+        final Data inMemory = Data.from(content(100000));
+        CachingPathResolver resolver = new CachingPathResolver(new PathResolver() {
+            public Data open(String fileName) {
+                return fileName.equals("memory") ? inMemory : null;
+            }
+        }, 1000, 1000000, 60000);
+        assertSame(inMemory, resolver.open("memory"));
+        assertNull(resolver.open("missing"));
+    }
+
+    public void testChangedSizeReloads() throws Exception {
+        files.put("kernel", content(100000));
+        CachingPathResolver resolver = new CachingPathResolver(source, 1000, 1000000, 60000);
+        Data d = resolver.open("kernel");
+
+        byte[] updated = content(100001);
+        files.put("kernel", updated);
+        Data reloaded = resolver.open("kernel");
+        assertNotSame(d, reloaded);
+        assertEquals(2, reads("kernel"));
+        assertTrue(Arrays.equals(updated, readFully(reloaded)));
+        assertSame(reloaded, resolver.open("kernel"));
+        assertEquals(2, reads("kernel"));
+    }
+
+    public void testExpiration() throws Exception {
+        files.put("kernel", content(100000));
+        files.put("initrd", content(200000));
+        CachingPathResolver resolver = new CachingPathResolver(source, 1000, 1000000, 100);
+        Data d = resolver.open("kernel");
+        resolver.open("initrd");
+        Thread.sleep(50);
+        assertSame(d, resolver.open("kernel"));
+
+        Thread.sleep(150);
+        assertNotSame(d, resolver.open("kernel"));
+        assertEquals(2, reads("kernel"));
+        resolver.open("initrd");
+        assertEquals(2, reads("initrd"));
+    }
+
+    public void testLeastRecentlyUsedAreEvicted() throws Exception {
+        files.put("a", content(100000));
+        files.put("b", content(100001));
+        files.put("c", content(100002));
+        CachingPathResolver resolver = new CachingPathResolver(source, 1000, 250000, 60000);
+        resolver.open("a");
+        resolver.open("b");
+        resolver.open("a");
+        // over the limit, so b goes as it's been used the least recently
+        resolver.open("c");
+        assertEquals(1, reads("c"));
+
+        resolver.open("a");
+        resolver.open("c");
+        assertEquals(1, reads("a"));
+        assertEquals(1, reads("c"));
+        resolver.open("b");
+        assertEquals(2, reads("b"));
+    }
+
+    public void testFailedLoadIsNotCached() throws Exception {
+        files.put("kernel", content(100000));
+        CachingPathResolver resolver = new CachingPathResolver(source, 1000, 1000000, 60000);
+        failing = true;
+        try {
+            resolver.open("kernel");
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+
+        failing = false;
+        Data d = resolver.open("kernel");
+        assertTrue(Arrays.equals(files.get("kernel"), readFully(d)));
+        assertSame(d, resolver.open("kernel"));
+        assertEquals(2, reads("kernel"));
+    }
+
+    public void testClear() throws Exception {
+        files.put("kernel", content(100000));
+        CachingPathResolver resolver = new CachingPathResolver(source, 1000, 1000000, 60000);
+        Data d = resolver.open("kernel");
+        resolver.clear();
+        assertNotSame(d, resolver.open("kernel"));
+        assertEquals(2, reads("kernel"));
+    }
+
+    private int reads(String fileName) {
+        synchronized (reads) {
+            Integer n = reads.get(fileName);
+            return n==null ? 0 : n;
+        }
+    }
+
+    private static byte[] content(int size) {
+        byte[] b = new byte[size];
+        new Random(size).nextBytes(b);
+        return b;
+    }
+
+    private static byte[] readFully(Data d) throws IOException {
+        byte[] b = new byte[d.size()];
+        DataInputStream in = new DataInputStream(d.read());
+        in.readFully(b);
+        assertEquals(-1, in.read());
+        in.close();
+        return b;
+    }
+
+    private static byte[] toArray(ByteBuffer buf) {
+        byte[] b = new byte[buf.remaining()];
+        buf.get(b);
+        return b;
+    }
+}
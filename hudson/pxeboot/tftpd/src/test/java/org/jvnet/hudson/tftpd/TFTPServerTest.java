@@ -0,0 +1,460 @@
+package org.jvnet.hudson.tftpd;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Transfers files from a {@link TFTPServer} on the loopback interface.
+ */
+public class TFTPServerTest extends TestCase {
+    private final Map<String,Data> files = new HashMap<String,Data>();
+    private final List<Client> clients = new ArrayList<Client>();
+    private TFTPServer server;
+    private Thread thread;
+    private int port;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        // find a free port
+        DatagramSocket s = new DatagramSocket(0);
+        port = s.getLocalPort();
+        s.close();
+
+        server = new TFTPServer(new PathResolver() {
+            public Data open(String fileName) throws IOException {
+                Data d = files.get(fileName);
+                if(d==null)
+                    throw new FileNotFoundException(fileName);
+                return d;
+            }
+        }, port);
+        thread = new Thread(server);
+        thread.start();
+    }
+
+    protected void tearDown() throws Exception {
+        for (Client c : clients)
+            c.close();
+        server.close();
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+        super.tearDown();
+    }
+
+    public void testPlainTransfer() throws Exception {
+        byte[] small = content(1000);
+        files.put("small", Data.from(small));
+        Client c = new Client();
+        c.request("small");
+        DatagramPacket p = c.receive();
+        assertEquals("no OACK without options", DATA, opcode(p));
+        assertEquals(1, block(p));
+        assertEquals(512, data(p).length);
+        c.ack(1);
+        p = c.receive();
+        assertEquals(2, block(p));
+        assertEquals(488, data(p).length);
+        c.ack(2);
+        assertNull(c.receive());
+
+        // a file of whole blocks ends with an empty one
+        byte[] exact = content(1024);
+        files.put("exact", Data.from(exact));
+        assertTrue(Arrays.equals(exact, new Client().download("exact", 512, 1, 0)));
+    }
+
+    public void testStreamTransfer() throws Exception {
+        byte[] content = content(100000);
+        files.put("stream", stream(content));
+        assertTrue(Arrays.equals(content, new Client().download("stream", 512, 1, 0)));
+        assertTrue(Arrays.equals(content, new Client().download("stream", 1428, 16, 0,
+                "blksize","1428","windowsize","16")));
+    }
+
+    public void testOptionNegotiation() throws Exception {
+        files.put("file", Data.from(content(5000)));
+        Client c = new Client();
+        c.request("file","blksize","1024","tsize","0","timeout","1","windowsize","4");
+        Map<String,String> options = new HashMap<String,String>();
+        options.put("blksize","1024");
+        options.put("tsize","5000");
+        options.put("timeout","1");
+        options.put("windowsize","4");
+        assertEquals(options, c.receiveOptions());
+
+        // the whole window is sent without waiting for an ACK, then nothing until the ACK
+        c.ack(0);
+        for (int i=1; i<=4; i++) {
+            DatagramPacket p = c.receive();
+            assertEquals(i, block(p));
+            assertEquals(1024, data(p).length);
+        }
+        assertNull(c.receive());
+        c.ack(4);
+        DatagramPacket p = c.receive();
+        assertEquals(5, block(p));
+        assertEquals(904, data(p).length);
+        c.ack(5);
+        assertNull(c.receive());
+    }
+
+    public void testOptionLimits() throws Exception {
+        files.put("file", Data.from(content(5000)));
+        files.put("stream", stream(content(5000)));
+
+        assertEquals(map("blksize","65464","windowsize","64"),
+                negotiate("file","blksize","100000","windowsize","1000"));
+        // only a few large blocks are buffered when reading from a stream
+        assertEquals(map("blksize","65464","windowsize","4","tsize","5000"),
+                negotiate("stream","blksize","65464","windowsize","64","tsize","0"));
+        assertEquals(map("blksize","8","windowsize","1"),
+                negotiate("file","BlkSize","8","WINDOWSIZE","1"));
+        assertEquals(map("tsize","5000"),
+                negotiate("file","blksize","7","windowsize","0","timeout","256","tsize","0"));
+        assertEquals(map("timeout","255"),
+                negotiate("file","blksize","x","timeout","255","windowsize","-1"));
+
+        // no OACK if none of the options is accepted
+        Client c = new Client();
+        c.request("file","blksize","4","foo","bar");
+        DatagramPacket p = c.receive();
+        assertEquals(DATA, opcode(p));
+        assertEquals(512, data(p).length);
+    }
+
+    public void testRetransmitAfterTimeout() throws Exception {
+        files.put("file", Data.from(content(700)));
+        Client c = new Client();
+        c.request("file","timeout","1");
+        assertEquals(map("timeout","1"), c.receiveOptions());
+        c.ack(0);
+        DatagramPacket p = c.receive();
+        assertEquals(1, block(p));
+
+        // no ACK, so the block comes again after a second
+        long start = System.nanoTime();
+        p = c.receive(3000);
+        assertNotNull(p);
+        assertEquals(1, block(p));
+        assertTrue((System.nanoTime()-start)/1000000 >= 800);
+
+        SessionStatistics s = waitForPackets(3);
+        assertEquals(3, s.getPacketsSent());
+        assertEquals(1, s.getRetransmissions());
+        assertEquals(0, s.getBytesTransferred());
+
+        c.ack(1);
+        assertEquals(2, block(c.receive()));
+        c.ack(2);
+        waitForNoSessions();
+    }
+
+    public void testPartialAcknowledgement() throws Exception {
+        files.put("file", Data.from(content(5000)));
+        Client c = new Client();
+        c.request("file","timeout","1","windowsize","4");
+        c.receiveOptions();
+        c.ack(0);
+        assertBlocks(c, 1, 4);
+
+        // block 3 was lost, so the client acknowledges 2. the rest of the window is sent again
+        c.ack(2);
+        assertBlocks(c, 3, 6);
+        // a duplicate ACK resends the window once, but not again
+        c.ack(2);
+        assertBlocks(c, 3, 6);
+        c.ack(2);
+        assertNull(c.receive());
+
+        SessionStatistics s = server.getSessions().get(0);
+        assertEquals(2*512, s.getBytesTransferred());
+        assertEquals(1+6+6, s.getPacketsSent());
+        assertEquals(6, s.getRetransmissions());
+
+        c.ack(6);
+        assertBlocks(c, 7, 10);
+        c.ack(10);
+        waitForNoSessions();
+    }
+
+    public void testRetransmittedRequest() throws Exception {
+        files.put("file", Data.from(content(5000)));
+        Client c = new Client();
+        c.request("file","timeout","1");
+        c.request("file","timeout","1");
+        assertEquals(map("timeout","1"), c.receiveOptions());
+        // a second session would send its own OACK
+        assertNull(c.receive());
+        assertEquals(1, server.getSessions().size());
+    }
+
+    public void testBlockNumberRollover() throws Exception {
+        byte[] content = content(8*70000+3);
+        files.put("file", Data.from(content));
+        assertTrue(Arrays.equals(content, new Client().download("file", 8, 64, 0,
+                "blksize","8","windowsize","64")));
+    }
+
+    public void testLossyTransfer() throws Exception {
+        byte[] content = content(200000);
+        files.put("file", Data.from(content));
+        files.put("stream", stream(content));
+        assertTrue(Arrays.equals(content, new Client().download("file", 512, 1, 7)));
+        assertTrue(Arrays.equals(content, new Client().download("file", 1024, 8, 10,
+                "blksize","1024","windowsize","8")));
+        assertTrue(Arrays.equals(content, new Client().download("stream", 1024, 8, 10,
+                "blksize","1024","windowsize","8")));
+        waitForNoSessions();
+    }
+
+    public void testFileNotFound() throws Exception {
+        Client c = new Client();
+        c.request("missing");
+        DatagramPacket p = c.receive();
+        assertEquals(ERROR, opcode(p));
+        assertEquals(1, block(p));   // error code: file not found
+        assertNull(c.receive());
+    }
+
+    private void assertBlocks(Client c, int first, int last) throws IOException {
+        for (int i=first; i<=last; i++) {
+            DatagramPacket p = c.receive();
+            assertNotNull("block "+i, p);
+            assertEquals(i, block(p));
+        }
+    }
+
+    /**
+     * Returns the options the server acknowledges when asked for the given ones.
+     */
+    private Map<String,String> negotiate(String fileName, String... options) throws IOException {
+        Client c = new Client();
+        c.request(fileName, options);
+        return c.receiveOptions();
+    }
+
+    private static Map<String,String> map(String... pairs) {
+        Map<String,String> r = new HashMap<String,String>();
+        for (int i=0; i<pairs.length; i+=2)
+            r.put(pairs[i],pairs[i+1]);
+        return r;
+    }
+
+    /**
+     * Waits for the session to count the packets sent, as the client may get them first.
+     */
+    private SessionStatistics waitForPackets(long packets) throws InterruptedException {
+        for (int i=0; i<100 && server.getSessions().get(0).getPacketsSent()<packets; i++)
+            Thread.sleep(50);
+        return server.getSessions().get(0);
+    }
+
+    private void waitForNoSessions() throws InterruptedException {
+        for (int i=0; i<100 && !server.getSessions().isEmpty(); i++)
+            Thread.sleep(50);
+        assertEquals(0, server.getSessions().size());
+    }
+
+    private static byte[] content(int size) {
+        byte[] b = new byte[size];
+        new Random(size).nextBytes(b);
+        return b;
+    }
+
+    /**
+     * Data that's only available as a stream, so that it's sent through the window buffers.
+     */
+    private static Data stream(final byte[] content) {
+        return new Data() {
+            public InputStream read() {
+                return new ByteArrayInputStream(content);
+            }
+            public int size() {
+                return content.length;
+            }
+        };
+    }
+
+    private static int opcode(DatagramPacket p) {
+        return p.getData()[1];
+    }
+
+    /**
+     * Block number of a DATA packet, or the error code of an ERROR packet.
+     */
+    private static int block(DatagramPacket p) {
+        byte[] b = p.getData();
+        return ((b[2]&0xFF)<<8)|(b[3]&0xFF);
+    }
+
+    private static byte[] data(DatagramPacket p) {
+        byte[] r = new byte[p.getLength()-4];
+        System.arraycopy(p.getData(),4,r,0,r.length);
+        return r;
+    }
+
+    /**
+     * Minimal TFTP client, that leaves it to the test when to acknowledge.
+     */
+    private final class Client {
+        private final DatagramSocket socket;
+        private byte[] request;
+        /**
+         * Address of the session, known once the server has responded.
+         */
+        private SocketAddress session;
+
+        Client() throws IOException {
+            socket = new DatagramSocket();
+            clients.add(this);
+        }
+
+        void request(String fileName, String... options) throws IOException {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            buf.write(0);
+            buf.write(READ_REQUEST);
+            for (String s : concat(fileName, "octet", options)) {
+                buf.write(s.getBytes("US-ASCII"));
+                buf.write(0);
+            }
+            request = buf.toByteArray();
+            sendRequest();
+        }
+
+        private void sendRequest() throws IOException {
+            socket.send(new DatagramPacket(request,request.length,
+                    new InetSocketAddress(InetAddress.getByName("127.0.0.1"),port)));
+        }
+
+        DatagramPacket receive() throws IOException {
+            return receive(QUIET_PERIOD);
+        }
+
+        /**
+         * Returns the next packet from the server, or null if none arrives in time.
+         */
+        DatagramPacket receive(int timeout) throws IOException {
+            long deadline = System.currentTimeMillis()+timeout;
+            while(true) {
+                long remaining = deadline-System.currentTimeMillis();
+                if(remaining<=0)
+                    return null;
+                socket.setSoTimeout(session==null ? (int)Math.min(remaining,100) : (int)remaining);
+                DatagramPacket p = new DatagramPacket(new byte[70000],70000);
+                try {
+                    socket.receive(p);
+                } catch (SocketTimeoutException e) {
+                    if(session==null)
+                        sendRequest();  // the server may not have been listening yet
+                    continue;
+                }
+                session = p.getSocketAddress();
+                return p;
+            }
+        }
+
+        Map<String,String> receiveOptions() throws IOException {
+            DatagramPacket p = receive();
+            assertNotNull(p);
+            assertEquals(OACK, opcode(p));
+            String[] tokens = new String(p.getData(),2,p.getLength()-2,"US-ASCII").split("\0");
+            return map(tokens);
+        }
+
+        void ack(long block) throws IOException {
+            byte[] b = {0, ACKNOWLEDGEMENT, (byte)(block>>8), (byte)block};
+            socket.send(new DatagramPacket(b,b.length,session));
+        }
+
+        /**
+         * Receives a whole file, acknowledging each window and dropping every <tt>dropEvery</tt>-th data packet.
+         */
+        byte[] download(String fileName, int blockSize, int windowSize, int dropEvery, String... options) throws IOException {
+            request(fileName, options);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            long expected = 1;
+            long acked = -1;
+            int received = 0;
+            int count = 0;
+            for (int timeouts=0; timeouts<10; ) {
+                DatagramPacket p = receive(1000);
+                if(p==null) {
+                    timeouts++;
+                    if(session!=null)
+                        ack(acked=expected-1);
+                    received = 0;
+                    continue;
+                }
+                timeouts = 0;
+                if(opcode(p)==OACK) {
+                    ack(0);
+                    continue;
+                }
+                assertEquals(DATA, opcode(p));
+                if(dropEvery>0 && ++count%dropEvery==0)
+                    continue;
+                int ahead = (block(p)-(int)expected)&0xFFFF;
+                if(ahead!=0) {
+                    // a block was lost. acknowledge the last one received, so that the server resends the rest
+                    if(ahead<0x8000 && acked!=expected-1) {
+                        ack(acked=expected-1);
+                        received = 0;
+                    }
+                    continue;
+                }
+                byte[] d = data(p);
+                out.write(d);
+                expected++;
+                boolean last = d.length<blockSize;
+                if(last || ++received==windowSize) {
+                    ack(acked=expected-1);
+                    received = 0;
+                }
+                if(last)
+                    return out.toByteArray();
+            }
+            throw new IOException("Transfer of "+fileName+" stalled at block "+expected);
+        }
+
+        void close() {
+            socket.close();
+        }
+    }
+
+    private static String[] concat(String a, String b, String[] rest) {
+        String[] r = new String[rest.length+2];
+        r[0] = a;
+        r[1] = b;
+        System.arraycopy(rest,0,r,2,rest.length);
+        return r;
+    }
+
+    private static final int READ_REQUEST = 1;
+    private static final int DATA = 3;
+    private static final int ACKNOWLEDGEMENT = 4;
+    private static final int ERROR = 5;
+    private static final int OACK = 6;
+
+    /**
+     * How long to wait to tell that the server doesn't send anything, in milliseconds.
+     * Shorter than the one second timeout the tests ask for.
+     */
+    private static final int QUIET_PERIOD = 300;
+}